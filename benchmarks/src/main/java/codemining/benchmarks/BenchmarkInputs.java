@@ -0,0 +1,93 @@
+/**
+ *
+ */
+package codemining.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The inputs of the tokenizer benchmarks. They are built from the sample files
+ * of each language (the test resources of codemining-core and the samples of
+ * the benchmarks), repeated to reach the size of the input.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class BenchmarkInputs {
+
+	/**
+	 * The languages of the inputs.
+	 */
+	public enum Language {
+		CPP("SampleCpp.txt"), JAVA("SampleClass.txt", "SampleClass2.txt",
+				"SampleClass3.txt"), JAVASCRIPT("SampleJavascript.txt",
+				"SampleJavascript2.txt", "SampleJavascript3.txt"), PYTHON(
+				"SamplePython.txt");
+
+		private final String[] samples;
+
+		private Language(final String... samples) {
+			this.samples = samples;
+		}
+	}
+
+	/**
+	 * The sizes of the inputs. A small input is a single sample file; the
+	 * others repeat all the samples of the language until they reach the
+	 * minimum size.
+	 */
+	public enum Size {
+		SMALL(0), MEDIUM(64 << 10), HUGE(8 << 20);
+
+		private final int minChars;
+
+		private Size(final int minChars) {
+			this.minChars = minChars;
+		}
+	}
+
+	/**
+	 * Return the input of the given language and size.
+	 *
+	 * @param language
+	 * @param size
+	 * @return
+	 * @throws IOException
+	 */
+	public static char[] getInput(final Language language, final Size size)
+			throws IOException {
+		if (size == Size.SMALL) {
+			return readSample(language.samples[0]).toCharArray();
+		}
+		final StringBuilder samples = new StringBuilder();
+		for (final String sample : language.samples) {
+			samples.append(readSample(sample));
+			samples.append('\n');
+		}
+		final StringBuilder input = new StringBuilder(size.minChars
+				+ samples.length());
+		while (input.length() < size.minChars) {
+			input.append(samples);
+		}
+		return input.toString().toCharArray();
+	}
+
+	private static String readSample(final String name) throws IOException {
+		try (final InputStream in = BenchmarkInputs.class.getClassLoader()
+				.getResourceAsStream(name)) {
+			if (in == null) {
+				throw new IOException("Sample " + name + " not found");
+			}
+			return IOUtils.toString(in, StandardCharsets.UTF_8.name());
+		}
+	}
+
+	private BenchmarkInputs() {
+		// No instances
+	}
+
+}
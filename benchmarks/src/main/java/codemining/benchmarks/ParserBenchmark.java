@@ -0,0 +1,101 @@
+/**
+ *
+ */
+package codemining.benchmarks;
+
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codemining.java.codeutils.JavaParserFactory;
+
+/**
+ * Throughput of parsing many small, method-sized snippets, comparing the
+ * pooled, preconfigured parsers of JavaParserFactory against creating and
+ * configuring a new parser (and its compiler options) for every snippet.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+	private static final String[] SNIPPETS = {
+			"public int size() { return elements.size(); }",
+			"void add(final String element) { if (element != null) { elements.add(element); } }",
+			"public static int max(int[] values) { int max = Integer.MIN_VALUE; for (int v : values) { max = Math.max(max, v); } return max; }",
+			"@Override public String toString() { return \"Bag [\" + elements + \"]\"; }",
+			"private boolean contains(Object o) { try { return elements.contains(o); } catch (ClassCastException e) { return false; } }" };
+
+	private char[][] snippets;
+
+	private int next;
+
+	private JavaParserFactory factory;
+
+	/**
+	 * Parse with a new parser, configured as the extractors did before the
+	 * parsers were pooled.
+	 */
+	@Benchmark
+	public ASTNode newParser() {
+		final ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setKind(ASTParser.K_CLASS_BODY_DECLARATIONS);
+		final Map<String, String> options = new Hashtable<String, String>();
+		options.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM,
+				JavaCore.VERSION_1_8);
+		options.put(JavaCore.COMPILER_SOURCE, JavaCore.VERSION_1_8);
+		parser.setCompilerOptions(options);
+		parser.setResolveBindings(false);
+		parser.setBindingsRecovery(false);
+		parser.setStatementsRecovery(true);
+		parser.setSource(nextSnippet());
+		return parser.createAST(null);
+	}
+
+	private char[] nextSnippet() {
+		next = (next + 1) % snippets.length;
+		return snippets[next];
+	}
+
+	/**
+	 * Parse with a pooled, preconfigured parser.
+	 */
+	@Benchmark
+	public ASTNode pooledParser() {
+		return factory.parse(nextSnippet(),
+				ASTParser.K_CLASS_BODY_DECLARATIONS);
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		factory = JavaParserFactory.getFactory(false, false,
+				JavaCore.VERSION_1_8);
+		snippets = new char[SNIPPETS.length][];
+		for (int i = 0; i < SNIPPETS.length; i++) {
+			snippets[i] = SNIPPETS[i].toCharArray();
+		}
+	}
+
+}
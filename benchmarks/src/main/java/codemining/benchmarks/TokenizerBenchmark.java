@@ -0,0 +1,219 @@
+/**
+ *
+ */
+package codemining.benchmarks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import codemining.benchmarks.BenchmarkInputs.Language;
+import codemining.benchmarks.BenchmarkInputs.Size;
+import codemining.cpp.codeutils.CDTTokenizer;
+import codemining.cpp.codeutils.CppWhitespaceTokenizer;
+import codemining.java.tokenizers.JavaASTAnnotatedTokenizer;
+import codemining.java.tokenizers.JavaTokenizer;
+import codemining.java.tokenizers.JavaTypeTokenizer;
+import codemining.java.tokenizers.JavaWhitespaceTokenizer;
+import codemining.java.tokenizers.JavaWidthAnnotatedWhitespaceTokenizer;
+import codemining.js.codeutils.JavascriptTokenizer;
+import codemining.languagetools.ITokenizer;
+import codemining.languagetools.ITokenizer.FullToken;
+import codemining.languagetools.TokenizerUtils;
+import codemining.langs.codeutils.CodeTokenizer;
+import codemining.python.codeutils.Python27Tokenizer;
+import codemining.python.codeutils.Python30Tokenizer;
+
+/**
+ * Throughput benchmarks of all the tokenizers, over small, medium and huge
+ * inputs. The throughput is reported both in operations (tokenized inputs) and
+ * in tokens per second. Run the main method to also profile the allocations
+ * and report the allocated bytes per token.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenizerBenchmark {
+
+	/**
+	 * Counts the tokens produced, reported by JMH as a rate (tokens/s).
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class TokenCount {
+
+		public long tokens;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			tokens = 0;
+		}
+
+	}
+
+	private static final String TOKENS_COUNTER = "tokens";
+
+	/**
+	 * Create the tokenizer with the given (simple) class name.
+	 *
+	 * @param name
+	 * @return
+	 * @throws Exception
+	 */
+	static ITokenizer createTokenizer(final String name) throws Exception {
+		switch (name) {
+		case "JavaTokenizer":
+			return new JavaTokenizer();
+		case "JavaWhitespaceTokenizer":
+			return new JavaWhitespaceTokenizer();
+		case "JavaWidthAnnotatedWhitespaceTokenizer":
+			return new JavaWidthAnnotatedWhitespaceTokenizer();
+		case "JavaTypeTokenizer":
+			return new JavaTypeTokenizer();
+		case "JavaASTAnnotatedTokenizer":
+			return new JavaASTAnnotatedTokenizer(new JavaTokenizer());
+		case "JavascriptTokenizer":
+			return new JavascriptTokenizer();
+		case "CDTTokenizer":
+			return new CDTTokenizer();
+		case "CppWhitespaceTokenizer":
+			return new CppWhitespaceTokenizer();
+		case "Python27Tokenizer":
+			return new Python27Tokenizer();
+		case "Python30Tokenizer":
+			return new Python30Tokenizer();
+		case "CodeTokenizer":
+			return new CodeTokenizer("java");
+		default:
+			throw new IllegalArgumentException("Unknown tokenizer " + name);
+		}
+	}
+
+	/**
+	 * Return the language of the inputs of the given tokenizer.
+	 *
+	 * @param tokenizerName
+	 * @return
+	 */
+	static Language getLanguage(final String tokenizerName) {
+		if (tokenizerName.startsWith("Javascript")) {
+			return Language.JAVASCRIPT;
+		} else if (tokenizerName.startsWith("Java")
+				|| tokenizerName.equals("CodeTokenizer")) {
+			return Language.JAVA;
+		} else if (tokenizerName.startsWith("Python")) {
+			return Language.PYTHON;
+		}
+		return Language.CPP;
+	}
+
+	/**
+	 * Run all the benchmarks with the GC profiler and print the throughput
+	 * in tokens/s and the allocated bytes per token.
+	 *
+	 * @param args
+	 * @throws RunnerException
+	 */
+	public static void main(final String[] args) throws RunnerException {
+		final Options options = new OptionsBuilder()
+				.include(TokenizerBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build();
+		final Collection<RunResult> results = new Runner(options).run();
+
+		System.out.println();
+		System.out.println(String.format("%-60s %15s %15s", "Benchmark",
+				"tokens/s", "bytes/token"));
+		for (final RunResult result : results) {
+			final double opsPerSecond = result.getPrimaryResult().getScore();
+			final Result<?> tokens = result.getSecondaryResults().get(
+					TOKENS_COUNTER);
+			final Result<?> allocation = result.getSecondaryResults().get(
+					"gc.alloc.rate.norm");
+			if (tokens == null || allocation == null) {
+				continue;
+			}
+			final double tokensPerOp = tokens.getScore() / opsPerSecond;
+			final String name = result.getParams().getBenchmark() + " "
+					+ result.getParams().getParam("tokenizer") + " "
+					+ result.getParams().getParam("size");
+			System.out.println(String.format("%-60s %15.0f %15.1f", name,
+					tokens.getScore(), allocation.getScore() / tokensPerOp));
+		}
+	}
+
+	@Param({ "JavaTokenizer", "JavaWhitespaceTokenizer",
+			"JavaWidthAnnotatedWhitespaceTokenizer", "JavaTypeTokenizer",
+			"JavaASTAnnotatedTokenizer", "JavascriptTokenizer", "CDTTokenizer",
+			"CppWhitespaceTokenizer", "Python27Tokenizer", "Python30Tokenizer",
+			"CodeTokenizer" })
+	public String tokenizer;
+
+	@Param({ "SMALL", "MEDIUM", "HUGE" })
+	public Size size;
+
+	private ITokenizer tokenizerInstance;
+
+	private char[] code;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		tokenizerInstance = createTokenizer(tokenizer);
+		code = BenchmarkInputs.getInput(getLanguage(tokenizer), size);
+	}
+
+	/**
+	 * Tokenize into the list of full tokens, the most commonly used view.
+	 */
+	@Benchmark
+	public List<FullToken> tokenList(final TokenCount count) {
+		final List<FullToken> tokens = tokenizerInstance
+				.getTokenListFromCode(code);
+		// Excluding the sentence start/end, if the tokenizer adds them
+		count.tokens += TokenizerUtils.withoutSentenceStartEnd(tokens).size();
+		return tokens;
+	}
+
+	/**
+	 * Tokenize by pushing the tokens to a sink, without any intermediate
+	 * collection.
+	 */
+	@Benchmark
+	public void tokenSink(final TokenCount count, final Blackhole blackhole) {
+		final long[] tokens = new long[1];
+		tokenizerInstance.tokenize(code, (typeId, start, end, source) -> {
+			blackhole.consume(typeId);
+			blackhole.consume(start);
+			tokens[0]++;
+		});
+		count.tokens += tokens[0];
+	}
+
+}
@@ -0,0 +1,8 @@
+/**
+ * JMH benchmarks of the tokenizers. Build the module with
+ * {@code mvn package} (after installing codemining-core) and run
+ * {@code java -jar target/benchmarks.jar}, or run
+ * {@link codemining.benchmarks.TokenizerBenchmark#main(String[])} to also
+ * get the allocated bytes per token.
+ */
+package codemining.benchmarks;
@@ -11,7 +11,6 @@ import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -27,6 +26,7 @@ import org.eclipse.core.runtime.CoreException;
 
 import codemining.languagetools.IAstAnnotatedTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.SourceReader;
 import codemining.util.SettingsLoader;
 
 import com.google.common.base.Function;
@@ -290,8 +290,7 @@ IAstAnnotatedTokenizer {
 	public List<AstAnnotatedToken> getAnnotatedTokenListFromCode(
 			final File codeFile) throws IOException {
 		// TODO Get ast through the file
-		return getAnnotatedTokenListFromCode(FileUtils.readFileToString(
-				codeFile).toCharArray());
+		return getAnnotatedTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	@Override
@@ -397,8 +396,7 @@ IAstAnnotatedTokenizer {
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -420,8 +418,7 @@ IAstAnnotatedTokenizer {
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
 		// TODO get ast from file
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -442,8 +439,7 @@ IAstAnnotatedTokenizer {
 	@Override
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+		return fullTokenListWithPos(SourceReader.readChars(file));
 	}
 
 }
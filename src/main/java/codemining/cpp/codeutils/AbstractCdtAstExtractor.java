@@ -1,5 +1,6 @@
 package codemining.cpp.codeutils;
 
+import java.io.File;
 import java.util.Map;
 
 import org.eclipse.cdt.core.dom.ast.IASTTranslationUnit;
@@ -13,6 +14,8 @@ import org.eclipse.cdt.core.parser.IncludeFileContentProvider;
 import org.eclipse.cdt.core.parser.ScannerInfo;
 import org.eclipse.core.runtime.CoreException;
 
+import codemining.languagetools.GuardedParser;
+
 import com.google.common.collect.Maps;
 
 /**
@@ -46,6 +49,22 @@ public abstract class AbstractCdtAstExtractor {
 		return getAstForLanguage(fc, si, ifcp, idx, options, log);
 	}
 
+	/**
+	 * Return the AST of the file, guarded against pathological files (see
+	 * GuardedParser). The CDT parsers do not check for cancellation, so a
+	 * parse that times out is abandoned, but it keeps running in the
+	 * background until it finishes.
+	 * 
+	 * @param file
+	 * @param guard
+	 * @return the AST, or null if the file has been quarantined.
+	 */
+	public final IASTTranslationUnit getAST(final File file,
+			final GuardedParser guard) {
+		return guard.parse(file,
+				(source, monitor) -> getAST(source, file.getAbsolutePath()));
+	}
+
 	/**
 	 * To be overrided for each language.
 	 * 
@@ -9,7 +9,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.SortedMap;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang.NotImplementedException;
@@ -17,8 +16,12 @@ import org.eclipse.cdt.internal.formatter.scanner.Scanner;
 import org.eclipse.cdt.internal.formatter.scanner.Token;
 
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.SourceReader;
+import codemining.languagetools.TokenSink;
+import codemining.languagetools.TokenStream;
+import codemining.languagetools.TokenVocabulary;
+import codemining.languagetools.VocabularySink;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -44,21 +47,15 @@ public class CDTTokenizer implements ITokenizer {
 	 */
 	@Override
 	public SortedMap<Integer, FullToken> fullTokenListWithPos(final char[] code) {
+		final TokenStream stream = tokenize(code);
 		final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
 		tokens.put(-1, new FullToken(SENTENCE_START, SENTENCE_START));
 		tokens.put(Integer.MAX_VALUE, new FullToken(SENTENCE_END, SENTENCE_END));
-
-		final Scanner scanner = new Scanner();
-		scanner.setSource(code);
-		do {
-			final int token = scanner.getNextToken();
-			if (token == Token.tWHITESPACE) {
-				continue;
-			}
-			final String nxtToken = new String(scanner.getCurrentTokenSource());
-			tokens.put(scanner.getCurrentPosition(), new FullToken(nxtToken,
-					Integer.toString(token)));
-		} while (!scanner.atEnd());
+		for (int i = 0; i < stream.size(); i++) {
+			// Tokens are keyed by the scanner's position after the token
+			tokens.put(stream.getEndOffset(i), new FullToken(
+					stream.getTokenText(i), stream.getTokenType(i)));
+		}
 		return tokens;
 	}
 
@@ -119,30 +116,13 @@ public class CDTTokenizer implements ITokenizer {
 	 */
 	@Override
 	public List<FullToken> getTokenListFromCode(final char[] code) {
-		final List<FullToken> tokens = Lists.newArrayList();
-		tokens.add(new FullToken(SENTENCE_START, SENTENCE_START));
-
-		final Scanner scanner = new Scanner();
-		scanner.setSource(code);
-
-		do {
-			final int token = scanner.getNextToken();
-			if (token == Token.tWHITESPACE) {
-				continue;
-			}
-			final String nxtToken = new String(scanner.getCurrentTokenSource());
-			tokens.add(new FullToken(nxtToken, Integer.toString(token)));
-		} while (!scanner.atEnd());
-
-		tokens.add(new FullToken(SENTENCE_END, SENTENCE_END));
-		return tokens;
+		return tokenize(code).toFullTokenList();
 	}
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -152,30 +132,13 @@ public class CDTTokenizer implements ITokenizer {
 	 */
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
-		final List<String> tokens = Lists.newArrayList();
-		tokens.add(SENTENCE_START);
-
-		final Scanner scanner = new Scanner();
-		scanner.setSource(code);
-
-		do {
-			final int token = scanner.getNextToken();
-			if (token == Token.tWHITESPACE) {
-				continue;
-			}
-			final String nxtToken = new String(scanner.getCurrentTokenSource());
-			tokens.add(nxtToken);
-		} while (!scanner.atEnd());
-
-		tokens.add(SENTENCE_END);
-		return tokens;
+		return tokenize(code).toTokenList();
 	}
 
 	@Override
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -185,28 +148,67 @@ public class CDTTokenizer implements ITokenizer {
 	 */
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+		final TokenStream stream = tokenize(code);
 		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
 		tokens.put(-1, SENTENCE_START);
 		tokens.put(Integer.MAX_VALUE, SENTENCE_END);
+		for (int i = 0; i < stream.size(); i++) {
+			tokens.put(stream.getEndOffset(i), stream.getTokenText(i));
+		}
+		return tokens;
+	}
+
+	@Override
+	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
+			throws IOException {
+		return fullTokenListWithPos(SourceReader.readChars(file));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#tokenize(char[])
+	 */
+	@Override
+	public TokenStream tokenize(final char[] code) {
+		final TokenStream tokens = new TokenStream(code, code.length / 4);
+		tokenize(code, tokens);
+		return tokens;
+	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#tokenize(char[],
+	 * codemining.languagetools.TokenSink)
+	 */
+	@Override
+	public void tokenize(final char[] code, final TokenSink sink) {
 		final Scanner scanner = new Scanner();
 		scanner.setSource(code);
 		do {
 			final int token = scanner.getNextToken();
-			if (token == Token.tWHITESPACE) {
+			if (token == -1) {
+				break; // end of input
+			} else if (token == Token.tWHITESPACE) {
 				continue;
 			}
-			final String nxtToken = new String(scanner.getCurrentTokenSource());
-			tokens.put(scanner.getCurrentPosition(), nxtToken);
+			sink.token(token, scanner.getCurrentTokenStartPosition(),
+					scanner.getCurrentPosition(), code);
 		} while (!scanner.atEnd());
-		return tokens;
 	}
 
+	/**
+	 * Add the scanner tokens to the vocabulary as they are scanned, without
+	 * building a token list.
+	 */
 	@Override
-	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
-			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+	public int[] tokenizeToIds(final char[] code,
+			final TokenVocabulary vocabulary) {
+		final VocabularySink sink = new VocabularySink(vocabulary,
+				code.length / 4, (typeId, text) -> text);
+		tokenize(code, sink);
+		return sink.getIds();
 	}
 
 }
@@ -0,0 +1,104 @@
+/**
+ *
+ */
+package codemining.cpp.codeutils;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.cdt.core.dom.ast.IASTFileLocation;
+import org.eclipse.cdt.core.dom.ast.IASTLiteralExpression;
+import org.eclipse.cdt.core.dom.ast.IASTName;
+import org.eclipse.cdt.core.dom.ast.IASTNode;
+
+import codemining.languagetools.CompactAst;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Convert a CDT AST into a CompactAst. CDT nodes have no numeric types, so
+ * each node class is given a type id the first time it is seen, and the name
+ * of the type can be retrieved with getNodeTypeName(). The type ids are only
+ * valid within the same JVM. The roles are the names of the properties of the
+ * parents and the labels are the names and literals. The nodes
+ * that have no location in the file (e.g. some macro expansions) have a start
+ * position of -1 and a length of 0.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class CdtCompactAstConverter {
+
+	private static final Map<Class<?>, Integer> NODE_TYPES = Maps
+			.newConcurrentMap();
+
+	private static final Map<Integer, String> NODE_TYPE_NAMES = Maps
+			.newConcurrentMap();
+
+	private static final AtomicInteger NEXT_NODE_TYPE = new AtomicInteger();
+
+	private static void convert(final IASTNode node,
+			final CompactAst.Builder builder) {
+		final IASTFileLocation location = node.getFileLocation();
+		final String role = node.getPropertyInParent() == null ? null : node
+				.getPropertyInParent().getName();
+		final String label;
+		if (node instanceof IASTName) {
+			label = node.toString();
+		} else if (node instanceof IASTLiteralExpression) {
+			label = node.toString();
+		} else {
+			label = null;
+		}
+		builder.enter(getNodeType(node.getClass()),
+				location == null ? -1 : location.getNodeOffset(),
+				location == null ? 0 : location.getNodeLength(), role, label);
+		for (final IASTNode child : node.getChildren()) {
+			convert(child, builder);
+		}
+		builder.exit();
+	}
+
+	/**
+	 * Convert the AST (or a part of it) to a CompactAst.
+	 *
+	 * @param node
+	 *            the root of the AST
+	 * @param source
+	 *            the source code of the AST, to keep in the CompactAst, or
+	 *            null
+	 * @return
+	 */
+	public static CompactAst convert(final IASTNode node, final char[] source) {
+		final CompactAst.Builder builder = new CompactAst.Builder();
+		convert(node, builder);
+		return builder.build(source);
+	}
+
+	private static int getNodeType(final Class<?> nodeClass) {
+		final Integer type = NODE_TYPES.get(nodeClass);
+		if (type != null) {
+			return type;
+		}
+		return NODE_TYPES.computeIfAbsent(nodeClass, c -> {
+			final int newType = NEXT_NODE_TYPE.getAndIncrement();
+			NODE_TYPE_NAMES.put(newType, c.getSimpleName());
+			return newType;
+		});
+	}
+
+	/**
+	 * Return the (simple) name of the CDT node class of the given type id.
+	 *
+	 * @param nodeType
+	 * @return
+	 */
+	public static String getNodeTypeName(final int nodeType) {
+		return NODE_TYPE_NAMES.get(nodeType);
+	}
+
+	private CdtCompactAstConverter() {
+		// No instantiations.
+	}
+
+}
@@ -9,13 +9,13 @@ import java.util.Collection;
 import java.util.List;
 import java.util.SortedMap;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.eclipse.cdt.internal.formatter.scanner.Scanner;
 import org.eclipse.cdt.internal.formatter.scanner.Token;
 
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.SourceReader;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -141,8 +141,7 @@ public class CppTokenTypeTokenizer implements ITokenizer {
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/**
@@ -196,8 +195,7 @@ public class CppTokenTypeTokenizer implements ITokenizer {
 	@Override
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -228,8 +226,7 @@ public class CppTokenTypeTokenizer implements ITokenizer {
 	@Override
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+		return fullTokenListWithPos(SourceReader.readChars(file));
 	}
 
 }
@@ -9,7 +9,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.SortedMap;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang.NotImplementedException;
@@ -18,6 +17,7 @@ import org.eclipse.cdt.internal.formatter.scanner.Token;
 
 import codemining.languagetools.IFormattingTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.SourceReader;
 import codemining.languagetools.tokenizers.whitespace.WhitespaceToTokenConverter;
 
 import com.google.common.collect.Lists;
@@ -155,8 +155,7 @@ public class CppWhitespaceTokenizer implements IFormattingTokenizer {
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/**
@@ -215,8 +214,7 @@ public class CppWhitespaceTokenizer implements IFormattingTokenizer {
 	@Override
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -253,8 +251,7 @@ public class CppWhitespaceTokenizer implements IFormattingTokenizer {
 	@Override
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+		return fullTokenListWithPos(SourceReader.readChars(file));
 	}
 
 }
@@ -22,13 +22,16 @@ import com.google.common.collect.Lists;
 public class PackageInfoExtractor extends ASTVisitor {
 
 	private String packageName;
-	private final List<String> packageImports;
+	private final List<String> packageImports = Lists.newArrayList();
 
-	private final CompilationUnit cu;
+	/**
+	 * An extractor that has not visited any code yet, e.g. to be added to a
+	 * CompositeASTVisitor.
+	 */
+	public PackageInfoExtractor() {
+	}
 
 	public PackageInfoExtractor(final CompilationUnit cu) {
-		this.cu = cu;
-		packageImports = Lists.newArrayList();
 		cu.accept(this);
 	}
 
@@ -17,6 +17,7 @@ import org.eclipse.jdt.core.dom.SwitchCase;
 import org.eclipse.jdt.core.dom.WhileStatement;
 
 import codemining.java.codeutils.JavaASTExtractor;
+import codemining.languagetools.CompactAst;
 
 /**
  * Compute McCabe's Cyclomatic Complexity.
@@ -30,9 +31,13 @@ public class CyclomaticCalculator implements IFileMetricRetriever {
 	 * Visit all "junctions" in an AST and increment complexity.
 	 * 
 	 */
-	private static class JunctionVisitor extends ASTVisitor {
+	public static class JunctionVisitor extends ASTVisitor {
 		int complexity = 0;
 
+		public int getComplexity() {
+			return complexity;
+		}
+
 		@Override
 		public boolean visit(final CatchClause arg0) {
 			complexity++;
@@ -95,6 +100,34 @@ public class CyclomaticCalculator implements IFileMetricRetriever {
 	private static final Logger LOGGER = Logger
 			.getLogger(CyclomaticCalculator.class.getName());
 
+	/**
+	 * Return the complexity of a CompactAst of JavaCompactAstConverter.
+	 *
+	 * @param ast
+	 * @return
+	 */
+	public int getComplexity(final CompactAst ast) {
+		int complexity = 0;
+		for (int node = 0; node < ast.size(); node++) {
+			switch (ast.getNodeType(node)) {
+			case ASTNode.CATCH_CLAUSE:
+			case ASTNode.CONDITIONAL_EXPRESSION:
+			case ASTNode.DO_STATEMENT:
+			case ASTNode.ENHANCED_FOR_STATEMENT:
+			case ASTNode.FOR_STATEMENT:
+			case ASTNode.IF_STATEMENT:
+			case ASTNode.METHOD_DECLARATION:
+			case ASTNode.SWITCH_CASE:
+			case ASTNode.WHILE_STATEMENT:
+				complexity++;
+				break;
+			default:
+				break;
+			}
+		}
+		return complexity;
+	}
+
 	public int getComplexity(final File file) throws IOException {
 		final JavaASTExtractor ast = new JavaASTExtractor(false);
 		final JunctionVisitor visitor = new JunctionVisitor();
@@ -6,9 +6,10 @@ package codemining.java.codedata.metrics;
 import java.io.File;
 import java.io.IOException;
 
-import org.apache.commons.io.FileUtils;
 import org.eclipse.jdt.core.dom.ASTNode;
 
+import codemining.languagetools.SourceReader;
+
 /**
  * Find how many lines of code there are in the given file.
  * 
@@ -41,7 +42,7 @@ public class LinesOfCodeMetric implements IFileMetricRetriever {
 	 */
 	@Override
 	public double getMetricForFile(File file) throws IOException {
-		final String fileContents = FileUtils.readFileToString(file);
+		final String fileContents = SourceReader.readString(file);
 		// This returns the real lines, while the other returns without the
 		// comments.
 		return fileContents.split(System.getProperty("line.separator")).length;
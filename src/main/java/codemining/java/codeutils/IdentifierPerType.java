@@ -43,21 +43,13 @@ import com.google.common.collect.TreeRangeSet;
  */
 public class IdentifierPerType {
 
-	private static class MethodIdentifierExtractor extends ASTVisitor {
-		final ASTNode cu;
+	public static class MethodIdentifierExtractor extends ASTVisitor {
 
 		private final Map<String, RangeSet<Integer>> identifiers = Maps
 				.newTreeMap();
 
-		public MethodIdentifierExtractor(final char[] code) throws Exception {
-			cu = (new JavaASTExtractor(false)).getBestEffortAstNode(new String(
-					code));
-			cu.accept(this);
-		}
-
-		public MethodIdentifierExtractor(final File f) throws IOException {
-			cu = (new JavaASTExtractor(false)).getAST(f);
-			cu.accept(this);
+		public Map<String, RangeSet<Integer>> getIdentifiers() {
+			return identifiers;
 		}
 
 		@Override
@@ -74,21 +66,13 @@ public class IdentifierPerType {
 
 	}
 
-	private static class TypeIdentifierExtractor extends ASTVisitor {
-		final ASTNode cu;
+	public static class TypeIdentifierExtractor extends ASTVisitor {
 
 		private final Map<String, RangeSet<Integer>> identifiers = Maps
 				.newTreeMap();
 
-		public TypeIdentifierExtractor(final char[] code) throws Exception {
-			cu = (new JavaASTExtractor(false)).getBestEffortAstNode(new String(
-					code));
-			cu.accept(this);
-		}
-
-		public TypeIdentifierExtractor(final File f) throws IOException {
-			cu = (new JavaASTExtractor(false)).getAST(f);
-			cu.accept(this);
+		public Map<String, RangeSet<Integer>> getIdentifiers() {
+			return identifiers;
 		}
 
 		@Override
@@ -151,21 +135,13 @@ public class IdentifierPerType {
 
 	}
 
-	private static class VariableIdentifierExtractor extends ASTVisitor {
-		final ASTNode cu;
+	public static class VariableIdentifierExtractor extends ASTVisitor {
 
 		private final Map<String, RangeSet<Integer>> identifiers = Maps
 				.newTreeMap();
 
-		public VariableIdentifierExtractor(final char[] code) throws Exception {
-			cu = (new JavaASTExtractor(false)).getBestEffortAstNode(new String(
-					code));
-			cu.accept(this);
-		}
-
-		public VariableIdentifierExtractor(final File f) throws IOException {
-			cu = (new JavaASTExtractor(false)).getAST(f);
-			cu.accept(this);
+		public Map<String, RangeSet<Integer>> getIdentifiers() {
+			return identifiers;
 		}
 
 		@Override
@@ -217,6 +193,25 @@ public class IdentifierPerType {
 
 	}
 
+	/**
+	 * Visit the best effort AST of the code with the extractor.
+	 */
+	private static <V extends ASTVisitor> V accept(final char[] code,
+			final V extractor) throws Exception {
+		(new JavaASTExtractor(false)).getBestEffortAstNode(new String(code))
+				.accept(extractor);
+		return extractor;
+	}
+
+	/**
+	 * Visit the AST of the file with the extractor.
+	 */
+	private static <V extends ASTVisitor> V accept(final File f,
+			final V extractor) throws IOException {
+		(new JavaASTExtractor(false)).getAST(f).accept(extractor);
+		return extractor;
+	}
+
 	public static final void addToMap(
 			final Map<String, RangeSet<Integer>> identifiers,
 			final ASTNode node, final String identifier) {
@@ -245,14 +240,12 @@ public class IdentifierPerType {
 
 	public static Map<String, RangeSet<Integer>> getMethodIdentifiersRanges(
 			final char[] code) throws Exception {
-		final MethodIdentifierExtractor ex = new MethodIdentifierExtractor(code);
-		return ex.identifiers;
+		return accept(code, new MethodIdentifierExtractor()).getIdentifiers();
 	}
 
 	public static Map<String, RangeSet<Integer>> getMethodIdentifiersRanges(
 			final File f) throws IOException {
-		final MethodIdentifierExtractor ex = new MethodIdentifierExtractor(f);
-		return ex.identifiers;
+		return accept(f, new MethodIdentifierExtractor()).getIdentifiers();
 	}
 
 	public static Set<String> getTypeIdentifiers(final char[] code)
@@ -267,14 +260,12 @@ public class IdentifierPerType {
 
 	public static Map<String, RangeSet<Integer>> getTypeIdentifiersRanges(
 			final char[] code) throws Exception {
-		final TypeIdentifierExtractor ex = new TypeIdentifierExtractor(code);
-		return ex.identifiers;
+		return accept(code, new TypeIdentifierExtractor()).getIdentifiers();
 	}
 
 	public static Map<String, RangeSet<Integer>> getTypeIdentifiersRanges(
 			final File f) throws IOException {
-		final TypeIdentifierExtractor ex = new TypeIdentifierExtractor(f);
-		return ex.identifiers;
+		return accept(f, new TypeIdentifierExtractor()).getIdentifiers();
 	}
 
 	public static Set<String> getVariableIdentifiers(final char[] code)
@@ -289,16 +280,12 @@ public class IdentifierPerType {
 
 	public static Map<String, RangeSet<Integer>> getVariableIdentifiersRanges(
 			final char[] code) throws Exception {
-		final VariableIdentifierExtractor ex = new VariableIdentifierExtractor(
-				code);
-		return ex.identifiers;
+		return accept(code, new VariableIdentifierExtractor()).getIdentifiers();
 	}
 
 	public static Map<String, RangeSet<Integer>> getVariableIdentifiersRanges(
 			final File f) throws IOException {
-		final VariableIdentifierExtractor ex = new VariableIdentifierExtractor(
-				f);
-		return ex.identifiers;
+		return accept(f, new VariableIdentifierExtractor()).getIdentifiers();
 	}
 
 	/**
@@ -3,26 +3,53 @@
  */
 package codemining.java.codeutils;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.JavaCore;
-import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Block;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
 
 import codemining.java.tokenizers.JavaTokenizer;
-import codemining.languagetools.ITokenizer;
+import codemining.languagetools.CompactAst;
+import codemining.languagetools.GuardedParser;
 import codemining.languagetools.ParseType;
+import codemining.languagetools.SourceReader;
+import codemining.languagetools.SourceReader.DecodedSource;
+import codemining.languagetools.TokenStream;
+import codemining.languagetools.TokenizedSource;
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * A utility class to retrieve an Eclipse AST.
@@ -32,6 +59,22 @@ import codemining.languagetools.ParseType;
  */
 public class JavaASTExtractor {
 
+	/**
+	 * Receives a parsed file, along with the source code that was parsed.
+	 *
+	 */
+	public interface ParsedSourceRequestor {
+
+		/**
+		 * @param file
+		 * @param source
+		 *            the source code of the file, as read by SourceReader.
+		 * @param ast
+		 */
+		void accept(File file, char[] source, CompilationUnit ast);
+
+	}
+
 	private static final class TopMethodRetriever extends ASTVisitor {
 		public MethodDeclaration topDcl;
 
@@ -42,6 +85,388 @@ public class JavaASTExtractor {
 		}
 	}
 
+	/**
+	 * The tokenizer used to predict the type of snippets. It is thread-safe.
+	 */
+	private static final JavaTokenizer TOKENIZER = new JavaTokenizer();
+
+	private static final Logger LOGGER = Logger
+			.getLogger(JavaASTExtractor.class.getName());
+
+	/**
+	 * The order in which the parse types are preferred, when more than one
+	 * matches a snippet.
+	 */
+	private static final List<ParseType> PARSE_PRECEDENCE = Arrays.asList(
+			ParseType.COMPILATION_UNIT, ParseType.METHOD,
+			ParseType.CLASS_BODY, ParseType.STATEMENTS, ParseType.EXPRESSION);
+
+	/**
+	 * The number of files parsed together by getASTs(). The bindings of each
+	 * batch are resolved in a single environment, which is kept in memory
+	 * until the whole batch has been parsed.
+	 */
+	public static final int BATCH_SIZE = (int) SettingsLoader
+			.getNumericSetting("astBatchSize", 500);
+
+	/**
+	 * The number of bytes read from the start of a file to find its package
+	 * declaration.
+	 */
+	private static final int HEADER_BYTES = 8192;
+
+	private static final Pattern PACKAGE_DECLARATION = Pattern.compile(
+			"^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+	/**
+	 * Pass the parsed file to the requestor, logging its failures so that the
+	 * rest of the batch is not lost.
+	 */
+	private static void accept(final ParsedSourceRequestor requestor,
+			final File file, final char[] source, final CompilationUnit ast) {
+		try {
+			requestor.accept(file, source, ast);
+		} catch (final RuntimeException e) {
+			LOGGER.warning("Failed to process " + file + ": "
+					+ ExceptionUtils.getFullStackTrace(e));
+		}
+	}
+
+	/**
+	 * Detect the source paths (the roots of the package hierarchies) of the
+	 * given files, using their package declarations. If the path of a file
+	 * does not match its package, the /src heuristic is used. Only the header
+	 * of each file is read, unless the package declaration is not there.
+	 *
+	 * @param files
+	 * @return
+	 */
+	public static Set<String> detectSourcePaths(final Collection<File> files) {
+		return files.parallelStream().map(JavaASTExtractor::detectSourcePath)
+				.filter(path -> !path.isEmpty())
+				.collect(Collectors.toCollection(Sets::newTreeSet));
+	}
+
+	/**
+	 * Return the source path of the file, using its package declaration, or
+	 * the empty string if it cannot be detected.
+	 */
+	private static String detectSourcePath(final File file) {
+		final File parent = file.getAbsoluteFile().getParentFile();
+		final String packagePath = readPackageName(file).replace('.',
+				File.separatorChar);
+		if (packagePath.isEmpty()) {
+			return parent.getPath();
+		} else if (parent.getPath().endsWith(File.separator + packagePath)) {
+			return parent.getPath().substring(0,
+					parent.getPath().length() - packagePath.length() - 1);
+		}
+		return getSourcePathHeuristic(file);
+	}
+
+	/**
+	 * Return the parse types in the order that getBestEffortAstNode() tries
+	 * them: the predicted type first (after CLASS_BODY, for STATEMENTS), then
+	 * the rest in PARSE_PRECEDENCE order.
+	 */
+	private static List<ParseType> getParseOrder(final ParseType predicted) {
+		final List<ParseType> order = Lists.newArrayList();
+		if (predicted == ParseType.STATEMENTS) {
+			order.add(ParseType.CLASS_BODY);
+		}
+		order.add(predicted);
+		for (final ParseType parseType : PARSE_PRECEDENCE) {
+			if (!order.contains(parseType)) {
+				order.add(parseType);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Heuristic to retrieve the source path of a file, i.e. the path up to
+	 * the first src directory.
+	 */
+	private static String getSourcePathHeuristic(final File file) {
+		if (file.getAbsolutePath().contains("/src")) {
+			return file.getAbsolutePath().substring(0,
+					file.getAbsolutePath().indexOf("src", 0) + 3);
+		}
+		return "";
+	}
+
+	/**
+	 * Return true if the parser reported a syntax error or any of the nodes
+	 * is malformed or recovered.
+	 */
+	private static boolean hasErrors(final ASTNode node) {
+		final ASTNode root = node.getRoot();
+		if (root instanceof CompilationUnit) {
+			for (final IProblem problem : ((CompilationUnit) root)
+					.getProblems()) {
+				if (problem.isError()
+						&& (problem.getID() & IProblem.Syntax) != 0) {
+					return true;
+				}
+			}
+		}
+		final boolean[] malformed = { false };
+		node.accept(new ASTVisitor() {
+			@Override
+			public boolean preVisit2(final ASTNode child) {
+				if ((child.getFlags() & (ASTNode.MALFORMED | ASTNode.RECOVERED)) != 0) {
+					malformed[0] = true;
+				}
+				return !malformed[0];
+			}
+		});
+		return malformed[0];
+	}
+
+	/**
+	 * Return true if the token is a modifier of a declaration.
+	 */
+	private static boolean isModifier(final int tokenType) {
+		switch (tokenType) {
+		case ITerminalSymbols.TokenNamepublic:
+		case ITerminalSymbols.TokenNameprotected:
+		case ITerminalSymbols.TokenNameprivate:
+		case ITerminalSymbols.TokenNamestatic:
+		case ITerminalSymbols.TokenNamefinal:
+		case ITerminalSymbols.TokenNameabstract:
+		case ITerminalSymbols.TokenNamestrictfp:
+		case ITerminalSymbols.TokenNamesynchronized:
+		case ITerminalSymbols.TokenNamenative:
+		case ITerminalSymbols.TokenNametransient:
+		case ITerminalSymbols.TokenNamevolatile:
+		case ITerminalSymbols.TokenNamedefault:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Return the package of the file, or the empty string for the default
+	 * package. Only the header of the file is read, unless the package
+	 * declaration is not there.
+	 */
+	private static String readPackageName(final File file) {
+		try {
+			Matcher matcher = PACKAGE_DECLARATION.matcher(SourceReader
+					.readHeader(file, HEADER_BYTES));
+			if (matcher.find()) {
+				return matcher.group(1);
+			}
+			if (file.length() > HEADER_BYTES) {
+				// The declaration may be after a very long comment
+				matcher = PACKAGE_DECLARATION.matcher(SourceReader
+						.readString(file));
+				if (matcher.find()) {
+					return matcher.group(1);
+				}
+			}
+		} catch (final IOException e) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+		}
+		return "";
+	}
+
+	/**
+	 * Read the file of a batch, or return null if it cannot be read or it is
+	 * too large for the guard (which may be null).
+	 */
+	private static DecodedSource readSource(final String path,
+			final GuardedParser guard) {
+		final File file = new File(path);
+		if (guard != null && !guard.checkSize(file)) {
+			return null;
+		}
+		try {
+			return SourceReader.read(file);
+		} catch (final IOException e) {
+			if (guard != null) {
+				guard.quarantine(path, "Unreadable: " + e.getMessage());
+			} else {
+				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Return true if the token is a primitive type or void.
+	 */
+	private static boolean isTypeKeyword(final int tokenType) {
+		switch (tokenType) {
+		case ITerminalSymbols.TokenNameboolean:
+		case ITerminalSymbols.TokenNamebyte:
+		case ITerminalSymbols.TokenNamechar:
+		case ITerminalSymbols.TokenNamedouble:
+		case ITerminalSymbols.TokenNamefloat:
+		case ITerminalSymbols.TokenNameint:
+		case ITerminalSymbols.TokenNamelong:
+		case ITerminalSymbols.TokenNameshort:
+		case ITerminalSymbols.TokenNamevoid:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Return the index of the token after the one that closes the bracket
+	 * opened at the given index, or the number of tokens if it is not closed.
+	 */
+	private static int skipBracketed(final TokenStream tokens, final int open) {
+		final int openType = tokens.getTypeId(open);
+		final int closeType;
+		if (openType == ITerminalSymbols.TokenNameLPAREN) {
+			closeType = ITerminalSymbols.TokenNameRPAREN;
+		} else if (openType == ITerminalSymbols.TokenNameLESS) {
+			closeType = ITerminalSymbols.TokenNameGREATER;
+		} else {
+			closeType = ITerminalSymbols.TokenNameRBRACE;
+		}
+		int depth = 0;
+		for (int i = open; i < tokens.size(); i++) {
+			final int type = tokens.getTypeId(i);
+			if (type == openType) {
+				depth++;
+			} else if (type == closeType) {
+				depth--;
+			} else if (openType == ITerminalSymbols.TokenNameLESS) {
+				// Nested type arguments may be closed together
+				if (type == ITerminalSymbols.TokenNameRIGHT_SHIFT) {
+					depth -= 2;
+				} else if (type == ITerminalSymbols.TokenNameUNSIGNED_RIGHT_SHIFT) {
+					depth -= 3;
+				}
+			}
+			if (depth <= 0) {
+				return i + 1;
+			}
+		}
+		return tokens.size();
+	}
+
+	/**
+	 * Predict the parse type of a snippet from its (leading and trailing)
+	 * tokens, without parsing it.
+	 *
+	 * @param tokens
+	 *            the tokens of the snippet, without comments.
+	 * @return
+	 */
+	static ParseType predictParseType(final TokenStream tokens) {
+		final int nTokens = tokens.size();
+		if (nTokens == 0) {
+			return ParseType.COMPILATION_UNIT;
+		}
+		final int first = tokens.getTypeId(0);
+		if (first == ITerminalSymbols.TokenNamepackage
+				|| first == ITerminalSymbols.TokenNameimport) {
+			return ParseType.COMPILATION_UNIT;
+		}
+
+		// Skip the modifiers and annotations
+		int i = 0;
+		while (i < nTokens) {
+			final int type = tokens.getTypeId(i);
+			if (isModifier(type)) {
+				i++;
+			} else if (type == ITerminalSymbols.TokenNameAT && i + 1 < nTokens
+					&& tokens.getTypeId(i + 1) == ITerminalSymbols.TokenNameIdentifier) {
+				i += 2;
+				while (i + 1 < nTokens
+						&& tokens.getTypeId(i) == ITerminalSymbols.TokenNameDOT) {
+					i += 2;
+				}
+				if (i < nTokens
+						&& tokens.getTypeId(i) == ITerminalSymbols.TokenNameLPAREN) {
+					i = skipBracketed(tokens, i);
+				}
+			} else {
+				break;
+			}
+		}
+		if (i == nTokens) {
+			return ParseType.COMPILATION_UNIT;
+		}
+		final int declared = tokens.getTypeId(i);
+		if (declared == ITerminalSymbols.TokenNameclass
+				|| declared == ITerminalSymbols.TokenNameinterface
+				|| declared == ITerminalSymbols.TokenNameenum
+				|| (declared == ITerminalSymbols.TokenNameAT && i + 1 < nTokens && tokens
+						.getTypeId(i + 1) == ITerminalSymbols.TokenNameinterface)) {
+			return ParseType.COMPILATION_UNIT;
+		}
+
+		// A method or constructor, i.e. [<T>] [Type] name(...) [throws ...] {
+		if (declared == ITerminalSymbols.TokenNameLESS) {
+			i = skipBracketed(tokens, i);
+		}
+		int previous = ITerminalSymbols.TokenNameEOF;
+		while (i < nTokens) {
+			final int type = tokens.getTypeId(i);
+			if (type == ITerminalSymbols.TokenNameLPAREN) {
+				break;
+			} else if (type == ITerminalSymbols.TokenNameLESS) {
+				i = skipBracketed(tokens, i);
+				previous = ITerminalSymbols.TokenNameGREATER;
+				continue;
+			} else if (type != ITerminalSymbols.TokenNameIdentifier
+					&& type != ITerminalSymbols.TokenNameDOT
+					&& type != ITerminalSymbols.TokenNameLBRACKET
+					&& type != ITerminalSymbols.TokenNameRBRACKET
+					&& !isTypeKeyword(type)) {
+				previous = ITerminalSymbols.TokenNameEOF;
+				break;
+			}
+			previous = type;
+			i++;
+		}
+		if (i < nTokens && previous == ITerminalSymbols.TokenNameIdentifier) {
+			final int afterParameters = skipBracketed(tokens, i);
+			if (afterParameters < nTokens) {
+				final int next = tokens.getTypeId(afterParameters);
+				if (next == ITerminalSymbols.TokenNameLBRACE
+						|| next == ITerminalSymbols.TokenNamethrows) {
+					return ParseType.METHOD;
+				}
+			}
+		}
+
+		final int last = tokens.getTypeId(nTokens - 1);
+		if (last == ITerminalSymbols.TokenNameSEMICOLON
+				|| last == ITerminalSymbols.TokenNameRBRACE) {
+			return ParseType.STATEMENTS;
+		}
+		return ParseType.EXPRESSION;
+	}
+
+	/**
+	 * Return the tokens of the stream that are not comments or whitespace.
+	 * The stream itself is returned if it has none.
+	 */
+	private static TokenStream withoutComments(final TokenStream tokens) {
+		TokenStream codeTokens = null;
+		for (int i = 0; i < tokens.size(); i++) {
+			final int type = tokens.getTypeId(i);
+			final boolean isComment = type == ITerminalSymbols.TokenNameCOMMENT_LINE
+					|| type == ITerminalSymbols.TokenNameCOMMENT_BLOCK
+					|| type == ITerminalSymbols.TokenNameCOMMENT_JAVADOC
+					|| type == ITerminalSymbols.TokenNameWHITESPACE;
+			if (isComment && codeTokens == null) {
+				codeTokens = new TokenStream(tokens.getSource(), tokens.size());
+				codeTokens.addAll(tokens, 0, i, 0);
+			} else if (!isComment && codeTokens != null) {
+				codeTokens.addAll(tokens, i, i + 1, 0);
+			}
+		}
+		return codeTokens == null ? tokens : codeTokens;
+	}
+
 	/**
 	 * Remembers if the given Extractor will calculate the bindings.
 	 */
@@ -49,6 +474,8 @@ public class JavaASTExtractor {
 
 	private final boolean useJavadocs;
 
+	private final JavaParserFactory parserFactory;
+
 	/**
 	 * Constructor.
 	 *
@@ -56,18 +483,22 @@ public class JavaASTExtractor {
 	 *            calculate bindings on the extracted AST.
 	 */
 	public JavaASTExtractor(final boolean useBindings) {
-		this.useBindings = useBindings;
-		useJavadocs = false;
+		this(useBindings, false);
 	}
 
 	public JavaASTExtractor(final boolean useBindings, final boolean useJavadocs) {
 		this.useBindings = useBindings;
 		this.useJavadocs = useJavadocs;
+		parserFactory = JavaParserFactory.getFactory(useBindings,
+				useJavadocs, JavaCore.VERSION_1_8);
 	}
 
 	/**
 	 * Get the AST of a file. It is assumed that a CompilationUnit will be
 	 * returned. A heuristic is used to set the file's path variable.
+	 * <p>
+	 * Without bindings, the AST may be shared with other callers through the
+	 * ParsedSourceCache, so callers must not modify it.
 	 *
 	 * @param file
 	 * @return the compilation unit of the file
@@ -84,6 +515,9 @@ public class JavaASTExtractor {
 	 * <p>
 	 * Note: this may only yield a big improvement if the above heuristic fails
 	 * and srcPaths contains the correct source path.
+	 * <p>
+	 * As in getAST(File), the AST may be shared through the ParsedSourceCache
+	 * and must not be modified.
 	 *
 	 * @param file
 	 * @param srcPaths
@@ -93,46 +527,111 @@ public class JavaASTExtractor {
 	 */
 	public final CompilationUnit getAST(final File file,
 			final Set<String> srcPaths) throws IOException {
-		final String sourceFile = FileUtils.readFileToString(file);
-		final ASTParser parser = ASTParser.newParser(AST.JLS8);
-		parser.setKind(ASTParser.K_COMPILATION_UNIT);
-
-		final Map<String, String> options = new Hashtable<String, String>();
-		options.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM,
-				JavaCore.VERSION_1_8);
-		options.put(JavaCore.COMPILER_SOURCE, JavaCore.VERSION_1_8);
-		if (useJavadocs) {
-			options.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
-		}
-		parser.setCompilerOptions(options);
-		parser.setSource(sourceFile.toCharArray()); // set source
-		parser.setResolveBindings(useBindings);
-		parser.setBindingsRecovery(useBindings);
-
-		parser.setStatementsRecovery(true);
+		return getAST(file, srcPaths, null);
+	}
 
-		parser.setUnitName(file.getAbsolutePath());
+	/**
+	 * Get the AST of a file whose source code has already been read (e.g. to
+	 * share it with a tokenizer), so that the file is not read again. As in
+	 * getAST(File), the AST may be shared through the ParsedSourceCache and
+	 * must not be modified.
+	 *
+	 * @param file
+	 * @param source
+	 *            the contents of the file, as read by SourceReader.
+	 * @return the compilation unit of the file
+	 * @throws IOException
+	 */
+	public final CompilationUnit getAST(final File file, final char[] source)
+			throws IOException {
+		return getAST(file, new HashSet<String>(), checkNotNull(source));
+	}
 
-		// Heuristic to retrieve source file path
-		final String srcFilePath;
-		if (file.getAbsolutePath().contains("/src")) {
-			srcFilePath = file.getAbsolutePath().substring(0,
-					file.getAbsolutePath().indexOf("src", 0) + 3);
-		} else {
-			srcFilePath = "";
+	/**
+	 * Get the AST of a file whose source code has already been read and
+	 * tokenized, guarded against pathological files (see GuardedParser). The
+	 * guard counts the given tokens instead of tokenizing the source again.
+	 * The AST is taken from the ParsedSourceCache if it is there, but guarded
+	 * parses are not cached.
+	 *
+	 * @param file
+	 * @param tokens
+	 *            the tokenized contents of the file, as read by SourceReader,
+	 *            keeping the source code.
+	 * @param guard
+	 * @return the compilation unit of the file, or null if the file has been
+	 *         quarantined.
+	 */
+	public final CompilationUnit getAST(final File file,
+			final TokenizedSource tokens, final GuardedParser guard) {
+		final String[] sourcePathEntries = { getSourcePathHeuristic(file) };
+		final CompilationUnit cached = getCachedAST(file, sourcePathEntries);
+		if (cached != null) {
+			return cached;
 		}
+		return guard.parse(file.getAbsolutePath(), tokens,
+				(src, monitor) -> parseFile(file, src, sourcePathEntries,
+						monitor));
+	}
 
+	/**
+	 * Get the AST of the file, parsing the given source or, if it is null,
+	 * reading the file. ASTs without bindings go through the
+	 * ParsedSourceCache. ASTs with bindings are not cached, since they keep
+	 * the bindings of their whole parse environment alive.
+	 */
+	private CompilationUnit getAST(final File file, final Set<String> srcPaths,
+			final char[] source) throws IOException {
 		// Add file to source paths if not already present
-		srcPaths.add(srcFilePath);
+		srcPaths.add(getSourcePathHeuristic(file));
 
 		final String[] sourcePathEntries = srcPaths.toArray(new String[srcPaths
 				.size()]);
-		final String[] classPathEntries = new String[0];
-		parser.setEnvironment(classPathEntries, sourcePathEntries, null, true);
+		if (useBindings) {
+			return source == null ? parseFile(file, sourcePathEntries)
+					: parseFile(file, source, sourcePathEntries, null);
+		}
+		return ParsedSourceCache.getInstance().getAST(file,
+				getOptionsKey(sourcePathEntries),
+				() -> source == null ? parseFile(file, sourcePathEntries)
+						: parseFile(file, source, sourcePathEntries, null));
+	}
+
+	/**
+	 * Parse the file and return its CompactAst, keeping its source code. The
+	 * JDT tree is not cached and it can be garbage collected as soon as this
+	 * returns. The CompactAst has no bindings.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public final CompactAst getCompactAST(final File file) throws IOException {
+		final char[] source = SourceReader.readChars(file);
+		return JavaCompactAstConverter.convert(
+				parserFactory.parse(source, ASTParser.K_COMPILATION_UNIT),
+				source);
+	}
 
-		final CompilationUnit compilationUnit = (CompilationUnit) parser
-				.createAST(null);
-		return compilationUnit;
+	/**
+	 * Get the AST of a file, guarded against pathological files (see
+	 * GuardedParser). The AST is taken from the ParsedSourceCache if it is
+	 * there, but guarded parses are not cached.
+	 *
+	 * @param file
+	 * @param guard
+	 * @return the compilation unit of the file, or null if the file has been
+	 *         quarantined.
+	 */
+	public final CompilationUnit getAST(final File file,
+			final GuardedParser guard) {
+		final String[] sourcePathEntries = { getSourcePathHeuristic(file) };
+		final CompilationUnit cached = getCachedAST(file, sourcePathEntries);
+		if (cached != null) {
+			return cached;
+		}
+		return guard.parse(file, (source, monitor) -> parseFile(file, source,
+				sourcePathEntries, monitor));
 	}
 
 	/**
@@ -155,7 +654,6 @@ public class JavaASTExtractor {
 	 */
 	public final ASTNode getASTNode(final char[] content,
 			final ParseType parseType) {
-		final ASTParser parser = ASTParser.newParser(AST.JLS8);
 		final int astKind;
 		switch (parseType) {
 		case CLASS_BODY:
@@ -174,30 +672,26 @@ public class JavaASTExtractor {
 		default:
 			astKind = ASTParser.K_COMPILATION_UNIT;
 		}
-		parser.setKind(astKind);
-
-		final Map<String, String> options = new Hashtable<String, String>();
-		options.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM,
-				JavaCore.VERSION_1_8);
-		options.put(JavaCore.COMPILER_SOURCE, JavaCore.VERSION_1_8);
-		if (useJavadocs) {
-			options.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
-		}
-		parser.setCompilerOptions(options);
-		parser.setSource(content); // set source
-		parser.setResolveBindings(useBindings);
-		parser.setBindingsRecovery(useBindings);
-
-		parser.setStatementsRecovery(true);
 
+		final ASTNode node = parserFactory.parse(content, astKind);
 		if (parseType != ParseType.METHOD) {
-			return parser.createAST(null);
+			return node;
 		} else {
-			final ASTNode cu = parser.createAST(null);
-			return getFirstMethodDeclaration(cu);
+			return getFirstMethodDeclaration(node);
 		}
 	}
 
+	/**
+	 * Return a description of the options that affect the AST (without
+	 * bindings) of a file, for the ParsedSourceCache.
+	 */
+	private String getOptionsKey(final String[] sourcePathEntries) {
+		final String[] sortedEntries = sourcePathEntries.clone();
+		Arrays.sort(sortedEntries);
+		return "javadocs=" + useJavadocs + ",srcPaths="
+				+ Arrays.toString(sortedEntries);
+	}
+
 	/**
 	 * Get the AST of a string. Path variables cannot be set.
 	 *
@@ -211,22 +705,214 @@ public class JavaASTExtractor {
 		return getASTNode(fileContent.toCharArray(), parseType);
 	}
 
+	/**
+	 * Parse all the files in batches of BATCH_SIZE, with a single parser and
+	 * name environment per batch, so that the bindings of the files are
+	 * resolved together. The batches are parsed in parallel, so the requestor
+	 * may be called concurrently. The ASTs are not cached.
+	 *
+	 * @param files
+	 * @param requestor
+	 *            called with each file and its compilation unit.
+	 */
+	public final void getASTs(final Collection<File> files,
+			final BiConsumer<File, CompilationUnit> requestor) {
+		getASTs(files, detectSourcePaths(files), new String[0], requestor);
+	}
+
+	/**
+	 * Parse all the files in batches of BATCH_SIZE, with a single parser and
+	 * name environment per batch, so that the bindings of the files are
+	 * resolved together. The batches are parsed in parallel, so the requestor
+	 * may be called concurrently. The ASTs are not cached.
+	 *
+	 * @param files
+	 * @param srcPaths
+	 *            the source paths to resolve the bindings.
+	 * @param classPath
+	 *            the classpath entries (jars or directories) to resolve the
+	 *            bindings.
+	 * @param requestor
+	 *            called with each file and its compilation unit.
+	 */
+	public final void getASTs(final Collection<File> files,
+			final Set<String> srcPaths, final String[] classPath,
+			final BiConsumer<File, CompilationUnit> requestor) {
+		getASTs(files, srcPaths, classPath, requestor, null);
+	}
+
+	/**
+	 * Parse all the files in batches, as getASTs() does, guarded against
+	 * pathological files (see GuardedParser). The files that exceed the
+	 * limits of the guard are skipped. A batch is canceled if no file of it
+	 * has been parsed within the timeout of the guard, and then its remaining
+	 * files are parsed one by one, so that the file that caused the timeout is
+	 * quarantined.
+	 *
+	 * @param files
+	 * @param srcPaths
+	 *            the source paths to resolve the bindings.
+	 * @param classPath
+	 *            the classpath entries (jars or directories) to resolve the
+	 *            bindings.
+	 * @param requestor
+	 *            called with each file and its compilation unit.
+	 * @param guard
+	 *            the guard, or null to parse without guarding.
+	 */
+	public final void getASTs(final Collection<File> files,
+			final Set<String> srcPaths, final String[] classPath,
+			final BiConsumer<File, CompilationUnit> requestor,
+			final GuardedParser guard) {
+		parseBatches(files, srcPaths, classPath,
+				(file, source, ast) -> requestor.accept(file, ast), guard);
+	}
+
+	/**
+	 * Parse all the files in batches, as getASTs(files, requestor) does,
+	 * passing the source code of each file to the requestor along with its
+	 * AST (see getParsedSources()).
+	 *
+	 * @param files
+	 * @param requestor
+	 *            called with each file, its source code and its compilation
+	 *            unit.
+	 */
+	public final void getParsedSources(final Collection<File> files,
+			final ParsedSourceRequestor requestor) {
+		getParsedSources(files, detectSourcePaths(files), new String[0],
+				requestor, null);
+	}
+
+	/**
+	 * Parse all the files in batches, as getASTs() does, passing the source
+	 * code of each file to the requestor along with its AST. Each file is
+	 * read once (by SourceReader) in its batch, and the same source is used
+	 * for the limits of the guard, so that the requestor does not need to
+	 * read the file again.
+	 *
+	 * @param files
+	 * @param srcPaths
+	 *            the source paths to resolve the bindings.
+	 * @param classPath
+	 *            the classpath entries (jars or directories) to resolve the
+	 *            bindings.
+	 * @param requestor
+	 *            called with each file, its source code and its compilation
+	 *            unit.
+	 * @param guard
+	 *            the guard, or null to parse without guarding.
+	 */
+	public final void getParsedSources(final Collection<File> files,
+			final Set<String> srcPaths, final String[] classPath,
+			final ParsedSourceRequestor requestor, final GuardedParser guard) {
+		parseBatches(files, srcPaths, classPath, requestor, guard);
+	}
+
+	/**
+	 * Parse the files in parallel batches. The files are sorted by path, so
+	 * that each batch holds files of the same packages and source roots,
+	 * whose bindings are resolved together. Each batch reads its files, to
+	 * check the limits of the guard, to pass their source to the requestor
+	 * and to tell JDT the charset that SourceReader has used, so that the
+	 * offsets of the ASTs match the source.
+	 */
+	private void parseBatches(final Collection<File> files,
+			final Set<String> srcPaths, final String[] classPath,
+			final ParsedSourceRequestor requestor, final GuardedParser guard) {
+		final SortedMap<String, File> filesByPath = Maps.newTreeMap();
+		for (final File file : files) {
+			filesByPath.put(file.getAbsolutePath(), file);
+		}
+		final List<List<String>> batches = Lists.partition(
+				Lists.newArrayList(filesByPath.keySet()), BATCH_SIZE);
+		final String[] sourcePathEntries = srcPaths
+				.toArray(new String[srcPaths.size()]);
+		batches.parallelStream().forEach(allInBatch -> {
+			// Read the files of the batch and check their limits, one at a
+			// time: only the batches run in parallel
+			final Map<String, char[]> sources = Maps.newHashMap();
+			final List<String> paths = Lists.newArrayList();
+			final List<String> encodings = Lists.newArrayList();
+			for (final String path : allInBatch) {
+				final DecodedSource source = readSource(path, guard);
+				if (source == null
+						|| (guard != null && !guard.checkLimits(path,
+								source.chars))) {
+					continue;
+				}
+				sources.put(path, source.chars);
+				paths.add(path);
+				encodings.add(source.charset.name());
+			}
+			final Set<String> remaining = Sets.newHashSet(paths);
+			final GuardedParser.DeadlineMonitor monitor = guard == null ? null
+					: new GuardedParser.DeadlineMonitor(guard
+							.getTimeoutMillis());
+			final FileASTRequestor astRequestor = new FileASTRequestor() {
+				@Override
+				public void acceptAST(final String sourceFilePath,
+						final CompilationUnit ast) {
+					remaining.remove(sourceFilePath);
+					final File file = filesByPath.get(sourceFilePath);
+					accept(requestor, file != null ? file : new File(
+							sourceFilePath), sources.remove(sourceFilePath),
+							ast);
+					if (monitor != null) {
+						monitor.restart();
+					}
+				}
+			};
+
+			final ASTParser parser = parserFactory
+					.acquire(ASTParser.K_COMPILATION_UNIT);
+			parser.setEnvironment(classPath, sourcePathEntries, null, true);
+			try {
+				parser.createASTs(paths.toArray(new String[paths.size()]),
+						encodings.toArray(new String[encodings.size()]),
+						new String[0], astRequestor, monitor);
+			} catch (final OperationCanceledException e) {
+				LOGGER.warning("Batch timed out, parsing its "
+						+ remaining.size() + " remaining files one by one");
+				for (final String path : remaining) {
+					final File file = filesByPath.get(path);
+					final char[] source = sources.remove(path);
+					final CompilationUnit ast = guard.parse(path, source, (
+							src, fileMonitor) -> parseFile(file, src,
+							sourcePathEntries, fileMonitor));
+					if (ast != null) {
+						accept(requestor, file, source, ast);
+					}
+				}
+			} finally {
+				parserFactory.release(parser);
+			}
+		});
+	}
+
 	/**
 	 * Get the AST by making the best effort to guess the type of the node.
+	 * The parse type is predicted from the tokens of the content, so usually
+	 * the content is parsed once. The other parse types are tried only if the
+	 * AST does not span the tokens of the content without syntax errors.
+	 *
+	 * A parse type is accepted if its AST has no syntax errors and its
+	 * declarations, statements or node span the first and last token of the
+	 * content. This replaces the earlier comparison of the normalized
+	 * tokens of the AST with those of the content.
+	 *
+	 * The predicted parse type is tried first and the rest follow
+	 * PARSE_PRECEDENCE, which differs from the ParseType order: METHOD comes
+	 * before CLASS_BODY, so a single method is returned as a METHOD rather
+	 * than as a CLASS_BODY. Declarations are valid both in a class body and
+	 * as statements, so predicted STATEMENTS are first parsed as a
+	 * CLASS_BODY.
 	 *
 	 * @throws Exception
 	 */
 	public final ASTNode getBestEffortAstNode(final char[] content)
 			throws Exception {
-		for (final ParseType parseType : ParseType.values()) {
-			final ASTNode node = getASTNode(content, parseType);
-			if (normalizeCode(node.toString().toCharArray()).equals(
-					normalizeCode(content))) {
-				return node;
-			}
-		}
-		throw new Exception(
-				"Code snippet could not be recognized as any of the known types");
+		return getBestEffortAstNode(TOKENIZER.tokenize(content));
 	}
 
 	/**
@@ -242,6 +928,54 @@ public class JavaASTExtractor {
 		return getBestEffortAstNode(fileContent.toCharArray());
 	}
 
+	/**
+	 * Get the AST of the source of a token stream of JavaTokenizer, as
+	 * getBestEffortAstNode(char[]) does, without tokenizing it again. Any
+	 * comments in the stream are ignored.
+	 *
+	 * @param tokens
+	 * @return
+	 * @throws Exception
+	 */
+	public final ASTNode getBestEffortAstNode(final TokenStream tokens)
+			throws Exception {
+		final char[] content = tokens.getSource();
+		final TokenStream codeTokens = withoutComments(tokens);
+		ASTNode classBody = null;
+		for (final ParseType parseType : getParseOrder(predictParseType(codeTokens))) {
+			final ASTNode node;
+			if (parseType == ParseType.CLASS_BODY
+					|| parseType == ParseType.METHOD) {
+				// Both are parsed as class body declarations
+				if (classBody == null) {
+					classBody = getASTNode(content, ParseType.CLASS_BODY);
+				}
+				node = parseType == ParseType.CLASS_BODY ? classBody
+						: getFirstMethodDeclaration(classBody);
+			} else {
+				node = getASTNode(content, parseType);
+			}
+			if (matchesTokens(node, parseType, codeTokens)) {
+				return node;
+			}
+		}
+		throw new Exception(
+				"Code snippet could not be recognized as any of the known types");
+	}
+
+	/**
+	 * Return the AST of the file from the ParsedSourceCache, or null if it is
+	 * not there. ASTs with bindings are never cached.
+	 */
+	private CompilationUnit getCachedAST(final File file,
+			final String[] sourcePathEntries) {
+		if (useBindings) {
+			return null;
+		}
+		return ParsedSourceCache.getInstance().getIfPresent(file,
+				getOptionsKey(sourcePathEntries));
+	}
+
 	private final MethodDeclaration getFirstMethodDeclaration(final ASTNode node) {
 		final TopMethodRetriever visitor = new TopMethodRetriever();
 		node.accept(visitor);
@@ -249,27 +983,79 @@ public class JavaASTExtractor {
 	}
 
 	/**
-	 * Hacky way to compare snippets.
-	 *
-	 * @param snippet
-	 * @return
+	 * Return true if the AST was parsed without syntax errors and spans all
+	 * the given tokens.
 	 */
-	private String normalizeCode(final char[] snippet) {
-		final List<String> tokens = (new JavaTokenizer())
-				.tokenListFromCode(snippet);
-
-		final StringBuffer bf = new StringBuffer();
-		for (final String token : tokens) {
-			if (token.equals(ITokenizer.SENTENCE_START)
-					|| token.equals(ITokenizer.SENTENCE_END)) {
-				continue;
-			} else {
-				bf.append(token);
+	private boolean matchesTokens(final ASTNode node,
+			final ParseType parseType, final TokenStream tokens) {
+		if (node == null || hasErrors(node)) {
+			return false;
+		}
+		final List<?> parts;
+		if (parseType == ParseType.CLASS_BODY) {
+			if (!(node instanceof TypeDeclaration)) {
+				return false;
 			}
-			bf.append(" ");
+			parts = ((TypeDeclaration) node).bodyDeclarations();
+		} else if (parseType == ParseType.STATEMENTS) {
+			if (!(node instanceof Block)) {
+				return false;
+			}
+			parts = ((Block) node).statements();
+		} else if (parseType == ParseType.EXPRESSION
+				&& !(node instanceof Expression)) {
+			// A failed expression parse returns a compilation unit
+			return false;
+		} else {
+			parts = Collections.singletonList(node);
+		}
+		if (tokens.size() == 0) {
+			return true;
 		}
-		return bf.toString();
 
+		// The class body and the block span the whole content, so use the
+		// extent of their parts
+		int start = Integer.MAX_VALUE;
+		int end = -1;
+		for (final Object part : parts) {
+			final ASTNode partNode = (ASTNode) part;
+			start = Math.min(start, partNode.getStartPosition());
+			end = Math.max(end,
+					partNode.getStartPosition() + partNode.getLength());
+		}
+		return start <= tokens.getStartOffset(0)
+				&& end >= tokens.getEndOffset(tokens.size() - 1);
+	}
+
+	/**
+	 * Parse the file, resolving the bindings with the given source paths.
+	 */
+	private CompilationUnit parseFile(final File file,
+			final String[] sourcePathEntries) throws IOException {
+		return parseFile(file, SourceReader.readChars(file),
+				sourcePathEntries, null);
+	}
+
+	/**
+	 * Parse the source of the file, resolving the bindings with the given
+	 * source paths.
+	 */
+	private CompilationUnit parseFile(final File file, final char[] sourceFile,
+			final String[] sourcePathEntries, final IProgressMonitor monitor) {
+		final ASTParser parser = parserFactory
+				.acquire(ASTParser.K_COMPILATION_UNIT);
+		try {
+			parser.setSource(sourceFile); // set source
+			parser.setUnitName(file.getAbsolutePath());
+
+			final String[] classPathEntries = new String[0];
+			parser.setEnvironment(classPathEntries, sourcePathEntries, null,
+					true);
+
+			return (CompilationUnit) parser.createAST(monitor);
+		} finally {
+			parserFactory.release(parser);
+		}
 	}
 
 }
@@ -0,0 +1,108 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.BooleanLiteral;
+import org.eclipse.jdt.core.dom.CharacterLiteral;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.NumberLiteral;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.PrimitiveType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.StringLiteral;
+
+import codemining.languagetools.CompactAst;
+
+/**
+ * Convert a JDT AST into a CompactAst. The node types are the JDT node types
+ * (e.g. ASTNode.SIMPLE_NAME), the roles are the ids of the structural
+ * properties (e.g. "name") and the labels are the identifiers of the names,
+ * the literals, the primitive types, the modifiers and the operators. The
+ * tags of the doc comments are not converted, as in the JSDT converter.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class JavaCompactAstConverter {
+
+	private static final class Converter extends ASTVisitor {
+
+		final CompactAst.Builder builder = new CompactAst.Builder();
+
+		@Override
+		public void postVisit(final ASTNode node) {
+			builder.exit();
+		}
+
+		@Override
+		public boolean preVisit2(final ASTNode node) {
+			final String role = node.getLocationInParent() == null ? null
+					: node.getLocationInParent().getId();
+			builder.enter(node.getNodeType(), node.getStartPosition(),
+					node.getLength(), role, getLabel(node));
+			return true;
+		}
+
+	}
+
+	/**
+	 * Convert the AST (or a part of it) to a CompactAst.
+	 *
+	 * @param node
+	 *            the root of the AST
+	 * @param source
+	 *            the source code of the AST, to keep in the CompactAst, or
+	 *            null
+	 * @return
+	 */
+	public static CompactAst convert(final ASTNode node, final char[] source) {
+		final Converter converter = new Converter();
+		node.accept(converter);
+		return converter.builder.build(source);
+	}
+
+	/**
+	 * Return the name or literal of the node, or null.
+	 */
+	private static String getLabel(final ASTNode node) {
+		switch (node.getNodeType()) {
+		case ASTNode.SIMPLE_NAME:
+			return ((SimpleName) node).getIdentifier();
+		case ASTNode.STRING_LITERAL:
+			return ((StringLiteral) node).getEscapedValue();
+		case ASTNode.NUMBER_LITERAL:
+			return ((NumberLiteral) node).getToken();
+		case ASTNode.CHARACTER_LITERAL:
+			return ((CharacterLiteral) node).getEscapedValue();
+		case ASTNode.BOOLEAN_LITERAL:
+			return Boolean.toString(((BooleanLiteral) node).booleanValue());
+		case ASTNode.NULL_LITERAL:
+			return "null";
+		case ASTNode.PRIMITIVE_TYPE:
+			return ((PrimitiveType) node).getPrimitiveTypeCode().toString();
+		case ASTNode.MODIFIER:
+			return ((Modifier) node).getKeyword().toString();
+		case ASTNode.INFIX_EXPRESSION:
+			return ((InfixExpression) node).getOperator().toString();
+		case ASTNode.PREFIX_EXPRESSION:
+			return ((PrefixExpression) node).getOperator().toString();
+		case ASTNode.POSTFIX_EXPRESSION:
+			return ((PostfixExpression) node).getOperator().toString();
+		case ASTNode.ASSIGNMENT:
+			return ((Assignment) node).getOperator().toString();
+		default:
+			return null;
+		}
+	}
+
+	private JavaCompactAstConverter() {
+		// No instantiations.
+	}
+
+}
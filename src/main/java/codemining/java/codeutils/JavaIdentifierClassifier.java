@@ -0,0 +1,703 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeMemberDeclaration;
+import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.ExpressionMethodReference;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.MarkerAnnotation;
+import org.eclipse.jdt.core.dom.MemberValuePair;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.NameQualifiedType;
+import org.eclipse.jdt.core.dom.NormalAnnotation;
+import org.eclipse.jdt.core.dom.PackageDeclaration;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.QualifiedType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SimpleType;
+import org.eclipse.jdt.core.dom.SingleMemberAnnotation;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
+import org.eclipse.jdt.core.dom.SuperFieldAccess;
+import org.eclipse.jdt.core.dom.SuperMethodInvocation;
+import org.eclipse.jdt.core.dom.SuperMethodReference;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.TypeMethodReference;
+import org.eclipse.jdt.core.dom.TypeParameter;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+
+import codemining.languagetools.CompactAst;
+import codemining.languagetools.CompactAstVisitor;
+import codemining.languagetools.TokenStream;
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Classifies the identifier occurrences of a piece of Java code as variables,
+ * methods or types, in a single pass.
+ *
+ * The exact classification uses a single (best effort) parse of the code.
+ * Each identifier is first classified by its syntactic position (e.g. the
+ * name of a method invocation or of a type). The remaining names (e.g. the
+ * uses of a local variable) take the kind of the tightest variable or type
+ * declaration with the same name whose scope contains them, or, if there is
+ * none, the kind the name has elsewhere in the code. The classification runs
+ * directly on the JDT tree of the parse, or on a CompactAst, so the ASTs of
+ * many files can be kept as CompactAsts and classified after their (much
+ * larger) JDT trees are dropped.
+ *
+ * The lexical classification needs no parsing. It uses the tokens around
+ * each identifier (e.g. an identifier followed by a parenthesis is a method)
+ * and is less accurate.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class JavaIdentifierClassifier {
+
+	/**
+	 * Collects the kinds of the names of a CompactAst of
+	 * JavaCompactAstConverter.
+	 */
+	private static final class CompactNameCollector extends
+			NameCollector<Integer> {
+
+		final CompactAst ast;
+
+		CompactNameCollector(final CompactAst ast) {
+			this.ast = ast;
+		}
+
+		@Override
+		String getIdentifier(final Integer name) {
+			return ast.getLabel(name);
+		}
+
+		@Override
+		int getLength(final Integer node) {
+			return ast.getLength(node);
+		}
+
+		@Override
+		int getNodeType(final Integer node) {
+			return ast.getNodeType(node);
+		}
+
+		@Override
+		Integer getParent(final Integer node) {
+			final int parent = ast.getParent(node);
+			return parent == CompactAst.NO_NODE ? null : parent;
+		}
+
+		@Override
+		int getStartPosition(final Integer node) {
+			return ast.getStartPosition(node);
+		}
+
+		@Override
+		boolean isAt(final Integer node,
+				final StructuralPropertyDescriptor location) {
+			final int parent = ast.getParent(node);
+			return parent != CompactAst.NO_NODE
+					&& location.getId().equals(ast.getRole(node))
+					&& ASTNode.nodeClassForType(ast.getNodeType(parent)) == location
+							.getNodeClass();
+		}
+
+	}
+
+	/**
+	 * A declaration of a name and the range of its scope.
+	 */
+	private static final class Declaration {
+
+		final IdentifierKind kind;
+
+		final int scopeStart;
+
+		final int scopeEnd;
+
+		Declaration(final IdentifierKind kind, final int scopeStart,
+				final int scopeLength) {
+			this.kind = kind;
+			this.scopeStart = scopeStart;
+			scopeEnd = scopeStart + scopeLength;
+		}
+
+		boolean encloses(final int position) {
+			return scopeStart <= position && position < scopeEnd;
+		}
+
+		int scopeLength() {
+			return scopeEnd - scopeStart;
+		}
+
+	}
+
+	/**
+	 * Collects the kinds of the names of a JDT AST.
+	 */
+	private static final class DomNameCollector extends NameCollector<ASTNode> {
+
+		@Override
+		String getIdentifier(final ASTNode name) {
+			return ((SimpleName) name).getIdentifier();
+		}
+
+		@Override
+		int getLength(final ASTNode node) {
+			return node.getLength();
+		}
+
+		@Override
+		int getNodeType(final ASTNode node) {
+			return node.getNodeType();
+		}
+
+		@Override
+		ASTNode getParent(final ASTNode node) {
+			return node.getParent();
+		}
+
+		@Override
+		int getStartPosition(final ASTNode node) {
+			return node.getStartPosition();
+		}
+
+		@Override
+		boolean isAt(final ASTNode node,
+				final StructuralPropertyDescriptor location) {
+			return node.getLocationInParent() == location;
+		}
+
+	}
+
+	/**
+	 * The kinds of identifiers.
+	 */
+	public enum IdentifierKind {
+		METHOD, TYPE, UNKNOWN, VARIABLE
+	}
+
+	/**
+	 * Collects the kinds of all the names of an AST, whose nodes are N. The
+	 * names are passed to classify() in a single traversal and resolve() is
+	 * called after it.
+	 */
+	private abstract static class NameCollector<N> {
+
+		final Map<Integer, IdentifierKind> kinds = Maps.newHashMap();
+
+		/**
+		 * The identifiers of the classified names, by their start position.
+		 */
+		final Map<Integer, String> identifiers = Maps.newHashMap();
+
+		final Map<String, List<Declaration>> declarations = Maps.newHashMap();
+
+		/**
+		 * The names that could not be classified by their position.
+		 */
+		final List<N> unresolved = Lists.newArrayList();
+
+		/**
+		 * The kinds that each name has been seen with.
+		 */
+		final Map<String, Set<IdentifierKind>> nameKinds = Maps.newHashMap();
+
+		/**
+		 * Classify a simple name.
+		 */
+		void classify(final N node) {
+			if (getStartPosition(node) < 0 || getLength(node) == 0) {
+				return; // A synthetic name, e.g. of a recovered node
+			}
+			if (isAt(node, VariableDeclarationFragment.NAME_PROPERTY)
+					|| isAt(node, SingleVariableDeclaration.NAME_PROPERTY)
+					|| isAt(node, EnumConstantDeclaration.NAME_PROPERTY)) {
+				setKind(node, IdentifierKind.VARIABLE);
+				declare(node, IdentifierKind.VARIABLE);
+			} else if (isAt(node, MethodDeclaration.NAME_PROPERTY)
+					|| isAt(node, AnnotationTypeMemberDeclaration.NAME_PROPERTY)) {
+				setKind(node, IdentifierKind.METHOD);
+				declare(node, IdentifierKind.METHOD);
+			} else if (isAt(node, TypeDeclaration.NAME_PROPERTY)
+					|| isAt(node, EnumDeclaration.NAME_PROPERTY)
+					|| isAt(node, AnnotationTypeDeclaration.NAME_PROPERTY)
+					|| isAt(node, TypeParameter.NAME_PROPERTY)) {
+				setKind(node, IdentifierKind.TYPE);
+				declare(node, IdentifierKind.TYPE);
+			} else if (isAt(node, MethodInvocation.NAME_PROPERTY)
+					|| isAt(node, SuperMethodInvocation.NAME_PROPERTY)
+					|| isAt(node, ExpressionMethodReference.NAME_PROPERTY)
+					|| isAt(node, SuperMethodReference.NAME_PROPERTY)
+					|| isAt(node, TypeMethodReference.NAME_PROPERTY)
+					|| isAt(node, MemberValuePair.NAME_PROPERTY)) {
+				setKind(node, IdentifierKind.METHOD);
+			} else if (isAt(node, FieldAccess.NAME_PROPERTY)
+					|| isAt(node, SuperFieldAccess.NAME_PROPERTY)) {
+				setKind(node, IdentifierKind.VARIABLE);
+			} else if (isAt(node, QualifiedName.NAME_PROPERTY)
+					|| isAt(node, QualifiedName.QUALIFIER_PROPERTY)) {
+				classifyQualifiedNamePart(node);
+			} else if (isAt(node, SimpleType.NAME_PROPERTY)
+					|| isAt(node, QualifiedType.NAME_PROPERTY)
+					|| isAt(node, NameQualifiedType.NAME_PROPERTY)
+					|| isAnnotationTypeName(node)) {
+				setKind(node, IdentifierKind.TYPE);
+			} else {
+				unresolved.add(node);
+			}
+		}
+
+		/**
+		 * Classify a part of a qualified name, e.g. java.util.List or
+		 * System.out.
+		 */
+		private void classifyQualifiedNamePart(final N name) {
+			N top = getParent(name);
+			while (getParent(top) != null
+					&& getNodeType(getParent(top)) == ASTNode.QUALIFIED_NAME) {
+				top = getParent(top);
+			}
+			final boolean isLastPart = isAt(name, QualifiedName.NAME_PROPERTY)
+					&& getParent(name) == top;
+			if (isAt(top, ImportDeclaration.NAME_PROPERTY)
+					|| isAt(top, PackageDeclaration.NAME_PROPERTY)) {
+				setKind(name, IdentifierKind.UNKNOWN);
+			} else if (isAt(top, SimpleType.NAME_PROPERTY)
+					|| isAnnotationTypeName(top)) {
+				// The qualifiers are packages or outer types
+				setKind(name, isLastPart ? IdentifierKind.TYPE
+						: IdentifierKind.UNKNOWN);
+			} else if (isAt(name, QualifiedName.NAME_PROPERTY)) {
+				setKind(name, IdentifierKind.VARIABLE);
+			} else {
+				// The first qualifier of an expression, a variable or a type
+				unresolved.add(name);
+			}
+		}
+
+		private void declare(final N name, final IdentifierKind kind) {
+			final String identifier = getIdentifier(name);
+			List<Declaration> nameDeclarations = declarations.get(identifier);
+			if (nameDeclarations == null) {
+				nameDeclarations = Lists.newArrayList();
+				declarations.put(identifier, nameDeclarations);
+			}
+			final N scope = getScope(getParent(name));
+			nameDeclarations.add(new Declaration(kind,
+					getStartPosition(scope), getLength(scope)));
+		}
+
+		abstract String getIdentifier(N name);
+
+		abstract int getLength(N node);
+
+		abstract int getNodeType(N node);
+
+		/**
+		 * Return the parent of the node, or null if it is the root.
+		 */
+		abstract N getParent(N node);
+
+		/**
+		 * Return the node that defines the scope of a declaration.
+		 */
+		private N getScope(final N declaration) {
+			N node = getParent(declaration);
+			N root = declaration;
+			while (node != null) {
+				switch (getNodeType(node)) {
+				case ASTNode.BLOCK:
+				case ASTNode.SWITCH_STATEMENT:
+				case ASTNode.FOR_STATEMENT:
+				case ASTNode.ENHANCED_FOR_STATEMENT:
+				case ASTNode.CATCH_CLAUSE:
+				case ASTNode.LAMBDA_EXPRESSION:
+				case ASTNode.METHOD_DECLARATION:
+				case ASTNode.TYPE_DECLARATION:
+				case ASTNode.ENUM_DECLARATION:
+				case ASTNode.ANNOTATION_TYPE_DECLARATION:
+				case ASTNode.ANONYMOUS_CLASS_DECLARATION:
+				case ASTNode.COMPILATION_UNIT:
+					return node;
+				default:
+					root = node;
+					node = getParent(node);
+				}
+			}
+			return root;
+		}
+
+		abstract int getStartPosition(N node);
+
+		private boolean isAnnotationTypeName(final N node) {
+			return isAt(node, MarkerAnnotation.TYPE_NAME_PROPERTY)
+					|| isAt(node, NormalAnnotation.TYPE_NAME_PROPERTY)
+					|| isAt(node, SingleMemberAnnotation.TYPE_NAME_PROPERTY);
+		}
+
+		/**
+		 * Return true if the node is stored in the given property of its
+		 * parent.
+		 */
+		abstract boolean isAt(N node, StructuralPropertyDescriptor location);
+
+		/**
+		 * Resolve the unresolved names, after the traversal.
+		 */
+		void resolve() {
+			for (final N name : unresolved) {
+				final int position = getStartPosition(name);
+				final String identifier = getIdentifier(name);
+				identifiers.put(position, identifier);
+				// The names in an expression are variables or types
+				Declaration tightest = null;
+				final List<Declaration> nameDeclarations = declarations
+						.get(identifier);
+				if (nameDeclarations != null) {
+					for (final Declaration declaration : nameDeclarations) {
+						if (declaration.kind == IdentifierKind.METHOD
+								|| !declaration.encloses(position)) {
+							continue;
+						}
+						// A variable obscures a type of the same scope
+						if (tightest == null
+								|| declaration.scopeLength() < tightest
+										.scopeLength()
+								|| (declaration.scopeLength() == tightest
+										.scopeLength() && declaration.kind == IdentifierKind.VARIABLE)) {
+							tightest = declaration;
+						}
+					}
+				}
+				if (tightest != null) {
+					kinds.put(position, tightest.kind);
+					continue;
+				}
+				final Set<IdentifierKind> seenKinds = nameKinds.get(identifier);
+				if (seenKinds != null
+						&& seenKinds.contains(IdentifierKind.VARIABLE)) {
+					kinds.put(position, IdentifierKind.VARIABLE);
+				} else if (seenKinds != null
+						&& seenKinds.contains(IdentifierKind.TYPE)) {
+					kinds.put(position, IdentifierKind.TYPE);
+				} else {
+					kinds.put(position, IdentifierKind.UNKNOWN);
+				}
+			}
+		}
+
+		private void setKind(final N name, final IdentifierKind kind) {
+			final String identifier = getIdentifier(name);
+			kinds.put(getStartPosition(name), kind);
+			identifiers.put(getStartPosition(name), identifier);
+			if (kind == IdentifierKind.UNKNOWN) {
+				return;
+			}
+			Set<IdentifierKind> seenKinds = nameKinds.get(identifier);
+			if (seenKinds == null) {
+				seenKinds = Sets.newEnumSet(Lists.newArrayList(kind),
+						IdentifierKind.class);
+				nameKinds.put(identifier, seenKinds);
+			} else {
+				seenKinds.add(kind);
+			}
+		}
+
+	}
+
+	private static final Logger LOGGER = Logger
+			.getLogger(JavaIdentifierClassifier.class.getName());
+
+	/**
+	 * Use the lexical classification instead of parsing the code.
+	 */
+	public static final boolean LEXICAL_CLASSIFICATION = SettingsLoader
+			.getBooleanSetting("lexicalIdentifierTypes", false);
+
+	/**
+	 * Classify the identifiers of the code, with a single (best effort)
+	 * parse.
+	 *
+	 * @param code
+	 * @return
+	 * @throws Exception
+	 *             if the code cannot be parsed
+	 */
+	public static JavaIdentifierClassifier classify(final char[] code)
+			throws Exception {
+		return classify(new JavaASTExtractor(false).getBestEffortAstNode(code));
+	}
+
+	/**
+	 * Classify the identifiers of an already parsed AST.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public static JavaIdentifierClassifier classify(final ASTNode node) {
+		final DomNameCollector collector = new DomNameCollector();
+		node.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(final SimpleName name) {
+				collector.classify(name);
+				return false;
+			}
+		});
+		collector.resolve();
+		return new JavaIdentifierClassifier(collector.kinds,
+				collector.identifiers);
+	}
+
+	/**
+	 * Classify the identifiers of a CompactAst of JavaCompactAstConverter.
+	 *
+	 * @param ast
+	 * @return
+	 */
+	public static JavaIdentifierClassifier classify(final CompactAst ast) {
+		final CompactNameCollector collector = new CompactNameCollector(ast);
+		ast.accept(new CompactAstVisitor() {
+			@Override
+			public boolean visit(final CompactAst ast, final int node) {
+				if (ast.getNodeType(node) != ASTNode.SIMPLE_NAME) {
+					return true;
+				}
+				collector.classify(node);
+				return false;
+			}
+		});
+		collector.resolve();
+		return new JavaIdentifierClassifier(collector.kinds,
+				collector.identifiers);
+	}
+
+	/**
+	 * Classify the identifiers of a token stream of JavaTokenizer, lexically
+	 * if LEXICAL_CLASSIFICATION is set or if its source cannot be parsed.
+	 *
+	 * @param tokens
+	 * @return
+	 */
+	public static JavaIdentifierClassifier classify(final TokenStream tokens) {
+		if (LEXICAL_CLASSIFICATION) {
+			return classifyLexically(tokens);
+		}
+		try {
+			return classify(new JavaASTExtractor(false)
+					.getBestEffortAstNode(tokens));
+		} catch (final Exception e) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			return classifyLexically(tokens);
+		}
+	}
+
+	/**
+	 * Classify the identifiers of a token stream of JavaTokenizer, using only
+	 * their neighboring tokens.
+	 *
+	 * @param tokens
+	 * @return
+	 */
+	public static JavaIdentifierClassifier classifyLexically(
+			final TokenStream tokens) {
+		final Map<Integer, IdentifierKind> kinds = Maps.newHashMap();
+		final Map<Integer, String> identifiers = Maps.newHashMap();
+		boolean inImportOrPackage = false;
+		for (int i = 0; i < tokens.size(); i++) {
+			final int type = tokens.getTypeId(i);
+			if (type == ITerminalSymbols.TokenNameimport
+					|| type == ITerminalSymbols.TokenNamepackage) {
+				inImportOrPackage = true;
+			} else if (type == ITerminalSymbols.TokenNameSEMICOLON) {
+				inImportOrPackage = false;
+			} else if (type == ITerminalSymbols.TokenNameIdentifier) {
+				kinds.put(tokens.getStartOffset(i),
+						inImportOrPackage ? IdentifierKind.UNKNOWN
+								: classifyLexically(tokens, i));
+				identifiers.put(tokens.getStartOffset(i),
+						tokens.getTokenText(i));
+			}
+		}
+		return new JavaIdentifierClassifier(kinds, identifiers);
+	}
+
+	/**
+	 * Classify the i-th token, an identifier, by its neighbors.
+	 */
+	private static IdentifierKind classifyLexically(final TokenStream tokens,
+			final int i) {
+		final int previous = nextSignificantType(tokens, i, -1);
+		final int next = nextSignificantType(tokens, i, 1);
+		final String name = tokens.getTokenText(i);
+
+		switch (previous) {
+		case ITerminalSymbols.TokenNamenew:
+		case ITerminalSymbols.TokenNameclass:
+		case ITerminalSymbols.TokenNameinterface:
+		case ITerminalSymbols.TokenNameenum:
+		case ITerminalSymbols.TokenNameextends:
+		case ITerminalSymbols.TokenNameimplements:
+		case ITerminalSymbols.TokenNamethrows:
+		case ITerminalSymbols.TokenNameinstanceof:
+		case ITerminalSymbols.TokenNameAT:
+			return IdentifierKind.TYPE;
+		case ITerminalSymbols.TokenNameCOLON_COLON:
+			return IdentifierKind.METHOD;
+		default:
+			break;
+		}
+
+		if (isTypeLike(name)
+				&& (previous == ITerminalSymbols.TokenNameLESS
+						|| next == ITerminalSymbols.TokenNameGREATER
+						|| next == ITerminalSymbols.TokenNameRIGHT_SHIFT || next == ITerminalSymbols.TokenNameUNSIGNED_RIGHT_SHIFT)) {
+			return IdentifierKind.TYPE; // A type argument, e.g. "List<Foo>"
+		}
+
+		switch (next) {
+		case ITerminalSymbols.TokenNameLPAREN:
+			return IdentifierKind.METHOD;
+		case ITerminalSymbols.TokenNameIdentifier:
+		case ITerminalSymbols.TokenNameELLIPSIS:
+			// A declaration, e.g. "Foo x"
+			return IdentifierKind.TYPE;
+		case ITerminalSymbols.TokenNameLBRACKET:
+			if (nextSignificantType(tokens, i, 2) == ITerminalSymbols.TokenNameRBRACKET) {
+				return IdentifierKind.TYPE; // An array type, e.g. "Foo[]"
+			}
+			return IdentifierKind.VARIABLE;
+		case ITerminalSymbols.TokenNameLESS:
+			// A generic type, unless it is a comparison
+			return isTypeLike(name) ? IdentifierKind.TYPE
+					: IdentifierKind.VARIABLE;
+		case ITerminalSymbols.TokenNameDOT:
+			// A static access, e.g. "Math.max", unless it is a constant
+			return isTypeLike(name) ? IdentifierKind.TYPE
+					: IdentifierKind.VARIABLE;
+		case ITerminalSymbols.TokenNameRPAREN:
+			if (previous == ITerminalSymbols.TokenNameLPAREN
+					&& isCastOperand(nextSignificantType(tokens, i, 2))
+					&& isTypeLike(name)) {
+				return IdentifierKind.TYPE; // A cast, e.g. "(Foo) x"
+			}
+			return IdentifierKind.VARIABLE;
+		default:
+			return IdentifierKind.VARIABLE;
+		}
+	}
+
+	private static boolean isCastOperand(final int type) {
+		return type == ITerminalSymbols.TokenNameIdentifier
+				|| type == ITerminalSymbols.TokenNameLPAREN
+				|| type == ITerminalSymbols.TokenNamethis
+				|| type == ITerminalSymbols.TokenNamenew
+				|| type == ITerminalSymbols.TokenNameStringLiteral;
+	}
+
+	/**
+	 * Return true if the name follows the type naming convention (it starts
+	 * with an uppercase letter, but it is not all uppercase like a constant).
+	 */
+	private static boolean isTypeLike(final String name) {
+		if (!Character.isUpperCase(name.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < name.length(); i++) {
+			if (Character.isLowerCase(name.charAt(i))) {
+				return true;
+			}
+		}
+		return name.length() == 1; // e.g. a type parameter T
+	}
+
+	/**
+	 * Return the type of the n-th (positive for following, negative for
+	 * preceding) token from i, skipping comments, or
+	 * ITerminalSymbols.TokenNameEOF if there is none.
+	 */
+	private static int nextSignificantType(final TokenStream tokens,
+			final int i, final int n) {
+		final int step = n > 0 ? 1 : -1;
+		int remaining = Math.abs(n);
+		for (int j = i + step; j >= 0 && j < tokens.size(); j += step) {
+			final int type = tokens.getTypeId(j);
+			if (type == ITerminalSymbols.TokenNameCOMMENT_LINE
+					|| type == ITerminalSymbols.TokenNameCOMMENT_BLOCK
+					|| type == ITerminalSymbols.TokenNameCOMMENT_JAVADOC
+					|| type == ITerminalSymbols.TokenNameWHITESPACE) {
+				continue;
+			}
+			remaining--;
+			if (remaining == 0) {
+				return type;
+			}
+		}
+		return ITerminalSymbols.TokenNameEOF;
+	}
+
+	/**
+	 * The kinds of the identifiers, by their start position.
+	 */
+	private final Map<Integer, IdentifierKind> kinds;
+
+	/**
+	 * The names of the identifiers, by their start position.
+	 */
+	private final Map<Integer, String> identifiers;
+
+	private JavaIdentifierClassifier(final Map<Integer, IdentifierKind> kinds,
+			final Map<Integer, String> identifiers) {
+		this.kinds = kinds;
+		this.identifiers = identifiers;
+	}
+
+	/**
+	 * Return the names of the identifiers of the given kind. The names are
+	 * those of the AST (or of the tokens), so unicode escapes are resolved.
+	 *
+	 * @param kind
+	 * @return
+	 */
+	public Set<String> getIdentifiers(final IdentifierKind kind) {
+		final Set<String> names = Sets.newTreeSet();
+		for (final Map.Entry<Integer, IdentifierKind> entry : kinds.entrySet()) {
+			if (entry.getValue() == kind) {
+				names.add(identifiers.get(entry.getKey()));
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Return the kind of the identifier that starts at the given position.
+	 *
+	 * @param position
+	 * @return
+	 */
+	public IdentifierKind getKind(final int position) {
+		final IdentifierKind kind = kinds.get(position);
+		return kind == null ? IdentifierKind.UNKNOWN : kind;
+	}
+
+}
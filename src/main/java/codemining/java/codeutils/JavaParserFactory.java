@@ -0,0 +1,121 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+
+import codemining.languagetools.ScannerPool;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A factory of preconfigured JDT parsers, one per configuration (bindings,
+ * javadocs and source level). Each configuration builds its compiler options
+ * once, as an immutable map, and reuses one parser per thread.
+ *
+ * ASTParser.createAST() resets the parser to its defaults, so acquire()
+ * reconfigures the parser every time.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class JavaParserFactory {
+
+	private static final Map<String, JavaParserFactory> FACTORIES = new ConcurrentHashMap<String, JavaParserFactory>();
+
+	/**
+	 * Return the (shared) factory of the given configuration.
+	 *
+	 * @param useBindings
+	 * @param useJavadocs
+	 * @param sourceLevel
+	 *            e.g. JavaCore.VERSION_1_8
+	 * @return
+	 */
+	public static JavaParserFactory getFactory(final boolean useBindings,
+			final boolean useJavadocs, final String sourceLevel) {
+		return FACTORIES.computeIfAbsent(useBindings + "," + useJavadocs + ","
+				+ sourceLevel, key -> new JavaParserFactory(useBindings,
+				useJavadocs, sourceLevel));
+	}
+
+	private final boolean useBindings;
+
+	private final Map<String, String> compilerOptions;
+
+	private final ScannerPool<ASTParser> parsers = new ScannerPool<ASTParser>(
+			() -> ASTParser.newParser(AST.JLS8));
+
+	private JavaParserFactory(final boolean useBindings,
+			final boolean useJavadocs, final String sourceLevel) {
+		this.useBindings = useBindings;
+		final ImmutableMap.Builder<String, String> options = ImmutableMap
+				.builder();
+		options.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, sourceLevel);
+		options.put(JavaCore.COMPILER_SOURCE, sourceLevel);
+		if (useJavadocs) {
+			options.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
+		}
+		compilerOptions = options.build();
+	}
+
+	/**
+	 * Return a parser of the given kind, configured with the options of this
+	 * factory and statements recovery. The parser must be returned with
+	 * release(), after createAST() or createASTs().
+	 *
+	 * @param kind
+	 *            the kind of the parser, e.g. ASTParser.K_COMPILATION_UNIT
+	 * @return
+	 */
+	public ASTParser acquire(final int kind) {
+		final ASTParser parser = parsers.acquire();
+		parser.setKind(kind);
+		parser.setCompilerOptions(compilerOptions);
+		parser.setResolveBindings(useBindings);
+		parser.setBindingsRecovery(useBindings);
+		parser.setStatementsRecovery(true);
+		return parser;
+	}
+
+	/**
+	 * @return the (immutable) compiler options of this factory.
+	 */
+	public Map<String, String> getCompilerOptions() {
+		return compilerOptions;
+	}
+
+	/**
+	 * Parse the source with a parser of the given kind.
+	 *
+	 * @param source
+	 * @param kind
+	 * @return
+	 */
+	public ASTNode parse(final char[] source, final int kind) {
+		final ASTParser parser = acquire(kind);
+		try {
+			parser.setSource(source);
+			return parser.createAST(null);
+		} finally {
+			release(parser);
+		}
+	}
+
+	/**
+	 * Return a parser obtained by acquire() to the pool.
+	 *
+	 * @param parser
+	 */
+	public void release(final ASTParser parser) {
+		parsers.release(parser);
+	}
+
+}
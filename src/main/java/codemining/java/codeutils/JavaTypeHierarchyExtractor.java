@@ -4,17 +4,13 @@
 package codemining.java.codeutils;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
-import java.util.logging.Logger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.lang.exception.ExceptionUtils;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ITypeBinding;
@@ -26,6 +22,7 @@ import org.eclipse.jdt.core.dom.TypeDeclaration;
 
 import codemining.java.tokenizers.JavaTokenizer;
 import codemining.languagetools.ClassHierarchy;
+import codemining.languagetools.GuardedParser;
 import codemining.util.data.Pair;
 
 import com.google.common.collect.Maps;
@@ -242,37 +239,51 @@ public class JavaTypeHierarchyExtractor {
 		System.out.println(jthe);
 	}
 
-	private static final Logger LOGGER = Logger
-			.getLogger(JavaTypeHierarchyExtractor.class.getName());
-
 	private final ClassHierarchy hierarchy = new ClassHierarchy();
 
+	/**
+	 * Add the type relationships of the files. The files are parsed in
+	 * batches, resolving the bindings of each batch together, and guarded
+	 * against pathological files with the default limits of GuardedParser.
+	 *
+	 * @param files
+	 */
 	public void addFilesToCorpus(final Collection<File> files) {
-		files.parallelStream()
-				.map(f -> getParentTypeRelationshipsFrom(f))
-				.flatMap(rel -> rel.stream())
-				.sequential()
-				.forEach(
-						rel -> hierarchy.addParentToType(rel.second, rel.first));
-
+		addFilesToCorpus(files, new GuardedParser(new JavaTokenizer()));
 	}
 
-	public ClassHierarchy getHierarchy() {
-		return hierarchy;
+	/**
+	 * Add the type relationships of the files, parsed in batches and guarded
+	 * by the given guard. The files that the guard quarantines are skipped.
+	 *
+	 * @param files
+	 * @param guard
+	 */
+	public void addFilesToCorpus(final Collection<File> files,
+			final GuardedParser guard) {
+		new JavaASTExtractor(true).getASTs(files,
+				JavaASTExtractor.detectSourcePaths(files), new String[0],
+				(file, ast) -> addToCorpus(ast), guard);
 	}
 
-	private Collection<Pair<String, String>> getParentTypeRelationshipsFrom(
-			final File file) {
-		final JavaASTExtractor ex = new JavaASTExtractor(true);
-		try {
-			final CompilationUnit ast = ex.getAST(file);
-			final HierarchyExtractor hEx = new HierarchyExtractor();
-			ast.accept(hEx);
-			return hEx.parentChildRelationships;
-		} catch (final IOException e) {
-			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+	/**
+	 * Add the type relationships of a compilation unit, parsed with bindings.
+	 * This may be called concurrently.
+	 *
+	 * @param ast
+	 */
+	public void addToCorpus(final CompilationUnit ast) {
+		final HierarchyExtractor hEx = new HierarchyExtractor();
+		ast.accept(hEx);
+		synchronized (hierarchy) {
+			for (final Pair<String, String> rel : hEx.parentChildRelationships) {
+				hierarchy.addParentToType(rel.second, rel.first);
+			}
 		}
-		return Collections.emptySet();
+	}
+
+	public ClassHierarchy getHierarchy() {
+		return hierarchy;
 	}
 
 	@Override
@@ -30,12 +30,21 @@ import com.google.common.collect.Multimap;
  */
 public class MethodsInClass {
 
-	private class MethodExtractor extends ASTVisitor {
+	private static class MethodExtractor extends ASTVisitor {
 
 		Stack<String> className = new Stack<String>();
 
 		private String currentPackageName;
 
+		/**
+		 * Class -> MethodName, of the visited classes.
+		 */
+		private final Multimap<String, String> methods;
+
+		MethodExtractor(final Multimap<String, String> methods) {
+			this.methods = methods;
+		}
+
 		@Override
 		public void endVisit(final EnumDeclaration node) {
 			className.pop();
@@ -106,7 +115,7 @@ public class MethodsInClass {
 		@Override
 		public boolean visit(final MethodDeclaration node) {
 			final String methodType = MethodUtils.getMethodType(node);
-			methodsForClasses.put(className.peek(), node.getName()
+			methods.put(className.peek(), node.getName()
 					.getIdentifier() + ":" + methodType);
 			return false;
 		}
@@ -165,8 +174,23 @@ public class MethodsInClass {
 		return methodsForClasses.get(classname);
 	}
 
+	/**
+	 * Add the methods of the classes of a compilation unit. This may be
+	 * called concurrently: the compilation unit is visited without locking
+	 * and only its methods are added under the lock.
+	 *
+	 * @param cu
+	 */
+	public void scan(final CompilationUnit cu) {
+		final Multimap<String, String> methods = HashMultimap.create();
+		cu.accept(new MethodExtractor(methods));
+		synchronized (methodsForClasses) {
+			methodsForClasses.putAll(methods);
+		}
+	}
+
 	public void scan(final Collection<File> files) {
-		final MethodExtractor me = new MethodExtractor();
+		final MethodExtractor me = new MethodExtractor(methodsForClasses);
 		final JavaASTExtractor jEx = new JavaASTExtractor(false);
 		for (final File f : files) {
 			try {
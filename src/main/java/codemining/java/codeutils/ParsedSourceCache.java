@@ -0,0 +1,223 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * An in-memory cache of the ASTs of files, shared by all the extractors, so
+ * that analyses that look at the same file many times (e.g. the scope
+ * extractors or the type information of a project) parse it once.
+ *
+ * Entries are keyed by the path of the file, its modification time and
+ * length, and the parser options, so a modified file is parsed again. The
+ * ASTs are softly referenced, so the garbage collector may reclaim them under
+ * memory pressure, and the least recently used ASTs are evicted when their
+ * estimated size exceeds the memory budget.
+ *
+ * The shared cache is disabled unless the astCacheMaxBytes setting is set,
+ * since jobs that look at each file once would only fill it. ASTs with
+ * bindings should not be cached: they keep all the bindings of their parse
+ * environment alive, which is much larger than the estimate used here.
+ *
+ * The cached ASTs are shared, so they must not be modified.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ParsedSourceCache {
+
+	private static final class Key {
+
+		final String path;
+
+		final long lastModified;
+
+		final long length;
+
+		final String options;
+
+		Key(final File file, final String options) {
+			path = file.getAbsolutePath();
+			lastModified = file.lastModified();
+			length = file.length();
+			this.options = options;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return lastModified == other.lastModified
+					&& length == other.length && path.equals(other.path)
+					&& options.equals(other.options);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(path, lastModified, length, options);
+		}
+
+	}
+
+	/**
+	 * A rough estimate of the memory used by an AST (without bindings) per
+	 * byte of its source.
+	 */
+	public static final int ESTIMATED_AST_BYTES_PER_SOURCE_BYTE = 64;
+
+	/**
+	 * The memory budget of the shared cache. By default nothing is cached.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = (long) SettingsLoader
+			.getNumericSetting("astCacheMaxBytes", 0);
+
+	private static final ParsedSourceCache INSTANCE = new ParsedSourceCache(
+			DEFAULT_MEMORY_BUDGET);
+
+	/**
+	 * Return the exception of a parser if it is an IOException, rethrowing it
+	 * if it is unchecked or wrapping it otherwise.
+	 */
+	private static IOException asIOException(final Throwable e) {
+		if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		} else if (e instanceof Error) {
+			throw (Error) e;
+		} else if (e instanceof IOException) {
+			return (IOException) e;
+		}
+		throw new IllegalStateException(e);
+	}
+
+	/**
+	 * @return the cache shared by all the extractors.
+	 */
+	public static ParsedSourceCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * The cache, or null if caching is disabled.
+	 */
+	private final Cache<Key, CompilationUnit> cache;
+
+	/**
+	 * @param memoryBudget
+	 *            the (estimated) bytes of the cached ASTs. If zero, nothing is
+	 *            cached.
+	 */
+	public ParsedSourceCache(final long memoryBudget) {
+		checkArgument(memoryBudget >= 0,
+				"The memory budget must not be negative");
+		if (memoryBudget == 0) {
+			cache = null;
+			return;
+		}
+		cache = CacheBuilder
+				.newBuilder()
+				.maximumWeight(memoryBudget)
+				.weigher(
+						(final Key key, final CompilationUnit value) -> (int) Math
+								.min(Integer.MAX_VALUE, key.length
+										* ESTIMATED_AST_BYTES_PER_SOURCE_BYTE))
+				.softValues().recordStats().build();
+	}
+
+	/**
+	 * Return the AST of the file for the given options, calling the parser if
+	 * it is not cached.
+	 *
+	 * @param file
+	 * @param options
+	 *            a description of all the options of the parser that affect
+	 *            the AST.
+	 * @param parser
+	 * @return
+	 * @throws IOException
+	 */
+	public CompilationUnit getAST(final File file, final String options,
+			final Callable<CompilationUnit> parser) throws IOException {
+		if (cache == null) {
+			try {
+				return parser.call();
+			} catch (final Exception e) {
+				throw asIOException(e);
+			}
+		}
+		try {
+			return cache.get(new Key(file, options), parser);
+		} catch (final ExecutionException | UncheckedExecutionException e) {
+			throw asIOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Return the cached AST of the file for the given options, or null if it
+	 * is not cached. This does not count as a miss.
+	 *
+	 * @param file
+	 * @param options
+	 * @return
+	 */
+	public CompilationUnit getIfPresent(final File file, final String options) {
+		if (cache == null) {
+			return null;
+		}
+		final Key key = new Key(file, options);
+		return cache.asMap().get(key);
+	}
+
+	/**
+	 * @return the statistics of the hits, misses and evictions (including the
+	 *         ASTs reclaimed by the garbage collector).
+	 */
+	public CacheStats getStats() {
+		return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache
+				.stats();
+	}
+
+	/**
+	 * Remove all the cached ASTs.
+	 */
+	public void invalidateAll() {
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * @return the number of cached ASTs, including any that the garbage
+	 *         collector may have reclaimed.
+	 */
+	public long size() {
+		return cache == null ? 0 : cache.size();
+	}
+
+	@Override
+	public String toString() {
+		return "ParsedSourceCache [" + getStats() + ", size=" + size() + "]";
+	}
+
+}
@@ -36,9 +36,12 @@ public class ProjectTypeInformation {
 		final Collection<File> allFiles = FileUtils
 				.listFiles(projectDirectory, JavaTokenizer.javaCodeFileFilter,
 						DirectoryFileFilter.DIRECTORY);
-		methodInformation.scan(allFiles);
+		// Parse each file once, for both the hierarchy and the methods
 		final JavaTypeHierarchyExtractor hierarchyExtractor = new JavaTypeHierarchyExtractor();
-		hierarchyExtractor.addFilesToCorpus(allFiles);
+		new JavaASTExtractor(true).getASTs(allFiles, (file, ast) -> {
+			hierarchyExtractor.addToCorpus(ast);
+			methodInformation.scan(ast);
+		});
 		hierarchy = hierarchyExtractor.getHierarchy();
 	}
 
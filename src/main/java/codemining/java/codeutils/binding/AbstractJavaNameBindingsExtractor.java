@@ -5,17 +5,24 @@ package codemining.java.codeutils.binding;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
+import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 
 import codemining.java.codeutils.JavaASTExtractor;
+import codemining.languagetools.GuardedParser;
 import codemining.languagetools.ITokenizer;
 import codemining.languagetools.ITokenizer.FullToken;
+import codemining.languagetools.SourceReader;
+import codemining.languagetools.TokenizedSource;
 import codemining.languagetools.bindings.AbstractNameBindingsExtractor;
 import codemining.languagetools.bindings.ResolvedSourceCode;
 import codemining.languagetools.bindings.TokenNameBinding;
@@ -24,6 +31,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 
 /**
  * A name bindings extractor interface for Java.
@@ -39,7 +47,10 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 	 *
 	 * @param sourceCode
 	 * @return
+	 * @deprecated use {@link TokenizedSource#getTokenIndex(int)}, which does
+	 *             not build a map.
 	 */
+	@Deprecated
 	protected static SortedMap<Integer, Integer> getTokenIndexForPostion(
 			final SortedMap<Integer, String> tokenPositions) {
 		final SortedMap<Integer, Integer> positionToIndex = Maps.newTreeMap();
@@ -51,6 +62,9 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 		return positionToIndex;
 	}
 
+	private static final Logger LOGGER = Logger
+			.getLogger(AbstractJavaNameBindingsExtractor.class.getName());
+
 	final ITokenizer tokenizer;
 
 	public AbstractJavaNameBindingsExtractor(final ITokenizer tokenizer) {
@@ -94,16 +108,32 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 	public final List<TokenNameBinding> getNameBindings(final ASTNode node,
 			final String sourceCode) {
 		final Set<Set<ASTNode>> nodeBindings = getNameBindings(node);
-		final SortedMap<Integer, String> tokenPositions = tokenizer
-				.tokenListWithPos(sourceCode.toCharArray());
-		return getTokenBindings(tokenPositions, nodeBindings);
+		return getTokenBindings(tokenize(sourceCode), nodeBindings);
+	}
+
+	/**
+	 * Get the name bindings of all the files, parsing them in batches that
+	 * share their name environment (see JavaASTExtractor.getASTs()). The
+	 * consumer may be called concurrently.
+	 *
+	 * @param files
+	 * @param consumer
+	 */
+	public void getNameBindings(final Collection<File> files,
+			final BiConsumer<File, List<TokenNameBinding>> consumer) {
+		createExtractor().getParsedSources(
+				files,
+				(f, source, ast) -> consumer.accept(f, getTokenBindings(
+						tokenize(source), getNameBindings(ast))));
 	}
 
 	@Override
 	public List<TokenNameBinding> getNameBindings(final File f)
 			throws IOException {
-		final JavaASTExtractor ex = createExtractor();
-		return getNameBindings(ex.getAST(f), f);
+		// Read the file once and share its source with the tokenizer
+		final char[] source = SourceReader.readChars(f);
+		final CompilationUnit cu = createExtractor().getAST(f, source);
+		return getTokenBindings(tokenize(source), getNameBindings(cu));
 	}
 
 	@Override
@@ -119,16 +149,69 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 	@Override
 	public ResolvedSourceCode getResolvedSourceCode(final File f)
 			throws IOException {
-		final JavaASTExtractor ex = createExtractor();
-		return getResolvedSourceCode(FileUtils.readFileToString(f),
-				getNameBindings(ex.getAST(f)), f.getAbsolutePath());
+		return getResolvedSourceCode(f, node -> true);
 	}
 
+	/**
+	 * Get the resolved source code of the file, guarding its parse against
+	 * pathological files (see GuardedParser). The file is read and tokenized
+	 * once, unless it is too large.
+	 *
+	 * @param f
+	 * @param guard
+	 * @return the resolved source code, or null if the file has been
+	 *         quarantined.
+	 * @throws IOException
+	 */
+	public ResolvedSourceCode getResolvedSourceCode(final File f,
+			final GuardedParser guard) throws IOException {
+		if (!guard.checkSize(f)) {
+			return null;
+		}
+		// The guard counts these tokens, instead of tokenizing again
+		final TokenizedSource tokens = tokenize(SourceReader.readChars(f));
+		final CompilationUnit cu = createExtractor().getAST(f, tokens, guard);
+		if (cu == null) {
+			return null;
+		}
+		return getResolvedSourceCode(tokens, getNameBindings(cu),
+				f.getAbsolutePath(), node -> true);
+	}
+
+	/**
+	 * Get the resolved source code of all the files, parsing them in batches
+	 * that share their name environment (see JavaASTExtractor.getASTs()). The
+	 * consumer may be called concurrently.
+	 *
+	 * @param files
+	 * @param includeNode
+	 * @param consumer
+	 */
+	public void getResolvedSourceCode(final Collection<File> files,
+			final Predicate<ASTNode> includeNode,
+			final BiConsumer<File, ResolvedSourceCode> consumer) {
+		createExtractor().getParsedSources(
+				files,
+				(f, source, ast) -> consumer.accept(f, getResolvedSourceCode(
+						tokenize(source), getNameBindings(ast),
+						f.getAbsolutePath(), includeNode)));
+	}
+
+	/**
+	 * Get the resolved source code of the file. The file is read once and its
+	 * source code is shared by the parser and the tokenizer.
+	 *
+	 * @param f
+	 * @param includeNode
+	 * @return
+	 * @throws IOException
+	 */
 	public ResolvedSourceCode getResolvedSourceCode(final File f,
 			final Predicate<ASTNode> includeNode) throws IOException {
-		final JavaASTExtractor ex = createExtractor();
-		return getResolvedSourceCode(FileUtils.readFileToString(f),
-				getNameBindings(ex.getAST(f)), f.getAbsolutePath(), includeNode);
+		final char[] source = SourceReader.readChars(f);
+		final CompilationUnit cu = createExtractor().getAST(f, source);
+		return getResolvedSourceCode(tokenize(source), getNameBindings(cu),
+				f.getAbsolutePath(), includeNode);
 	}
 
 	@Override
@@ -152,30 +235,46 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 	public ResolvedSourceCode getResolvedSourceCode(final String sourceCode,
 			final Set<Set<ASTNode>> nodeBindings, final String filename,
 			final Predicate<ASTNode> includeNode) {
-		final SortedMap<Integer, String> tokenPositions = tokenizer
-				.tokenListWithPos(sourceCode.toCharArray());
-		final SortedMap<Integer, Integer> positionToIndex = getTokenIndexForPostion(tokenPositions);
-		final List<String> tokens = Lists.newArrayList(tokenPositions.values());
+		return getResolvedSourceCode(tokenize(sourceCode), nodeBindings,
+				filename, includeNode);
+	}
+
+	/**
+	 * Get the resolved source code, given the (already) tokenized source
+	 * code from which the bound nodes have been extracted.
+	 *
+	 * @param tokenizedSource
+	 * @param nodeBindings
+	 * @param filename
+	 * @param includeNode
+	 * @return
+	 */
+	public ResolvedSourceCode getResolvedSourceCode(
+			final TokenizedSource tokenizedSource,
+			final Set<Set<ASTNode>> nodeBindings, final String filename,
+			final Predicate<ASTNode> includeNode) {
+		final List<String> tokens = Lists.newArrayList(tokenizedSource
+				.getTokenList());
 
 		final ArrayListMultimap<String, TokenNameBinding> bindings = ArrayListMultimap
 				.create();
 
+		final AtomicInteger unaligned = new AtomicInteger();
 		for (final Set<ASTNode> boundName : nodeBindings) {
 			if (boundName.isEmpty()
 					|| boundName.stream().noneMatch(includeNode)) {
 				continue;
 			}
-			final List<Integer> boundPositions = Lists.newArrayList();
-			for (final ASTNode name : boundName) {
-				// Convert position to token index and add
-				final int tokenIdx = positionToIndex.get(name
-						.getStartPosition());
-				boundPositions.add(tokenIdx);
+			final List<Integer> boundPositions = getTokenIndexes(
+					tokenizedSource, boundName, unaligned);
+			if (boundPositions.isEmpty()) {
+				continue;
 			}
 			bindings.put(tokens.get(boundPositions.get(0)),
 					new TokenNameBinding(Sets.newTreeSet(boundPositions),
 							tokens, getFeatures(boundName)));
 		}
+		logUnaligned(unaligned.get());
 
 		return new ResolvedSourceCode(filename, tokens, bindings);
 	}
@@ -191,24 +290,97 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 	public List<TokenNameBinding> getTokenBindings(
 			final SortedMap<Integer, String> tokenPositions,
 			final Set<Set<ASTNode>> nodeBindings) {
-		final SortedMap<Integer, Integer> positionToIndex = getTokenIndexForPostion(tokenPositions);
-		final List<String> tokens = Lists.newArrayList(tokenPositions.values());
+		return getTokenBindings(
+				TokenizedSource.fromTokens(null, tokenPositions), nodeBindings);
+	}
+
+	/**
+	 * Get the token bindings given the ASTNode bindings and the tokenized
+	 * source code. The bound nodes that do not start at a token are skipped,
+	 * and a binding is dropped if it has nodes but none of them starts at a
+	 * token. Empty bindings are kept.
+	 *
+	 * @param tokenizedSource
+	 * @param nodeBindings
+	 * @return
+	 */
+	public List<TokenNameBinding> getTokenBindings(
+			final TokenizedSource tokenizedSource,
+			final Set<Set<ASTNode>> nodeBindings) {
+		final List<String> tokens = Lists.newArrayList(tokenizedSource
+				.getTokenList());
 
 		final List<TokenNameBinding> bindings = Lists.newArrayList();
 
+		final AtomicInteger unaligned = new AtomicInteger();
 		for (final Set<ASTNode> boundName : nodeBindings) {
-			final List<Integer> boundPositions = Lists.newArrayList();
-			for (final ASTNode name : boundName) {
-				// Convert position to token index and add
-				final int tokenIdx = positionToIndex.get(name
-						.getStartPosition());
-				boundPositions.add(tokenIdx);
+			final List<Integer> boundPositions = getTokenIndexes(
+					tokenizedSource, boundName, unaligned);
+			if (boundPositions.isEmpty() && !boundName.isEmpty()) {
+				continue; // None of the nodes is aligned with the tokens
 			}
 			bindings.add(new TokenNameBinding(Sets.newTreeSet(boundPositions),
 					tokens, getFeatures(boundName)));
 		}
+		logUnaligned(unaligned.get());
 
 		return bindings;
 	}
 
+	/**
+	 * Convert the positions of the given nodes to token indexes. The nodes
+	 * that do not start at a token are skipped and counted.
+	 *
+	 * @param tokenizedSource
+	 * @param nodes
+	 * @param unaligned
+	 *            the number of skipped nodes so far
+	 * @return
+	 */
+	private static List<Integer> getTokenIndexes(
+			final TokenizedSource tokenizedSource, final Set<ASTNode> nodes,
+			final AtomicInteger unaligned) {
+		final int[] positions = new int[nodes.size()];
+		int i = 0;
+		for (final ASTNode name : nodes) {
+			positions[i] = name.getStartPosition();
+			i++;
+		}
+		return Ints.asList(tokenizedSource.getTokenIndexes(positions,
+				position -> unaligned.incrementAndGet()));
+	}
+
+	/**
+	 * Log (once per file) the number of bound nodes that were skipped
+	 * because they do not start at a token.
+	 */
+	private static void logUnaligned(final int unaligned) {
+		if (unaligned > 0) {
+			LOGGER.warning(unaligned
+					+ " bound nodes do not start at a token and were ignored");
+		}
+	}
+
+	/**
+	 * Tokenize the source code once, to be used for all the bindings. The
+	 * array is kept by the TokenizedSource, so it must not be modified.
+	 *
+	 * @param code
+	 * @return
+	 */
+	protected TokenizedSource tokenize(final char[] code) {
+		return TokenizedSource.fromTokens(code,
+				tokenizer.tokenListWithPos(code));
+	}
+
+	/**
+	 * Tokenize the source code once, to be used for all the bindings.
+	 *
+	 * @param sourceCode
+	 * @return
+	 */
+	protected TokenizedSource tokenize(final String sourceCode) {
+		return tokenize(sourceCode.toCharArray());
+	}
+
 }
@@ -23,6 +23,7 @@ import codemining.java.codeutils.binding.JavaMethodInvocationBindingExtractor;
 import codemining.java.codeutils.binding.JavaTypeDeclarationBindingExtractor;
 import codemining.java.tokenizers.JavaTokenizer;
 import codemining.java.tokenizers.JavaTypeTokenizer;
+import codemining.languagetools.GuardedParser;
 import codemining.languagetools.bindings.ResolvedSourceCode;
 import codemining.languagetools.bindings.TokenNameBinding;
 
@@ -84,14 +85,19 @@ public class JavaBindingsToJson {
 		final Collection<File> allFiles = FileUtils
 				.listFiles(inputFolder, JavaTokenizer.javaCodeFileFilter,
 						DirectoryFileFilter.DIRECTORY);
+		final GuardedParser guard = new GuardedParser(new JavaTokenizer());
 		final List<SerializableResolvedSourceCode> resolvedCode = allFiles
 				.parallelStream()
-				.map(f -> getResolvedCode(f, bindingExtractor))
+				.map(f -> getResolvedCode(f, bindingExtractor, guard))
 				.filter(r -> r != null)
 				.map(r -> SerializableResolvedSourceCode
 						.fromResolvedSourceCode(r))
 				.filter(s -> !s.boundVariables.isEmpty())
 				.collect(Collectors.toList());
+		if (!guard.getQuarantine().isEmpty()) {
+			LOGGER.warning(guard.getQuarantine().size()
+					+ " files were quarantined: " + guard.getQuarantine());
+		}
 
 		final FileWriter writer = new FileWriter(outputFile);
 		try {
@@ -148,6 +154,27 @@ public class JavaBindingsToJson {
 		return null;
 	}
 
+	/**
+	 * Return the resolved code of the file, guarding its parse against
+	 * pathological files, or null if it fails or it is quarantined.
+	 *
+	 * @param f
+	 * @param extractor
+	 * @param guard
+	 * @return
+	 */
+	public static ResolvedSourceCode getResolvedCode(final File f,
+			final AbstractJavaNameBindingsExtractor extractor,
+			final GuardedParser guard) {
+		try {
+			return extractor.getResolvedSourceCode(f, guard);
+		} catch (final Throwable t) {
+			LOGGER.warning("Error for file " + f + ": "
+					+ ExceptionUtils.getFullStackTrace(t));
+		}
+		return null;
+	}
+
 	/**
 	 * @param args
 	 * @throws IOException
@@ -7,15 +7,17 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
-
 import org.eclipse.jdt.core.dom.ASTNode;
 
+import codemining.java.codeutils.CompositeASTVisitor;
+import codemining.java.codeutils.JavaASTExtractor;
+import codemining.java.codeutils.scopes.MethodScopeExtractor.ScopeFinder;
+import codemining.java.codeutils.scopes.TypenameScopeExtractor.ClassnameFinder;
+import codemining.java.codeutils.scopes.VariableScopeExtractor.VariableScopeFinder;
 import codemining.languagetools.IScopeExtractor;
 import codemining.languagetools.ParseType;
 import codemining.languagetools.Scope;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.TreeMultimap;
 
@@ -27,59 +29,60 @@ import com.google.common.collect.TreeMultimap;
  */
 public class AllScopeExtractor {
 
+	/**
+	 * Extracts the enabled scopes (variables, methods and types) in a single
+	 * traversal of the AST.
+	 * 
+	 */
 	public static final class AllScopeSnippetExtractor implements
 			IScopeExtractor {
 
+		private final boolean variables;
+
+		private final boolean methods;
+
+		private final boolean types;
+
 		public AllScopeSnippetExtractor() {
-			allExtractors = Lists.newArrayList();
-			allExtractors
-					.add(new VariableScopeExtractor.VariableScopeSnippetExtractor());
-			allExtractors
-					.add(new MethodScopeExtractor.MethodScopeSnippetExtractor(
-							true));
-			allExtractors
-					.add(new TypenameScopeExtractor.TypenameSnippetExtractor(
-							true));
+			this(true, true, true);
 		}
 
 		public AllScopeSnippetExtractor(final boolean variables,
 				final boolean methods, final boolean types) {
-			allExtractors = Lists.newArrayList();
 			checkArgument(variables | methods | types,
 					"At least one option must be set");
-			if (variables) {
-				allExtractors
-						.add(new VariableScopeExtractor.VariableScopeSnippetExtractor());
-			}
-			if (methods) {
-				allExtractors
-						.add(new MethodScopeExtractor.MethodScopeSnippetExtractor(
-								true));
-			}
-			if (types) {
-				allExtractors
-						.add(new TypenameScopeExtractor.TypenameSnippetExtractor(
-								true));
-			}
+			this.variables = variables;
+			this.methods = methods;
+			this.types = types;
 		}
 
-		private final List<IScopeExtractor> allExtractors;
-
 		@Override
 		public Multimap<Scope, String> getFromFile(final File file)
 				throws IOException {
-			final Multimap<Scope, String> scopes = TreeMultimap.create();
-			for (final IScopeExtractor extractor : allExtractors) {
-				scopes.putAll(extractor.getFromFile(file));
-			}
-			return scopes;
+			final JavaASTExtractor ex = new JavaASTExtractor(false);
+			return getFromNode(ex.getAST(file));
 		}
 
 		@Override
-		public Multimap<Scope, String> getFromNode(ASTNode node) {
+		public Multimap<Scope, String> getFromNode(final ASTNode node) {
+			final CompositeASTVisitor composite = new CompositeASTVisitor();
+			final VariableScopeFinder variableFinder = variables ? composite
+					.add(new VariableScopeFinder()) : null;
+			final ScopeFinder methodFinder = methods ? composite
+					.add(new ScopeFinder(true)) : null;
+			final ClassnameFinder typeFinder = types ? composite
+					.add(new ClassnameFinder(true)) : null;
+			node.accept(composite);
+
 			final Multimap<Scope, String> scopes = TreeMultimap.create();
-			for (final IScopeExtractor extractor : allExtractors) {
-				scopes.putAll(extractor.getFromNode(node));
+			if (variables) {
+				scopes.putAll(variableFinder.getScopeSnippets());
+			}
+			if (methods) {
+				scopes.putAll(methodFinder.getScopeSnippets());
+			}
+			if (types) {
+				scopes.putAll(typeFinder.getScopeSnippets());
 			}
 			return scopes;
 		}
@@ -87,11 +90,8 @@ public class AllScopeExtractor {
 		@Override
 		public Multimap<Scope, String> getFromString(final String file,
 				final ParseType parseType) {
-			final Multimap<Scope, String> scopes = TreeMultimap.create();
-			for (final IScopeExtractor extractor : allExtractors) {
-				scopes.putAll(extractor.getFromString(file, parseType));
-			}
-			return scopes;
+			final JavaASTExtractor ex = new JavaASTExtractor(false);
+			return getFromNode(ex.getAST(file, parseType));
 		}
 	}
 
@@ -91,7 +91,7 @@ public class MethodScopeExtractor {
 		}
 	}
 
-	private static class ScopeFinder extends ASTVisitor {
+	public static class ScopeFinder extends ASTVisitor {
 
 		final Multimap<ASTNode, Method> methods = HashMultimap.create();
 
@@ -111,6 +111,21 @@ public class MethodScopeExtractor {
 			super.endVisit(node);
 		}
 
+		/**
+		 * Return the method names of each scope of the visited nodes.
+		 * 
+		 * @return
+		 */
+		public Multimap<Scope, String> getScopeSnippets() {
+			final Multimap<Scope, String> scopes = TreeMultimap.create();
+			for (final Entry<ASTNode, Method> method : methods.entries()) {
+				scopes.put(new Scope(method.getKey().toString(),
+						method.getValue().type, METHOD_CALL, 0, 0), method
+						.getValue().name);
+			}
+			return scopes;
+		}
+
 		@Override
 		public boolean visit(MethodDeclaration node) {
 			if (currentMethodNode == null) {
@@ -159,17 +174,7 @@ public class MethodScopeExtractor {
 			final boolean methodAsRoots) {
 		final ScopeFinder scopeFinder = new ScopeFinder(methodAsRoots);
 		node.accept(scopeFinder);
-
-		final Multimap<Scope, String> scopes = TreeMultimap.create();
-		for (final Entry<ASTNode, Method> method : scopeFinder.methods
-				.entries()) {
-			scopes.put(new Scope(method.getKey().toString(),
-					method.getValue().type, METHOD_CALL, 0, 0), method
-					.getValue().name);
-		}
-
-		return scopes;
-
+		return scopeFinder.getScopeSnippets();
 	}
 
 	public static Multimap<Scope, String> getScopeSnippets(final File file,
@@ -58,6 +58,25 @@ public class TypenameScopeExtractor {
 			super.endVisit(node);
 		}
 
+		/**
+		 * Return the type names of each scope of the visited nodes.
+		 * 
+		 * @return
+		 */
+		public Multimap<Scope, String> getScopeSnippets() {
+			final Multimap<Scope, String> classnames = TreeMultimap.create();
+			for (final Entry<ASTNode, String> classname : types.entries()) {
+				final ASTNode parentNode = classname.getKey();
+				final Scope sc = new Scope(
+						classname.getKey().toString(),
+						parentNode.getNodeType() == ASTNode.METHOD_DECLARATION ? ScopeType.SCOPE_METHOD
+								: ScopeType.SCOPE_CLASS, TYPENAME,
+						parentNode.getNodeType(), -1);
+				classnames.put(sc, classname.getValue());
+			}
+			return classnames;
+		}
+
 		@Override
 		public boolean visit(CastExpression node) {
 			final String type = node.getType().toString();
@@ -171,19 +190,7 @@ public class TypenameScopeExtractor {
 		private Multimap<Scope, String> getClassnames(final ASTNode node) {
 			final ClassnameFinder cf = new ClassnameFinder(methodsAsRoots);
 			node.accept(cf);
-
-			final Multimap<Scope, String> classnames = TreeMultimap.create();
-
-			for (final Entry<ASTNode, String> classname : cf.types.entries()) {
-				final ASTNode parentNode = classname.getKey();
-				final Scope sc = new Scope(
-						classname.getKey().toString(),
-						parentNode.getNodeType() == ASTNode.METHOD_DECLARATION ? ScopeType.SCOPE_METHOD
-								: ScopeType.SCOPE_CLASS, TYPENAME,
-						parentNode.getNodeType(), -1);
-				classnames.put(sc, classname.getValue());
-			}
-			return classnames;
+			return cf.getScopeSnippets();
 		}
 
 		@Override
@@ -3,6 +3,8 @@
  */
 package codemining.java.codeutils.scopes;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.Map.Entry;
@@ -11,12 +13,17 @@ import java.util.logging.Logger;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.QualifiedType;
+import org.eclipse.jdt.core.dom.SimpleType;
 import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WildcardType;
 
 import codemining.java.codeutils.JavaASTExtractor;
+import codemining.languagetools.CompactAst;
+import codemining.languagetools.CompactAstVisitor;
 import codemining.languagetools.IScopeExtractor;
 import codemining.languagetools.ParseType;
 import codemining.languagetools.Scope;
@@ -37,6 +44,190 @@ import com.google.common.collect.TreeMultimap;
  */
 public class VariableScopeExtractor {
 
+	/**
+	 * Finds all the variables of a CompactAst (of JavaCompactAstConverter),
+	 * along with the node where they are scoped in, as VariableScopeFinder
+	 * does. The types of the variables are printed as Type.toString() prints
+	 * them.
+	 *
+	 */
+	private static class CompactVariableScopeFinder extends CompactAstVisitor {
+
+		/**
+		 * Append the type (or any of its parts) to the buffer, in the format
+		 * of the NaiveASTFlattener of Type.toString(). The annotations and
+		 * any unknown nodes are appended as their source code.
+		 */
+		private static void appendType(final CompactAst ast, final int node,
+				final StringBuilder buffer) {
+			switch (ast.getNodeType(node)) {
+			case ASTNode.SIMPLE_NAME:
+			case ASTNode.PRIMITIVE_TYPE:
+				appendAnnotations(ast, node, buffer);
+				buffer.append(ast.getLabel(node));
+				break;
+			case ASTNode.QUALIFIED_NAME:
+			case ASTNode.QUALIFIED_TYPE:
+			case ASTNode.NAME_QUALIFIED_TYPE:
+				appendType(ast, ast.getFirstChild(node), buffer);
+				buffer.append('.');
+				appendAnnotations(ast, node, buffer);
+				appendType(ast, ast.getChild(node, QualifiedType.NAME_PROPERTY
+						.getId()), buffer);
+				break;
+			case ASTNode.SIMPLE_TYPE:
+				appendAnnotations(ast, node, buffer);
+				appendType(ast,
+						ast.getChild(node, SimpleType.NAME_PROPERTY.getId()),
+						buffer);
+				break;
+			case ASTNode.ARRAY_TYPE:
+				appendType(ast, ast.getFirstChild(node), buffer);
+				for (int dimension = ast.getNextSibling(ast.getFirstChild(node)); dimension != CompactAst.NO_NODE; dimension = ast
+						.getNextSibling(dimension)) {
+					if (ast.getFirstChild(dimension) != CompactAst.NO_NODE) {
+						buffer.append(' ');
+					}
+					appendAnnotations(ast, dimension, buffer);
+					buffer.append("[]");
+				}
+				break;
+			case ASTNode.PARAMETERIZED_TYPE:
+				appendType(ast, ast.getFirstChild(node), buffer);
+				buffer.append('<');
+				appendChildren(ast, node, ast.getNextSibling(ast
+						.getFirstChild(node)), ",", buffer);
+				buffer.append('>');
+				break;
+			case ASTNode.WILDCARD_TYPE:
+				appendAnnotations(ast, node, buffer);
+				buffer.append('?');
+				final int bound = ast.getChild(node,
+						WildcardType.BOUND_PROPERTY.getId());
+				if (bound != CompactAst.NO_NODE) {
+					// The kind of the bound is only in the source code
+					final String beforeBound = new String(ast.getSource(),
+							ast.getStartPosition(node),
+							ast.getStartPosition(bound)
+									- ast.getStartPosition(node));
+					buffer.append(beforeBound.contains("super") ? " super "
+							: " extends ");
+					appendType(ast, bound, buffer);
+				}
+				break;
+			case ASTNode.UNION_TYPE:
+				appendChildren(ast, node, ast.getFirstChild(node), "|", buffer);
+				break;
+			case ASTNode.INTERSECTION_TYPE:
+				appendChildren(ast, node, ast.getFirstChild(node), " & ",
+						buffer);
+				break;
+			default:
+				buffer.append(ast.getText(node));
+			}
+		}
+
+		/**
+		 * Append the annotations of the node, each followed by a space.
+		 */
+		private static void appendAnnotations(final CompactAst ast,
+				final int node, final StringBuilder buffer) {
+			for (int child = ast.getFirstChild(node); child != CompactAst.NO_NODE; child = ast
+					.getNextSibling(child)) {
+				switch (ast.getNodeType(child)) {
+				case ASTNode.MARKER_ANNOTATION:
+				case ASTNode.NORMAL_ANNOTATION:
+				case ASTNode.SINGLE_MEMBER_ANNOTATION:
+					buffer.append(ast.getText(child)).append(' ');
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		/**
+		 * Append the children of the node, starting from the given one, with
+		 * the separator between them.
+		 */
+		private static void appendChildren(final CompactAst ast,
+				final int node, final int first, final String separator,
+				final StringBuilder buffer) {
+			for (int child = first; child != CompactAst.NO_NODE; child = ast
+					.getNextSibling(child)) {
+				if (child != first) {
+					buffer.append(separator);
+				}
+				appendType(ast, child, buffer);
+			}
+		}
+
+		/**
+		 * Return the type as Type.toString() prints it.
+		 */
+		private static String getTypeName(final CompactAst ast, final int type) {
+			final StringBuilder buffer = new StringBuilder();
+			appendType(ast, type, buffer);
+			return buffer.toString();
+		}
+
+		private final Multimap<Integer, Variable> variableScopes = HashMultimap
+				.create();
+
+		private void addFragments(final CompactAst ast, final int node,
+				final String typeRole, final String fragmentsRole,
+				final ScopeType scope) {
+			final String type = getTypeName(ast, ast.getChild(node, typeRole));
+			for (int child = ast.getFirstChild(node); child != CompactAst.NO_NODE; child = ast
+					.getNextSibling(child)) {
+				if (!fragmentsRole.equals(ast.getRole(child))) {
+					continue;
+				}
+				final int name = ast.getChild(child,
+						VariableDeclarationFragment.NAME_PROPERTY.getId());
+				variableScopes.put(ast.getParent(node),
+						new Variable(ast.getLabel(name), type, scope));
+			}
+		}
+
+		@Override
+		public boolean visit(final CompactAst ast, final int node) {
+			switch (ast.getNodeType(node)) {
+			case ASTNode.FIELD_DECLARATION:
+				addFragments(ast, node, FieldDeclaration.TYPE_PROPERTY.getId(),
+						FieldDeclaration.FRAGMENTS_PROPERTY.getId(),
+						ScopeType.SCOPE_CLASS);
+				return true;
+			case ASTNode.SINGLE_VARIABLE_DECLARATION:
+				final int parent = ast.getParent(node);
+				final int name = ast.getChild(node,
+						SingleVariableDeclaration.NAME_PROPERTY.getId());
+				final int type = ast.getChild(node,
+						SingleVariableDeclaration.TYPE_PROPERTY.getId());
+				final ScopeType scope = ast.getNodeType(parent) == ASTNode.METHOD_DECLARATION ? ScopeType.SCOPE_METHOD
+						: ScopeType.SCOPE_LOCAL;
+				variableScopes.put(parent, new Variable(ast.getLabel(name),
+						getTypeName(ast, type), scope));
+				return false;
+			case ASTNode.VARIABLE_DECLARATION_EXPRESSION:
+				addFragments(ast, node,
+						VariableDeclarationExpression.TYPE_PROPERTY.getId(),
+						VariableDeclarationExpression.FRAGMENTS_PROPERTY
+								.getId(), ScopeType.SCOPE_LOCAL);
+				return false;
+			case ASTNode.VARIABLE_DECLARATION_STATEMENT:
+				addFragments(ast, node,
+						VariableDeclarationStatement.TYPE_PROPERTY.getId(),
+						VariableDeclarationStatement.FRAGMENTS_PROPERTY
+								.getId(), ScopeType.SCOPE_LOCAL);
+				return false;
+			default:
+				return true;
+			}
+		}
+
+	}
+
 	/**
 	 * A variable struct object.
 	 * 
@@ -89,6 +280,31 @@ public class VariableScopeExtractor {
 		private final Multimap<ASTNode, Variable> variableScopes = HashMultimap
 				.create();
 
+		/**
+		 * Return the (local) variables of each scope of the visited nodes.
+		 * 
+		 * @return Multimap<Snippet, VariableName>
+		 */
+		public Multimap<Scope, String> getScopeSnippets() {
+			final Multimap<Scope, String> scopes = TreeMultimap.create();
+			for (final Entry<ASTNode, Variable> variable : variableScopes
+					.entries()) {
+				final int astNodeType = variable.getKey().getNodeType();
+				final int astNodeParentType;
+				if (variable.getKey().getParent() == null) {
+					astNodeParentType = -1;
+				} else {
+					astNodeParentType = variable.getKey().getParent()
+							.getNodeType();
+				}
+				scopes.put(new Scope(variable.getKey().toString(),
+						variable.getValue().scope, variable.getValue().type,
+						astNodeType, astNodeParentType),
+						variable.getValue().name);
+			}
+			return scopes;
+		}
+
 		/**
 		 * Return the variable scopes of the given node.
 		 * 
@@ -229,26 +445,7 @@ public class VariableScopeExtractor {
 	public static Multimap<Scope, String> getScopeSnippets(final ASTNode cu) {
 		final VariableScopeFinder scopeFinder = new VariableScopeFinder();
 		cu.accept(scopeFinder);
-
-		final Multimap<Scope, String> scopes = TreeMultimap.create();
-		for (final Entry<ASTNode, Variable> variable : scopeFinder.variableScopes
-				.entries()) {
-			final int astNodeType = variable.getKey().getNodeType();
-			final int astNodeParentType;
-			if (variable.getKey().getParent() == null) {
-				astNodeParentType = -1;
-			} else {
-				astNodeParentType = variable.getKey().getParent().getNodeType();
-			}
-			scopes.put(
-					new Scope(variable.getKey().toString(),
-							variable.getValue().scope,
-							variable.getValue().type, astNodeType,
-							astNodeParentType), variable.getValue().name);
-		}
-
-		return scopes;
-
+		return scopeFinder.getScopeSnippets();
 	}
 
 	/**
@@ -293,6 +490,24 @@ public class VariableScopeExtractor {
 		return scopeFinder.variableScopes;
 	}
 
+	/**
+	 * Return a Multimap containing the variables that belong to the scope of
+	 * each node of a CompactAst of JavaCompactAstConverter. The CompactAst must
+	 * keep the source code, since the annotations of the types are read from
+	 * it.
+	 *
+	 * @param ast
+	 * @return
+	 */
+	public static Multimap<Integer, Variable> getVariableScopes(
+			final CompactAst ast) {
+		checkArgument(ast.hasSource(),
+				"The CompactAst must keep the source code");
+		final CompactVariableScopeFinder scopeFinder = new CompactVariableScopeFinder();
+		ast.accept(scopeFinder);
+		return scopeFinder.variableScopes;
+	}
+
 	public static Multimap<ASTNode, Variable> getVariableScopes(final File file)
 			throws IOException {
 		final JavaASTExtractor ex = new JavaASTExtractor(false);
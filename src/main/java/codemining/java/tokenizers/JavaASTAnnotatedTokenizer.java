@@ -13,7 +13,6 @@ import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -23,6 +22,7 @@ import codemining.java.codeutils.JavaASTExtractor;
 import codemining.languagetools.IAstAnnotatedTokenizer;
 import codemining.languagetools.ITokenizer;
 import codemining.languagetools.ParseType;
+import codemining.languagetools.SourceReader;
 import codemining.util.SettingsLoader;
 
 import com.google.common.base.Function;
@@ -171,8 +171,7 @@ public class JavaASTAnnotatedTokenizer implements IAstAnnotatedTokenizer {
 	public List<AstAnnotatedToken> getAnnotatedTokenListFromCode(
 			final File codeFile) throws IOException {
 		// TODO Get ast through the file
-		return getAnnotatedTokenListFromCode(FileUtils.readFileToString(
-				codeFile).toCharArray());
+		return getAnnotatedTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -262,8 +261,7 @@ public class JavaASTAnnotatedTokenizer implements IAstAnnotatedTokenizer {
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
 		// TODO Get ast through the file
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/**
@@ -299,8 +297,7 @@ public class JavaASTAnnotatedTokenizer implements IAstAnnotatedTokenizer {
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
 		// TODO Get the ast directly from the file.
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -321,8 +318,7 @@ public class JavaASTAnnotatedTokenizer implements IAstAnnotatedTokenizer {
 	@Override
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+		return fullTokenListWithPos(SourceReader.readChars(file));
 	}
 
 }
@@ -10,7 +10,6 @@ import java.util.List;
 import java.util.SortedMap;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -19,6 +18,7 @@ import org.eclipse.jdt.core.compiler.InvalidInputException;
 import org.eclipse.jdt.internal.core.util.PublicScanner;
 
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.SourceReader;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -179,8 +179,7 @@ public class JavaTokenTypeTokenizer implements ITokenizer {
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -224,8 +223,7 @@ public class JavaTokenTypeTokenizer implements ITokenizer {
 	@Override
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -274,7 +272,6 @@ public class JavaTokenTypeTokenizer implements ITokenizer {
 	@Override
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+		return fullTokenListWithPos(SourceReader.readChars(file));
 	}
 }
@@ -8,7 +8,6 @@ import java.util.List;
 import java.util.SortedMap;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -16,18 +15,28 @@ import org.eclipse.jdt.core.compiler.ITerminalSymbols;
 import org.eclipse.jdt.core.compiler.InvalidInputException;
 import org.eclipse.jdt.internal.core.util.PublicScanner;
 
+import codemining.languagetools.IIncrementalTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.IncrementalTokenization;
+import codemining.languagetools.IncrementalTokenization.ResumableScanner;
+import codemining.languagetools.ScannerPool;
+import codemining.languagetools.SourceReader;
+import codemining.languagetools.TokenSink;
+import codemining.languagetools.TokenStream;
+import codemining.languagetools.TokenVocabulary;
+import codemining.languagetools.VocabularySink;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
- * A Java Code tokenizer using Eclipse JDT.
+ * A Java Code tokenizer using Eclipse JDT. Instances are thread-safe; the
+ * scanners are reused per thread.
  *
  * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
  *
  */
-public class JavaTokenizer implements ITokenizer {
+public class JavaTokenizer implements IIncrementalTokenizer {
 
 	private static final long serialVersionUID = 505587999946057082L;
 	private static final Logger LOGGER = Logger.getLogger(JavaTokenizer.class
@@ -39,6 +48,14 @@ public class JavaTokenizer implements ITokenizer {
 	public static final RegexFileFilter javaCodeFileFilter = new RegexFileFilter(
 			".*\\.java$");
 
+	/**
+	 * The per-thread scanners. The scanner's buffers are reused across
+	 * calls, while the tokenizer itself is stateless and can be shared
+	 * between threads.
+	 */
+	private static final ScannerPool<PublicScanner> SCANNERS = new ScannerPool<PublicScanner>(
+			PublicScanner::new);
+
 	private final boolean tokenizeComments;
 
 	public static final String IDENTIFIER_ID = Integer
@@ -136,29 +153,27 @@ public class JavaTokenizer implements ITokenizer {
 
 	@Override
 	public SortedMap<Integer, FullToken> fullTokenListWithPos(final char[] code) {
-		// TODO Duplicate Code
-		final PublicScanner scanner = prepareScanner();
+		return fullTokenListWithPos(tokenize(code));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * codemining.languagetools.IIncrementalTokenizer#fullTokenListWithPos(codemining
+	 * .languagetools.TokenStream)
+	 */
+	@Override
+	public SortedMap<Integer, FullToken> fullTokenListWithPos(
+			final TokenStream stream) {
 		final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
 		tokens.put(-1, new FullToken(SENTENCE_START, SENTENCE_START));
 		tokens.put(Integer.MAX_VALUE, new FullToken(SENTENCE_END, SENTENCE_END));
-		scanner.setSource(code);
-		while (!scanner.atEnd()) {
-			do {
-				try {
-					final int token = scanner.getNextToken();
-					if (token == ITerminalSymbols.TokenNameEOF) {
-						break;
-					}
-					final String nxtToken = transformToken(token,
-							scanner.getCurrentTokenString());
-					final int position = scanner.getCurrentTokenStartPosition();
-					tokens.put(position,
-							new FullToken(nxtToken, Integer.toString(token)));
-				} catch (final InvalidInputException e) {
-					LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
-				}
-			} while (!scanner.atEnd());
-
+		for (int i = 0; i < stream.size(); i++) {
+			final String nxtToken = transformToken(stream.getTypeId(i),
+					stream.getTokenText(i));
+			tokens.put(stream.getStartOffset(i),
+					new FullToken(nxtToken, stream.getTokenType(i)));
 		}
 		return tokens;
 	}
@@ -202,27 +217,16 @@ public class JavaTokenizer implements ITokenizer {
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final char[] code) {
-		final List<FullToken> tokens = Lists.newArrayList();
+		final TokenStream stream = tokenize(code);
+		final List<FullToken> tokens = Lists
+				.newArrayListWithCapacity(stream.size() + 2);
 		tokens.add(new FullToken(SENTENCE_START, SENTENCE_START));
-		final PublicScanner scanner = prepareScanner();
-		scanner.setSource(code);
-		do {
-			try {
-				final int token = scanner.getNextToken();
-				if (token == ITerminalSymbols.TokenNameEOF) {
-					break;
-				}
-				final String nxtToken = transformToken(token,
-						scanner.getCurrentTokenString());
-
-				tokens.add(new FullToken(stripTokenIfNeeded(nxtToken), Integer
-						.toString(token)));
-			} catch (final InvalidInputException e) {
-				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
-			} catch (final StringIndexOutOfBoundsException e) {
-				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
-			}
-		} while (!scanner.atEnd());
+		for (int i = 0; i < stream.size(); i++) {
+			final String nxtToken = transformToken(stream.getTypeId(i),
+					stream.getTokenText(i));
+			tokens.add(new FullToken(stripTokenIfNeeded(nxtToken), stream
+					.getTokenType(i)));
+		}
 		tokens.add(new FullToken(SENTENCE_END, SENTENCE_END));
 		return tokens;
 	}
@@ -230,21 +234,53 @@ public class JavaTokenizer implements ITokenizer {
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/**
 	 * Create the scanner.
 	 *
 	 * @return
+	 * @deprecated use {@link #prepareScanner(char[])}, which reuses the
+	 *             current thread's scanner. This returns a new scanner that
+	 *             is not pooled and must not be passed to releaseScanner().
 	 */
+	@Deprecated
 	protected PublicScanner prepareScanner() {
 		final PublicScanner scanner = new PublicScanner();
 		scanner.tokenizeComments = tokenizeComments;
 		return scanner;
 	}
 
+	/**
+	 * Return a scanner for the given code, reusing the current thread's
+	 * scanner if possible. The scanner is acquired from a per-thread pool:
+	 * every call must be paired with exactly one releaseScanner() call on the
+	 * same thread (in a finally block), and the scanner must not be used
+	 * after it has been released. A scanner that is never released is not
+	 * reused, but it is not leaked either.
+	 *
+	 * @param code
+	 * @return
+	 */
+	protected PublicScanner prepareScanner(final char[] code) {
+		final PublicScanner scanner = SCANNERS.acquire();
+		scanner.tokenizeComments = tokenizeComments;
+		scanner.setSource(code);
+		scanner.resetTo(0, code.length - 1);
+		return scanner;
+	}
+
+	/**
+	 * Return a scanner obtained by prepareScanner(char[]) to the pool of the
+	 * current thread.
+	 *
+	 * @param scanner
+	 */
+	protected void releaseScanner(final PublicScanner scanner) {
+		SCANNERS.release(scanner);
+	}
+
 	/**
 	 * @param token
 	 * @return
@@ -262,26 +298,15 @@ public class JavaTokenizer implements ITokenizer {
 	 */
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
-		final PublicScanner scanner = prepareScanner();
-		final List<String> tokens = Lists.newArrayList();
+		final TokenStream stream = tokenize(code);
+		final List<String> tokens = Lists
+				.newArrayListWithCapacity(stream.size() + 2);
 		tokens.add(SENTENCE_START);
-		scanner.setSource(code);
-		do {
-			try {
-				final int token = scanner.getNextToken();
-				if (token == ITerminalSymbols.TokenNameEOF) {
-					break;
-				}
-				final String nxtToken = transformToken(token,
-						scanner.getCurrentTokenString());
-
-				tokens.add(stripTokenIfNeeded(nxtToken));
-			} catch (final InvalidInputException e) {
-				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
-			} catch (final StringIndexOutOfBoundsException e) {
-				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
-			}
-		} while (!scanner.atEnd());
+		for (int i = 0; i < stream.size(); i++) {
+			final String nxtToken = transformToken(stream.getTypeId(i),
+					stream.getTokenText(i));
+			tokens.add(stripTokenIfNeeded(nxtToken));
+		}
 		tokens.add(SENTENCE_END);
 		return tokens;
 	}
@@ -289,8 +314,7 @@ public class JavaTokenizer implements ITokenizer {
 	@Override
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -300,36 +324,151 @@ public class JavaTokenizer implements ITokenizer {
 	 */
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
-		final PublicScanner scanner = prepareScanner();
+		final TokenStream stream = tokenize(code);
 		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
 		tokens.put(-1, SENTENCE_START);
 		tokens.put(Integer.MAX_VALUE, SENTENCE_END);
-		scanner.setSource(code);
+		for (int i = 0; i < stream.size(); i++) {
+			final String nxtToken = transformToken(stream.getTypeId(i),
+					stream.getTokenText(i));
+			tokens.put(stream.getStartOffset(i), stripTokenIfNeeded(nxtToken));
+		}
+		return tokens;
+	}
+
+	@Override
+	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
+			throws IOException {
+		return fullTokenListWithPos(SourceReader.readChars(file));
+	}
+
+	/**
+	 * Tokenize the code, returning the raw (untransformed) scanner tokens.
+	 */
+	@Override
+	public TokenStream tokenize(final char[] code) {
+		final TokenStream tokens = new TokenStream(code, code.length / 4);
+		scanTokens(code, tokens);
+		return tokens;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * codemining.languagetools.IIncrementalTokenizer#retokenize(codemining.
+	 * languagetools.TokenStream, int, int, java.lang.String)
+	 */
+	@Override
+	public TokenStream retokenize(final TokenStream previous,
+			final int offset, final int removedLength, final String insertedText) {
+		return IncrementalTokenization.retokenize(previous, offset,
+				removedLength, insertedText, type -> true,
+				this::startScannerAt);
+	}
+
+	/**
+	 * Scan the next token and push it to the sink. Invalid input is logged
+	 * and skipped.
+	 *
+	 * @return false if there are no more tokens.
+	 */
+	private boolean scanNextToken(final PublicScanner scanner,
+			final char[] code, final TokenSink sink) {
 		while (!scanner.atEnd()) {
-			do {
-				try {
-					final int token = scanner.getNextToken();
-					if (token == ITerminalSymbols.TokenNameEOF) {
-						break;
-					}
-					final String nxtToken = transformToken(token,
+			try {
+				final int token = scanner.getNextToken();
+				if (token == ITerminalSymbols.TokenNameEOF) {
+					return false;
+				}
+				final int start = scanner.getCurrentTokenStartPosition();
+				final int end = scanner.getCurrentTokenEndPosition() + 1;
+				if (scanner.withoutUnicodePtr != 0) {
+					// Unicode escapes, the token differs from the source
+					sink.tokenWithText(token, start, end, code,
 							scanner.getCurrentTokenString());
-					final int position = scanner.getCurrentTokenStartPosition();
-					tokens.put(position, stripTokenIfNeeded(nxtToken));
-				} catch (final InvalidInputException e) {
-					LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+				} else {
+					sink.token(token, start, end, code);
 				}
-			} while (!scanner.atEnd());
+				return true;
+			} catch (final InvalidInputException e) {
+				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			} catch (final StringIndexOutOfBoundsException e) {
+				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Start a scanner at the given offset, for retokenize().
+	 */
+	private ResumableScanner startScannerAt(final char[] code, final int offset) {
+		final PublicScanner scanner = prepareScanner(code);
+		scanner.resetTo(offset, code.length - 1);
+		return new ResumableScanner() {
+
+			@Override
+			public void close() {
+				releaseScanner(scanner);
+			}
 
+			@Override
+			public boolean scanNext(final TokenStream tokens) {
+				return scanNextToken(scanner, code, tokens);
+			}
+		};
+	}
+
+	/**
+	 * Push the raw (untransformed) scanner tokens to the sink.
+	 */
+	private void scanTokens(final char[] code, final TokenSink sink) {
+		final PublicScanner scanner = prepareScanner(code);
+		try {
+			while (scanNextToken(scanner, code, sink)) {
+				// Keep scanning until the end of the code
+			}
+		} finally {
+			releaseScanner(scanner);
 		}
-		return tokens;
 	}
 
+	/**
+	 * Push the scanner tokens to the sink, with their text transformed as in
+	 * tokenListFromCode(). The tokens keep their offsets in the code.
+	 */
 	@Override
-	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
-			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+	public void tokenize(final char[] code, final TokenSink sink) {
+		scanTokens(code, new TokenSink() {
+
+			@Override
+			public void token(final int typeId, final int start,
+					final int end, final char[] source) {
+				tokenWithText(typeId, start, end, source, new String(source,
+						start, end - start));
+			}
+
+			@Override
+			public void tokenWithText(final int typeId, final int start,
+					final int end, final char[] source, final String text) {
+				sink.tokenWithText(typeId, start, end, source,
+						stripTokenIfNeeded(transformToken(typeId, text)));
+			}
+		});
+	}
+
+	/**
+	 * Add the transformed tokens to the vocabulary as they are scanned,
+	 * without building a token list.
+	 */
+	@Override
+	public int[] tokenizeToIds(final char[] code,
+			final TokenVocabulary vocabulary) {
+		final VocabularySink sink = new VocabularySink(vocabulary,
+				code.length / 4, (typeId, text) -> text);
+		tokenize(code, sink);
+		return sink.getIds();
 	}
 
 	/**
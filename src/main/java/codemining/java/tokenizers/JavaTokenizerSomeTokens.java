@@ -1,37 +1,35 @@
 /**
- * 
+ *
  */
 package codemining.java.tokenizers;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.logging.Logger;
 
-import org.apache.commons.lang.exception.ExceptionUtils;
 import org.eclipse.jdt.core.compiler.ITerminalSymbols;
 
-import codemining.java.codeutils.IdentifierPerType;
+import codemining.java.codeutils.JavaIdentifierClassifier;
+import codemining.java.codeutils.JavaIdentifierClassifier.IdentifierKind;
+import codemining.languagetools.TokenSink;
+import codemining.languagetools.TokenStream;
 import codemining.util.SettingsLoader;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 /**
+ * A Java tokenizer that replaces the identifiers of some kinds (variables,
+ * methods or types) with a generic identifier. The code is tokenized and its
+ * identifiers are classified once per call, so the tokenizer is thread-safe.
+ *
  * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
- * 
+ *
  */
 public class JavaTokenizerSomeTokens extends JavaTokenizer {
 	public static final String GENERIC_IDENTIFIER = "%IDENTIFIER%";
 
 	private static final long serialVersionUID = -8566029315110514304L;
 
-	private static final Logger LOGGER = Logger
-			.getLogger(JavaTokenizerSomeTokens.class.getName());
-
-	private Set<String> methodIds;
-	private Set<String> typeIds;
-	private Set<String> varIds;
-
 	private final boolean REMOVE_METHOD_IDENTIFIERS = SettingsLoader
 			.getBooleanSetting("removeMethodIdentifiers", false);
 	private final boolean REMOVE_VAR_IDENTIFIERS = SettingsLoader
@@ -39,44 +37,118 @@ public class JavaTokenizerSomeTokens extends JavaTokenizer {
 	private final boolean REMOVE_TYPE_IDENTIFIERS = SettingsLoader
 			.getBooleanSetting("removeTypeIdentifiers", false);
 
-	private void generateValidTokList(final char[] code) throws Exception {
-		methodIds = IdentifierPerType.getMethodIdentifiers(code);
-		typeIds = IdentifierPerType.getTypeIdentifiers(code);
-		varIds = IdentifierPerType.getVariableIdentifiers(code);
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * codemining.java.tokenizers.JavaTokenizer#fullTokenListWithPos(codemining
+	 * .languagetools.TokenStream)
+	 */
+	@Override
+	public SortedMap<Integer, FullToken> fullTokenListWithPos(
+			final TokenStream stream) {
+		final JavaIdentifierClassifier classifier = JavaIdentifierClassifier
+				.classify(stream);
+		final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
+		tokens.put(-1, new FullToken(SENTENCE_START, SENTENCE_START));
+		tokens.put(Integer.MAX_VALUE, new FullToken(SENTENCE_END, SENTENCE_END));
+		for (int i = 0; i < stream.size(); i++) {
+			tokens.put(stream.getStartOffset(i),
+					new FullToken(transformToken(stream, i, classifier),
+							stream.getTokenType(i)));
+		}
+		return tokens;
+	}
+
+	@Override
+	public List<FullToken> getTokenListFromCode(final char[] code) {
+		final TokenStream stream = tokenize(code);
+		final JavaIdentifierClassifier classifier = JavaIdentifierClassifier
+				.classify(stream);
+		final List<FullToken> tokens = Lists
+				.newArrayListWithCapacity(stream.size() + 2);
+		tokens.add(new FullToken(SENTENCE_START, SENTENCE_START));
+		for (int i = 0; i < stream.size(); i++) {
+			tokens.add(new FullToken(stripTokenIfNeeded(transformToken(stream,
+					i, classifier)), stream.getTokenType(i)));
+		}
+		tokens.add(new FullToken(SENTENCE_END, SENTENCE_END));
+		return tokens;
+	}
+
+	/**
+	 * Return true if the identifiers of the given kind are removed.
+	 */
+	private boolean isRemoved(final IdentifierKind kind) {
+		switch (kind) {
+		case METHOD:
+			return REMOVE_METHOD_IDENTIFIERS;
+		case TYPE:
+			return REMOVE_TYPE_IDENTIFIERS;
+		case VARIABLE:
+			return REMOVE_VAR_IDENTIFIERS;
+		default:
+			return false;
+		}
 	}
 
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
-		try {
-			generateValidTokList(code);
-			return super.tokenListFromCode(code);
-		} catch (final Exception e) {
-			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+		final TokenStream stream = tokenize(code);
+		final JavaIdentifierClassifier classifier = JavaIdentifierClassifier
+				.classify(stream);
+		final List<String> tokens = Lists
+				.newArrayListWithCapacity(stream.size() + 2);
+		tokens.add(SENTENCE_START);
+		for (int i = 0; i < stream.size(); i++) {
+			tokens.add(stripTokenIfNeeded(transformToken(stream, i, classifier)));
 		}
-		return new ArrayList<String>();
+		tokens.add(SENTENCE_END);
+		return tokens;
 	}
 
+	/**
+	 * The identifiers are classified on the whole code, so the tokens are
+	 * pushed from the token stream rather than straight from the scanner.
+	 */
 	@Override
-	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
-		try {
-			generateValidTokList(code);
-			return super.tokenListWithPos(code);
-		} catch (final Exception e) {
-			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+	public void tokenize(final char[] code, final TokenSink sink) {
+		final TokenStream stream = tokenize(code);
+		final JavaIdentifierClassifier classifier = JavaIdentifierClassifier
+				.classify(stream);
+		for (int i = 0; i < stream.size(); i++) {
+			sink.tokenWithText(stream.getTypeId(i), stream.getStartOffset(i),
+					stream.getEndOffset(i), code,
+					stripTokenIfNeeded(transformToken(stream, i, classifier)));
 		}
-		return new TreeMap<Integer, String>();
 	}
 
 	@Override
-	protected String transformToken(final int tokenType, final String token) {
-		if (tokenType != ITerminalSymbols.TokenNameIdentifier) {
+	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+		final TokenStream stream = tokenize(code);
+		final JavaIdentifierClassifier classifier = JavaIdentifierClassifier
+				.classify(stream);
+		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
+		tokens.put(-1, SENTENCE_START);
+		tokens.put(Integer.MAX_VALUE, SENTENCE_END);
+		for (int i = 0; i < stream.size(); i++) {
+			tokens.put(stream.getStartOffset(i),
+					stripTokenIfNeeded(transformToken(stream, i, classifier)));
+		}
+		return tokens;
+	}
+
+	/**
+	 * Return the text of the i-th token, replacing it with the generic
+	 * identifier if it is an identifier of a removed kind.
+	 */
+	private String transformToken(final TokenStream stream, final int i,
+			final JavaIdentifierClassifier classifier) {
+		final String token = stream.getTokenText(i);
+		if (stream.getTypeId(i) != ITerminalSymbols.TokenNameIdentifier) {
 			return token;
 		}
-		if (methodIds.contains(token) && REMOVE_METHOD_IDENTIFIERS) {
-			return GENERIC_IDENTIFIER;
-		} else if (varIds.contains(token) && REMOVE_VAR_IDENTIFIERS) {
-			return GENERIC_IDENTIFIER;
-		} else if (typeIds.contains(token) && REMOVE_TYPE_IDENTIFIERS) {
+		if (isRemoved(classifier.getKind(stream.getStartOffset(i)))) {
 			return GENERIC_IDENTIFIER;
 		}
 		return token;
@@ -11,13 +11,13 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.eclipse.jdt.core.dom.ASTNode;
 
 import codemining.java.codeutils.JavaASTExtractor;
 import codemining.java.codeutils.JavaApproximateTypeInferencer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.SourceReader;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -143,8 +143,7 @@ public class JavaTypeTokenizer implements ITokenizer {
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
 		final SortedMap<Integer, FullToken> tokens = baseTokenizer
-				.fullTokenListWithPos(FileUtils.readFileToString(codeFile)
-						.toCharArray());
+				.fullTokenListWithPos(SourceReader.readChars(codeFile));
 
 		final JavaASTExtractor ex = new JavaASTExtractor(false);
 		final ASTNode cu = ex.getAST(codeFile);
@@ -196,8 +195,7 @@ public class JavaTypeTokenizer implements ITokenizer {
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
 		final SortedMap<Integer, FullToken> tokens = baseTokenizer
-				.fullTokenListWithPos(FileUtils.readFileToString(codeFile)
-						.toCharArray());
+				.fullTokenListWithPos(SourceReader.readChars(codeFile));
 
 		final JavaASTExtractor ex = new JavaASTExtractor(false);
 		final ASTNode cu = ex.getAST(codeFile);
@@ -233,8 +231,7 @@ public class JavaTypeTokenizer implements ITokenizer {
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File f)
 			throws IOException {
 		final SortedMap<Integer, FullToken> tokens = baseTokenizer
-				.fullTokenListWithPos(FileUtils.readFileToString(f)
-						.toCharArray());
+				.fullTokenListWithPos(SourceReader.readChars(f));
 
 		final JavaASTExtractor ex = new JavaASTExtractor(false);
 		ASTNode cu;
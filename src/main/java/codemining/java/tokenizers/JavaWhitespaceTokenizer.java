@@ -12,7 +12,6 @@ import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -22,6 +21,8 @@ import org.eclipse.jdt.internal.core.util.PublicScanner;
 
 import codemining.languagetools.IFormattingTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.LineIndex;
+import codemining.languagetools.SourceReader;
 import codemining.languagetools.tokenizers.whitespace.WhitespaceToTokenConverter;
 
 import com.google.common.collect.Lists;
@@ -37,7 +38,8 @@ import com.google.common.collect.Maps;
 public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 
 	/**
-	 * The non-thread-safe implementation.
+	 * The non-thread-safe implementation. Each thread reuses its own instance
+	 * (and scanner), see getImplementation().
 	 *
 	 */
 	static class TokenizerImplementation implements ITokenizer {
@@ -49,6 +51,14 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 
 		WhitespaceToTokenConverter whitespaceConverter = new WhitespaceToTokenConverter();
 
+		private final transient PublicScanner scanner = new PublicScanner();
+
+		TokenizerImplementation() {
+			scanner.tokenizeWhiteSpace = true;
+			scanner.recordLineSeparator = true;
+			scanner.tokenizeComments = true;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 *
@@ -181,12 +191,24 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 		@Override
 		public List<FullToken> getTokenListFromCode(final File codeFile)
 				throws IOException {
-			return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-					.toCharArray());
+			return getTokenListFromCode(SourceReader.readChars(codeFile));
 		}
 
 		public List<WhitespaceAnnotatedToken> getTokensWithWidthData(
 				final char[] code) {
+			return getTokensWithWidthData(code, new LineIndex(code));
+		}
+
+		/**
+		 * Return the tokens annotated with their column and width, using an
+		 * existing line index of the code.
+		 *
+		 * @param code
+		 * @param lineIndex
+		 * @return
+		 */
+		public List<WhitespaceAnnotatedToken> getTokensWithWidthData(
+				final char[] code, final LineIndex lineIndex) {
 			final List<WhitespaceAnnotatedToken> tokens = Lists.newArrayList();
 			tokens.add(new WhitespaceAnnotatedToken(SENTENCE_START,
 					SENTENCE_START, 0, 0));
@@ -200,12 +222,9 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 					for (final String cToken : getConvertedToken(scanner, token)) {
 						final int currentPosition = scanner
 								.getCurrentTokenStartPosition();
-						final int currentLine = scanner
-								.getLineNumber(currentPosition);
-						final int lineStart = scanner.getLineStart(currentLine);
 						tokens.add(new WhitespaceAnnotatedToken(cToken, "",
-								currentPosition - lineStart, scanner
-								.getCurrentTokenString().length()));
+								lineIndex.getLineOffset(currentPosition),
+								scanner.getCurrentTokenString().length()));
 					}
 				} catch (final InvalidInputException e) {
 					LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
@@ -217,15 +236,15 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 		}
 
 		/**
+		 * Reset the (reused) scanner and the whitespace converter for the
+		 * given code.
+		 *
 		 * @param code
 		 * @return
 		 */
 		private PublicScanner prepareScanner(final char[] code) {
-			final PublicScanner scanner = new PublicScanner();
 			scanner.setSource(code);
-			scanner.tokenizeWhiteSpace = true;
-			scanner.recordLineSeparator = true;
-			scanner.tokenizeComments = true;
+			scanner.resetTo(0, code.length - 1);
 			whitespaceConverter = new WhitespaceToTokenConverter();
 			return scanner;
 		}
@@ -262,8 +281,7 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 		@Override
 		public List<String> tokenListFromCode(final File codeFile)
 				throws IOException {
-			return tokenListFromCode(FileUtils.readFileToString(codeFile)
-					.toCharArray());
+			return tokenListFromCode(SourceReader.readChars(codeFile));
 		}
 
 		/*
@@ -305,12 +323,24 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 		@Override
 		public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 				throws IOException {
-			return fullTokenListWithPos(FileUtils.readFileToString(file)
-					.toCharArray());
+			return fullTokenListWithPos(SourceReader.readChars(file));
 		}
 
 		public SortedMap<Integer, WhitespaceAnnotatedToken> tokenListWithPosAndWidth(
 				final char[] code) {
+			return tokenListWithPosAndWidth(code, new LineIndex(code));
+		}
+
+		/**
+		 * Return the tokens annotated with their column and width, keyed by
+		 * their position, using an existing line index of the code.
+		 *
+		 * @param code
+		 * @param lineIndex
+		 * @return
+		 */
+		public SortedMap<Integer, WhitespaceAnnotatedToken> tokenListWithPosAndWidth(
+				final char[] code, final LineIndex lineIndex) {
 			final SortedMap<Integer, WhitespaceAnnotatedToken> tokens = Maps
 					.newTreeMap();
 			tokens.put(-1, new WhitespaceAnnotatedToken(SENTENCE_START,
@@ -323,23 +353,19 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 				do {
 					try {
 						final int token = scanner.getNextToken();
-						final int currentPosition = scanner
-								.getCurrentTokenStartPosition();
-						final int currentLine = scanner
-								.getLineNumber(currentPosition);
-						final int lineStart = scanner.getLineStart(currentLine);
-						final int position = scanner
-								.getCurrentTokenStartPosition();
 						if (token == ITerminalSymbols.TokenNameEOF) {
 							break;
 						}
+						final int position = scanner
+								.getCurrentTokenStartPosition();
+						final int column = lineIndex.getLineOffset(position);
 						int i = 0;
 						final List<String> cTokens = getConvertedToken(scanner,
 								token);
 						for (final String cToken : cTokens) {
 							tokens.put(position + i,
 									new WhitespaceAnnotatedToken(cToken, "",
-											currentPosition - lineStart,
+											column,
 											scanner.getCurrentTokenString()
 											.length()));
 							i++;
@@ -391,84 +417,95 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 	private static final Logger LOGGER = Logger
 			.getLogger(JavaWhitespaceTokenizer.class.getName());
 
+	private static final ThreadLocal<TokenizerImplementation> IMPLEMENTATIONS = ThreadLocal
+			.withInitial(TokenizerImplementation::new);
+
+	/**
+	 * Return the implementation of the current thread. It is reset at the
+	 * start of each tokenization, so it can be reused across calls (but not
+	 * across threads).
+	 *
+	 * @return
+	 */
+	static TokenizerImplementation getImplementation() {
+		return IMPLEMENTATIONS.get();
+	}
+
 	@Override
 	public SortedMap<Integer, FullToken> fullTokenListWithPos(final char[] code) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.fullTokenListWithPos(code);
 	}
 
 	@Override
 	public AbstractFileFilter getFileFilter() {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.getFileFilter();
 	}
 
 	@Override
 	public String getIdentifierType() {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.getIdentifierType();
 	}
 
 	@Override
 	public Collection<String> getKeywordTypes() {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.getKeywordTypes();
 	}
 
 	@Override
 	public Collection<String> getLiteralTypes() {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.getLiteralTypes();
 	}
 
 	@Override
 	public FullToken getTokenFromString(final String token) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.getTokenFromString(token);
 	}
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final char[] code) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.getTokenListFromCode(code);
 	}
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	public List<WhitespaceAnnotatedToken> getTokensWithWidthData(
 			final char[] code) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.getTokensWithWidthData(code);
 	}
 
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.tokenListFromCode(code);
 	}
 
 	@Override
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		return tok.tokenListWithPos(code);
 	}
 
 	@Override
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+		return fullTokenListWithPos(SourceReader.readChars(file));
 	}
 }
@@ -45,7 +45,7 @@ public class JavaWidthAnnotatedWhitespaceTokenizer extends
 
 	@Override
 	public SortedMap<Integer, FullToken> fullTokenListWithPos(final char[] code) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		final SortedMap<Integer, WhitespaceAnnotatedToken> annotatedTokens = tok
 				.tokenListWithPosAndWidth(code);
 		final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
@@ -66,7 +66,7 @@ public class JavaWidthAnnotatedWhitespaceTokenizer extends
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final char[] code) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		final List<WhitespaceAnnotatedToken> annotatedTokens = tok
 				.getTokensWithWidthData(code);
 		final List<FullToken> tokens = Lists.newArrayList();
@@ -83,7 +83,7 @@ public class JavaWidthAnnotatedWhitespaceTokenizer extends
 
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		final List<WhitespaceAnnotatedToken> annotatedTokens = tok
 				.getTokensWithWidthData(code);
 		final List<String> tokens = Lists.newArrayList();
@@ -99,7 +99,7 @@ public class JavaWidthAnnotatedWhitespaceTokenizer extends
 
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
-		final TokenizerImplementation tok = new TokenizerImplementation();
+		final TokenizerImplementation tok = getImplementation();
 		final SortedMap<Integer, WhitespaceAnnotatedToken> annotatedTokens = tok
 				.tokenListWithPosAndWidth(code);
 		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
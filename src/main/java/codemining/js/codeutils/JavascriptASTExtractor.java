@@ -5,19 +5,18 @@ package codemining.js.codeutils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Hashtable;
-import java.util.Map;
 
-import org.apache.commons.io.FileUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.wst.jsdt.core.JavaScriptCore;
-import org.eclipse.wst.jsdt.core.dom.AST;
 import org.eclipse.wst.jsdt.core.dom.ASTNode;
 import org.eclipse.wst.jsdt.core.dom.ASTParser;
 import org.eclipse.wst.jsdt.core.dom.ASTVisitor;
 import org.eclipse.wst.jsdt.core.dom.FunctionDeclaration;
 import org.eclipse.wst.jsdt.core.dom.JavaScriptUnit;
 
+import codemining.languagetools.GuardedParser;
 import codemining.languagetools.ParseType;
+import codemining.languagetools.SourceReader;
 
 /**
  * A utility class to retrieve an Eclipse AST.
@@ -44,6 +43,8 @@ public class JavascriptASTExtractor {
 
 	private final boolean useJavadocs;
 
+	private final JavascriptParserFactory parserFactory;
+
 	/**
 	 * Constructor.
 	 * 
@@ -51,14 +52,15 @@ public class JavascriptASTExtractor {
 	 *            calculate bindings on the extracted AST.
 	 */
 	public JavascriptASTExtractor(final boolean useBindings) {
-		this.useBindings = useBindings;
-		useJavadocs = false;
+		this(useBindings, false);
 	}
 
 	public JavascriptASTExtractor(final boolean useBindings,
 			final boolean useJavadocs) {
 		this.useBindings = useBindings;
 		this.useJavadocs = useJavadocs;
+		parserFactory = JavascriptParserFactory.getFactory(useBindings,
+				useJavadocs, JavaScriptCore.VERSION_1_7);
 	}
 
 	/**
@@ -70,38 +72,61 @@ public class JavascriptASTExtractor {
 	 * @throws IOException
 	 */
 	public final JavaScriptUnit getAST(final File file) throws IOException {
-		final String sourceFile = FileUtils.readFileToString(file);
-		final ASTParser parser = ASTParser.newParser(AST.JLS3);
-		parser.setKind(ASTParser.K_COMPILATION_UNIT);
-
-		final Map<String, String> options = new Hashtable<String, String>();
-		options.put(JavaScriptCore.COMPILER_CODEGEN_TARGET_PLATFORM,
-				JavaScriptCore.VERSION_1_7);
-		options.put(JavaScriptCore.COMPILER_SOURCE, JavaScriptCore.VERSION_1_7);
-		if (useJavadocs) {
-			options.put(JavaScriptCore.COMPILER_DOC_COMMENT_SUPPORT,
-					JavaScriptCore.ENABLED);
-		}
-		parser.setCompilerOptions(options);
-		parser.setSource(sourceFile.toCharArray()); // set source
-		parser.setResolveBindings(useBindings);
-		parser.setBindingsRecovery(useBindings);
-
-		parser.setStatementsRecovery(true);
-
-		parser.setUnitName(file.getAbsolutePath());
+		return getAST(file, SourceReader.readChars(file), null);
+	}
 
-		// FIXME Need file's project loaded into Eclipse to get bindings
-		// which is only possible automatically if this were an Eclipse plugin
-		// cf. https://bugs.eclipse.org/bugs/show_bug.cgi?id=206391
-		// final IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
-		// final IProject project = root.getProject(projectName);
-		// parser.setProject(JavaScriptCore.create(project));
+	/**
+	 * Get the AST of a file whose source code has already been read (e.g. to
+	 * share it with a tokenizer), so that the file is not read again.
+	 * 
+	 * @param file
+	 * @param source
+	 *            the contents of the file, as read by SourceReader.
+	 * @return the compilation unit of the file
+	 */
+	public final JavaScriptUnit getAST(final File file, final char[] source) {
+		return getAST(file, source, null);
+	}
 
-		final JavaScriptUnit compilationUnit = (JavaScriptUnit) parser
-				.createAST(null);
+	/**
+	 * Get the AST of a file, guarded against pathological files (see
+	 * GuardedParser).
+	 * 
+	 * @param file
+	 * @param guard
+	 * @return the compilation unit of the file, or null if the file has been
+	 *         quarantined.
+	 */
+	public final JavaScriptUnit getAST(final File file,
+			final GuardedParser guard) {
+		return guard.parse(file,
+				(source, monitor) -> getAST(file, source, monitor));
+	}
 
-		return compilationUnit;
+	/**
+	 * Parse the source of the file.
+	 */
+	private JavaScriptUnit getAST(final File file, final char[] sourceFile,
+			final IProgressMonitor monitor) {
+		final ASTParser parser = parserFactory
+				.acquire(ASTParser.K_COMPILATION_UNIT);
+		try {
+			parser.setSource(sourceFile); // set source
+			parser.setUnitName(file.getAbsolutePath());
+
+			// FIXME Need file's project loaded into Eclipse to get bindings
+			// which is only possible automatically if this were an Eclipse
+			// plugin
+			// cf. https://bugs.eclipse.org/bugs/show_bug.cgi?id=206391
+			// final IWorkspaceRoot root =
+			// ResourcesPlugin.getWorkspace().getRoot();
+			// final IProject project = root.getProject(projectName);
+			// parser.setProject(JavaScriptCore.create(project));
+
+			return (JavaScriptUnit) parser.createAST(monitor);
+		} finally {
+			parserFactory.release(parser);
+		}
 	}
 
 	/**
@@ -124,7 +149,6 @@ public class JavascriptASTExtractor {
 	 */
 	public final ASTNode getASTNode(final char[] content,
 			final ParseType parseType) {
-		final ASTParser parser = ASTParser.newParser(AST.JLS3);
 		final int astKind;
 		switch (parseType) {
 		case CLASS_BODY:
@@ -143,28 +167,11 @@ public class JavascriptASTExtractor {
 		default:
 			astKind = ASTParser.K_COMPILATION_UNIT;
 		}
-		parser.setKind(astKind);
-
-		final Map<String, String> options = new Hashtable<String, String>();
-		options.put(JavaScriptCore.COMPILER_CODEGEN_TARGET_PLATFORM,
-				JavaScriptCore.VERSION_1_7);
-		options.put(JavaScriptCore.COMPILER_SOURCE, JavaScriptCore.VERSION_1_7);
-		if (useJavadocs) {
-			options.put(JavaScriptCore.COMPILER_DOC_COMMENT_SUPPORT,
-					JavaScriptCore.ENABLED);
-		}
-		parser.setCompilerOptions(options);
-		parser.setSource(content); // set source
-		parser.setResolveBindings(useBindings);
-		parser.setBindingsRecovery(useBindings);
-
-		parser.setStatementsRecovery(true);
-
+		final ASTNode node = parserFactory.parse(content, astKind);
 		if (parseType != ParseType.METHOD) {
-			return parser.createAST(null);
+			return node;
 		} else {
-			final ASTNode cu = parser.createAST(null);
-			return getFirstFunctionDeclaration(cu);
+			return getFirstFunctionDeclaration(node);
 		}
 	}
 
@@ -0,0 +1,105 @@
+/**
+ *
+ */
+package codemining.js.codeutils;
+
+import org.eclipse.wst.jsdt.core.dom.ASTNode;
+import org.eclipse.wst.jsdt.core.dom.ASTVisitor;
+import org.eclipse.wst.jsdt.core.dom.Assignment;
+import org.eclipse.wst.jsdt.core.dom.BooleanLiteral;
+import org.eclipse.wst.jsdt.core.dom.CharacterLiteral;
+import org.eclipse.wst.jsdt.core.dom.InfixExpression;
+import org.eclipse.wst.jsdt.core.dom.NumberLiteral;
+import org.eclipse.wst.jsdt.core.dom.PostfixExpression;
+import org.eclipse.wst.jsdt.core.dom.PrefixExpression;
+import org.eclipse.wst.jsdt.core.dom.RegularExpressionLiteral;
+import org.eclipse.wst.jsdt.core.dom.SimpleName;
+import org.eclipse.wst.jsdt.core.dom.StringLiteral;
+
+import codemining.languagetools.CompactAst;
+
+/**
+ * Convert a JSDT AST into a CompactAst. The node types are the JSDT node types
+ * (e.g. ASTNode.SIMPLE_NAME), the roles are the ids of the structural
+ * properties (e.g. "name") and the labels are the identifiers of the names,
+ * the literals and the operators.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class JavascriptCompactAstConverter {
+
+	private static final class Converter extends ASTVisitor {
+
+		final CompactAst.Builder builder = new CompactAst.Builder();
+
+		@Override
+		public void postVisit(final ASTNode node) {
+			builder.exit();
+		}
+
+		@Override
+		public void preVisit(final ASTNode node) {
+			final String role = node.getLocationInParent() == null ? null
+					: node.getLocationInParent().getId();
+			builder.enter(node.getNodeType(), node.getStartPosition(),
+					node.getLength(), role, getLabel(node));
+		}
+
+	}
+
+	/**
+	 * Convert the AST (or a part of it) to a CompactAst.
+	 *
+	 * @param node
+	 *            the root of the AST
+	 * @param source
+	 *            the source code of the AST, to keep in the CompactAst, or
+	 *            null
+	 * @return
+	 */
+	public static CompactAst convert(final ASTNode node, final char[] source) {
+		final Converter converter = new Converter();
+		node.accept(converter);
+		return converter.builder.build(source);
+	}
+
+	/**
+	 * Return the name or literal of the node, or null.
+	 */
+	private static String getLabel(final ASTNode node) {
+		switch (node.getNodeType()) {
+		case ASTNode.SIMPLE_NAME:
+			return ((SimpleName) node).getIdentifier();
+		case ASTNode.STRING_LITERAL:
+			return ((StringLiteral) node).getEscapedValue();
+		case ASTNode.NUMBER_LITERAL:
+			return ((NumberLiteral) node).getToken();
+		case ASTNode.CHARACTER_LITERAL:
+			return ((CharacterLiteral) node).getEscapedValue();
+		case ASTNode.REGULAR_EXPRESSION_LITERAL:
+			return ((RegularExpressionLiteral) node).getRegularExpression();
+		case ASTNode.BOOLEAN_LITERAL:
+			return Boolean.toString(((BooleanLiteral) node).booleanValue());
+		case ASTNode.NULL_LITERAL:
+			return "null";
+		case ASTNode.UNDEFINED_LITERAL:
+			return "undefined";
+		case ASTNode.INFIX_EXPRESSION:
+			return ((InfixExpression) node).getOperator().toString();
+		case ASTNode.PREFIX_EXPRESSION:
+			return ((PrefixExpression) node).getOperator().toString();
+		case ASTNode.POSTFIX_EXPRESSION:
+			return ((PostfixExpression) node).getOperator().toString();
+		case ASTNode.ASSIGNMENT:
+			return ((Assignment) node).getOperator().toString();
+		default:
+			return null;
+		}
+	}
+
+	private JavascriptCompactAstConverter() {
+		// No instantiations.
+	}
+
+}
@@ -0,0 +1,124 @@
+/**
+ *
+ */
+package codemining.js.codeutils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.wst.jsdt.core.JavaScriptCore;
+import org.eclipse.wst.jsdt.core.dom.AST;
+import org.eclipse.wst.jsdt.core.dom.ASTNode;
+import org.eclipse.wst.jsdt.core.dom.ASTParser;
+
+import codemining.languagetools.ScannerPool;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A factory of preconfigured JSDT parsers, one per configuration (bindings,
+ * javadocs and source level). Each configuration builds its compiler options
+ * once, as an immutable map, and reuses one parser per thread.
+ *
+ * ASTParser.createAST() resets the parser to its defaults, so acquire()
+ * reconfigures the parser every time.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class JavascriptParserFactory {
+
+	private static final Map<String, JavascriptParserFactory> FACTORIES = new ConcurrentHashMap<String, JavascriptParserFactory>();
+
+	/**
+	 * Return the (shared) factory of the given configuration.
+	 *
+	 * @param useBindings
+	 * @param useJavadocs
+	 * @param sourceLevel
+	 *            e.g. JavaScriptCore.VERSION_1_7
+	 * @return
+	 */
+	public static JavascriptParserFactory getFactory(
+			final boolean useBindings, final boolean useJavadocs,
+			final String sourceLevel) {
+		return FACTORIES.computeIfAbsent(useBindings + "," + useJavadocs + ","
+				+ sourceLevel, key -> new JavascriptParserFactory(useBindings,
+				useJavadocs, sourceLevel));
+	}
+
+	private final boolean useBindings;
+
+	private final Map<String, String> compilerOptions;
+
+	private final ScannerPool<ASTParser> parsers = new ScannerPool<ASTParser>(
+			() -> ASTParser.newParser(AST.JLS3));
+
+	private JavascriptParserFactory(final boolean useBindings,
+			final boolean useJavadocs, final String sourceLevel) {
+		this.useBindings = useBindings;
+		final ImmutableMap.Builder<String, String> options = ImmutableMap
+				.builder();
+		options.put(JavaScriptCore.COMPILER_CODEGEN_TARGET_PLATFORM,
+				sourceLevel);
+		options.put(JavaScriptCore.COMPILER_SOURCE, sourceLevel);
+		if (useJavadocs) {
+			options.put(JavaScriptCore.COMPILER_DOC_COMMENT_SUPPORT,
+					JavaScriptCore.ENABLED);
+		}
+		compilerOptions = options.build();
+	}
+
+	/**
+	 * Return a parser of the given kind, configured with the options of this
+	 * factory and statements recovery. The parser must be returned with
+	 * release(), after createAST().
+	 *
+	 * @param kind
+	 *            the kind of the parser, e.g. ASTParser.K_COMPILATION_UNIT
+	 * @return
+	 */
+	public ASTParser acquire(final int kind) {
+		final ASTParser parser = parsers.acquire();
+		parser.setKind(kind);
+		parser.setCompilerOptions(compilerOptions);
+		parser.setResolveBindings(useBindings);
+		parser.setBindingsRecovery(useBindings);
+		parser.setStatementsRecovery(true);
+		return parser;
+	}
+
+	/**
+	 * @return the (immutable) compiler options of this factory.
+	 */
+	public Map<String, String> getCompilerOptions() {
+		return compilerOptions;
+	}
+
+	/**
+	 * Parse the source with a parser of the given kind.
+	 *
+	 * @param source
+	 * @param kind
+	 * @return
+	 */
+	public ASTNode parse(final char[] source, final int kind) {
+		final ASTParser parser = acquire(kind);
+		try {
+			parser.setSource(source);
+			return parser.createAST(null);
+		} finally {
+			release(parser);
+		}
+	}
+
+	/**
+	 * Return a parser obtained by acquire() to the pool.
+	 *
+	 * @param parser
+	 */
+	public void release(final ASTParser parser) {
+		parsers.release(parser);
+	}
+
+}
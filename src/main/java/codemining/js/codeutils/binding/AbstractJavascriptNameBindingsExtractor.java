@@ -9,12 +9,15 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.eclipse.wst.jsdt.core.dom.ASTNode;
 
 import codemining.js.codeutils.JavascriptASTExtractor;
 import codemining.js.codeutils.JavascriptTokenizer;
+import codemining.languagetools.SourceReader;
+import codemining.languagetools.TokenizedSource;
 import codemining.languagetools.bindings.AbstractNameBindingsExtractor;
 import codemining.languagetools.bindings.ResolvedSourceCode;
 import codemining.languagetools.bindings.TokenNameBinding;
@@ -23,6 +26,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 
 /**
  * A name bindings extractor interface for Javascript.
@@ -33,6 +37,11 @@ import com.google.common.collect.Sets;
 public abstract class AbstractJavascriptNameBindingsExtractor extends
 		AbstractNameBindingsExtractor {
 
+	private static final Logger LOGGER = Logger
+			.getLogger(AbstractJavascriptNameBindingsExtractor.class.getName());
+
+	private static final JavascriptTokenizer TOKENIZER = new JavascriptTokenizer();
+
 	public static Set<String> getFeatures(final Set<ASTNode> boundAstNodes) {
 		// TODO
 		return Collections.emptySet();
@@ -40,30 +49,42 @@ public abstract class AbstractJavascriptNameBindingsExtractor extends
 
 	public static ResolvedSourceCode getResolvedSourceCode(
 			final String sourceCode, final Set<Set<ASTNode>> nodeBindings) {
-		final JavascriptTokenizer tokenizer = new JavascriptTokenizer();
-		final SortedMap<Integer, String> tokenPositions = tokenizer
-				.tokenListWithPos(sourceCode.toCharArray());
-		final SortedMap<Integer, Integer> positionToIndex = getTokenIndexForPostion(tokenPositions);
-		final List<String> tokens = Lists.newArrayList(tokenPositions.values());
+		return getResolvedSourceCode(tokenize(sourceCode.toCharArray()),
+				nodeBindings);
+	}
+
+	/**
+	 * Get the resolved source code, given the (already) tokenized source
+	 * code from which the bound nodes have been extracted.
+	 *
+	 * @param tokenizedSource
+	 * @param nodeBindings
+	 * @return
+	 */
+	public static ResolvedSourceCode getResolvedSourceCode(
+			final TokenizedSource tokenizedSource,
+			final Set<Set<ASTNode>> nodeBindings) {
+		final List<String> tokens = Lists.newArrayList(tokenizedSource
+				.getTokenList());
 
 		final ArrayListMultimap<String, TokenNameBinding> bindings = ArrayListMultimap
 				.create();
 
+		final AtomicInteger unaligned = new AtomicInteger();
 		for (final Set<ASTNode> boundName : nodeBindings) {
 			if (boundName.isEmpty()) {
 				continue;
 			}
-			final List<Integer> boundPositions = Lists.newArrayList();
-			for (final ASTNode name : boundName) {
-				// Convert position to token index and add
-				final int tokenIdx = positionToIndex.get(name
-						.getStartPosition());
-				boundPositions.add(tokenIdx);
+			final List<Integer> boundPositions = getTokenIndexes(
+					tokenizedSource, boundName, unaligned);
+			if (boundPositions.isEmpty()) {
+				continue;
 			}
 			bindings.put(tokens.get(boundPositions.get(0)),
 					new TokenNameBinding(Sets.newTreeSet(boundPositions),
 							tokens, getFeatures(boundName)));
 		}
+		logUnaligned(unaligned.get());
 
 		return new ResolvedSourceCode(tokens, bindings);
 	}
@@ -78,35 +99,86 @@ public abstract class AbstractJavascriptNameBindingsExtractor extends
 	 */
 	public static List<TokenNameBinding> getTokenBindings(
 			final String sourceCode, final Set<Set<ASTNode>> nodeBindings) {
-		final JavascriptTokenizer tokenizer = new JavascriptTokenizer();
-		final SortedMap<Integer, String> tokenPositions = tokenizer
-				.tokenListWithPos(sourceCode.toCharArray());
-		final SortedMap<Integer, Integer> positionToIndex = getTokenIndexForPostion(tokenPositions);
-		final List<String> tokens = Lists.newArrayList(tokenPositions.values());
+		return getTokenBindings(tokenize(sourceCode.toCharArray()),
+				nodeBindings);
+	}
+
+	/**
+	 * Get the token bindings given the ASTNode bindings and the tokenized
+	 * source code. The bound nodes that do not start at a token are skipped,
+	 * and a binding is dropped if it has nodes but none of them starts at a
+	 * token. Empty bindings are kept.
+	 *
+	 * @param tokenizedSource
+	 * @param nodeBindings
+	 * @return
+	 */
+	public static List<TokenNameBinding> getTokenBindings(
+			final TokenizedSource tokenizedSource,
+			final Set<Set<ASTNode>> nodeBindings) {
+		final List<String> tokens = Lists.newArrayList(tokenizedSource
+				.getTokenList());
 
 		final List<TokenNameBinding> bindings = Lists.newArrayList();
 
+		final AtomicInteger unaligned = new AtomicInteger();
 		for (final Set<ASTNode> boundName : nodeBindings) {
-			final List<Integer> boundPositions = Lists.newArrayList();
-			for (final ASTNode name : boundName) {
-				// Convert position to token index and add
-				final int tokenIdx = positionToIndex.get(name
-						.getStartPosition());
-				boundPositions.add(tokenIdx);
+			final List<Integer> boundPositions = getTokenIndexes(
+					tokenizedSource, boundName, unaligned);
+			if (boundPositions.isEmpty() && !boundName.isEmpty()) {
+				continue; // None of the nodes is aligned with the tokens
 			}
 			bindings.add(new TokenNameBinding(Sets.newTreeSet(boundPositions),
 					tokens, getFeatures(boundName)));
 		}
+		logUnaligned(unaligned.get());
 
 		return bindings;
 	}
 
+	/**
+	 * Convert the positions of the given nodes to token indexes. The nodes
+	 * that do not start at a token are skipped and counted.
+	 *
+	 * @param tokenizedSource
+	 * @param nodes
+	 * @param unaligned
+	 *            the number of skipped nodes so far
+	 * @return
+	 */
+	private static List<Integer> getTokenIndexes(
+			final TokenizedSource tokenizedSource, final Set<ASTNode> nodes,
+			final AtomicInteger unaligned) {
+		final int[] positions = new int[nodes.size()];
+		int i = 0;
+		for (final ASTNode name : nodes) {
+			positions[i] = name.getStartPosition();
+			i++;
+		}
+		return Ints.asList(tokenizedSource.getTokenIndexes(positions,
+				position -> unaligned.incrementAndGet()));
+	}
+
+	/**
+	 * Log (once per file) the number of bound nodes that were skipped
+	 * because they do not start at a token.
+	 */
+	private static void logUnaligned(final int unaligned) {
+		if (unaligned > 0) {
+			LOGGER.warning(unaligned
+					+ " bound nodes do not start at a token and were ignored");
+		}
+	}
+
 	/**
 	 * Return the token index for the given position.
 	 *
 	 * @param sourceCode
 	 * @return
+	 * @deprecated use {@link TokenizedSource#getTokenIndex(int)}, which does
+	 *             not build a map.
 	 */
+	@Deprecated
 	protected static SortedMap<Integer, Integer> getTokenIndexForPostion(
 			final SortedMap<Integer, String> tokenPositions) {
 		final SortedMap<Integer, Integer> positionToIndex = Maps.newTreeMap();
@@ -118,6 +190,17 @@ public abstract class AbstractJavascriptNameBindingsExtractor extends
 		return positionToIndex;
 	}
 
+	/**
+	 * Tokenize the source code once, to be used for all the bindings.
+	 *
+	 * @param code
+	 * @return
+	 */
+	private static TokenizedSource tokenize(final char[] code) {
+		return TokenizedSource.fromTokens(code,
+				TOKENIZER.tokenListWithPos(code));
+	}
+
 	protected JavascriptASTExtractor createExtractor() {
 		return new JavascriptASTExtractor(false);
 	}
@@ -150,8 +233,10 @@ public abstract class AbstractJavascriptNameBindingsExtractor extends
 	@Override
 	public List<TokenNameBinding> getNameBindings(final File f)
 			throws IOException {
+		final char[] source = SourceReader.readChars(f);
 		final JavascriptASTExtractor ex = createExtractor();
-		return getNameBindings(ex.getAST(f), FileUtils.readFileToString(f));
+		return getTokenBindings(tokenize(source),
+				getNameBindings(ex.getAST(f, source)));
 	}
 
 	@Override
@@ -167,9 +252,11 @@ public abstract class AbstractJavascriptNameBindingsExtractor extends
 	@Override
 	public ResolvedSourceCode getResolvedSourceCode(final File f)
 			throws IOException {
+		// Read the file once and share its source with the tokenizer
+		final char[] source = SourceReader.readChars(f);
 		final JavascriptASTExtractor ex = createExtractor();
-		return getResolvedSourceCode(FileUtils.readFileToString(f),
-				getNameBindings(ex.getAST(f)));
+		return getResolvedSourceCode(tokenize(source),
+				getNameBindings(ex.getAST(f, source)));
 	}
 
 	@Override
@@ -8,14 +8,13 @@ import java.io.IOException;
 import java.util.List;
 import java.util.SortedMap;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.SourceReader;
+import codemining.languagetools.TokenStream;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.threecrickets.jygments.ResolutionException;
 import com.threecrickets.jygments.grammar.Lexer;
 import com.threecrickets.jygments.grammar.Token;
@@ -57,12 +56,21 @@ public abstract class AbstractJygmentsTokenizer implements ITokenizer {
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	public abstract String getTokenString(final Token tok);
 
+	/**
+	 * Return the type of the token, as it appears in a FullToken.
+	 *
+	 * @param tok
+	 * @return
+	 */
+	protected String getTokenTypeString(final Token tok) {
+		return tok.getType().getName();
+	}
+
 	/**
 	 * @param tok
 	 * @return
@@ -85,24 +93,13 @@ public abstract class AbstractJygmentsTokenizer implements ITokenizer {
 	 */
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
-		final Iterable<Token> tokens = lexer.getTokens(new String(code));
-		final List<String> toks = Lists.newArrayList();
-		toks.add(SENTENCE_START);
-		for (final Token tok : tokens) {
-			if (isProgramToken(tok)) {
-				continue;
-			}
-			toks.add(getTokenString(tok));
-		}
-		toks.add(SENTENCE_END);
-		return toks;
+		return tokenize(code).toTokenList();
 	}
 
 	@Override
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -112,17 +109,30 @@ public abstract class AbstractJygmentsTokenizer implements ITokenizer {
 	 */
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+		return tokenize(code).toTokenPositionMap();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see codemining.languagetools.ITokenizer#tokenize(char[])
+	 */
+	@Override
+	public TokenStream tokenize(final char[] code) {
 		final Iterable<Token> tokens = lexer.getTokens(new String(code));
-		final SortedMap<Integer, String> tokensWithPos = Maps.newTreeMap();
-		tokensWithPos.put(-1, SENTENCE_START);
-		tokensWithPos.put(Integer.MAX_VALUE, SENTENCE_END);
+		final TokenStream stream = new TokenStream(code, code.length / 4);
 		for (final Token tok : tokens) {
 			if (isProgramToken(tok)) {
 				continue;
 			}
-			tokensWithPos.put(tok.getPos(), getTokenString(tok));
+			final int start = tok.getPos();
+			final int end = Math.min(start + tok.getValue().length(),
+					code.length);
+			// The lexer has already materialized the token values
+			stream.add(getTokenTypeString(tok), start, end,
+					getTokenString(tok));
 		}
-		return tokensWithPos;
+		return stream;
 	}
 
 }
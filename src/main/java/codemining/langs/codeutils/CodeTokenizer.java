@@ -9,10 +9,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.SortedMap;
 
-import org.apache.commons.io.FileUtils;
+import codemining.languagetools.SourceReader;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.threecrickets.jygments.ResolutionException;
 import com.threecrickets.jygments.grammar.Token;
 import com.threecrickets.jygments.grammar.TokenType;
@@ -37,19 +36,7 @@ public class CodeTokenizer extends AbstractJygmentsTokenizer {
 
 	@Override
 	public SortedMap<Integer, FullToken> fullTokenListWithPos(final char[] code) {
-		final Iterable<Token> tokens = lexer.getTokens(new String(code));
-		final SortedMap<Integer, FullToken> tokensWithPos = Maps.newTreeMap();
-		tokensWithPos.put(-1, new FullToken(SENTENCE_START, SENTENCE_START));
-		tokensWithPos.put(Integer.MAX_VALUE, new FullToken(SENTENCE_END,
-				SENTENCE_END));
-		for (final Token tok : tokens) {
-			if (isProgramToken(tok)) {
-				continue;
-			}
-			tokensWithPos.put(tok.getPos(), new FullToken(getTokenString(tok),
-					tok.getType().getName()));
-		}
-		return tokensWithPos;
+		return tokenize(code).toFullTokenPositionMap();
 	}
 
 	@Override
@@ -74,24 +61,13 @@ public class CodeTokenizer extends AbstractJygmentsTokenizer {
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final char[] code) {
-		final Iterable<Token> tokens = lexer.getTokens(new String(code));
-		final List<FullToken> toks = Lists.newArrayList();
-		toks.add(new FullToken(SENTENCE_START, SENTENCE_START));
-		for (final Token tok : tokens) {
-			if (isProgramToken(tok)) {
-				continue;
-			}
-			toks.add(new FullToken(getTokenString(tok), tok.getType().getName()));
-		}
-		toks.add(new FullToken(SENTENCE_END, SENTENCE_END));
-		return toks;
+		return tokenize(code).toFullTokenList();
 	}
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
 	/*
@@ -108,8 +84,7 @@ public class CodeTokenizer extends AbstractJygmentsTokenizer {
 	@Override
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+		return fullTokenListWithPos(SourceReader.readChars(file));
 	}
 
 }
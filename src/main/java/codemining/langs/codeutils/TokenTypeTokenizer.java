@@ -9,10 +9,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.SortedMap;
 
-import org.apache.commons.io.FileUtils;
+import codemining.languagetools.SourceReader;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.threecrickets.jygments.ResolutionException;
 import com.threecrickets.jygments.grammar.Token;
 
@@ -37,19 +35,7 @@ public class TokenTypeTokenizer extends AbstractJygmentsTokenizer {
 
 	@Override
 	public SortedMap<Integer, FullToken> fullTokenListWithPos(final char[] code) {
-		final Iterable<Token> tokens = lexer.getTokens(new String(code));
-		final SortedMap<Integer, FullToken> tokensWithPos = Maps.newTreeMap();
-		tokensWithPos.put(-1, new FullToken(SENTENCE_START, SENTENCE_START));
-		tokensWithPos.put(Integer.MAX_VALUE, new FullToken(SENTENCE_END,
-				SENTENCE_END));
-		for (final Token tok : tokens) {
-			if (isProgramToken(tok)) {
-				continue;
-			}
-			tokensWithPos.put(tok.getPos(), new FullToken(getTokenString(tok),
-					""));
-		}
-		return tokensWithPos;
+		return tokenize(code).toFullTokenPositionMap();
 	}
 
 	@Override
@@ -74,17 +60,12 @@ public class TokenTypeTokenizer extends AbstractJygmentsTokenizer {
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final char[] code) {
-		final Iterable<Token> tokens = lexer.getTokens(new String(code));
-		final List<FullToken> toks = Lists.newArrayList();
-		toks.add(new FullToken(SENTENCE_START, SENTENCE_START));
-		for (final Token tok : tokens) {
-			if (isProgramToken(tok)) {
-				continue;
-			}
-			toks.add(new FullToken(tok.getType().getName(), ""));
-		}
-		toks.add(new FullToken(SENTENCE_END, SENTENCE_END));
-		return toks;
+		return tokenize(code).toFullTokenList();
+	}
+
+	@Override
+	protected String getTokenTypeString(final Token tok) {
+		return "";
 	}
 
 	/*
@@ -101,8 +82,7 @@ public class TokenTypeTokenizer extends AbstractJygmentsTokenizer {
 	@Override
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+		return fullTokenListWithPos(SourceReader.readChars(file));
 	}
 
 }
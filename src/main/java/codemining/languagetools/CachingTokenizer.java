@@ -0,0 +1,691 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.filefilter.AbstractFileFilter;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A tokenizer that caches the output of another tokenizer on disk. Entries
+ * are keyed by a SHA-256 hash of the code, the tokenizer class and its
+ * configuration (its serialized form) and the requested view, so unchanged
+ * code is never scanned again, even across runs.
+ *
+ * The cache directory may be shared by concurrent processes: entries are
+ * written to a temporary file and atomically renamed, and eviction is
+ * serialized through a file lock. When the cache grows beyond its size
+ * bound, the least recently used entries (by modification time, which is
+ * updated on every hit) are evicted.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CachingTokenizer implements ITokenizer {
+
+	/**
+	 * Reads a cached view from the contents of an entry.
+	 */
+	private interface EntryReader<T> {
+		T read(DataInputStream in) throws IOException;
+	}
+
+	/**
+	 * Writes a view to the contents of an entry.
+	 */
+	private interface EntryWriter<T> {
+		void write(DataOutputStream out, T value) throws IOException;
+	}
+
+	/**
+	 * The views of the tokenizer that are cached.
+	 */
+	private enum View {
+		FULL_TOKEN_LIST, FULL_TOKEN_POSITIONS, TOKEN_LIST, TOKEN_POSITIONS, TOKEN_STREAM
+	}
+
+	private static final long serialVersionUID = 2818209584727567410L;
+
+	private static final Logger LOGGER = Logger
+			.getLogger(CachingTokenizer.class.getName());
+
+	public static final long DEFAULT_MAX_CACHE_BYTES = (long) SettingsLoader
+			.getNumericSetting("tokenCacheMaxBytes", 1L << 30);
+
+	private static final int ENTRY_MAGIC = 0x544f4b43; // "TOKC"
+
+	/**
+	 * Bump when the format of the entries changes, so that old entries are
+	 * never read.
+	 */
+	private static final int ENTRY_VERSION = 1;
+
+	private static final String ENTRY_SUFFIX = ".tok";
+
+	private static final String LOCK_FILE = ".lock";
+
+	/**
+	 * When evicting, remove entries until the cache is this fraction of its
+	 * maximum size, so that we do not evict on every write.
+	 */
+	private static final double EVICTION_TARGET = .9;
+
+	/**
+	 * Temporary files older than this are left over from crashed writers.
+	 */
+	private static final long STALE_TEMP_FILE_MS = 3600 * 1000;
+
+	private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal
+			.withInitial(() -> {
+				try {
+					return MessageDigest.getInstance("SHA-256");
+				} catch (final NoSuchAlgorithmException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * The per-thread buffers that the code is hashed through.
+	 */
+	private static final ThreadLocal<ByteBuffer> HASH_BUFFERS = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocate(8192));
+
+	/**
+	 * Return a fingerprint of the tokenizer's class and configuration.
+	 */
+	private static byte[] fingerprint(final ITokenizer tokenizer) {
+		final MessageDigest digest = DIGESTS.get();
+		digest.reset();
+		digest.update(tokenizer.getClass().getName()
+				.getBytes(StandardCharsets.UTF_8));
+		try {
+			final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+			try (final ObjectOutputStream out = new ObjectOutputStream(
+					serialized)) {
+				out.writeObject(tokenizer);
+			}
+			digest.update(serialized.toByteArray());
+		} catch (final IOException e) {
+			LOGGER.warning("Tokenizer " + tokenizer.getClass().getName()
+					+ " is not serializable, keying the cache by class only");
+		}
+		return digest.digest();
+	}
+
+	private static String readString(final DataInputStream in)
+			throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(final DataOutputStream out,
+			final String str) throws IOException {
+		if (str == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private final ITokenizer baseTokenizer;
+
+	private final File cacheDirectory;
+
+	private final long maxCacheBytes;
+
+	private final byte[] tokenizerFingerprint;
+
+	private final AtomicLong hits = new AtomicLong(0);
+
+	private final AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * The bytes written since the last eviction check.
+	 */
+	private final AtomicLong bytesSinceEviction = new AtomicLong(0);
+
+	private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+	public CachingTokenizer(final ITokenizer baseTokenizer,
+			final File cacheDirectory) throws IOException {
+		this(baseTokenizer, cacheDirectory, DEFAULT_MAX_CACHE_BYTES);
+	}
+
+	/**
+	 * @param baseTokenizer
+	 *            the tokenizer whose output is cached.
+	 * @param cacheDirectory
+	 *            the directory of the cache, possibly shared with other
+	 *            processes.
+	 * @param maxCacheBytes
+	 *            the maximum size of the cache.
+	 * @throws IOException
+	 */
+	public CachingTokenizer(final ITokenizer baseTokenizer,
+			final File cacheDirectory, final long maxCacheBytes)
+			throws IOException {
+		checkArgument(maxCacheBytes > 0, "The cache size must be positive");
+		this.baseTokenizer = baseTokenizer;
+		this.cacheDirectory = cacheDirectory;
+		this.maxCacheBytes = maxCacheBytes;
+		tokenizerFingerprint = fingerprint(baseTokenizer);
+		Files.createDirectories(cacheDirectory.toPath());
+		// Start with a check, the cache may have been left too large
+		bytesSinceEviction.set(maxCacheBytes);
+	}
+
+	/**
+	 * Write the entry of the given key, atomically replacing any existing
+	 * entry.
+	 */
+	private void addEntry(final Path entry, final byte[] contents) {
+		try {
+			Files.createDirectories(entry.getParent());
+			final Path temp = Files.createTempFile(entry.getParent(), "tmp",
+					".part");
+			try {
+				Files.write(temp, contents);
+				Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (final IOException e) {
+			LOGGER.warning("Failed to write cache entry " + entry + ": "
+					+ ExceptionUtils.getFullStackTrace(e));
+			return;
+		}
+		if (bytesSinceEviction.addAndGet(contents.length) > (1 - EVICTION_TARGET)
+				* maxCacheBytes) {
+			evictIfNeeded();
+		}
+	}
+
+	/**
+	 * Remove the least recently used entries, if the cache is larger than its
+	 * maximum size. Only one process evicts at a time; if another one is
+	 * evicting, this is a no-op.
+	 */
+	void evictIfNeeded() {
+		if (!evicting.compareAndSet(false, true)) {
+			return;
+		}
+		bytesSinceEviction.set(0);
+		try (final FileChannel lockChannel = FileChannel.open(new File(
+				cacheDirectory, LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+				final FileLock lock = lockChannel.tryLock()) {
+			if (lock == null) {
+				return;
+			}
+			final List<Path> entries = Lists.newArrayList();
+			final List<BasicFileAttributes> attributes = Lists.newArrayList();
+			long totalBytes = 0;
+			final long now = System.currentTimeMillis();
+			try (final DirectoryStream<Path> subdirs = Files
+					.newDirectoryStream(cacheDirectory.toPath(),
+							path -> Files.isDirectory(path))) {
+				for (final Path subdir : subdirs) {
+					try (DirectoryStream<Path> files = Files
+							.newDirectoryStream(subdir)) {
+						for (final Path file : files) {
+							final BasicFileAttributes attrs;
+							try {
+								attrs = Files.readAttributes(file,
+										BasicFileAttributes.class);
+							} catch (final NoSuchFileException e) {
+								continue; // Concurrently replaced
+							}
+							if (file.toString().endsWith(ENTRY_SUFFIX)) {
+								entries.add(file);
+								attributes.add(attrs);
+								totalBytes += attrs.size();
+							} else if (now
+									- attrs.lastModifiedTime().toMillis() > STALE_TEMP_FILE_MS) {
+								Files.deleteIfExists(file);
+							}
+						}
+					}
+				}
+			}
+			if (totalBytes <= maxCacheBytes) {
+				return;
+			}
+
+			final Integer[] order = new Integer[entries.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> attributes.get(a)
+					.lastModifiedTime()
+					.compareTo(attributes.get(b).lastModifiedTime()));
+			final long targetBytes = (long) (EVICTION_TARGET * maxCacheBytes);
+			for (int i = 0; i < order.length && totalBytes > targetBytes; i++) {
+				Files.deleteIfExists(entries.get(order[i]));
+				totalBytes -= attributes.get(order[i]).size();
+			}
+		} catch (final OverlappingFileLockException e) {
+			// Another instance in this JVM is evicting
+		} catch (final IOException e) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#fullTokenListWithPos(char[])
+	 */
+	@Override
+	public SortedMap<Integer, FullToken> fullTokenListWithPos(final char[] code) {
+		return get(code, View.FULL_TOKEN_POSITIONS, in -> {
+			final int size = in.readInt();
+			final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
+			for (int i = 0; i < size; i++) {
+				final int position = in.readInt();
+				tokens.put(position,
+						new FullToken(readString(in), readString(in)));
+			}
+			return tokens;
+		}, (out, tokens) -> {
+			out.writeInt(tokens.size());
+			for (final Entry<Integer, FullToken> token : tokens.entrySet()) {
+				out.writeInt(token.getKey());
+				writeString(out, token.getValue().token);
+				writeString(out, token.getValue().tokenType);
+			}
+		}, baseTokenizer::fullTokenListWithPos);
+	}
+
+	/**
+	 * Return the given view of the code from the cache or, on a miss, compute
+	 * it with the base tokenizer and cache it. Each request counts as exactly
+	 * one hit or one miss.
+	 */
+	private <T> T get(final char[] code, final View view,
+			final EntryReader<T> reader, final EntryWriter<T> writer,
+			final Function<char[], T> compute) {
+		final Path entry = getEntry(code, view);
+		final T cached = readEntry(entry, reader);
+		if (cached != null) {
+			hits.incrementAndGet();
+			return cached;
+		}
+		misses.incrementAndGet();
+
+		final T value = compute.apply(code);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final DataOutputStream out = newEntryStream(bytes)) {
+			writer.write(out, value);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e); // In-memory, cannot happen
+		}
+		addEntry(entry, bytes.toByteArray());
+		return value;
+	}
+
+	public ITokenizer getBaseTokenizer() {
+		return baseTokenizer;
+	}
+
+	/**
+	 * Return the path of the entry of the given code and view.
+	 */
+	private Path getEntry(final char[] code, final View view) {
+		final MessageDigest digest = DIGESTS.get();
+		digest.reset();
+		digest.update(tokenizerFingerprint);
+		digest.update((byte) view.ordinal());
+		final ByteBuffer buffer = HASH_BUFFERS.get();
+		buffer.clear();
+		for (int i = 0; i < code.length; i++) {
+			if (!buffer.hasRemaining()) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+			buffer.putChar(code[i]);
+		}
+		buffer.flip();
+		digest.update(buffer);
+
+		final byte[] hash = digest.digest();
+		final char[] hex = new char[2 * hash.length];
+		for (int i = 0; i < hash.length; i++) {
+			hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+			hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+		}
+		final String key = new String(hex);
+		return cacheDirectory.toPath().resolve(key.substring(0, 2))
+				.resolve(key.substring(2) + ENTRY_SUFFIX);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#getFileFilter()
+	 */
+	@Override
+	public AbstractFileFilter getFileFilter() {
+		return baseTokenizer.getFileFilter();
+	}
+
+	/**
+	 * @return the number of requests that were served from the cache.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#getIdentifierType()
+	 */
+	@Override
+	public String getIdentifierType() {
+		return baseTokenizer.getIdentifierType();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#getKeywordTypes()
+	 */
+	@Override
+	public Collection<String> getKeywordTypes() {
+		return baseTokenizer.getKeywordTypes();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#getLiteralTypes()
+	 */
+	@Override
+	public Collection<String> getLiteralTypes() {
+		return baseTokenizer.getLiteralTypes();
+	}
+
+	/**
+	 * @return the number of requests that were not in the cache.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * codemining.languagetools.ITokenizer#getTokenFromString(java.lang.String)
+	 */
+	@Override
+	public FullToken getTokenFromString(final String token) {
+		return baseTokenizer.getTokenFromString(token);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#getTokenListFromCode(char[])
+	 */
+	@Override
+	public List<FullToken> getTokenListFromCode(final char[] code) {
+		return get(code, View.FULL_TOKEN_LIST, in -> {
+			final int size = in.readInt();
+			final List<FullToken> tokens = Lists.newArrayListWithCapacity(size);
+			for (int i = 0; i < size; i++) {
+				tokens.add(new FullToken(readString(in), readString(in)));
+			}
+			return tokens;
+		}, (out, tokens) -> {
+			out.writeInt(tokens.size());
+			for (final FullToken token : tokens) {
+				writeString(out, token.token);
+				writeString(out, token.tokenType);
+			}
+		}, baseTokenizer::getTokenListFromCode);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#getTokenListFromCode(java.io.File)
+	 */
+	@Override
+	public List<FullToken> getTokenListFromCode(final File codeFile)
+			throws IOException {
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
+	}
+
+	/**
+	 * Remove a corrupt or unreadable entry.
+	 */
+	private void invalidEntry(final Path entry, final Exception e) {
+		LOGGER.warning("Invalid cache entry " + entry
+				+ (e == null ? "" : ": " + ExceptionUtils.getFullStackTrace(e)));
+		try {
+			Files.deleteIfExists(entry);
+		} catch (final IOException e1) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e1));
+		}
+	}
+
+	private DataOutputStream newEntryStream(final ByteArrayOutputStream bytes)
+			throws IOException {
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(ENTRY_MAGIC);
+		out.writeInt(ENTRY_VERSION);
+		return out;
+	}
+
+	/**
+	 * Return the view read from the contents of the entry, or null if there is
+	 * no valid entry. Invalid entries are removed and valid ones are marked as
+	 * recently used.
+	 */
+	private <T> T readEntry(final Path entry, final EntryReader<T> reader) {
+		final byte[] contents;
+		try {
+			contents = Files.readAllBytes(entry);
+		} catch (final NoSuchFileException e) {
+			return null;
+		} catch (final IOException e) {
+			invalidEntry(entry, e);
+			return null;
+		}
+		final T value;
+		try {
+			final DataInputStream in = new DataInputStream(
+					new ByteArrayInputStream(contents));
+			if (in.readInt() != ENTRY_MAGIC || in.readInt() != ENTRY_VERSION) {
+				invalidEntry(entry, null);
+				return null;
+			}
+			value = reader.read(in);
+		} catch (final IOException | IllegalArgumentException e) {
+			invalidEntry(entry, e);
+			return null;
+		}
+		try {
+			Files.setLastModifiedTime(entry,
+					FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (final IOException e) {
+			// Evicted concurrently, the contents are still valid
+		}
+		return value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#tokenize(char[])
+	 */
+	@Override
+	public TokenStream tokenize(final char[] code) {
+		return get(code, View.TOKEN_STREAM, in -> {
+			final int size = in.readInt();
+			final TokenStream stream = new TokenStream(code, size);
+			for (int i = 0; i < size; i++) {
+				final int typeId = in.readInt();
+				final int start = in.readInt();
+				final int end = in.readInt();
+				final String text = readString(in);
+				if (typeId == TokenStream.NO_TYPE_ID) {
+					stream.add(readString(in), start, end, text);
+				} else if (text != null) {
+					stream.add(typeId, start, end, text);
+				} else {
+					stream.add(typeId, start, end);
+				}
+			}
+			return stream;
+		}, (out, stream) -> {
+			out.writeInt(stream.size());
+			for (int i = 0; i < stream.size(); i++) {
+				final int typeId = stream.getTypeId(i);
+				final int start = stream.getStartOffset(i);
+				final int end = stream.getEndOffset(i);
+				out.writeInt(typeId);
+				out.writeInt(start);
+				out.writeInt(end);
+				// Only store the texts that are not the same as the source
+				final String text = stream.getTokenText(i);
+				final boolean isSourceText = text.length() == end - start
+						&& text.contentEquals(CharBuffer.wrap(code, start, end
+								- start));
+				writeString(out, isSourceText ? null : text);
+				if (typeId == TokenStream.NO_TYPE_ID) {
+					writeString(out, stream.getTokenType(i));
+				}
+			}
+		}, baseTokenizer::tokenize);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#tokenListFromCode(char[])
+	 */
+	@Override
+	public List<String> tokenListFromCode(final char[] code) {
+		return get(code, View.TOKEN_LIST, in -> {
+			final int size = in.readInt();
+			final List<String> tokens = Lists.newArrayListWithCapacity(size);
+			for (int i = 0; i < size; i++) {
+				tokens.add(readString(in));
+			}
+			return tokens;
+		}, (out, tokens) -> {
+			out.writeInt(tokens.size());
+			for (final String token : tokens) {
+				writeString(out, token);
+			}
+		}, baseTokenizer::tokenListFromCode);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#tokenListFromCode(java.io.File)
+	 */
+	@Override
+	public List<String> tokenListFromCode(final File codeFile)
+			throws IOException {
+		return tokenListFromCode(SourceReader.readChars(codeFile));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#tokenListWithPos(char[])
+	 */
+	@Override
+	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+		return get(code, View.TOKEN_POSITIONS, in -> {
+			final int size = in.readInt();
+			final SortedMap<Integer, String> tokens = Maps.newTreeMap();
+			for (int i = 0; i < size; i++) {
+				final int position = in.readInt();
+				tokens.put(position, readString(in));
+			}
+			return tokens;
+		}, (out, tokens) -> {
+			out.writeInt(tokens.size());
+			for (final Entry<Integer, String> token : tokens.entrySet()) {
+				out.writeInt(token.getKey());
+				writeString(out, token.getValue());
+			}
+		}, baseTokenizer::tokenListWithPos);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.ITokenizer#tokenListWithPos(java.io.File)
+	 */
+	@Override
+	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
+			throws IOException {
+		return fullTokenListWithPos(SourceReader.readChars(file));
+	}
+
+	@Override
+	public String toString() {
+		return "CachingTokenizer [" + baseTokenizer.getClass().getName()
+				+ ", hits=" + hits.get() + ", misses=" + misses.get() + "]";
+	}
+
+}
@@ -4,10 +4,7 @@ import java.awt.Color;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.SortedMap;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 
 import codemining.languagetools.ITokenizer.FullToken;
@@ -77,15 +74,27 @@ public class CodePrinter {
 	public StringBuffer getHTMLwithColors(
 			final List<ColoredToken> coloredTokens, final File codeFile)
 			throws IOException, InstantiationException, IllegalAccessException {
-		final String code = FileUtils.readFileToString(codeFile);
+		final String code = SourceReader.readString(codeFile);
+		return getHTMLwithColors(coloredTokens,
+				TokenizedSource.tokenize(tokenizer, code.toCharArray()));
+	}
+
+	/**
+	 * Return a StringBuffer with colored tokens as specified from the
+	 * coloredTokens, for code that has already been tokenized (with the full
+	 * tokens of this printer's tokenizer). There should be one-to-one
+	 * correspondence with the actual tokens.
+	 */
+	public StringBuffer getHTMLwithColors(
+			final List<ColoredToken> coloredTokens,
+			final TokenizedSource tokenizedSource) {
+		final String code = new String(tokenizedSource.getSource());
 		lineNumber = 1;
 
 		final StringBuffer buf = new StringBuffer();
 
-		final SortedMap<Integer, FullToken> toks = tokenizer
-				.fullTokenListWithPos(code.toCharArray());
+		final List<FullToken> toks = tokenizedSource.getFullTokenList();
 
-		int i = 0;
 		int prevPos = 0;
 		buf.append("<html>\n<head>\n<link href='http://fonts.googleapis.com/css?family=Source+Code+Pro:300,400,500,600,700,800,900' rel='stylesheet' type='text/css'>\n");
 		buf.append(CSS_STYLE);
@@ -94,12 +103,11 @@ public class CodePrinter {
 				+ documentBackgroundColor.getGreen() + ","
 				+ documentBackgroundColor.getBlue() + ")'>");
 		appendLineDiv(buf, false);
-		for (final Entry<Integer, FullToken> entry : toks.entrySet()) {
-			if (i == 0 || entry.getKey() == Integer.MAX_VALUE) {
-				i++;
-				continue;
-			}
-			addSlack(code.substring(prevPos, entry.getKey()), buf);
+		// Skip the sentence start/end
+		for (int i = 1; i < toks.size() - 1; i++) {
+			final int position = tokenizedSource.getPosition(i);
+			final FullToken token = toks.get(i);
+			addSlack(code.substring(prevPos, position), buf);
 			final ColoredToken tok = coloredTokens.get(i);
 
 			buf.append("<span style='background-color:rgba("
@@ -108,13 +116,11 @@ public class CodePrinter {
 					+ "); color:rgb(" + tok.fontColor.getRed() + ","
 					+ tok.fontColor.getGreen() + "," + tok.fontColor.getBlue()
 					+ "); " + tok.extraStyle + "'>"
-					+ StringEscapeUtils.escapeHtml(entry.getValue().token)
-					+ "</span>");
-			i++;
-			prevPos = entry.getKey() + entry.getValue().token.length();
+					+ StringEscapeUtils.escapeHtml(token.token) + "</span>");
+			prevPos = position + token.token.length();
 		}
 		buf.append("</div></body></html>");
 		return buf;
 
 	}
-}
\ No newline at end of file
+}
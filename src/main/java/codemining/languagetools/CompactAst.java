@@ -0,0 +1,369 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A compact, immutable snapshot of an AST, stored in primitive arrays, so that
+ * the (much larger) parser's tree can be dropped right after parsing.
+ *
+ * The nodes are numbered in preorder, starting from the root (node 0). For
+ * each node the snapshot keeps its (language specific) type, its parent, its
+ * position in the source, the end of its subtree, the property of the parent
+ * it is stored in (its role, e.g. "name") and its label, i.e. the name or
+ * literal of the node, if any. The descendants of a node n are the nodes
+ * n+1...getSubtreeEnd(n)-1. Roles and labels are interned in a table of
+ * strings. The source code may optionally be kept, to retrieve the text of the
+ * nodes.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class CompactAst {
+
+	/**
+	 * Builds a CompactAst, one node at a time in preorder.
+	 *
+	 */
+	public static final class Builder {
+
+		private int size = 0;
+
+		private int[] nodeTypes = new int[64];
+
+		private int[] parents = new int[64];
+
+		private int[] startPositions = new int[64];
+
+		private int[] lengths = new int[64];
+
+		private int[] subtreeEnds = new int[64];
+
+		private int[] roles = new int[64];
+
+		private int[] labels = new int[64];
+
+		private final List<String> strings = Lists.newArrayList();
+
+		private final Map<String, Integer> stringIds = Maps.newHashMap();
+
+		/**
+		 * The nodes that have been entered, but not exited.
+		 */
+		private int[] openNodes = new int[32];
+
+		private int depth = 0;
+
+		/**
+		 * Return the snapshot. All the nodes must have been exited.
+		 *
+		 * @param source
+		 *            the source code of the AST, or null if it is not kept.
+		 * @return
+		 */
+		public CompactAst build(final char[] source) {
+			checkState(depth == 0, "There are %s nodes not exited", depth);
+			return new CompactAst(Arrays.copyOf(nodeTypes, size),
+					Arrays.copyOf(parents, size), Arrays.copyOf(
+							startPositions, size),
+					Arrays.copyOf(lengths, size), Arrays.copyOf(subtreeEnds,
+							size), Arrays.copyOf(roles, size), Arrays.copyOf(
+							labels, size), strings.toArray(new String[strings
+							.size()]), source);
+		}
+
+		/**
+		 * Add a node, as a child of the last entered node that has not been
+		 * exited. Every node must be exited, after all its children.
+		 *
+		 * @param nodeType
+		 * @param startPosition
+		 * @param length
+		 * @param role
+		 *            the property of the parent that contains the node, or
+		 *            null
+		 * @param label
+		 *            the name or literal of the node, or null
+		 * @return the id of the node
+		 */
+		public int enter(final int nodeType, final int startPosition,
+				final int length, final String role, final String label) {
+			if (size == nodeTypes.length) {
+				final int capacity = size * 2;
+				nodeTypes = Arrays.copyOf(nodeTypes, capacity);
+				parents = Arrays.copyOf(parents, capacity);
+				startPositions = Arrays.copyOf(startPositions, capacity);
+				lengths = Arrays.copyOf(lengths, capacity);
+				subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+				roles = Arrays.copyOf(roles, capacity);
+				labels = Arrays.copyOf(labels, capacity);
+			}
+			final int node = size;
+			size++;
+			nodeTypes[node] = nodeType;
+			parents[node] = depth == 0 ? NO_NODE : openNodes[depth - 1];
+			startPositions[node] = startPosition;
+			lengths[node] = length;
+			subtreeEnds[node] = NO_NODE;
+			roles[node] = intern(role);
+			labels[node] = intern(label);
+
+			if (depth == openNodes.length) {
+				openNodes = Arrays.copyOf(openNodes, depth * 2);
+			}
+			openNodes[depth] = node;
+			depth++;
+			return node;
+		}
+
+		/**
+		 * Exit the last entered node.
+		 */
+		public void exit() {
+			checkState(depth > 0, "No node to exit");
+			depth--;
+			subtreeEnds[openNodes[depth]] = size;
+		}
+
+		private int intern(final String string) {
+			if (string == null) {
+				return NO_STRING;
+			}
+			final Integer id = stringIds.get(string);
+			if (id != null) {
+				return id;
+			}
+			final int newId = strings.size();
+			strings.add(string);
+			stringIds.put(string, newId);
+			return newId;
+		}
+
+	}
+
+	/**
+	 * The parent of the root.
+	 */
+	public static final int NO_NODE = -1;
+
+	/**
+	 * The id of a missing role or label.
+	 */
+	public static final int NO_STRING = -1;
+
+	private final int[] nodeTypes;
+
+	private final int[] parents;
+
+	private final int[] startPositions;
+
+	private final int[] lengths;
+
+	private final int[] subtreeEnds;
+
+	private final int[] roles;
+
+	private final int[] labels;
+
+	private final String[] strings;
+
+	private final char[] source;
+
+	private CompactAst(final int[] nodeTypes, final int[] parents,
+			final int[] startPositions, final int[] lengths,
+			final int[] subtreeEnds, final int[] roles, final int[] labels,
+			final String[] strings, final char[] source) {
+		this.nodeTypes = nodeTypes;
+		this.parents = parents;
+		this.startPositions = startPositions;
+		this.lengths = lengths;
+		this.subtreeEnds = subtreeEnds;
+		this.roles = roles;
+		this.labels = labels;
+		this.strings = strings;
+		this.source = source;
+	}
+
+	/**
+	 * Visit all the nodes of the AST.
+	 *
+	 * @param visitor
+	 */
+	public void accept(final CompactAstVisitor visitor) {
+		if (size() > 0) {
+			accept(visitor, 0);
+		}
+	}
+
+	/**
+	 * Visit the subtree of the given node, in preorder. The children of a node
+	 * are not visited if visit() returns false, but endVisit() is still
+	 * called.
+	 *
+	 * @param visitor
+	 * @param node
+	 */
+	public void accept(final CompactAstVisitor visitor, final int node) {
+		checkElementIndex(node, size());
+		final int end = subtreeEnds[node];
+		// The visited nodes whose endVisit has not been called yet
+		int[] open = new int[32];
+		int depth = 0;
+		int current = node;
+		while (current < end) {
+			while (depth > 0 && current >= subtreeEnds[open[depth - 1]]) {
+				depth--;
+				visitor.endVisit(this, open[depth]);
+			}
+			if (depth == open.length) {
+				open = Arrays.copyOf(open, depth * 2);
+			}
+			open[depth] = current;
+			depth++;
+			if (visitor.visit(this, current)) {
+				current++;
+			} else {
+				current = subtreeEnds[current];
+			}
+		}
+		while (depth > 0) {
+			depth--;
+			visitor.endVisit(this, open[depth]);
+		}
+	}
+
+	/**
+	 * Return the first child of the node with the given role, or NO_NODE.
+	 *
+	 * @param node
+	 * @param role
+	 * @return
+	 */
+	public int getChild(final int node, final String role) {
+		for (int child = getFirstChild(node); child != NO_NODE; child = getNextSibling(child)) {
+			if (role.equals(getRole(child))) {
+				return child;
+			}
+		}
+		return NO_NODE;
+	}
+
+	/**
+	 * Return the first child of the node, or NO_NODE if it is a leaf.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int getFirstChild(final int node) {
+		return subtreeEnds[node] > node + 1 ? node + 1 : NO_NODE;
+	}
+
+	/**
+	 * Return the name or literal of the node, or null.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public String getLabel(final int node) {
+		return labels[node] == NO_STRING ? null : strings[labels[node]];
+	}
+
+	public int getLength(final int node) {
+		return lengths[node];
+	}
+
+	/**
+	 * Return the next sibling of the node, or NO_NODE if it is the last child.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int getNextSibling(final int node) {
+		final int parent = parents[node];
+		if (parent == NO_NODE || subtreeEnds[node] >= subtreeEnds[parent]) {
+			return NO_NODE;
+		}
+		return subtreeEnds[node];
+	}
+
+	public int getNodeType(final int node) {
+		return nodeTypes[node];
+	}
+
+	/**
+	 * Return the parent of the node, or NO_NODE for the root.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int getParent(final int node) {
+		return parents[node];
+	}
+
+	/**
+	 * Return the property of the parent that contains the node, or null.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public String getRole(final int node) {
+		return roles[node] == NO_STRING ? null : strings[roles[node]];
+	}
+
+	public char[] getSource() {
+		return source;
+	}
+
+	public int getStartPosition(final int node) {
+		return startPositions[node];
+	}
+
+	/**
+	 * Return the first node after the subtree of the given node.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int getSubtreeEnd(final int node) {
+		return subtreeEnds[node];
+	}
+
+	/**
+	 * Return the source code of the node. The source must have been kept.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public String getText(final int node) {
+		checkArgument(source != null, "The source code has not been kept");
+		return new String(source, startPositions[node], lengths[node]);
+	}
+
+	public boolean hasSource() {
+		return source != null;
+	}
+
+	/**
+	 * @return the number of nodes.
+	 */
+	public int size() {
+		return nodeTypes.length;
+	}
+
+	@Override
+	public String toString() {
+		return "CompactAst [" + size() + " nodes]";
+	}
+
+}
@@ -0,0 +1,35 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+/**
+ * A visitor of the nodes of a CompactAst. By default all the nodes are
+ * visited.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public abstract class CompactAstVisitor {
+
+	/**
+	 * Called after the children of the node have been visited (or skipped).
+	 *
+	 * @param ast
+	 * @param node
+	 */
+	public void endVisit(final CompactAst ast, final int node) {
+	}
+
+	/**
+	 * Visit the node.
+	 *
+	 * @param ast
+	 * @param node
+	 * @return true if the children of the node should be visited.
+	 */
+	public boolean visit(final CompactAst ast, final int node) {
+		return true;
+	}
+
+}
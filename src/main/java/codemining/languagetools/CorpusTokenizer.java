@@ -0,0 +1,284 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+import org.apache.commons.io.filefilter.IOFileFilter;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Tokenizes all the files of a corpus in parallel. Each worker thread uses its
+ * own tokenizer instance. The results of each file are passed to a sink, one
+ * file at a time (so that the sink does not need to be thread-safe), either
+ * in completion order or, for reproducible output, in the order of the file
+ * paths.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CorpusTokenizer {
+
+	/**
+	 * Computes the result of a single file. Called concurrently from the
+	 * worker threads, each with its own tokenizer.
+	 */
+	public interface FileProcessor<T> {
+		T process(ITokenizer tokenizer, File file, char[] code);
+	}
+
+	/**
+	 * Computes the result of a single file, reading the file itself (e.g.
+	 * through the File methods of the tokenizer), so that the code is not
+	 * read in advance. Called concurrently from the worker threads, each with
+	 * its own tokenizer.
+	 */
+	public interface FileOnlyProcessor<T> {
+		T process(ITokenizer tokenizer, File file) throws IOException;
+	}
+
+	/**
+	 * Receives the result of each file. Calls are never concurrent.
+	 */
+	public interface ResultSink<T> {
+		void accept(File file, T result);
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(CorpusTokenizer.class
+			.getName());
+
+	public static final int DEFAULT_N_THREADS = (int) SettingsLoader
+			.getNumericSetting("nThreads", Runtime.getRuntime()
+					.availableProcessors());
+
+	/**
+	 * The number of files that may be in flight per thread, bounding the
+	 * results that wait to be consumed.
+	 */
+	private static final int FILES_IN_FLIGHT_PER_THREAD = 4;
+
+	/**
+	 * Create a corpus tokenizer that instantiates the given tokenizer class
+	 * (with the optional String argument) for each thread, tokenizing the
+	 * files accepted by the tokenizer.
+	 *
+	 * @param tokenizerClass
+	 * @param tokenizerArguments
+	 *            the constructor argument or null to use the default
+	 *            constructor.
+	 * @param nThreads
+	 * @param orderedOutput
+	 * @return
+	 * @throws ReflectiveOperationException
+	 *             if the tokenizer cannot be instantiated.
+	 */
+	public static CorpusTokenizer forTokenizerClass(
+			final String tokenizerClass, final String tokenizerArguments,
+			final int nThreads, final boolean orderedOutput)
+			throws ReflectiveOperationException {
+		final ITokenizer prototype = newTokenizer(tokenizerClass,
+				tokenizerArguments);
+		return new CorpusTokenizer(tokenizerFactory(tokenizerClass,
+				tokenizerArguments), prototype.getFileFilter(), nThreads,
+				orderedOutput);
+	}
+
+	private static ITokenizer newTokenizer(final String tokenizerClass,
+			final String tokenizerArguments)
+			throws ReflectiveOperationException {
+		if (tokenizerArguments == null) {
+			return TokenizerUtils.tokenizerForClass(tokenizerClass);
+		}
+		return TokenizerUtils.tokenizerForClass(tokenizerClass,
+				tokenizerArguments);
+	}
+
+	/**
+	 * Return a factory of tokenizers of the given class. The tokenizer is
+	 * instantiated once, so that any reflection errors are thrown here.
+	 *
+	 * @param tokenizerClass
+	 * @param tokenizerArguments
+	 *            the constructor argument or null to use the default
+	 *            constructor.
+	 * @return
+	 * @throws ReflectiveOperationException
+	 */
+	public static Supplier<ITokenizer> tokenizerFactory(
+			final String tokenizerClass, final String tokenizerArguments)
+			throws ReflectiveOperationException {
+		newTokenizer(tokenizerClass, tokenizerArguments);
+		return () -> {
+			try {
+				return newTokenizer(tokenizerClass, tokenizerArguments);
+			} catch (final ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+	}
+
+	private final ThreadLocal<ITokenizer> tokenizers;
+
+	private final IOFileFilter fileFilter;
+
+	private final int nThreads;
+
+	private final boolean orderedOutput;
+
+	/**
+	 * @param tokenizerFactory
+	 *            creates a tokenizer for each worker thread.
+	 * @param fileFilter
+	 *            the files to tokenize.
+	 * @param nThreads
+	 * @param orderedOutput
+	 *            if true, the results are passed to the sink in the order of
+	 *            the file paths, otherwise in completion order.
+	 */
+	public CorpusTokenizer(final Supplier<ITokenizer> tokenizerFactory,
+			final IOFileFilter fileFilter, final int nThreads,
+			final boolean orderedOutput) {
+		checkArgument(nThreads > 0, "The number of threads must be positive");
+		tokenizers = ThreadLocal.withInitial(checkNotNull(tokenizerFactory));
+		this.fileFilter = checkNotNull(fileFilter);
+		this.nThreads = nThreads;
+		this.orderedOutput = orderedOutput;
+	}
+
+	/**
+	 * Return the files to be tokenized. If the root is a file, only the root
+	 * is returned.
+	 *
+	 * @param root
+	 * @return
+	 */
+	public List<File> getFiles(final File root) {
+		if (!root.isDirectory()) {
+			return Lists.newArrayList(root);
+		}
+		final Collection<File> files = FileUtils.listFiles(root, fileFilter,
+				DirectoryFileFilter.DIRECTORY);
+		final List<File> sortedFiles = Lists.newArrayList(files);
+		if (orderedOutput) {
+			Collections.sort(sortedFiles);
+		}
+		return sortedFiles;
+	}
+
+	private <T> Callable<T> task(final File file,
+			final FileOnlyProcessor<T> processor) {
+		return () -> {
+			try {
+				return processor.process(tokenizers.get(), file);
+			} catch (final Exception e) {
+				LOGGER.warning("Failed to tokenize " + file + ": "
+						+ ExceptionUtils.getFullStackTrace(e));
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Tokenize all the files under the root. The sink is called from the
+	 * calling thread, for every file that was processed successfully (and
+	 * produced a non-null result). Files that fail are logged and skipped.
+	 *
+	 * @param root
+	 * @param processor
+	 * @param sink
+	 * @throws InterruptedException
+	 */
+	public <T> void tokenize(final File root,
+			final FileProcessor<T> processor, final ResultSink<T> sink)
+			throws InterruptedException {
+		tokenizeFiles(root, (tokenizer, file) -> processor.process(tokenizer,
+				file, SourceReader.readChars(file)), sink);
+	}
+
+	/**
+	 * Tokenize all the files under the root, as tokenize(), but without
+	 * reading the files in advance. Use this when the processor reads the
+	 * files itself.
+	 *
+	 * @param root
+	 * @param processor
+	 * @param sink
+	 * @throws InterruptedException
+	 */
+	public <T> void tokenizeFiles(final File root,
+			final FileOnlyProcessor<T> processor, final ResultSink<T> sink)
+			throws InterruptedException {
+		final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+		try {
+			final CompletionService<T> completed = new ExecutorCompletionService<T>(
+					executor);
+			// The submitted files, in submission (i.e. path) order
+			final Map<Future<T>, File> inFlight = Maps.newLinkedHashMap();
+			final int maxInFlight = nThreads * FILES_IN_FLIGHT_PER_THREAD;
+			final Iterator<File> files = getFiles(root).iterator();
+
+			while (files.hasNext() || !inFlight.isEmpty()) {
+				while (files.hasNext() && inFlight.size() < maxInFlight) {
+					final File file = files.next();
+					final Callable<T> task = task(file, processor);
+					// Ordered results are consumed from inFlight, so do not
+					// queue them as completed
+					inFlight.put(orderedOutput ? executor.submit(task)
+							: completed.submit(task), file);
+				}
+
+				final Future<T> done;
+				if (orderedOutput) {
+					done = inFlight.keySet().iterator().next();
+				} else {
+					done = completed.take();
+				}
+				final File file = inFlight.remove(done);
+				final T result = getResult(done);
+				if (result != null) {
+					sink.accept(file, result);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private <T> T getResult(final Future<T> future)
+			throws InterruptedException {
+		try {
+			return future.get();
+		} catch (final ExecutionException e) {
+			// Should not happen, the task catches everything
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			return null;
+		}
+	}
+
+}
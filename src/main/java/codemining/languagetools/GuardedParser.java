@@ -0,0 +1,388 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Guards the parsing of files against pathological inputs (e.g. huge
+ * generated files or broken files that make the parser's recovery very slow),
+ * so that a single file cannot stall a whole corpus job.
+ *
+ * Files larger than the maximum size or with more than the maximum number of
+ * tokens are not parsed. The other files are parsed in a separate thread, with
+ * a progress monitor that is canceled when the timeout expires, so parsers
+ * that check their monitor (e.g. JDT's and JSDT's) stop cooperatively. The
+ * caller stops waiting when the timeout expires, even if the parser does not
+ * check the monitor. The files that are rejected, time out or fail are put in
+ * quarantine, with the reason, and they are not parsed again.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class GuardedParser {
+
+	/**
+	 * A progress monitor that is canceled after a deadline. The deadline can
+	 * be restarted, e.g. when a batch of files makes progress.
+	 *
+	 */
+	public static class DeadlineMonitor extends NullProgressMonitor {
+
+		private final long timeoutNanos;
+
+		private volatile long deadline;
+
+		public DeadlineMonitor(final long timeoutMillis) {
+			timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			restart();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see org.eclipse.core.runtime.NullProgressMonitor#isCanceled()
+		 */
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || System.nanoTime() - deadline > 0;
+		}
+
+		/**
+		 * Restart the timeout from now.
+		 */
+		public void restart() {
+			deadline = System.nanoTime() + timeoutNanos;
+		}
+
+	}
+
+	/**
+	 * A parse of some source code.
+	 *
+	 */
+	public interface ParseTask<T> {
+
+		/**
+		 * Parse the source code.
+		 *
+		 * @param source
+		 * @param monitor
+		 *            to be passed to the parser, for cancellation.
+		 * @return the result of the parse
+		 * @throws Exception
+		 */
+		T parse(char[] source, IProgressMonitor monitor) throws Exception;
+
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(GuardedParser.class
+			.getName());
+
+	public static final long DEFAULT_TIMEOUT_MILLIS = (long) SettingsLoader
+			.getNumericSetting("parseTimeoutMillis", 60000);
+
+	public static final long DEFAULT_MAX_FILE_SIZE = (long) SettingsLoader
+			.getNumericSetting("maxParseFileBytes", 4 << 20);
+
+	public static final int DEFAULT_MAX_TOKENS = (int) SettingsLoader
+			.getNumericSetting("maxParseTokens", 500000);
+
+	/**
+	 * The threads that run the parses. A parse that ignores its monitor keeps
+	 * its thread until it finishes, so the pool is not bounded.
+	 */
+	private static final ExecutorService PARSE_THREADS = Executors
+			.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+					.setNameFormat("guarded-parser-%d").build());
+
+	private final long timeoutMillis;
+
+	private final long maxFileSize;
+
+	private final int maxTokens;
+
+	/**
+	 * Counts the tokens of the source, or null to not limit the tokens.
+	 */
+	private final ITokenizer tokenizer;
+
+	/**
+	 * The quarantined files (or sources), with the reason.
+	 */
+	private final Map<String, String> quarantine = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * A guard with the default limits (the parseTimeoutMillis,
+	 * maxParseFileBytes and maxParseTokens settings).
+	 *
+	 * @param tokenizer
+	 *            used to count the tokens, or null to not limit the tokens.
+	 */
+	public GuardedParser(final ITokenizer tokenizer) {
+		this(DEFAULT_TIMEOUT_MILLIS, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_TOKENS,
+				tokenizer);
+	}
+
+	/**
+	 * @param timeoutMillis
+	 *            the maximum time of a parse
+	 * @param maxFileSize
+	 *            the maximum size of a file in bytes
+	 * @param maxTokens
+	 *            the maximum number of tokens of a file
+	 * @param tokenizer
+	 *            used to count the tokens, or null to not limit the tokens.
+	 */
+	public GuardedParser(final long timeoutMillis, final long maxFileSize,
+			final int maxTokens, final ITokenizer tokenizer) {
+		checkArgument(timeoutMillis > 0, "The timeout must be positive");
+		checkArgument(maxFileSize > 0, "The maximum size must be positive");
+		checkArgument(maxTokens > 0,
+				"The maximum number of tokens must be positive");
+		this.timeoutMillis = timeoutMillis;
+		this.maxFileSize = maxFileSize;
+		this.maxTokens = maxTokens;
+		this.tokenizer = tokenizer;
+	}
+
+	/**
+	 * Return true if the file is not quarantined and it is within the size
+	 * limit, quarantining it otherwise. This does not read the file, so it can
+	 * be used before reading a file that is then parsed with parse(name,
+	 * source, task).
+	 *
+	 * @param file
+	 * @return
+	 */
+	public boolean checkSize(final File file) {
+		final String name = file.getAbsolutePath();
+		if (isQuarantined(name)) {
+			return false;
+		}
+		if (file.length() > maxFileSize) {
+			quarantine(name, "Too large: " + file.length() + " bytes");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return true if the source is within the token limit, quarantining it
+	 * otherwise. Every token has at least one char, so only sources with more
+	 * chars than the maximum number of tokens are tokenized.
+	 */
+	private boolean checkTokens(final String name, final char[] source) {
+		if (tokenizer == null || source.length <= maxTokens) {
+			return true;
+		}
+		final int[] nTokens = new int[1];
+		tokenizer.tokenize(source, (typeId, start, end, code) -> nTokens[0]++);
+		if (nTokens[0] > maxTokens) {
+			quarantine(name, "Too many tokens: " + nTokens[0]);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return true if the file is not quarantined and it is within the size
+	 * and token limits, quarantining it otherwise. This reads the file only if
+	 * the tokens are limited and the file has more bytes than the maximum
+	 * number of tokens (a file has at least as many bytes as chars).
+	 *
+	 * @param file
+	 * @return
+	 */
+	public boolean checkLimits(final File file) {
+		if (!checkSize(file)) {
+			return false;
+		}
+		if (tokenizer == null || file.length() <= maxTokens) {
+			return true;
+		}
+		final String name = file.getAbsolutePath();
+		try {
+			return checkTokens(name, SourceReader.readChars(file));
+		} catch (final IOException e) {
+			quarantine(name, "Unreadable: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Return true if the source (already read) is not quarantined and it is
+	 * within the size and token limits, quarantining it otherwise.
+	 *
+	 * @param name
+	 *            the name of the source (e.g. its path), for the quarantine.
+	 * @param source
+	 * @return
+	 */
+	public boolean checkLimits(final String name, final char[] source) {
+		if (isQuarantined(name)) {
+			return false;
+		}
+		if (source.length > maxFileSize) {
+			quarantine(name, "Too large: " + source.length + " chars");
+			return false;
+		}
+		return checkTokens(name, source);
+	}
+
+	/**
+	 * @return the quarantined files (or sources), with the reason.
+	 */
+	public Map<String, String> getQuarantine() {
+		return ImmutableMap.copyOf(quarantine);
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public boolean isQuarantined(final String name) {
+		return quarantine.containsKey(name);
+	}
+
+	/**
+	 * Parse the file, if it is not quarantined and it is within the limits.
+	 *
+	 * @param file
+	 * @param task
+	 * @return the result of the parse, or null if the file has been
+	 *         quarantined.
+	 */
+	public <T> T parse(final File file, final ParseTask<T> task) {
+		if (!checkSize(file)) {
+			return null;
+		}
+		final String name = file.getAbsolutePath();
+		final char[] source;
+		try {
+			source = SourceReader.readChars(file);
+		} catch (final IOException e) {
+			quarantine(name, "Unreadable: " + e.getMessage());
+			return null;
+		}
+		return parse(name, source, task);
+	}
+
+	/**
+	 * Parse the source, if it is not quarantined and it is within the limits.
+	 * The size limit is applied to the number of chars of the source, which is
+	 * at most the number of bytes of the file it was read from.
+	 *
+	 * @param name
+	 *            the name of the source (e.g. its path), for the quarantine.
+	 * @param source
+	 * @param task
+	 * @return the result of the parse, or null if the source has been
+	 *         quarantined.
+	 */
+	public <T> T parse(final String name, final char[] source,
+			final ParseTask<T> task) {
+		if (!checkLimits(name, source)) {
+			return null;
+		}
+		return parseWithTimeout(name, source, task);
+	}
+
+	/**
+	 * Parse the tokenized source, if it is not quarantined and it is within
+	 * the limits. The tokens of the source are counted, instead of tokenizing
+	 * it again, so that a caller that needs the tokens tokenizes it once.
+	 *
+	 * @param name
+	 *            the name of the source (e.g. its path), for the quarantine.
+	 * @param tokens
+	 *            the tokenized source, which must keep its source code.
+	 * @param task
+	 * @return the result of the parse, or null if the source has been
+	 *         quarantined.
+	 */
+	public <T> T parse(final String name, final TokenizedSource tokens,
+			final ParseTask<T> task) {
+		final char[] source = tokens.getSource();
+		checkArgument(source != null, "The source code is not known");
+		if (isQuarantined(name)) {
+			return null;
+		}
+		if (source.length > maxFileSize) {
+			quarantine(name, "Too large: " + source.length + " chars");
+			return null;
+		}
+		// Exclude the sentence start/end
+		final int nTokens = tokens.size() - 2;
+		if (tokenizer != null && nTokens > maxTokens) {
+			quarantine(name, "Too many tokens: " + nTokens);
+			return null;
+		}
+		return parseWithTimeout(name, source, task);
+	}
+
+	/**
+	 * Run the parse in a separate thread, quarantining the source if it times
+	 * out or fails.
+	 */
+	private <T> T parseWithTimeout(final String name, final char[] source,
+			final ParseTask<T> task) {
+		final DeadlineMonitor monitor = new DeadlineMonitor(timeoutMillis);
+		final Future<T> result = PARSE_THREADS.submit(() -> task.parse(source,
+				monitor));
+		try {
+			return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			monitor.setCanceled(true);
+			result.cancel(true);
+			quarantine(name, "Timed out after " + timeoutMillis + "ms");
+		} catch (final ExecutionException e) {
+			quarantine(name, "Failed: " + e.getCause());
+		} catch (final InterruptedException e) {
+			monitor.setCanceled(true);
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	/**
+	 * Put a file (or source) in quarantine.
+	 *
+	 * @param name
+	 * @param reason
+	 */
+	public void quarantine(final String name, final String reason) {
+		LOGGER.warning("Quarantined " + name + ": " + reason);
+		quarantine.put(name, reason);
+	}
+
+	@Override
+	public String toString() {
+		return "GuardedParser [timeout=" + timeoutMillis + "ms, maxFileSize="
+				+ maxFileSize + ", maxTokens=" + maxTokens + ", quarantined="
+				+ quarantine.size() + "]";
+	}
+
+}
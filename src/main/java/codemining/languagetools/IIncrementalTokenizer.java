@@ -0,0 +1,45 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import java.util.SortedMap;
+
+/**
+ * A tokenizer that can update the tokens of some code after an edit, by only
+ * rescanning the region around the edit.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public interface IIncrementalTokenizer extends ITokenizer {
+
+	/**
+	 * Return the full tokens of a token stream returned by tokenize() or
+	 * retokenize(), as fullTokenListWithPos() would return them for the
+	 * stream's source.
+	 *
+	 * @param tokens
+	 * @return
+	 */
+	SortedMap<Integer, FullToken> fullTokenListWithPos(final TokenStream tokens);
+
+	/**
+	 * Return the tokens of the code after an edit. The source of the returned
+	 * stream is the edited code.
+	 *
+	 * @param previous
+	 *            the tokens of the code before the edit, as returned by
+	 *            tokenize() or retokenize() of this tokenizer.
+	 * @param offset
+	 *            the offset of the edit in the previous code.
+	 * @param removedLength
+	 *            the number of chars removed at the offset.
+	 * @param insertedText
+	 *            the text inserted at the offset.
+	 * @return
+	 */
+	TokenStream retokenize(final TokenStream previous, final int offset,
+			final int removedLength, final String insertedText);
+
+}
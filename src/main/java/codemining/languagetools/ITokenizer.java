@@ -174,4 +174,47 @@ public interface ITokenizer extends Serializable {
 	SortedMap<Integer, FullToken> tokenListWithPos(File file)
 			throws IOException;
 
+	/**
+	 * Return the tokens of the code in a columnar token stream. Tokenizers
+	 * that have a native implementation should override this; the default
+	 * implementation is built from fullTokenListWithPos().
+	 *
+	 * @param code
+	 * @return
+	 */
+	default TokenStream tokenize(final char[] code) {
+		return TokenStream.fromFullTokens(code, fullTokenListWithPos(code));
+	}
+
+	/**
+	 * Push the tokens of the code (excluding the sentence start/end) to the
+	 * given sink, in order. Tokenizers that have a native implementation
+	 * should override this, so that no intermediate collection is created.
+	 *
+	 * @param code
+	 * @param sink
+	 */
+	default void tokenize(final char[] code, final TokenSink sink) {
+		final TokenStream stream = tokenize(code);
+		for (int i = 0; i < stream.size(); i++) {
+			sink.tokenWithText(stream.getTypeId(i), stream.getStartOffset(i),
+					stream.getEndOffset(i), code, stream.getTokenText(i));
+		}
+	}
+
+	/**
+	 * Return the vocabulary ids of the tokens of the code (excluding the
+	 * sentence start/end, if the tokenizer adds them), counting their
+	 * occurrences in the vocabulary.
+	 *
+	 * @param code
+	 * @param vocabulary
+	 * @return
+	 */
+	default int[] tokenizeToIds(final char[] code,
+			final TokenVocabulary vocabulary) {
+		return vocabulary.addAll(TokenizerUtils
+				.withoutSentenceStartEnd(getTokenListFromCode(code)));
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Incremental tokenization of edited code. The tokens before the edit are
+ * kept up to the nearest safe restart token, the code is rescanned from there
+ * until a scanned token is identical (same type and extent) to a token of the
+ * previous code after the edit, and the remaining previous tokens are then
+ * shifted by the length difference of the edit. Since a scanner only looks at
+ * the code after the token it has just scanned, the scanners are
+ * synchronized from that point on.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class IncrementalTokenization {
+
+	/**
+	 * A scanner that has been started at some offset of the code.
+	 */
+	public interface ResumableScanner extends AutoCloseable {
+
+		@Override
+		void close();
+
+		/**
+		 * Scan the next token and add it to the stream.
+		 *
+		 * @param tokens
+		 * @return false if there are no more tokens.
+		 */
+		boolean scanNext(TokenStream tokens);
+	}
+
+	/**
+	 * Starts scanners on some code.
+	 */
+	public interface ScannerFactory {
+		ResumableScanner startAt(char[] code, int offset);
+	}
+
+	/**
+	 * The number of chars after its end that a scanner may have looked at to
+	 * decide where a token ends (e.g. for ">>>=" or a unicode escape). Tokens
+	 * that end closer than this to the edit are rescanned.
+	 */
+	private static final int SCANNER_LOOKAHEAD = 8;
+
+	/**
+	 * Apply the edit to the code.
+	 *
+	 * @param code
+	 * @param offset
+	 * @param removedLength
+	 * @param insertedText
+	 * @return
+	 */
+	public static char[] applyEdit(final char[] code, final int offset,
+			final int removedLength, final String insertedText) {
+		checkPositionIndexes(offset, offset + removedLength, code.length);
+		final int insertedLength = insertedText.length();
+		final char[] edited = new char[code.length - removedLength
+				+ insertedLength];
+		System.arraycopy(code, 0, edited, 0, offset);
+		insertedText.getChars(0, insertedLength, edited, offset);
+		System.arraycopy(code, offset + removedLength, edited, offset
+				+ insertedLength, code.length - offset - removedLength);
+		return edited;
+	}
+
+	/**
+	 * Return the number of leading tokens of the previous stream that are
+	 * not affected by an edit at the given offset: the tokens up to (and
+	 * including) the last restart token that ends far enough before the
+	 * edit.
+	 */
+	private static int countUnaffectedTokens(final TokenStream previous,
+			final int offset, final IntPredicate isRestartToken) {
+		// Binary search for the tokens that end before the edit
+		int low = 0;
+		int high = previous.size();
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (previous.getEndOffset(mid) + SCANNER_LOOKAHEAD <= offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		int last = low - 1;
+		while (last >= 0 && !isRestartToken.test(previous.getTypeId(last))) {
+			last--;
+		}
+		return last + 1;
+	}
+
+	/**
+	 * Return the tokens of the code after an edit.
+	 *
+	 * @param previous
+	 *            the tokens of the code before the edit.
+	 * @param offset
+	 * @param removedLength
+	 * @param insertedText
+	 * @param isRestartToken
+	 *            true for the token types after which the scanner can be
+	 *            restarted without any context (e.g. any type for Java, but
+	 *            only statement or block boundaries for JavaScript, whose
+	 *            regular expressions depend on the previous token).
+	 * @param scanners
+	 * @return
+	 */
+	public static TokenStream retokenize(final TokenStream previous,
+			final int offset, final int removedLength,
+			final String insertedText, final IntPredicate isRestartToken,
+			final ScannerFactory scanners) {
+		final char[] code = applyEdit(previous.getSource(), offset,
+				removedLength, insertedText);
+		final int shift = insertedText.length() - removedLength;
+		final int editEnd = offset + insertedText.length();
+
+		final int unaffected = countUnaffectedTokens(previous, offset,
+				isRestartToken);
+		final TokenStream tokens = new TokenStream(code, previous.size()
+				+ Math.max(shift, 0));
+		tokens.addAll(previous, 0, unaffected, 0);
+		final int restartOffset = unaffected == 0 ? 0 : previous
+				.getEndOffset(unaffected - 1);
+
+		int candidate = unaffected; // The previous token to synchronize with
+		try (final ResumableScanner scanner = scanners.startAt(code,
+				restartOffset)) {
+			while (scanner.scanNext(tokens)) {
+				final int last = tokens.size() - 1;
+				final int start = tokens.getStartOffset(last);
+				if (start < editEnd) {
+					continue;
+				}
+				final int previousStart = start - shift;
+				while (candidate < previous.size()
+						&& previous.getStartOffset(candidate) < previousStart) {
+					candidate++;
+				}
+				if (candidate < previous.size()
+						&& previous.getStartOffset(candidate) == previousStart
+						&& previous.getEndOffset(candidate) + shift == tokens
+								.getEndOffset(last)
+						&& previous.getTypeId(candidate) == tokens
+								.getTypeId(last)) {
+					tokens.addAll(previous, candidate + 1, previous.size(),
+							shift);
+					break;
+				}
+			}
+		}
+		return tokens;
+	}
+
+	private IncrementalTokenization() {
+		// No instances
+	}
+
+}
@@ -0,0 +1,193 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+import java.util.Arrays;
+
+/**
+ * An index of the lines of a piece of code, built in a single pass, that maps
+ * char offsets to (line, column) in O(log n) time. Lines are separated by
+ * \n, \r\n or a lone \r. The index also records the positions of the tabs, so
+ * that columns can be computed with tabs expanded to a number of spaces.
+ *
+ * Lines and columns are 0-based. The index is immutable and thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class LineIndex {
+
+	/**
+	 * Return the number of elements of the sorted array that are smaller than
+	 * the value.
+	 */
+	private static int countSmaller(final int[] sorted, final int value) {
+		final int idx = Arrays.binarySearch(sorted, value);
+		return idx >= 0 ? idx : -idx - 1;
+	}
+
+	/**
+	 * Return true if the character ends a line, i.e. it is a \n or a \r that
+	 * is not followed by a \n.
+	 *
+	 * @param c
+	 * @param next
+	 *            the next character or -1 at the end of the code
+	 * @return
+	 */
+	static boolean isLineEnd(final char c, final int next) {
+		return c == '\n' || (c == '\r' && next != '\n');
+	}
+
+	private final int length;
+
+	private final int tabSize;
+
+	/**
+	 * The offsets where each line starts.
+	 */
+	private final int[] lineStarts;
+
+	/**
+	 * The (sorted) offsets of the tab characters.
+	 */
+	private final int[] tabs;
+
+	/**
+	 * Index the code, expanding tabs to TokenizerUtils.TAB_INDENT_SIZE
+	 * spaces.
+	 *
+	 * @param code
+	 */
+	public LineIndex(final char[] code) {
+		this(code, TokenizerUtils.TAB_INDENT_SIZE);
+	}
+
+	/**
+	 * @param code
+	 * @param tabSize
+	 *            the number of spaces that a tab is expanded to.
+	 */
+	public LineIndex(final char[] code, final int tabSize) {
+		checkArgument(tabSize > 0, "The tab size must be positive");
+		this.tabSize = tabSize;
+		length = code.length;
+		int[] starts = new int[Math.max(16, code.length / 32)];
+		int nLines = 1;
+		int[] tabPositions = new int[16];
+		int nTabs = 0;
+		for (int i = 0; i < code.length; i++) {
+			final char c = code[i];
+			if (c == '\t') {
+				if (nTabs == tabPositions.length) {
+					tabPositions = Arrays.copyOf(tabPositions, 2 * nTabs);
+				}
+				tabPositions[nTabs++] = i;
+			} else if (isLineEnd(c, i + 1 < code.length ? code[i + 1] : -1)) {
+				if (nLines == starts.length) {
+					starts = Arrays.copyOf(starts, 2 * nLines);
+				}
+				starts[nLines++] = i + 1;
+			}
+		}
+		lineStarts = Arrays.copyOf(starts, nLines);
+		tabs = Arrays.copyOf(tabPositions, nTabs);
+	}
+
+	/**
+	 * Index the code, expanding tabs to TokenizerUtils.TAB_INDENT_SIZE
+	 * spaces.
+	 *
+	 * @param code
+	 */
+	public LineIndex(final String code) {
+		this(code.toCharArray());
+	}
+
+	/**
+	 * Return the column of the offset, with each tab counting as tabSize
+	 * characters.
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public int getColumn(final int offset) {
+		final int lineStart = lineStarts[getLine(offset)];
+		final int nTabs = countSmaller(tabs, offset)
+				- countSmaller(tabs, lineStart);
+		return offset - lineStart + (tabSize - 1) * nTabs;
+	}
+
+	/**
+	 * @return the length of the indexed code.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Return the line that contains the offset. The offset may be equal to
+	 * the length of the code.
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public int getLine(final int offset) {
+		checkPositionIndex(offset, length);
+		return countSmaller(lineStarts, offset + 1) - 1;
+	}
+
+	/**
+	 * Return the number of chars between the start of the line and the
+	 * offset, i.e. the column without any tab expansion.
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public int getLineOffset(final int offset) {
+		return offset - lineStarts[getLine(offset)];
+	}
+
+	/**
+	 * Return the offset where the given line starts.
+	 *
+	 * @param line
+	 * @return
+	 */
+	public int getLineStart(final int line) {
+		checkElementIndex(line, lineStarts.length);
+		return lineStarts[line];
+	}
+
+	/**
+	 * @return the number of lines.
+	 */
+	public int getNumLines() {
+		return lineStarts.length;
+	}
+
+	/**
+	 * Return the offset of the given line and (unexpanded) line offset.
+	 *
+	 * @param line
+	 * @param lineOffset
+	 * @return
+	 */
+	public int getOffset(final int line, final int lineOffset) {
+		checkArgument(lineOffset >= 0, "The line offset must be non-negative");
+		return Math.min(getLineStart(line) + lineOffset, length);
+	}
+
+	/**
+	 * @return the number of spaces that a tab is expanded to.
+	 */
+	public int getTabSize() {
+		return tabSize;
+	}
+
+}
@@ -0,0 +1,59 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.Supplier;
+
+/**
+ * A per-thread pool of reusable scanners (or any other non-thread-safe
+ * objects that are expensive to create). Each thread keeps at most one idle
+ * scanner. If a scanner is acquired while the thread's scanner is still in
+ * use (e.g. on a nested tokenization) a new one is created, so acquire() never
+ * returns a scanner that is in use. Callers are responsible for resetting the
+ * scanner's state before using it.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ScannerPool<S> {
+
+	private final Supplier<S> factory;
+
+	private final ThreadLocal<S> idleScanner = new ThreadLocal<S>();
+
+	/**
+	 * @param factory
+	 *            creates a new scanner when the thread has no idle one.
+	 */
+	public ScannerPool(final Supplier<S> factory) {
+		this.factory = checkNotNull(factory);
+	}
+
+	/**
+	 * Return a scanner that is not used by anyone else. It should be returned
+	 * with release() when the caller is done with it.
+	 *
+	 * @return
+	 */
+	public S acquire() {
+		final S scanner = idleScanner.get();
+		if (scanner == null) {
+			return factory.get();
+		}
+		idleScanner.set(null);
+		return scanner;
+	}
+
+	/**
+	 * Return a scanner to the pool of the current thread.
+	 *
+	 * @param scanner
+	 */
+	public void release(final S scanner) {
+		idleScanner.set(scanner);
+	}
+
+}
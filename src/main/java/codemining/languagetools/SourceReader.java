@@ -0,0 +1,272 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import codemining.util.SettingsLoader;
+
+/**
+ * Reads source code files. Small files are read directly into a per-thread
+ * (reused) byte buffer and large files are memory-mapped. The bytes are then
+ * decoded in one pass into a char array of the exact size of the code, since
+ * the tokenizers and parsers use the length of the array.
+ *
+ * The charset is detected from the byte order mark, if any. Otherwise, pure
+ * ASCII files are widened directly, and the rest are decoded as UTF-8, falling
+ * back to the platform charset if the file is not valid UTF-8.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class SourceReader {
+
+	/**
+	 * The contents of a file, with the charset that they were decoded with.
+	 *
+	 */
+	public static final class DecodedSource {
+
+		public final char[] chars;
+
+		/**
+		 * The charset that a parser reading the file itself (e.g. JDT's
+		 * createASTs()) must use to get the same chars, and thus the same
+		 * offsets. A UTF-16 byte order mark is consumed by the UTF-16 charset
+		 * and JDT skips a UTF-8 one.
+		 */
+		public final Charset charset;
+
+		DecodedSource(final char[] chars, final Charset charset) {
+			this.chars = chars;
+			this.charset = charset;
+		}
+
+	}
+
+	/**
+	 * Files larger than this are memory-mapped instead of read.
+	 */
+	private static final long MMAP_THRESHOLD_BYTES = (long) SettingsLoader
+			.getNumericSetting("mmapThresholdBytes", 4 << 20);
+
+	private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+	private static final ThreadLocal<ByteBuffer> READ_BUFFERS = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+	private static final ThreadLocal<CharsetDecoder> UTF8_DECODERS = ThreadLocal
+			.withInitial(() -> StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT));
+
+	/**
+	 * Decode the given bytes (from the buffer's position to its limit).
+	 *
+	 * @param bytes
+	 * @return
+	 */
+	static char[] decode(final ByteBuffer bytes) {
+		return decodeSource(bytes).chars;
+	}
+
+	/**
+	 * Decode the given bytes (from the buffer's position to its limit),
+	 * returning the charset that has been used.
+	 */
+	private static DecodedSource decodeSource(final ByteBuffer bytes) {
+		final int start = bytes.position();
+		final int length = bytes.remaining();
+		if (hasPrefix(bytes, 0xEF, 0xBB, 0xBF)) {
+			bytes.position(start + 3);
+			return decodeUtf8(bytes);
+		} else if (hasPrefix(bytes, 0xFE, 0xFF)) {
+			bytes.position(start + 2);
+			return new DecodedSource(decodeWith(bytes,
+					StandardCharsets.UTF_16BE), StandardCharsets.UTF_16);
+		} else if (hasPrefix(bytes, 0xFF, 0xFE)) {
+			bytes.position(start + 2);
+			return new DecodedSource(decodeWith(bytes,
+					StandardCharsets.UTF_16LE), StandardCharsets.UTF_16);
+		}
+
+		// Fast path: widen ASCII until the first non-ASCII byte
+		final char[] chars = new char[length];
+		int i = 0;
+		while (i < length) {
+			final byte b = bytes.get(start + i);
+			if (b < 0) {
+				break;
+			}
+			chars[i] = (char) b;
+			i++;
+		}
+		if (i == length) {
+			return new DecodedSource(chars, StandardCharsets.UTF_8);
+		}
+
+		// Decode the rest as UTF-8
+		bytes.position(start + i);
+		final CharBuffer out = CharBuffer.wrap(chars, i, length - i);
+		final CharsetDecoder decoder = UTF8_DECODERS.get().reset();
+		CoderResult result = decoder.decode(bytes, out, true);
+		if (!result.isError()) {
+			result = decoder.flush(out);
+		}
+		if (result.isError()) {
+			bytes.position(start);
+			return new DecodedSource(decodeWith(bytes,
+					Charset.defaultCharset()), Charset.defaultCharset());
+		}
+		return new DecodedSource(Arrays.copyOf(chars, out.position()),
+				StandardCharsets.UTF_8);
+	}
+
+	private static DecodedSource decodeUtf8(final ByteBuffer bytes) {
+		final int start = bytes.position();
+		try {
+			return new DecodedSource(toChars(UTF8_DECODERS.get().reset()
+					.decode(bytes)), StandardCharsets.UTF_8);
+		} catch (final CharacterCodingException e) {
+			bytes.position(start);
+			return new DecodedSource(decodeWith(bytes,
+					Charset.defaultCharset()), Charset.defaultCharset());
+		}
+	}
+
+	private static char[] decodeWith(final ByteBuffer bytes,
+			final Charset charset) {
+		return toChars(charset.decode(bytes));
+	}
+
+	private static boolean hasPrefix(final ByteBuffer bytes,
+			final int... prefix) {
+		if (bytes.remaining() < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if ((bytes.get(bytes.position() + i) & 0xFF) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read the contents of the file, with the charset they were decoded
+	 * with.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static DecodedSource read(final File file) throws IOException {
+		try (final FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			final long size = channel.size();
+			checkArgument(size <= Integer.MAX_VALUE, "File %s is too large",
+					file);
+			if (size > MMAP_THRESHOLD_BYTES) {
+				return decodeSource(channel.map(MapMode.READ_ONLY, 0, size));
+			}
+			final ByteBuffer buffer = getReadBuffer((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// Keep reading until the file has been read
+			}
+			buffer.flip();
+			return decodeSource(buffer);
+		}
+	}
+
+	/**
+	 * Read the contents of the file.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static char[] readChars(final File file) throws IOException {
+		return read(file).chars;
+	}
+
+	/**
+	 * Read (at most) the first bytes of the file, e.g. to find its package
+	 * declaration without reading the whole file. The bytes are decoded as
+	 * ISO-8859-1, so the result has a char per byte.
+	 *
+	 * @param file
+	 * @param maxBytes
+	 * @return
+	 * @throws IOException
+	 */
+	public static String readHeader(final File file, final int maxBytes)
+			throws IOException {
+		try (final FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			final ByteBuffer buffer = getReadBuffer((int) Math.min(maxBytes,
+					channel.size()));
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// Keep reading until the header has been read
+			}
+			buffer.flip();
+			return StandardCharsets.ISO_8859_1.decode(buffer).toString();
+		}
+	}
+
+	/**
+	 * Read the contents of the file as a String.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static String readString(final File file) throws IOException {
+		return new String(readChars(file));
+	}
+
+	/**
+	 * Return the thread's read buffer, cleared and limited to the given size.
+	 */
+	private static ByteBuffer getReadBuffer(final int size) {
+		ByteBuffer buffer = READ_BUFFERS.get();
+		if (buffer.capacity() < size) {
+			buffer = ByteBuffer.allocate(Math.max(size,
+					buffer.capacity() * 2));
+			READ_BUFFERS.set(buffer);
+		}
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+
+	private static char[] toChars(final CharBuffer decoded) {
+		if (decoded.hasArray() && decoded.arrayOffset() == 0
+				&& decoded.array().length == decoded.remaining()) {
+			return decoded.array();
+		}
+		final char[] chars = new char[decoded.remaining()];
+		decoded.get(chars);
+		return chars;
+	}
+
+	private SourceReader() {
+		// No instances
+	}
+
+}
@@ -0,0 +1,47 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+/**
+ * A callback that receives the tokens of a piece of code, in order, as they
+ * are produced by a tokenizer. No token objects or strings are created; the
+ * text of a token is source[start, end).
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public interface TokenSink {
+
+	/**
+	 * Receive the next token.
+	 *
+	 * @param typeId
+	 *            the tokenizer-specific type of the token or
+	 *            {@link TokenStream#NO_TYPE_ID}
+	 * @param start
+	 *            the start offset of the token in the source
+	 * @param end
+	 *            the end offset (exclusive) of the token in the source
+	 * @param source
+	 *            the code being tokenized
+	 */
+	void token(int typeId, int start, int end, char[] source);
+
+	/**
+	 * Receive the next token, when the tokenizer has already materialized
+	 * its text (e.g. because it differs from the source, as with unicode
+	 * escapes). By default the text is ignored.
+	 *
+	 * @param typeId
+	 * @param start
+	 * @param end
+	 * @param source
+	 * @param text
+	 */
+	default void tokenWithText(final int typeId, final int start,
+			final int end, final char[] source, final String text) {
+		token(typeId, start, end, source);
+	}
+
+}
@@ -0,0 +1,494 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+
+import codemining.languagetools.ITokenizer.FullToken;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A columnar token stream. The tokens of a piece of code are stored in
+ * parallel primitive arrays (type id, start and end offset) and the text of
+ * each token is only materialized when it is requested, by slicing the source
+ * code. This avoids the per-token boxed keys, map entries and strings of the
+ * SortedMap and List based views. The sentence start/end tokens are not
+ * stored; they are added by the list and map views. A token stream is also a
+ * {@link TokenSink}, so that it can be filled by any tokenizer. Not
+ * thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenStream implements TokenSink {
+
+	/**
+	 * The type id used when the type of a token is not an integer and is
+	 * instead stored as a name.
+	 */
+	public static final int NO_TYPE_ID = -1;
+
+	/**
+	 * Cached string representations of the most common type ids, so that we
+	 * do not call Integer.toString() for every token.
+	 */
+	private static final String[] TYPE_ID_STRINGS = new String[512];
+	static {
+		for (int i = 0; i < TYPE_ID_STRINGS.length; i++) {
+			TYPE_ID_STRINGS[i] = Integer.toString(i);
+		}
+	}
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Create a token stream from a map of positioned full tokens. The end of
+	 * each token is approximated by its length. Useful for tokenizers that
+	 * have no native columnar implementation.
+	 *
+	 * @param code
+	 * @param tokens
+	 * @return
+	 */
+	public static TokenStream fromFullTokens(final char[] code,
+			final SortedMap<Integer, FullToken> tokens) {
+		final TokenStream stream = new TokenStream(code, tokens.size());
+		for (final Entry<Integer, FullToken> entry : tokens.entrySet()) {
+			final FullToken token = entry.getValue();
+			if (token.token.equals(ITokenizer.SENTENCE_START)
+					|| token.token.equals(ITokenizer.SENTENCE_END)) {
+				continue;
+			}
+			final int start = Math.max(entry.getKey(), 0);
+			final int end = Math.min(start + token.token.length(),
+					code.length);
+			stream.add(token.tokenType, Math.min(start, end), end,
+					token.token);
+		}
+		return stream;
+	}
+
+	/**
+	 * Return the string representation of the given type id.
+	 *
+	 * @param typeId
+	 * @return
+	 */
+	public static String typeIdToString(final int typeId) {
+		if (typeId >= 0 && typeId < TYPE_ID_STRINGS.length) {
+			return TYPE_ID_STRINGS[typeId];
+		}
+		return Integer.toString(typeId);
+	}
+
+	private final char[] source;
+
+	private int size = 0;
+
+	private int[] typeIds;
+
+	private int[] startOffsets;
+
+	private int[] endOffsets;
+
+	/**
+	 * The token texts. Allocated lazily, either when a token has a text that
+	 * differs from the source or when a text is materialized.
+	 */
+	private String[] texts = null;
+
+	/**
+	 * The token type names, for tokenizers whose types are not integers.
+	 * Allocated lazily.
+	 */
+	private String[] typeNames = null;
+
+	public TokenStream(final char[] source) {
+		this(source, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param source
+	 *            the code that is being tokenized.
+	 * @param expectedSize
+	 *            the expected number of tokens.
+	 */
+	public TokenStream(final char[] source, final int expectedSize) {
+		this.source = source;
+		final int capacity = Math.max(expectedSize, DEFAULT_CAPACITY);
+		typeIds = new int[capacity];
+		startOffsets = new int[capacity];
+		endOffsets = new int[capacity];
+	}
+
+	/**
+	 * Add a token whose text is the source code in [start, end).
+	 *
+	 * @param typeId
+	 * @param start
+	 * @param end
+	 *            exclusive
+	 */
+	public void add(final int typeId, final int start, final int end) {
+		checkArgument(start <= end, "Token ends before it starts");
+		ensureCapacity(size + 1);
+		typeIds[size] = typeId;
+		startOffsets[size] = start;
+		endOffsets[size] = end;
+		size++;
+	}
+
+	/**
+	 * Add a token whose text is not (necessarily) the same as the source code
+	 * in [start, end).
+	 *
+	 * @param typeId
+	 * @param start
+	 * @param end
+	 *            exclusive
+	 * @param text
+	 */
+	public void add(final int typeId, final int start, final int end,
+			final String text) {
+		add(typeId, start, end);
+		if (texts == null) {
+			texts = new String[typeIds.length];
+		}
+		texts[size - 1] = text;
+	}
+
+	/**
+	 * Add a token whose type is a name rather than an integer id.
+	 *
+	 * @param typeName
+	 * @param start
+	 * @param end
+	 *            exclusive
+	 * @param text
+	 */
+	public void add(final String typeName, final int start, final int end,
+			final String text) {
+		add(NO_TYPE_ID, start, end, text);
+		if (typeNames == null) {
+			typeNames = new String[typeIds.length];
+		}
+		typeNames[size - 1] = typeName;
+	}
+
+	/**
+	 * Append the tokens [from, to) of another stream, shifting their offsets
+	 * by the given amount. Token texts that differ from the other stream's
+	 * source and type names are kept.
+	 *
+	 * @param other
+	 * @param from
+	 * @param to
+	 *            exclusive
+	 * @param offsetShift
+	 */
+	public void addAll(final TokenStream other, final int from, final int to,
+			final int offsetShift) {
+		checkPositionIndexes(from, to, other.size);
+		final int count = to - from;
+		ensureCapacity(size + count);
+		System.arraycopy(other.typeIds, from, typeIds, size, count);
+		for (int i = 0; i < count; i++) {
+			startOffsets[size + i] = other.startOffsets[from + i] + offsetShift;
+			endOffsets[size + i] = other.endOffsets[from + i] + offsetShift;
+		}
+		for (int i = from; i < to && other.typeNames != null; i++) {
+			if (other.typeNames[i] != null) {
+				if (typeNames == null) {
+					typeNames = new String[typeIds.length];
+				}
+				typeNames[size + i - from] = other.typeNames[i];
+			}
+		}
+		for (int i = from; i < to && other.texts != null; i++) {
+			if (other.texts[i] != null && !other.isSourceText(i)) {
+				if (texts == null) {
+					texts = new String[typeIds.length];
+				}
+				texts[size + i - from] = other.texts[i];
+			}
+		}
+		size += count;
+	}
+
+	private void ensureCapacity(final int minCapacity) {
+		if (minCapacity <= typeIds.length) {
+			return;
+		}
+		final int newCapacity = Math.max(minCapacity, typeIds.length * 2);
+		typeIds = Arrays.copyOf(typeIds, newCapacity);
+		startOffsets = Arrays.copyOf(startOffsets, newCapacity);
+		endOffsets = Arrays.copyOf(endOffsets, newCapacity);
+		if (texts != null) {
+			texts = Arrays.copyOf(texts, newCapacity);
+		}
+		if (typeNames != null) {
+			typeNames = Arrays.copyOf(typeNames, newCapacity);
+		}
+	}
+
+	/**
+	 * Return the end offsets (exclusive) of all tokens. The returned array
+	 * is the backing array and should not be modified.
+	 *
+	 * @return
+	 */
+	public int[] getEndOffsets() {
+		trimToSize();
+		return endOffsets;
+	}
+
+	/**
+	 * @param i
+	 * @return the end offset (exclusive) of the i-th token.
+	 */
+	public int getEndOffset(final int i) {
+		checkElementIndex(i, size);
+		return endOffsets[i];
+	}
+
+	/**
+	 * Return the code that has been tokenized.
+	 *
+	 * @return
+	 */
+	public char[] getSource() {
+		return source;
+	}
+
+	/**
+	 * @param i
+	 * @return the start offset of the i-th token.
+	 */
+	public int getStartOffset(final int i) {
+		checkElementIndex(i, size);
+		return startOffsets[i];
+	}
+
+	/**
+	 * Return the start offsets of all tokens. The returned array is the
+	 * backing array and should not be modified.
+	 *
+	 * @return
+	 */
+	public int[] getStartOffsets() {
+		trimToSize();
+		return startOffsets;
+	}
+
+	/**
+	 * Return the text of the i-th token. The text is materialized (and
+	 * cached) the first time it is requested.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public String getTokenText(final int i) {
+		checkElementIndex(i, size);
+		if (texts == null) {
+			texts = new String[typeIds.length];
+		} else if (texts[i] != null) {
+			return texts[i];
+		}
+		final String text = new String(source, startOffsets[i], endOffsets[i]
+				- startOffsets[i]);
+		texts[i] = text;
+		return text;
+	}
+
+	/**
+	 * Return the type of the i-th token, as it would appear in a FullToken.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public String getTokenType(final int i) {
+		checkElementIndex(i, size);
+		if (typeNames != null && typeNames[i] != null) {
+			return typeNames[i];
+		}
+		return typeIdToString(typeIds[i]);
+	}
+
+	/**
+	 * @param i
+	 * @return the type id of the i-th token.
+	 */
+	public int getTypeId(final int i) {
+		checkElementIndex(i, size);
+		return typeIds[i];
+	}
+
+	/**
+	 * Return the type ids of all tokens. The returned array is the backing
+	 * array and should not be modified.
+	 *
+	 * @return
+	 */
+	public int[] getTypeIds() {
+		trimToSize();
+		return typeIds;
+	}
+
+	/**
+	 * Return true if the (materialized) text of the i-th token is the same as
+	 * the source in its range.
+	 */
+	private boolean isSourceText(final int i) {
+		final String text = texts[i];
+		final int start = startOffsets[i];
+		if (text.length() != endOffsets[i] - start) {
+			return false;
+		}
+		for (int j = 0; j < text.length(); j++) {
+			if (text.charAt(j) != source[start + j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of tokens (excluding the sentence start/end).
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the full tokens, including the sentence start/end tokens.
+	 *
+	 * @return
+	 */
+	public List<FullToken> toFullTokenList() {
+		final List<FullToken> tokens = Lists.newArrayListWithCapacity(size + 2);
+		tokens.add(new FullToken(ITokenizer.SENTENCE_START,
+				ITokenizer.SENTENCE_START));
+		for (int i = 0; i < size; i++) {
+			tokens.add(new FullToken(getTokenText(i), getTokenType(i)));
+		}
+		tokens.add(new FullToken(ITokenizer.SENTENCE_END,
+				ITokenizer.SENTENCE_END));
+		return tokens;
+	}
+
+	/**
+	 * Return the full tokens keyed by their start offset, including the
+	 * sentence start/end tokens.
+	 *
+	 * @return
+	 */
+	public SortedMap<Integer, FullToken> toFullTokenPositionMap() {
+		final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
+		tokens.put(-1, new FullToken(ITokenizer.SENTENCE_START,
+				ITokenizer.SENTENCE_START));
+		tokens.put(Integer.MAX_VALUE, new FullToken(ITokenizer.SENTENCE_END,
+				ITokenizer.SENTENCE_END));
+		for (int i = 0; i < size; i++) {
+			tokens.put(startOffsets[i], new FullToken(getTokenText(i),
+					getTokenType(i)));
+		}
+		return tokens;
+	}
+
+	/**
+	 * Return the token texts, including the sentence start/end tokens.
+	 *
+	 * @return
+	 */
+	public List<String> toTokenList() {
+		final List<String> tokens = Lists.newArrayListWithCapacity(size + 2);
+		tokens.add(ITokenizer.SENTENCE_START);
+		for (int i = 0; i < size; i++) {
+			tokens.add(getTokenText(i));
+		}
+		tokens.add(ITokenizer.SENTENCE_END);
+		return tokens;
+	}
+
+	/**
+	 * Return the token texts keyed by their start offset, including the
+	 * sentence start/end tokens.
+	 *
+	 * @return
+	 */
+	public SortedMap<Integer, String> toTokenPositionMap() {
+		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
+		tokens.put(-1, ITokenizer.SENTENCE_START);
+		tokens.put(Integer.MAX_VALUE, ITokenizer.SENTENCE_END);
+		for (int i = 0; i < size; i++) {
+			tokens.put(startOffsets[i], getTokenText(i));
+		}
+		return tokens;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.TokenSink#token(int, int, int, char[])
+	 */
+	@Override
+	public void token(final int typeId, final int start, final int end,
+			final char[] code) {
+		add(typeId, start, end);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < size; i++) {
+			sb.append(getTokenText(i));
+			sb.append(" (");
+			sb.append(getTokenType(i));
+			sb.append(")@");
+			sb.append(startOffsets[i]);
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see codemining.languagetools.TokenSink#tokenWithText(int, int, int,
+	 * char[], java.lang.String)
+	 */
+	@Override
+	public void tokenWithText(final int typeId, final int start,
+			final int end, final char[] code, final String text) {
+		add(typeId, start, end, text);
+	}
+
+	/**
+	 * Release any unused capacity of the backing arrays.
+	 */
+	public void trimToSize() {
+		if (size == typeIds.length) {
+			return;
+		}
+		typeIds = Arrays.copyOf(typeIds, size);
+		startOffsets = Arrays.copyOf(startOffsets, size);
+		endOffsets = Arrays.copyOf(endOffsets, size);
+		if (texts != null) {
+			texts = Arrays.copyOf(texts, size);
+		}
+		if (typeNames != null) {
+			typeNames = Arrays.copyOf(typeNames, size);
+		}
+	}
+
+}
@@ -0,0 +1,411 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import codemining.languagetools.ITokenizer.FullToken;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A corpus-wide vocabulary that maps (token, type) pairs to dense integer ids
+ * and keeps a single canonical instance of each token. Id 0 is always the
+ * unknown token. The vocabulary is safe to use from multiple threads: ids are
+ * assigned once and never change, and occurrence counts are updated
+ * atomically.
+ *
+ * A vocabulary may be frozen (e.g. after a frequency cutoff), in which case no
+ * new ids are assigned and unseen tokens map to the unknown id.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenVocabulary {
+
+	/**
+	 * The id of the unknown token.
+	 */
+	public static final int UNK_ID = 0;
+
+	public static final String UNK_SYMBOL = "%UNK%";
+
+	public static final FullToken UNK_TOKEN = new FullToken(UNK_SYMBOL,
+			UNK_SYMBOL);
+
+	/**
+	 * Ids and counts are stored in fixed size chunks, so that the storage can
+	 * grow without copying (and without locking readers).
+	 */
+	private static final int CHUNK_BITS = 16;
+
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private static final int MAX_CHUNKS = 1 << (31 - CHUNK_BITS);
+
+	private static final int FILE_MAGIC = 0x544f4b56; // "TOKV"
+
+	private static final int FILE_VERSION = 1;
+
+	/**
+	 * Load a vocabulary that has been saved with {@link #save(File)}.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static TokenVocabulary load(final File file) throws IOException {
+		try (final DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			return read(in);
+		}
+	}
+
+	/**
+	 * Read a vocabulary that has been written with
+	 * {@link #write(DataOutputStream)}.
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static TokenVocabulary read(final DataInputStream in)
+			throws IOException {
+		if (in.readInt() != FILE_MAGIC) {
+			throw new IOException("Stream does not contain a token vocabulary");
+		}
+		final int version = in.readInt();
+		if (version != FILE_VERSION) {
+			throw new IOException("Unsupported vocabulary version " + version);
+		}
+		final boolean frozen = in.readBoolean();
+
+		final int nTypes = readVarInt(in);
+		final String[] types = new String[nTypes];
+		for (int i = 0; i < nTypes; i++) {
+			types[i] = readString(in);
+		}
+
+		final TokenVocabulary vocabulary = new TokenVocabulary();
+		vocabulary.addOccurrences(UNK_ID, readVarLong(in));
+		final int size = readVarInt(in);
+		for (int i = 1; i < size; i++) {
+			final String token = readString(in);
+			final String type = types[readVarInt(in)];
+			final int id = vocabulary.getOrAddId(new FullToken(token, type));
+			vocabulary.addOccurrences(id, readVarLong(in));
+		}
+		vocabulary.frozen = frozen;
+		return vocabulary;
+	}
+
+	private static String readString(final DataInputStream in)
+			throws IOException {
+		final byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int readVarInt(final DataInputStream in) throws IOException {
+		return (int) readVarLong(in);
+	}
+
+	private static long readVarLong(final DataInputStream in)
+			throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	private static void writeString(final DataOutputStream out,
+			final String str) throws IOException {
+		final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeVarLong(final DataOutputStream out, long value)
+			throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private final ConcurrentMap<FullToken, Integer> tokenIds = Maps
+			.newConcurrentMap();
+
+	private final AtomicReferenceArray<FullToken[]> tokenChunks = new AtomicReferenceArray<FullToken[]>(
+			MAX_CHUNKS);
+
+	private final AtomicReferenceArray<AtomicLongArray> countChunks = new AtomicReferenceArray<AtomicLongArray>(
+			MAX_CHUNKS);
+
+	private final AtomicInteger size = new AtomicInteger(0);
+
+	private final Object addLock = new Object();
+
+	private volatile boolean frozen = false;
+
+	public TokenVocabulary() {
+		assignNextId(UNK_TOKEN);
+	}
+
+	/**
+	 * Add the tokens of the given stream to the vocabulary (counting one
+	 * occurrence each) and return their ids.
+	 *
+	 * @param tokens
+	 * @return
+	 */
+	public int[] addAll(final List<FullToken> tokens) {
+		final int[] ids = new int[tokens.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = addOccurrence(tokens.get(i));
+		}
+		return ids;
+	}
+
+	/**
+	 * Add an occurrence of the given token, assigning a new id if needed.
+	 *
+	 * @param token
+	 * @return the id of the token
+	 */
+	public int addOccurrence(final FullToken token) {
+		final int id = getOrAddId(token);
+		addOccurrences(id, 1);
+		return id;
+	}
+
+	/**
+	 * Add the given number of occurrences to the token with the given id.
+	 *
+	 * @param id
+	 * @param count
+	 */
+	public void addOccurrences(final int id, final long count) {
+		checkArgument(id >= 0 && id < size.get(), "Unknown id %s", id);
+		countChunks.get(id >>> CHUNK_BITS).addAndGet(id & CHUNK_MASK, count);
+	}
+
+	private int assignNextId(final FullToken token) {
+		final int id = size.get();
+		checkArgument(id < Integer.MAX_VALUE, "Vocabulary is full");
+		final int chunk = id >>> CHUNK_BITS;
+		if (tokenChunks.get(chunk) == null) {
+			tokenChunks.set(chunk, new FullToken[CHUNK_SIZE]);
+			countChunks.set(chunk, new AtomicLongArray(CHUNK_SIZE));
+		}
+		tokenChunks.get(chunk)[id & CHUNK_MASK] = token;
+		size.set(id + 1); // publishes the token
+		tokenIds.put(token, id);
+		return id;
+	}
+
+	/**
+	 * Return a new, frozen, vocabulary containing only the tokens that have
+	 * been seen at least minCount times. Ids are reassigned densely, keeping
+	 * the relative order of the retained tokens. The occurrences of the
+	 * removed tokens are added to the unknown token.
+	 *
+	 * @param minCount
+	 * @return
+	 */
+	public TokenVocabulary cutoff(final long minCount) {
+		final TokenVocabulary vocabulary = new TokenVocabulary();
+		final int currentSize = size();
+		long unkCount = getCount(UNK_ID);
+		for (int id = 1; id < currentSize; id++) {
+			final long count = getCount(id);
+			if (count >= minCount) {
+				final int newId = vocabulary.assignNextId(getToken(id));
+				vocabulary.addOccurrences(newId, count);
+			} else {
+				unkCount += count;
+			}
+		}
+		vocabulary.addOccurrences(UNK_ID, unkCount);
+		vocabulary.frozen = true;
+		return vocabulary;
+	}
+
+	/**
+	 * Stop assigning new ids. Tokens that are not in the vocabulary will
+	 * thereafter map to {@link #UNK_ID}.
+	 */
+	public void freeze() {
+		frozen = true;
+	}
+
+	/**
+	 * @param id
+	 * @return the number of occurrences of the token with the given id.
+	 */
+	public long getCount(final int id) {
+		checkArgument(id >= 0 && id < size.get(), "Unknown id %s", id);
+		return countChunks.get(id >>> CHUNK_BITS).get(id & CHUNK_MASK);
+	}
+
+	/**
+	 * Return the id of the given token or {@link #UNK_ID} if the token is not
+	 * in the vocabulary.
+	 *
+	 * @param token
+	 * @return
+	 */
+	public int getId(final FullToken token) {
+		final Integer id = tokenIds.get(token);
+		if (id == null) {
+			return UNK_ID;
+		}
+		return id;
+	}
+
+	/**
+	 * Return the id of the given token, assigning a new one if the token has
+	 * not been seen before. If the vocabulary is frozen, unseen tokens map to
+	 * {@link #UNK_ID}.
+	 *
+	 * @param token
+	 * @return
+	 */
+	public int getOrAddId(final FullToken token) {
+		final Integer id = tokenIds.get(token);
+		if (id != null) {
+			return id;
+		}
+		if (frozen) {
+			return UNK_ID;
+		}
+		synchronized (addLock) {
+			final Integer existingId = tokenIds.get(token);
+			if (existingId != null) {
+				return existingId;
+			}
+			return assignNextId(token);
+		}
+	}
+
+	/**
+	 * Return the canonical token for the given id.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public FullToken getToken(final int id) {
+		checkArgument(id >= 0 && id < size.get(), "Unknown id %s", id);
+		return tokenChunks.get(id >>> CHUNK_BITS)[id & CHUNK_MASK];
+	}
+
+	/**
+	 * Return the canonical instance of the given token. If the token is not
+	 * in the vocabulary, it is returned as is.
+	 *
+	 * @param token
+	 * @return
+	 */
+	public FullToken intern(final FullToken token) {
+		final Integer id = tokenIds.get(token);
+		if (id == null) {
+			return token;
+		}
+		return getToken(id);
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Save the vocabulary in a compact binary form. The distinct token types
+	 * are written once and each token refers to them by index. All integers
+	 * are variable-length encoded.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void save(final File file) throws IOException {
+		try (final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			write(out);
+		}
+	}
+
+	/**
+	 * @return the number of ids in the vocabulary, including the unknown
+	 *         token.
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	@Override
+	public String toString() {
+		return "TokenVocabulary [size=" + size() + ", frozen=" + frozen + "]";
+	}
+
+	/**
+	 * Write the vocabulary in the binary form of {@link #save(File)}, e.g. to
+	 * embed it in a larger file.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(final DataOutputStream out) throws IOException {
+		final int currentSize = size();
+		final Map<String, Integer> typeIndex = Maps.newHashMap();
+		final List<String> types = Lists.newArrayList();
+		for (int id = 1; id < currentSize; id++) {
+			final String type = getToken(id).tokenType;
+			if (!typeIndex.containsKey(type)) {
+				typeIndex.put(type, types.size());
+				types.add(type);
+			}
+		}
+
+		out.writeInt(FILE_MAGIC);
+		out.writeInt(FILE_VERSION);
+		out.writeBoolean(frozen);
+		writeVarLong(out, types.size());
+		for (final String type : types) {
+			writeString(out, type);
+		}
+		writeVarLong(out, getCount(UNK_ID));
+		writeVarLong(out, currentSize);
+		for (int id = 1; id < currentSize; id++) {
+			final FullToken token = getToken(id);
+			writeString(out, token.token);
+			writeVarLong(out, typeIndex.get(token.tokenType));
+			writeVarLong(out, getCount(id));
+		}
+	}
+
+}
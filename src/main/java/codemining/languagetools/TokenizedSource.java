@@ -0,0 +1,338 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.function.IntConsumer;
+
+import codemining.languagetools.ITokenizer.FullToken;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A piece of source code that has been tokenized once. It keeps the token
+ * positions, texts and (optionally) types and lazily exposes the list,
+ * positional and full-token views that the tokenizers return, as well as a
+ * position to token index lookup. Instances are immutable (the views are
+ * unmodifiable) and thread-safe, so they can be cached and shared.
+ *
+ * As in the tokenizer views, the token at index 0 is the sentence start and
+ * the last token is the sentence end.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenizedSource {
+
+	/**
+	 * Create a tokenized source from the positioned full tokens of the code
+	 * (as returned by fullTokenListWithPos()).
+	 *
+	 * @param code
+	 * @param tokens
+	 * @return
+	 */
+	public static TokenizedSource fromFullTokens(final char[] code,
+			final SortedMap<Integer, FullToken> tokens) {
+		final int size = countTokens(tokens);
+		final int[] positions = new int[size];
+		final String[] texts = new String[size];
+		final String[] types = new String[size];
+		int i = 0;
+		for (final Entry<Integer, FullToken> entry : tokens.entrySet()) {
+			if (isSentenceBoundary(entry.getKey())) {
+				continue;
+			}
+			positions[i] = entry.getKey();
+			texts[i] = entry.getValue().token;
+			types[i] = entry.getValue().tokenType;
+			i++;
+		}
+		return new TokenizedSource(code, positions, texts, types);
+	}
+
+	/**
+	 * Create a tokenized source from the positioned tokens of the code (as
+	 * returned by tokenListWithPos()). The token types are not available.
+	 *
+	 * @param code
+	 *            the code or null if it is not known.
+	 * @param tokens
+	 * @return
+	 */
+	public static TokenizedSource fromTokens(final char[] code,
+			final SortedMap<Integer, String> tokens) {
+		final int size = countTokens(tokens);
+		final int[] positions = new int[size];
+		final String[] texts = new String[size];
+		int i = 0;
+		for (final Entry<Integer, String> entry : tokens.entrySet()) {
+			if (isSentenceBoundary(entry.getKey())) {
+				continue;
+			}
+			positions[i] = entry.getKey();
+			texts[i] = entry.getValue();
+			i++;
+		}
+		return new TokenizedSource(code, positions, texts, null);
+	}
+
+	/**
+	 * Tokenize the code (once) using the full tokens of the given tokenizer.
+	 *
+	 * @param tokenizer
+	 * @param code
+	 * @return
+	 */
+	public static TokenizedSource tokenize(final ITokenizer tokenizer,
+			final char[] code) {
+		return fromFullTokens(code, tokenizer.fullTokenListWithPos(code));
+	}
+
+	private static int countTokens(final SortedMap<Integer, ?> tokens) {
+		int size = tokens.size();
+		if (tokens.containsKey(-1)) {
+			size--;
+		}
+		if (tokens.containsKey(Integer.MAX_VALUE)) {
+			size--;
+		}
+		return size;
+	}
+
+	/**
+	 * The tokenizers put the sentence start/end at these positions.
+	 */
+	private static boolean isSentenceBoundary(final int position) {
+		return position == -1 || position == Integer.MAX_VALUE;
+	}
+
+	private final char[] source;
+
+	/**
+	 * The (sorted) start positions of the tokens, excluding the sentence
+	 * start/end.
+	 */
+	private final int[] positions;
+
+	private final String[] texts;
+
+	/**
+	 * The token types or null if they are not known.
+	 */
+	private final String[] types;
+
+	private volatile List<String> tokenList = null;
+
+	private volatile List<FullToken> fullTokenList = null;
+
+	private volatile SortedMap<Integer, String> tokenPositionMap = null;
+
+	private volatile SortedMap<Integer, FullToken> fullTokenPositionMap = null;
+
+	private volatile LineIndex lineIndex = null;
+
+	private TokenizedSource(final char[] source, final int[] positions,
+			final String[] texts, final String[] types) {
+		this.source = source;
+		this.positions = positions;
+		this.texts = texts;
+		this.types = types;
+	}
+
+	/**
+	 * Return the full tokens, including the sentence start/end.
+	 *
+	 * @return
+	 */
+	public List<FullToken> getFullTokenList() {
+		List<FullToken> view = fullTokenList;
+		if (view == null) {
+			final List<FullToken> tokens = Lists
+					.newArrayListWithCapacity(positions.length + 2);
+			tokens.add(new FullToken(ITokenizer.SENTENCE_START,
+					ITokenizer.SENTENCE_START));
+			for (int i = 0; i < positions.length; i++) {
+				tokens.add(new FullToken(texts[i], getTokenType(i)));
+			}
+			tokens.add(new FullToken(ITokenizer.SENTENCE_END,
+					ITokenizer.SENTENCE_END));
+			view = Collections.unmodifiableList(tokens);
+			fullTokenList = view;
+		}
+		return view;
+	}
+
+	/**
+	 * Return the full tokens keyed by their position, including the sentence
+	 * start/end.
+	 *
+	 * @return
+	 */
+	public SortedMap<Integer, FullToken> getFullTokenPositionMap() {
+		SortedMap<Integer, FullToken> view = fullTokenPositionMap;
+		if (view == null) {
+			final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
+			tokens.put(-1, new FullToken(ITokenizer.SENTENCE_START,
+					ITokenizer.SENTENCE_START));
+			tokens.put(Integer.MAX_VALUE, new FullToken(
+					ITokenizer.SENTENCE_END, ITokenizer.SENTENCE_END));
+			for (int i = 0; i < positions.length; i++) {
+				tokens.put(positions[i], new FullToken(texts[i],
+						getTokenType(i)));
+			}
+			view = Collections.unmodifiableSortedMap(tokens);
+			fullTokenPositionMap = view;
+		}
+		return view;
+	}
+
+	/**
+	 * Return the line index of the source, building it on the first call.
+	 *
+	 * @return
+	 */
+	public LineIndex getLineIndex() {
+		checkState(source != null, "The source is not known");
+		LineIndex index = lineIndex;
+		if (index == null) {
+			index = new LineIndex(source);
+			lineIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Return the position of the token at the given index of the list views.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getPosition(final int index) {
+		if (index == 0) {
+			return -1;
+		} else if (index == positions.length + 1) {
+			return Integer.MAX_VALUE;
+		}
+		return positions[index - 1];
+	}
+
+	/**
+	 * Return the code that has been tokenized or null if it is not known.
+	 *
+	 * @return
+	 */
+	public char[] getSource() {
+		return source;
+	}
+
+	/**
+	 * Return the index (in the list views) of the token that starts at the
+	 * given position, or -1 if no token starts there.
+	 *
+	 * @param position
+	 * @return
+	 */
+	public int getTokenIndex(final int position) {
+		if (position == -1) {
+			return 0;
+		} else if (position == Integer.MAX_VALUE) {
+			return positions.length + 1;
+		}
+		final int idx = Arrays.binarySearch(positions, position);
+		if (idx < 0) {
+			return -1;
+		}
+		return idx + 1;
+	}
+
+	/**
+	 * Return the indexes (in the list views) of the tokens that start at the
+	 * given positions, in the same order. This is a tolerant lookup: the
+	 * positions where no token starts (e.g. of AST nodes that are not aligned
+	 * with the tokens) are skipped and reported to the given consumer.
+	 *
+	 * @param tokenPositions
+	 * @param unaligned
+	 *            called with each position where no token starts.
+	 * @return
+	 */
+	public int[] getTokenIndexes(final int[] tokenPositions,
+			final IntConsumer unaligned) {
+		final int[] indexes = new int[tokenPositions.length];
+		int size = 0;
+		for (final int position : tokenPositions) {
+			final int idx = getTokenIndex(position);
+			if (idx < 0) {
+				unaligned.accept(position);
+			} else {
+				indexes[size] = idx;
+				size++;
+			}
+		}
+		return size == indexes.length ? indexes : Arrays.copyOf(indexes, size);
+	}
+
+	/**
+	 * Return the token texts, including the sentence start/end.
+	 *
+	 * @return
+	 */
+	public List<String> getTokenList() {
+		List<String> view = tokenList;
+		if (view == null) {
+			final List<String> tokens = Lists
+					.newArrayListWithCapacity(positions.length + 2);
+			tokens.add(ITokenizer.SENTENCE_START);
+			tokens.addAll(Arrays.asList(texts));
+			tokens.add(ITokenizer.SENTENCE_END);
+			view = Collections.unmodifiableList(tokens);
+			tokenList = view;
+		}
+		return view;
+	}
+
+	/**
+	 * Return the token texts keyed by their position, including the sentence
+	 * start/end.
+	 *
+	 * @return
+	 */
+	public SortedMap<Integer, String> getTokenPositionMap() {
+		SortedMap<Integer, String> view = tokenPositionMap;
+		if (view == null) {
+			final SortedMap<Integer, String> tokens = Maps.newTreeMap();
+			tokens.put(-1, ITokenizer.SENTENCE_START);
+			tokens.put(Integer.MAX_VALUE, ITokenizer.SENTENCE_END);
+			for (int i = 0; i < positions.length; i++) {
+				tokens.put(positions[i], texts[i]);
+			}
+			view = Collections.unmodifiableSortedMap(tokens);
+			tokenPositionMap = view;
+		}
+		return view;
+	}
+
+	private String getTokenType(final int i) {
+		if (types == null) {
+			return "";
+		}
+		return types[i];
+	}
+
+	/**
+	 * @return the number of tokens, including the sentence start/end.
+	 */
+	public int size() {
+		return positions.length + 2;
+	}
+
+}
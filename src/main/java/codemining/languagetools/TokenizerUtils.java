@@ -9,8 +9,6 @@ import static com.google.common.base.Preconditions.checkPositionIndex;
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 
-import org.apache.commons.lang.StringUtils;
-
 import codemining.languagetools.ITokenizer.FullToken;
 import codemining.util.SettingsLoader;
 
@@ -26,20 +24,46 @@ public class TokenizerUtils {
 			.getNumericSetting("tabSize", 4);
 
 	/**
-	 * Return the column of the given position.
-	 * 
+	 * Return the column of the given position, using a line index of the
+	 * code. Tabs count as TAB_INDENT_SIZE characters. For compatibility with
+	 * getColumnOfPosition(String, int), the columns are 1-based, except on
+	 * the first line. This takes O(log n) time, so it should be preferred
+	 * when looking up many positions of the same code.
+	 *
+	 * @param lineIndex
+	 * @param position
+	 * @return
+	 */
+	public static int getColumnOfPosition(final LineIndex lineIndex,
+			final int position) {
+		final int column = lineIndex.getColumn(position);
+		return lineIndex.getLine(position) == 0 ? column : column + 1;
+	}
+
+	/**
+	 * Return the column of the given position. Tabs count as TAB_INDENT_SIZE
+	 * characters. Lines end at a \n or a lone \r, as in {@link LineIndex}.
+	 *
 	 * @param code
 	 * @param position
 	 * @return
 	 */
 	public static int getColumnOfPosition(final String code, final int position) {
 		checkPositionIndex(position, code.length());
-		int newLinePosition = code.substring(0, position).lastIndexOf("\n");
+		int newLinePosition = position - 1;
+		int tabCount = 0;
+		while (newLinePosition >= 0
+				&& !LineIndex.isLineEnd(code.charAt(newLinePosition),
+						newLinePosition + 1 < code.length() ? code
+								.charAt(newLinePosition + 1) : -1)) {
+			if (code.charAt(newLinePosition) == '\t') {
+				tabCount++;
+			}
+			newLinePosition--;
+		}
 		if (newLinePosition == -1) {
 			newLinePosition = 0; // Start of file.
 		}
-		final int tabCount = StringUtils.countMatches(
-				code.substring(newLinePosition, position), "\t");
 		return position - newLinePosition + (TAB_INDENT_SIZE - 1) * tabCount;
 	}
 
@@ -172,4 +196,25 @@ public class TokenizerUtils {
 		return (ITokenizer) Class.forName(tokenizerClass).newInstance();
 	}
 
+	/**
+	 * Return a view of the tokens without the sentence start/end, if they
+	 * are there. Not all tokenizers add them (e.g. the Python ones do not).
+	 *
+	 * @param tokens
+	 * @return
+	 */
+	public static List<FullToken> withoutSentenceStartEnd(
+			final List<FullToken> tokens) {
+		int from = 0;
+		int to = tokens.size();
+		if (to > 0 && tokens.get(0).token.equals(ITokenizer.SENTENCE_START)) {
+			from++;
+		}
+		if (to > from
+				&& tokens.get(to - 1).token.equals(ITokenizer.SENTENCE_END)) {
+			to--;
+		}
+		return tokens.subList(from, to);
+	}
+
 }
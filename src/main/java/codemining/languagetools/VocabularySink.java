@@ -0,0 +1,74 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import java.util.Arrays;
+
+/**
+ * A token sink that adds the tokens it receives to a vocabulary and keeps
+ * only their ids, so that tokenizers can produce ids straight from their
+ * scanners without building a list of tokens.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class VocabularySink implements TokenSink {
+
+	/**
+	 * Transforms the text of a scanned token before it is looked up in the
+	 * vocabulary.
+	 */
+	@FunctionalInterface
+	public interface TokenTransformer {
+		String transform(int typeId, String text);
+	}
+
+	private final TokenVocabulary vocabulary;
+
+	private final TokenTransformer transformer;
+
+	private int[] ids;
+
+	private int size = 0;
+
+	/**
+	 * @param vocabulary
+	 * @param expectedSize
+	 *            the expected number of tokens
+	 * @param transformer
+	 */
+	public VocabularySink(final TokenVocabulary vocabulary,
+			final int expectedSize, final TokenTransformer transformer) {
+		this.vocabulary = vocabulary;
+		this.transformer = transformer;
+		ids = new int[Math.max(expectedSize, 16)];
+	}
+
+	/**
+	 * Return the ids of the tokens received so far.
+	 *
+	 * @return
+	 */
+	public int[] getIds() {
+		return Arrays.copyOf(ids, size);
+	}
+
+	@Override
+	public void token(final int typeId, final int start, final int end,
+			final char[] source) {
+		tokenWithText(typeId, start, end, source, new String(source, start,
+				end - start));
+	}
+
+	@Override
+	public void tokenWithText(final int typeId, final int start,
+			final int end, final char[] source, final String text) {
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, ids.length * 2);
+		}
+		ids[size++] = vocabulary.addOccurrence(new FullToken(transformer
+				.transform(typeId, text), TokenStream.typeIdToString(typeId)));
+	}
+
+}
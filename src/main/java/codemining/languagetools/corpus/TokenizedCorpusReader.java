@@ -0,0 +1,320 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+import codemining.languagetools.TokenVocabulary;
+
+/**
+ * Random access reader of a tokenized corpus file (see the package
+ * documentation for the format). The token section is memory-mapped and the
+ * token ids of a file are decoded directly from the mapped memory, without
+ * copying. Only the file table is loaded in memory; the vocabulary is loaded
+ * the first time it is requested.
+ *
+ * Since a single mapping cannot exceed 2GB, the token section is mapped in
+ * segments that overlap by the size of the largest file, so that the tokens
+ * of every file are within a single segment. The reader is thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenizedCorpusReader implements Closeable {
+
+	/**
+	 * The token ids of a single file, decoded on demand from the mapped
+	 * memory.
+	 */
+	public static final class TokenIds implements Iterable<Integer> {
+
+		private final ByteBuffer segment;
+
+		private final int start;
+
+		private final int size;
+
+		private TokenIds(final ByteBuffer segment, final int start,
+				final int size) {
+			this.segment = segment;
+			this.start = start;
+			this.size = size;
+		}
+
+		/**
+		 * Call the consumer for each token id, in order.
+		 *
+		 * @param consumer
+		 */
+		public void forEachId(final IntConsumer consumer) {
+			int position = start;
+			for (int i = 0; i < size; i++) {
+				int value = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = segment.get(position++);
+					value |= (b & 0x7F) << shift;
+					shift += 7;
+				} while ((b & 0x80) != 0);
+				consumer.accept(value);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Iterable#iterator()
+		 */
+		@Override
+		public PrimitiveIterator.OfInt iterator() {
+			return new PrimitiveIterator.OfInt() {
+
+				int position = start;
+
+				int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@Override
+				public int nextInt() {
+					if (next >= size) {
+						throw new NoSuchElementException();
+					}
+					next++;
+					int value = 0;
+					int shift = 0;
+					byte b;
+					do {
+						b = segment.get(position++);
+						value |= (b & 0x7F) << shift;
+						shift += 7;
+					} while ((b & 0x80) != 0);
+					return value;
+				}
+			};
+		}
+
+		/**
+		 * @return the number of tokens.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @return a copy of the token ids.
+		 */
+		public int[] toArray() {
+			final int[] ids = new int[size];
+			final PrimitiveIterator.OfInt it = iterator();
+			for (int i = 0; i < size; i++) {
+				ids[i] = it.nextInt();
+			}
+			return ids;
+		}
+
+	}
+
+	/**
+	 * The (nominal) size of the segments of the token section.
+	 */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	private static long readVarLong(final InputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.read();
+			if (b < 0) {
+				throw new IOException("Truncated corpus file table");
+			}
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	private final File corpusFile;
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer[] segments;
+
+	private final String[] fileNames;
+
+	private final long[] fileOffsets;
+
+	private final int[] fileTokenCounts;
+
+	private final long totalTokens;
+
+	private final long vocabularyOffset;
+
+	private volatile TokenVocabulary vocabulary = null;
+
+	public TokenizedCorpusReader(final File corpusFile) throws IOException {
+		this.corpusFile = corpusFile;
+		channel = FileChannel.open(corpusFile.toPath(), StandardOpenOption.READ);
+		try {
+			final ByteBuffer header = ByteBuffer
+					.allocate(TokenizedCorpusWriter.HEADER_SIZE);
+			while (header.hasRemaining()
+					&& channel.read(header, header.position()) >= 0) {
+				// Keep reading until the header has been read
+			}
+			header.flip();
+			if (header.remaining() < TokenizedCorpusWriter.HEADER_SIZE
+					|| header.getInt() != TokenizedCorpusWriter.FILE_MAGIC) {
+				throw new IOException(corpusFile
+						+ " is not a tokenized corpus");
+			}
+			final int version = header.getInt();
+			if (version != TokenizedCorpusWriter.FILE_VERSION) {
+				throw new IOException("Unsupported corpus version " + version);
+			}
+			final int nFiles = header.getInt();
+			final int maxFileBytes = header.getInt();
+			totalTokens = header.getLong();
+			vocabularyOffset = header.getLong();
+			final long fileTableOffset = header.getLong();
+
+			final int nSegments = (int) ((vocabularyOffset + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			segments = new MappedByteBuffer[nSegments];
+			for (int i = 0; i < nSegments; i++) {
+				final long start = i * SEGMENT_SIZE;
+				final long end = Math.min(vocabularyOffset, start
+						+ SEGMENT_SIZE + maxFileBytes);
+				segments[i] = channel.map(MapMode.READ_ONLY, start, end
+						- start);
+			}
+
+			fileNames = new String[nFiles];
+			fileOffsets = new long[nFiles];
+			fileTokenCounts = new int[nFiles];
+			try (final InputStream in = new BufferedInputStream(
+					new FileInputStream(corpusFile), 1 << 16)) {
+				skipFully(in, fileTableOffset);
+				for (int i = 0; i < nFiles; i++) {
+					final byte[] name = new byte[(int) readVarLong(in)];
+					new DataInputStream(in).readFully(name);
+					fileNames[i] = new String(name, StandardCharsets.UTF_8);
+					fileOffsets[i] = readVarLong(in);
+					fileTokenCounts[i] = (int) readVarLong(in);
+				}
+			}
+		} catch (final IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Return the name of the i-th file.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public String getFileName(final int file) {
+		checkElementIndex(file, fileNames.length);
+		return fileNames[file];
+	}
+
+	/**
+	 * @return the number of files in the corpus.
+	 */
+	public int getNumFiles() {
+		return fileNames.length;
+	}
+
+	/**
+	 * Return the token ids of the i-th file.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public TokenIds getTokenIds(final int file) {
+		checkElementIndex(file, fileNames.length);
+		if (fileTokenCounts[file] == 0) {
+			// The offset of an empty file may be past the last segment
+			return new TokenIds(segments[0], 0, 0);
+		}
+		final long offset = fileOffsets[file];
+		final int segment = (int) (offset / SEGMENT_SIZE);
+		return new TokenIds(segments[segment],
+				(int) (offset - segment * SEGMENT_SIZE),
+				fileTokenCounts[file]);
+	}
+
+	/**
+	 * @return the total number of tokens in the corpus.
+	 */
+	public long getTotalTokens() {
+		return totalTokens;
+	}
+
+	/**
+	 * Return the vocabulary of the corpus, loading it on the first call.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public TokenVocabulary getVocabulary() throws IOException {
+		TokenVocabulary loaded = vocabulary;
+		if (loaded == null) {
+			synchronized (this) {
+				loaded = vocabulary;
+				if (loaded == null) {
+					try (final DataInputStream in = new DataInputStream(
+							new BufferedInputStream(new FileInputStream(
+									corpusFile), 1 << 16))) {
+						skipFully(in, vocabularyOffset);
+						loaded = TokenVocabulary.read(in);
+					}
+					vocabulary = loaded;
+				}
+			}
+		}
+		return loaded;
+	}
+
+	private void skipFully(final InputStream in, final long bytes)
+			throws IOException {
+		long remaining = bytes;
+		while (remaining > 0) {
+			final long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				throw new IOException("Truncated corpus file " + corpusFile);
+			}
+			remaining -= skipped;
+		}
+	}
+
+}
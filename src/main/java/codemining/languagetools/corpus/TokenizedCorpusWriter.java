@@ -0,0 +1,268 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import codemining.languagetools.CorpusTokenizer;
+import codemining.languagetools.ITokenizer;
+import codemining.languagetools.TokenVocabulary;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Writes a tokenized corpus file (see the package documentation for the
+ * format). The token ids of each file are streamed to disk as they are added;
+ * only the (small) file table is kept in memory until the writer is closed.
+ * The vocabulary is written when the writer is closed, so it may grow while
+ * files are added.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenizedCorpusWriter implements Closeable {
+
+	/**
+	 * The counting stream that keeps track of the current offset in the file.
+	 */
+	private static final class CountingOutputStream extends
+			BufferedOutputStream {
+
+		long position = 0;
+
+		CountingOutputStream(final OutputStream out) {
+			super(out, 1 << 16);
+		}
+
+		@Override
+		public synchronized void write(final byte[] b, final int off,
+				final int len) throws IOException {
+			super.write(b, off, len);
+			position += len;
+		}
+
+		@Override
+		public synchronized void write(final int b) throws IOException {
+			super.write(b);
+			position++;
+		}
+
+	}
+
+	static final int FILE_MAGIC = 0x544b4350; // "TKCP"
+
+	static final int FILE_VERSION = 1;
+
+	public static final int HEADER_SIZE = 40;
+
+	/**
+	 * The maximum size of the tokens of a single file. The reader maps the
+	 * corpus in overlapping segments, so that the tokens of each file are in a
+	 * single segment.
+	 */
+	static final int MAX_FILE_BYTES = 1 << 30;
+
+	/**
+	 * Tokenize all the files under the root (in parallel) and write them in
+	 * path order. The file names are relative to the root.
+	 *
+	 * @param root
+	 * @param corpus
+	 * @param vocabulary
+	 * @param corpusFile
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void writeCorpus(final File root,
+			final CorpusTokenizer corpus, final TokenVocabulary vocabulary,
+			final File corpusFile) throws IOException, InterruptedException {
+		final String rootPath = root.getAbsolutePath();
+		final IOException[] writeError = new IOException[1];
+		try (final TokenizedCorpusWriter writer = new TokenizedCorpusWriter(
+				corpusFile, vocabulary)) {
+			corpus.tokenize(root, (tokenizer, file, code) -> tokenizer
+					.tokenizeToIds(code, vocabulary), (file, ids) -> {
+				if (writeError[0] != null) {
+					return;
+				}
+				String name = file.getAbsolutePath();
+				if (name.startsWith(rootPath)
+						&& name.length() > rootPath.length()) {
+					name = name.substring(rootPath.length() + 1);
+				} else {
+					name = file.getName();
+				}
+				try {
+					writer.addFile(name, ids);
+				} catch (final IOException e) {
+					writeError[0] = e;
+				}
+			});
+			if (writeError[0] != null) {
+				throw writeError[0];
+			}
+		}
+	}
+
+	private static void writeVarLong(final OutputStream out, long value)
+			throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private final FileOutputStream fileStream;
+
+	private final CountingOutputStream out;
+
+	private final TokenVocabulary vocabulary;
+
+	private final List<String> fileNames = Lists.newArrayList();
+
+	private final List<Long> fileOffsets = Lists.newArrayList();
+
+	private final List<Integer> fileTokenCounts = Lists.newArrayList();
+
+	private long totalTokens = 0;
+
+	private int maxFileBytes = 0;
+
+	private boolean closed = false;
+
+	private byte[] encodeBuffer = new byte[1 << 16];
+
+	/**
+	 * @param corpusFile
+	 *            the file to write to.
+	 * @param vocabulary
+	 *            the vocabulary of the token ids.
+	 * @throws IOException
+	 */
+	public TokenizedCorpusWriter(final File corpusFile,
+			final TokenVocabulary vocabulary) throws IOException {
+		this.vocabulary = vocabulary;
+		fileStream = new FileOutputStream(corpusFile);
+		out = new CountingOutputStream(fileStream);
+		// Reserve the header, it is written when closing
+		out.write(new byte[HEADER_SIZE]);
+	}
+
+	/**
+	 * Tokenize the code and add its token ids, growing the vocabulary as
+	 * needed.
+	 *
+	 * @param name
+	 * @param tokenizer
+	 * @param code
+	 * @throws IOException
+	 */
+	public void addFile(final String name, final ITokenizer tokenizer,
+			final char[] code) throws IOException {
+		addFile(name, tokenizer.tokenizeToIds(code, vocabulary));
+	}
+
+	/**
+	 * Add the token ids of a file.
+	 *
+	 * @param name
+	 * @param tokenIds
+	 * @throws IOException
+	 */
+	public void addFile(final String name, final int[] tokenIds)
+			throws IOException {
+		checkState(!closed, "The writer has been closed");
+		// Encode the whole file first, a varint takes at most 5 bytes
+		if (encodeBuffer.length < 5L * tokenIds.length) {
+			checkArgument(5L * tokenIds.length < Integer.MAX_VALUE,
+					"The tokens of %s are too many", name);
+			encodeBuffer = new byte[Math.max(5 * tokenIds.length,
+					2 * encodeBuffer.length)];
+		}
+		int length = 0;
+		for (final int id : tokenIds) {
+			checkArgument(id >= 0, "Token ids must be non-negative");
+			int value = id;
+			while ((value & ~0x7F) != 0) {
+				encodeBuffer[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			encodeBuffer[length++] = (byte) value;
+		}
+		checkArgument(length < MAX_FILE_BYTES, "The tokens of %s are too large",
+				name);
+		final long start = out.position;
+		out.write(encodeBuffer, 0, length);
+
+		fileNames.add(name);
+		fileOffsets.add(start);
+		fileTokenCounts.add(tokenIds.length);
+		totalTokens += tokenIds.length;
+		maxFileBytes = Math.max(maxFileBytes, length);
+	}
+
+	/**
+	 * Write the vocabulary, the file table and the header and close the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			final DataOutputStream dataOut = new DataOutputStream(out);
+			final long vocabularyOffset = out.position;
+			vocabulary.write(dataOut);
+
+			final long fileTableOffset = out.position;
+			for (int i = 0; i < fileNames.size(); i++) {
+				final byte[] nameBytes = fileNames.get(i).getBytes(
+						StandardCharsets.UTF_8);
+				writeVarLong(out, nameBytes.length);
+				out.write(nameBytes);
+				writeVarLong(out, fileOffsets.get(i));
+				writeVarLong(out, fileTokenCounts.get(i));
+			}
+			out.flush();
+
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(FILE_MAGIC);
+			header.putInt(FILE_VERSION);
+			header.putInt(fileNames.size());
+			header.putInt(maxFileBytes);
+			header.putLong(totalTokens);
+			header.putLong(vocabularyOffset);
+			header.putLong(fileTableOffset);
+			header.flip();
+			long position = 0;
+			while (header.hasRemaining()) {
+				position += fileStream.getChannel().write(header, position);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the number of files written so far.
+	 */
+	public int getNumFiles() {
+		return fileNames.size();
+	}
+
+}
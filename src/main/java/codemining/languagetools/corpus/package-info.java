@@ -0,0 +1,22 @@
+/**
+ * A compact binary format for tokenized corpora, so that a corpus can be
+ * tokenized once and then memory-mapped by every experiment.
+ *
+ * A corpus file has the following sections, in this order:
+ * <ol>
+ * <li>Header (fixed, {@value codemining.languagetools.corpus.TokenizedCorpusWriter#HEADER_SIZE}
+ * bytes, big-endian): magic "TKCP" (int), version (int), number of files
+ * (int), largest token section of a single file in bytes (int), total number
+ * of tokens (long), offset of the vocabulary section (long) and offset of the
+ * file table (long).</li>
+ * <li>Token section: for each file, its token ids as unsigned LEB128 varints.
+ * </li>
+ * <li>Vocabulary section: the {@link codemining.languagetools.TokenVocabulary}
+ * that maps the ids to tokens, as written by
+ * {@link codemining.languagetools.TokenVocabulary#write(java.io.DataOutputStream)}
+ * .</li>
+ * <li>File table: for each file, its name (varint length and UTF-8 bytes), the
+ * offset of its tokens (varint) and its number of tokens (varint).</li>
+ * </ol>
+ */
+package codemining.languagetools.corpus;
@@ -0,0 +1,164 @@
+/**
+ *
+ */
+package codemining.languagetools.ngram;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import codemining.languagetools.CorpusTokenizer;
+import codemining.languagetools.TokenVocabulary;
+import codemining.languagetools.corpus.TokenizedCorpusReader;
+
+/**
+ * Counts the n-grams of all orders up to a maximum order over token id
+ * sequences. Each thread counts into its own shard (with no synchronization);
+ * the shards are merged, and optionally pruned, when the counts are
+ * requested.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class NGramCounter {
+
+	private final int maxOrder;
+
+	/**
+	 * The size of the vocabulary of the ids, that determines whether the
+	 * n-grams can be packed.
+	 */
+	private final int vocabularySize;
+
+	/**
+	 * The shards of the threads, each containing the counts of every order.
+	 */
+	private final Map<Thread, NGramCounts[]> shards = new ConcurrentHashMap<Thread, NGramCounts[]>();
+
+	/**
+	 * Count n-grams of ids from the given vocabulary. If the vocabulary is
+	 * frozen, its size is used to pack the n-grams; otherwise the ids may be
+	 * up to Integer.MAX_VALUE and only unigrams and bigrams are packed.
+	 *
+	 * @param maxOrder
+	 * @param vocabulary
+	 */
+	public NGramCounter(final int maxOrder, final TokenVocabulary vocabulary) {
+		this(maxOrder, vocabulary.isFrozen() ? vocabulary.size()
+				: Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxOrder
+	 *            the maximum order of the n-grams to count.
+	 * @param vocabularySize
+	 *            the ids of the tokens must be smaller than this.
+	 */
+	public NGramCounter(final int maxOrder, final int vocabularySize) {
+		checkArgument(maxOrder > 0, "The maximum order must be positive");
+		checkArgument(vocabularySize > 0, "The vocabulary must not be empty");
+		this.maxOrder = maxOrder;
+		this.vocabularySize = vocabularySize;
+	}
+
+	/**
+	 * Tokenize all the files under the root in parallel and count their
+	 * n-grams, adding their tokens to the vocabulary.
+	 *
+	 * @param root
+	 * @param corpus
+	 * @param vocabulary
+	 * @throws InterruptedException
+	 */
+	public void addCorpus(final File root, final CorpusTokenizer corpus,
+			final TokenVocabulary vocabulary) throws InterruptedException {
+		corpus.tokenize(root, (tokenizer, file, code) -> {
+			addSequence(tokenizer.tokenizeToIds(code, vocabulary));
+			return Boolean.TRUE;
+		}, (file, counted) -> {
+			// The n-grams have already been counted by the tokenizing threads
+		});
+	}
+
+	/**
+	 * Count the n-grams of all the files of a tokenized corpus, in parallel.
+	 * The corpus vocabulary should have been used to create the counter.
+	 *
+	 * @param corpus
+	 */
+	public void addCorpus(final TokenizedCorpusReader corpus) {
+		IntStream.range(0, corpus.getNumFiles()).parallel()
+				.forEach(file -> addSequence(corpus.getTokenIds(file).toArray()));
+	}
+
+	/**
+	 * Count the n-grams of the sequence. This may be called concurrently from
+	 * multiple threads, but not concurrently with getCounts().
+	 *
+	 * @param ids
+	 */
+	public void addSequence(final int[] ids) {
+		final NGramCounts[] shard = shards.computeIfAbsent(
+				Thread.currentThread(), thread -> newShard());
+		for (final NGramCounts counts : shard) {
+			counts.addAll(ids);
+		}
+	}
+
+	/**
+	 * Merge the shards of all the threads and return the counts of every
+	 * order. Each order is merged in parallel. The shards are then cleared,
+	 * so further sequences are counted from scratch.
+	 *
+	 * @param minCount
+	 *            the n-grams seen less than minCount times are pruned.
+	 * @return the counts, where the i-th element contains the (i+1)-grams.
+	 */
+	public NGramCounts[] getCounts(final long minCount) {
+		final Collection<NGramCounts[]> toMerge = shards.values();
+		final NGramCounts[] merged = new NGramCounts[maxOrder];
+		IntStream.range(0, maxOrder).parallel().forEach(order -> {
+			NGramCounts largest = null;
+			for (final NGramCounts[] shard : toMerge) {
+				if (largest == null || shard[order].size() > largest.size()) {
+					largest = shard[order];
+				}
+			}
+			if (largest == null) {
+				merged[order] = NGramCounts.create(order + 1, vocabularySize);
+				return;
+			}
+			for (final NGramCounts[] shard : toMerge) {
+				if (shard[order] != largest) {
+					largest.merge(shard[order]);
+				}
+			}
+			if (minCount > 1) {
+				largest.prune(minCount);
+			}
+			merged[order] = largest;
+		});
+		shards.clear();
+		return merged;
+	}
+
+	/**
+	 * @return the maximum order of the n-grams.
+	 */
+	public int getMaxOrder() {
+		return maxOrder;
+	}
+
+	private NGramCounts[] newShard() {
+		final NGramCounts[] shard = new NGramCounts[maxOrder];
+		for (int i = 0; i < maxOrder; i++) {
+			shard[i] = NGramCounts.create(i + 1, vocabularySize);
+		}
+		return shard;
+	}
+
+}
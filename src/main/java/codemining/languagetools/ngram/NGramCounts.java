@@ -0,0 +1,418 @@
+/**
+ *
+ */
+package codemining.languagetools.ngram;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The counts of the n-grams of a single order, over token ids, in an
+ * open-addressing hash table of primitive arrays.
+ *
+ * When the ids of the n-gram fit in 64 bits (e.g. up to 5-grams of a
+ * vocabulary of 4096 tokens or trigrams of a vocabulary of 2M tokens), each
+ * n-gram is packed in a long key, so that the n-grams can be enumerated. For
+ * larger vocabularies the n-grams are keyed by a 128-bit hash of their ids.
+ * Hashed n-grams can be looked up, but not enumerated; the probability of a
+ * collision is negligible (about n^2 / 2^129 for n distinct n-grams).
+ *
+ * This class is not thread-safe. NGramCounter shards the counting across
+ * threads and merges the shards.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class NGramCounts {
+
+	/**
+	 * A consumer of the n-grams and their counts.
+	 */
+	public interface NGramConsumer {
+
+		/**
+		 * @param ngram
+		 *            the ids of the n-gram. The array is reused across calls.
+		 * @param count
+		 */
+		void accept(int[] ngram, long count);
+
+	}
+
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	private static final long HASH_SEED1 = 0x9E3779B97F4A7C15L;
+
+	private static final long HASH_SEED2 = 0xC2B2AE3D27D4EB4FL;
+
+	/**
+	 * Return the number of bits needed to store the ids of a vocabulary of
+	 * the given size.
+	 *
+	 * @param vocabularySize
+	 * @return
+	 */
+	public static int bitsForVocabulary(final int vocabularySize) {
+		checkArgument(vocabularySize > 0, "The vocabulary must not be empty");
+		return Math.max(1,
+				32 - Integer.numberOfLeadingZeros(vocabularySize - 1));
+	}
+
+	/**
+	 * Create the counts of the n-grams of the given order, with ids smaller
+	 * than the vocabulary size. The n-grams are packed when possible, and
+	 * hashed otherwise.
+	 *
+	 * @param order
+	 * @param vocabularySize
+	 * @return
+	 */
+	public static NGramCounts create(final int order, final int vocabularySize) {
+		checkArgument(order > 0, "The order must be positive");
+		final int idBits = bitsForVocabulary(vocabularySize);
+		if (order * idBits <= Long.SIZE) {
+			return new NGramCounts(order, idBits);
+		}
+		return new NGramCounts(order, 0);
+	}
+
+	/**
+	 * Create the counts of the n-grams of the given order, keyed by their
+	 * 128-bit hashes.
+	 *
+	 * @param order
+	 * @return
+	 */
+	public static NGramCounts createHashed(final int order) {
+		checkArgument(order > 0, "The order must be positive");
+		return new NGramCounts(order, 0);
+	}
+
+	/**
+	 * The finalizer of MurmurHash3, used to spread the keys over the table.
+	 */
+	private static long mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		key *= 0xC4CEB9FE1A85EC53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	private final int order;
+
+	/**
+	 * The bits of each id in a packed key or 0 if the n-grams are hashed.
+	 */
+	private final int idBits;
+
+	/**
+	 * The number of longs of each key (1 when packed, 2 when hashed).
+	 */
+	private final int keyWidth;
+
+	/**
+	 * The keys, keyWidth longs per slot.
+	 */
+	private long[] keys;
+
+	/**
+	 * The counts of the slots. A slot is empty if its count is zero.
+	 */
+	private long[] counts;
+
+	private int size = 0;
+
+	private long totalCount = 0;
+
+	/**
+	 * The (reused) high and low parts of the last computed key.
+	 */
+	private long keyHigh;
+
+	private long keyLow;
+
+	private NGramCounts(final int order, final int idBits) {
+		this.order = order;
+		this.idBits = idBits;
+		keyWidth = idBits > 0 ? 1 : 2;
+		counts = new long[INITIAL_CAPACITY];
+		keys = new long[INITIAL_CAPACITY * keyWidth];
+	}
+
+	/**
+	 * Add the given number of occurrences of the n-gram that starts at the
+	 * given position of the sequence.
+	 *
+	 * @param ids
+	 * @param from
+	 * @param count
+	 */
+	public void add(final int[] ids, final int from, final long count) {
+		checkPositionIndexes(from, from + order, ids.length);
+		checkArgument(count > 0, "The count must be positive");
+		computeKey(ids, from);
+		addKey(keyHigh, keyLow, count);
+	}
+
+	/**
+	 * Count all the n-grams of the sequence.
+	 *
+	 * @param ids
+	 */
+	public void addAll(final int[] ids) {
+		if (ids.length < order) {
+			return;
+		}
+		if (keyWidth == 2) {
+			for (int i = 0; i + order <= ids.length; i++) {
+				computeKey(ids, i);
+				addKey(keyHigh, keyLow, 1);
+			}
+			return;
+		}
+		// Roll the packed key over the sequence
+		final long mask = order * idBits == Long.SIZE ? -1L
+				: (1L << (order * idBits)) - 1;
+		long key = 0;
+		for (int i = 0; i < ids.length; i++) {
+			checkId(ids[i]);
+			key = ((key << idBits) | ids[i]) & mask;
+			if (i >= order - 1) {
+				addKey(0, key, 1);
+			}
+		}
+	}
+
+	private void addKey(final long high, final long low, final long count) {
+		int slot = findSlot(high, low);
+		if (counts[slot] == 0) {
+			if (2 * (size + 1) > counts.length) {
+				resize(2 * counts.length);
+				slot = findSlot(high, low);
+			}
+			if (keyWidth == 2) {
+				keys[2 * slot] = high;
+				keys[2 * slot + 1] = low;
+			} else {
+				keys[slot] = low;
+			}
+			size++;
+		}
+		counts[slot] += count;
+		totalCount += count;
+	}
+
+	private void checkId(final int id) {
+		checkArgument(id >= 0 && (id >>> idBits) == 0,
+				"Id %s is out of the range of the vocabulary", id);
+	}
+
+	/**
+	 * Compute the key of the n-gram that starts at the given position into
+	 * keyHigh and keyLow.
+	 */
+	private void computeKey(final int[] ids, final int from) {
+		if (keyWidth == 1) {
+			long key = 0;
+			for (int i = from; i < from + order; i++) {
+				checkId(ids[i]);
+				key = (key << idBits) | ids[i];
+			}
+			keyHigh = 0;
+			keyLow = key;
+		} else {
+			long h1 = HASH_SEED1;
+			long h2 = HASH_SEED2;
+			for (int i = from; i < from + order; i++) {
+				h1 = mix(h1 ^ ids[i]);
+				h2 = mix(h2 + ids[i] * HASH_SEED1);
+			}
+			keyHigh = h1;
+			keyLow = h2;
+		}
+	}
+
+	/**
+	 * Return the slot of the key or the empty slot where it should be
+	 * inserted.
+	 */
+	private int findSlot(final long high, final long low) {
+		final int mask = counts.length - 1;
+		int slot = (int) mix(low ^ high) & mask;
+		if (keyWidth == 2) {
+			while (counts[slot] != 0
+					&& (keys[2 * slot] != high || keys[2 * slot + 1] != low)) {
+				slot = (slot + 1) & mask;
+			}
+		} else {
+			while (counts[slot] != 0 && keys[slot] != low) {
+				slot = (slot + 1) & mask;
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * Call the consumer for each n-gram and its count, in no particular
+	 * order. The n-grams must be packed.
+	 *
+	 * @param consumer
+	 */
+	public void forEach(final NGramConsumer consumer) {
+		checkState(!isHashed(), "Hashed n-grams cannot be enumerated");
+		final int[] ngram = new int[order];
+		final long idMask = (1L << idBits) - 1;
+		for (int slot = 0; slot < counts.length; slot++) {
+			if (counts[slot] == 0) {
+				continue;
+			}
+			long key = keys[slot];
+			for (int i = order - 1; i >= 0; i--) {
+				ngram[i] = (int) (key & idMask);
+				key >>>= idBits;
+			}
+			consumer.accept(ngram, counts[slot]);
+		}
+	}
+
+	/**
+	 * Return the count of the n-gram that starts at the given position of the
+	 * sequence.
+	 *
+	 * @param ids
+	 * @param from
+	 * @return
+	 */
+	public long getCount(final int[] ids, final int from) {
+		checkPositionIndexes(from, from + order, ids.length);
+		if (keyWidth == 1) {
+			for (int i = from; i < from + order; i++) {
+				if (ids[i] < 0 || (ids[i] >>> idBits) != 0) {
+					return 0; // Cannot have been counted
+				}
+			}
+		}
+		computeKey(ids, from);
+		return counts[findSlot(keyHigh, keyLow)];
+	}
+
+	/**
+	 * @return the order of the n-grams.
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * @return the sum of the counts of all the n-grams.
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @return true if the n-grams are keyed by their hashes and thus cannot
+	 *         be enumerated.
+	 */
+	public boolean isHashed() {
+		return keyWidth == 2;
+	}
+
+	/**
+	 * Add all the counts of the other n-grams, which must have the same order
+	 * and keys.
+	 *
+	 * @param other
+	 */
+	public void merge(final NGramCounts other) {
+		checkArgument(other.order == order && other.idBits == idBits,
+				"Only counts with the same order and keys can be merged");
+		if (2 * (size + other.size) > counts.length) {
+			resize(Integer.highestOneBit(2 * (size + other.size) - 1) << 1);
+		}
+		for (int slot = 0; slot < other.counts.length; slot++) {
+			if (other.counts[slot] == 0) {
+				continue;
+			}
+			if (keyWidth == 2) {
+				addKey(other.keys[2 * slot], other.keys[2 * slot + 1],
+						other.counts[slot]);
+			} else {
+				addKey(0, other.keys[slot], other.counts[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Remove the n-grams that have been seen less than minCount times.
+	 *
+	 * @param minCount
+	 */
+	public void prune(final long minCount) {
+		final long[] oldKeys = keys;
+		final long[] oldCounts = counts;
+		int retained = 0;
+		for (final long count : oldCounts) {
+			if (count >= minCount) {
+				retained++;
+			}
+		}
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < 2 * retained) {
+			capacity <<= 1;
+		}
+		counts = new long[capacity];
+		keys = new long[capacity * keyWidth];
+		size = 0;
+		totalCount = 0;
+		for (int slot = 0; slot < oldCounts.length; slot++) {
+			if (oldCounts[slot] == 0 || oldCounts[slot] < minCount) {
+				continue;
+			}
+			if (keyWidth == 2) {
+				addKey(oldKeys[2 * slot], oldKeys[2 * slot + 1],
+						oldCounts[slot]);
+			} else {
+				addKey(0, oldKeys[slot], oldCounts[slot]);
+			}
+		}
+	}
+
+	private void resize(final int capacity) {
+		final long[] oldKeys = keys;
+		final long[] oldCounts = counts;
+		counts = new long[capacity];
+		keys = new long[capacity * keyWidth];
+		final int mask = capacity - 1;
+		for (int slot = 0; slot < oldCounts.length; slot++) {
+			if (oldCounts[slot] == 0) {
+				continue;
+			}
+			final long high = keyWidth == 2 ? oldKeys[2 * slot] : 0;
+			final long low = keyWidth == 2 ? oldKeys[2 * slot + 1]
+					: oldKeys[slot];
+			int newSlot = (int) mix(low ^ high) & mask;
+			while (counts[newSlot] != 0) {
+				newSlot = (newSlot + 1) & mask;
+			}
+			if (keyWidth == 2) {
+				keys[2 * newSlot] = high;
+				keys[2 * newSlot + 1] = low;
+			} else {
+				keys[newSlot] = low;
+			}
+			counts[newSlot] = oldCounts[slot];
+		}
+	}
+
+	/**
+	 * @return the number of distinct n-grams.
+	 */
+	public int size() {
+		return size;
+	}
+
+}
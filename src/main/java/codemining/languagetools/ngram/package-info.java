@@ -0,0 +1,7 @@
+/**
+ * Memory-efficient n-gram counting over token id sequences (e.g. from
+ * {@link codemining.languagetools.ITokenizer#tokenizeToIds(char[], codemining.languagetools.TokenVocabulary)}),
+ * using primitive open-addressing hash tables instead of collections of
+ * token lists.
+ */
+package codemining.languagetools.ngram;
@@ -0,0 +1,139 @@
+/**
+ *
+ */
+package codemining.languagetools.sketch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A Count-Min sketch that estimates the frequencies of (hashed) items. An
+ * estimate is never smaller than the true frequency and, with probability
+ * 1-delta, it exceeds it by at most epsilon times the total count.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CountMinSketch {
+
+	/**
+	 * Create a sketch with the given error bounds.
+	 *
+	 * @param epsilon
+	 *            the error, as a fraction of the total count.
+	 * @param delta
+	 *            the probability that an estimate exceeds the error.
+	 * @return
+	 */
+	public static CountMinSketch forErrorBounds(final double epsilon,
+			final double delta) {
+		checkArgument(epsilon > 0 && epsilon < 1,
+				"Epsilon must be in (0, 1)");
+		checkArgument(delta > 0 && delta < 1, "Delta must be in (0, 1)");
+		final int width = (int) Math.ceil(Math.E / epsilon);
+		final int depth = (int) Math.ceil(Math.log(1 / delta));
+		return new CountMinSketch(width, depth);
+	}
+
+	/**
+	 * The width of the rows, a power of 2.
+	 */
+	private final int width;
+
+	private final int depth;
+
+	/**
+	 * The counters, row by row.
+	 */
+	private final long[] counters;
+
+	private long totalCount = 0;
+
+	/**
+	 * @param minWidth
+	 *            the minimum number of counters per row. It is rounded up to a
+	 *            power of 2.
+	 * @param depth
+	 *            the number of rows.
+	 */
+	public CountMinSketch(final int minWidth, final int depth) {
+		checkArgument(minWidth > 0 && minWidth <= 1 << 30,
+				"The width must be in (0, 2^30]");
+		checkArgument(depth > 0 && depth <= 32, "The depth must be in (0, 32]");
+		width = Integer.highestOneBit(minWidth) == minWidth ? minWidth
+				: Integer.highestOneBit(minWidth) << 1;
+		this.depth = depth;
+		checkArgument((long) width * depth <= Integer.MAX_VALUE,
+				"The sketch is too large");
+		counters = new long[width * depth];
+	}
+
+	/**
+	 * Add occurrences of an item, given its (well distributed) 64-bit hash.
+	 *
+	 * @param hash
+	 * @param count
+	 */
+	public void add(final long hash, final long count) {
+		checkArgument(count >= 0, "The count must be non-negative");
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32) | 1;
+		for (int row = 0; row < depth; row++) {
+			counters[row * width + ((h1 + row * h2) & (width - 1))] += count;
+		}
+		totalCount += count;
+	}
+
+	/**
+	 * Return the estimated frequency of an item, given its hash.
+	 *
+	 * @param hash
+	 * @return
+	 */
+	public long estimate(final long hash) {
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32) | 1;
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			estimate = Math.min(estimate, counters[row * width
+					+ ((h1 + row * h2) & (width - 1))]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * @return the number of rows.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return the total count of all the items added.
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @return the number of counters per row.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Merge the other sketch, which must have the same dimensions, into this
+	 * one.
+	 *
+	 * @param other
+	 */
+	public void merge(final CountMinSketch other) {
+		checkArgument(other.width == width && other.depth == depth,
+				"Only sketches of the same dimensions can be merged");
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] += other.counters[i];
+		}
+		totalCount += other.totalCount;
+	}
+
+}
@@ -0,0 +1,123 @@
+/**
+ *
+ */
+package codemining.languagetools.sketch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct (hashed) items
+ * in 2^precision bytes, with a relative standard error of about
+ * 1.04/sqrt(2^precision).
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class HyperLogLog {
+
+	public static final int MIN_PRECISION = 4;
+
+	public static final int MAX_PRECISION = 18;
+
+	/**
+	 * Create a sketch with (at most) the given relative standard error.
+	 *
+	 * @param relativeError
+	 * @return
+	 */
+	public static HyperLogLog forRelativeError(final double relativeError) {
+		checkArgument(relativeError > 0 && relativeError < 1,
+				"The relative error must be in (0, 1)");
+		final double registers = Math.pow(1.04 / relativeError, 2);
+		final int precision = (int) Math.ceil(Math.log(registers)
+				/ Math.log(2));
+		return new HyperLogLog(Math.max(MIN_PRECISION,
+				Math.min(MAX_PRECISION, precision)));
+	}
+
+	private final int precision;
+
+	private final byte[] registers;
+
+	/**
+	 * @param precision
+	 *            the log2 of the number of registers.
+	 */
+	public HyperLogLog(final int precision) {
+		checkArgument(precision >= MIN_PRECISION && precision <= MAX_PRECISION,
+				"The precision must be in [%s, %s]", MIN_PRECISION,
+				MAX_PRECISION);
+		this.precision = precision;
+		registers = new byte[1 << precision];
+	}
+
+	/**
+	 * Add an item, given its (well distributed) 64-bit hash.
+	 *
+	 * @param hash
+	 */
+	public void add(final long hash) {
+		final int register = (int) (hash >>> (Long.SIZE - precision));
+		final long remaining = hash << precision;
+		final int rank = remaining == 0 ? Long.SIZE - precision + 1 : Long
+				.numberOfLeadingZeros(remaining) + 1;
+		if (rank > registers[register]) {
+			registers[register] = (byte) rank;
+		}
+	}
+
+	/**
+	 * @return the estimated number of distinct items.
+	 */
+	public long estimate() {
+		final int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (final byte register : registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0) {
+				zeros++;
+			}
+		}
+		final double alpha;
+		if (m == 16) {
+			alpha = 0.673;
+		} else if (m == 32) {
+			alpha = 0.697;
+		} else if (m == 64) {
+			alpha = 0.709;
+		} else {
+			alpha = 0.7213 / (1 + 1.079 / m);
+		}
+		final double estimate = alpha * m * m / sum;
+		if (estimate <= 2.5 * m && zeros > 0) {
+			// Small range correction (linear counting)
+			return Math.round(m * Math.log((double) m / zeros));
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * @return the relative standard error of the estimates.
+	 */
+	public double getRelativeError() {
+		return 1.04 / Math.sqrt(registers.length);
+	}
+
+	/**
+	 * Merge the other sketch, which must have the same precision, into this
+	 * one. The result estimates the distinct items of the union.
+	 *
+	 * @param other
+	 */
+	public void merge(final HyperLogLog other) {
+		checkArgument(other.precision == precision,
+				"Only sketches of the same precision can be merged");
+		for (int i = 0; i < registers.length; i++) {
+			if (other.registers[i] > registers[i]) {
+				registers[i] = other.registers[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,336 @@
+/**
+ *
+ */
+package codemining.languagetools.sketch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The Space-Saving algorithm (Metwally et al., 2005) for the top-k most
+ * frequent token texts, in fixed memory. It monitors at most capacity items;
+ * an item that is not monitored replaces the one with the minimum count. Every
+ * item with a frequency larger than totalCount/capacity is guaranteed to be
+ * monitored, and the count of each monitored item overestimates its frequency
+ * by at most its error.
+ *
+ * The items are identified by their 64-bit hashes and their text is only
+ * created when they start being monitored.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class SpaceSaving {
+
+	/**
+	 * A monitored item.
+	 */
+	public static final class Item {
+
+		public final String item;
+
+		/**
+		 * The (over)estimated count of the item.
+		 */
+		public final long count;
+
+		/**
+		 * The maximum overestimation of the count.
+		 */
+		public final long error;
+
+		private final long hash;
+
+		private Item(final String item, final long hash, final long count,
+				final long error) {
+			this.item = item;
+			this.hash = hash;
+			this.count = count;
+			this.error = error;
+		}
+
+		@Override
+		public String toString() {
+			return item + " " + count + " (error " + error + ")";
+		}
+
+	}
+
+	private final int capacity;
+
+	private final long[] hashes;
+
+	private final String[] items;
+
+	private final long[] counts;
+
+	private final long[] errors;
+
+	private int size = 0;
+
+	/**
+	 * A min-heap of the slots, by count, and the heap position of each slot.
+	 */
+	private final int[] heap;
+
+	private final int[] heapPositions;
+
+	/**
+	 * An open-addressing index from the hashes to the (slot + 1), where 0
+	 * marks an empty index entry.
+	 */
+	private final long[] indexKeys;
+
+	private final int[] indexSlots;
+
+	private long totalCount = 0;
+
+	/**
+	 * @param capacity
+	 *            the number of monitored items.
+	 */
+	public SpaceSaving(final int capacity) {
+		checkArgument(capacity > 0 && capacity <= 1 << 28,
+				"The capacity must be in (0, 2^28]");
+		this.capacity = capacity;
+		hashes = new long[capacity];
+		items = new String[capacity];
+		counts = new long[capacity];
+		errors = new long[capacity];
+		heap = new int[capacity];
+		heapPositions = new int[capacity];
+		final int indexSize = Integer.highestOneBit(capacity) << 2;
+		indexKeys = new long[indexSize];
+		indexSlots = new int[indexSize];
+	}
+
+	/**
+	 * Add occurrences of the token text source[start, end), given its hash
+	 * (see TokenHashing).
+	 *
+	 * @param hash
+	 * @param source
+	 * @param start
+	 * @param end
+	 * @param count
+	 */
+	public void add(final long hash, final char[] source, final int start,
+			final int end, final long count) {
+		add(hash, null, source, start, end, count);
+	}
+
+	private void add(final long hash, final String item, final char[] source,
+			final int start, final int end, final long count) {
+		checkArgument(count > 0, "The count must be positive");
+		totalCount += count;
+		int slot = findSlot(hash);
+		if (slot >= 0) {
+			counts[slot] += count;
+			siftDown(heapPositions[slot]);
+			return;
+		}
+		final String text = item != null ? item : new String(source, start,
+				end - start);
+		if (size < capacity) {
+			slot = size++;
+			set(slot, hash, text, count, 0);
+			heap[heapPositions[slot] = size - 1] = slot;
+			siftUp(size - 1);
+		} else {
+			// Replace the item with the minimum count
+			slot = heap[0];
+			final long minCount = counts[slot];
+			removeFromIndex(hashes[slot]);
+			set(slot, hash, text, minCount + count, minCount);
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Add occurrences of the item.
+	 *
+	 * @param item
+	 * @param count
+	 */
+	public void add(final String item, final long count) {
+		add(TokenHashing.hash(item), item, null, 0, 0, count);
+	}
+
+	private int findSlot(final long hash) {
+		final int mask = indexKeys.length - 1;
+		int position = (int) TokenHashing.mix(hash) & mask;
+		while (indexSlots[position] != 0) {
+			if (indexKeys[position] == hash) {
+				return indexSlots[position] - 1;
+			}
+			position = (position + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of items that may be monitored.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the minimum count of the monitored items, i.e. the maximum
+	 *         frequency of an item that is not monitored.
+	 */
+	public long getMinCount() {
+		return size < capacity ? 0 : counts[heap[0]];
+	}
+
+	/**
+	 * @return the monitored items, in descending order of count.
+	 */
+	public List<Item> getTopItems() {
+		final List<Item> topItems = Lists.newArrayListWithCapacity(size);
+		for (int slot = 0; slot < size; slot++) {
+			topItems.add(new Item(items[slot], hashes[slot], counts[slot],
+					errors[slot]));
+		}
+		topItems.sort(Comparator.comparingLong((final Item item) -> item.count)
+				.reversed());
+		return topItems;
+	}
+
+	/**
+	 * @return the total count of all the items added.
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Merge the other summary into this one. An item missing from one of the
+	 * summaries may have occurred there up to its minimum count, which is
+	 * added to the item's count and error (Agarwal et al., 2012).
+	 *
+	 * @param other
+	 */
+	public void merge(final SpaceSaving other) {
+		final long minCount = getMinCount();
+		final long otherMinCount = other.getMinCount();
+		final List<Item> merged = Lists.newArrayListWithCapacity(size
+				+ other.size);
+		for (int slot = 0; slot < size; slot++) {
+			final int otherSlot = other.findSlot(hashes[slot]);
+			if (otherSlot >= 0) {
+				merged.add(new Item(items[slot], hashes[slot], counts[slot]
+						+ other.counts[otherSlot], errors[slot]
+						+ other.errors[otherSlot]));
+			} else {
+				merged.add(new Item(items[slot], hashes[slot], counts[slot]
+						+ otherMinCount, errors[slot] + otherMinCount));
+			}
+		}
+		for (int slot = 0; slot < other.size; slot++) {
+			if (findSlot(other.hashes[slot]) < 0) {
+				merged.add(new Item(other.items[slot], other.hashes[slot],
+						other.counts[slot] + minCount, other.errors[slot]
+								+ minCount));
+			}
+		}
+		merged.sort(Comparator.comparingLong((final Item item) -> item.count)
+				.reversed());
+
+		Arrays.fill(indexSlots, 0);
+		size = Math.min(capacity, merged.size());
+		for (int slot = 0; slot < size; slot++) {
+			final Item item = merged.get(slot);
+			set(slot, item.hash, item.item, item.count, item.error);
+			// Descending counts, so the heap is built from the end
+			heap[size - 1 - slot] = slot;
+			heapPositions[slot] = size - 1 - slot;
+		}
+		totalCount += other.totalCount;
+	}
+
+	private void removeFromIndex(final long hash) {
+		final int mask = indexKeys.length - 1;
+		int position = (int) TokenHashing.mix(hash) & mask;
+		while (indexSlots[position] == 0 || indexKeys[position] != hash) {
+			position = (position + 1) & mask;
+		}
+		// Backward shift deletion, so that no probe sequence is broken
+		int next = (position + 1) & mask;
+		while (indexSlots[next] != 0) {
+			final int home = (int) TokenHashing.mix(indexKeys[next]) & mask;
+			if (((next - home) & mask) >= ((next - position) & mask)) {
+				indexKeys[position] = indexKeys[next];
+				indexSlots[position] = indexSlots[next];
+				position = next;
+			}
+			next = (next + 1) & mask;
+		}
+		indexSlots[position] = 0;
+	}
+
+	private void set(final int slot, final long hash, final String item,
+			final long count, final long error) {
+		hashes[slot] = hash;
+		items[slot] = item;
+		counts[slot] = count;
+		errors[slot] = error;
+		final int mask = indexKeys.length - 1;
+		int position = (int) TokenHashing.mix(hash) & mask;
+		while (indexSlots[position] != 0) {
+			position = (position + 1) & mask;
+		}
+		indexKeys[position] = hash;
+		indexSlots[position] = slot + 1;
+	}
+
+	private void siftDown(int position) {
+		final int slot = heap[position];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size
+					&& counts[heap[child + 1]] < counts[heap[child]]) {
+				child++;
+			}
+			if (counts[heap[child]] >= counts[slot]) {
+				break;
+			}
+			heap[position] = heap[child];
+			heapPositions[heap[position]] = position;
+			position = child;
+		}
+		heap[position] = slot;
+		heapPositions[slot] = position;
+	}
+
+	private void siftUp(int position) {
+		final int slot = heap[position];
+		while (position > 0) {
+			final int parent = (position - 1) / 2;
+			if (counts[heap[parent]] <= counts[slot]) {
+				break;
+			}
+			heap[position] = heap[parent];
+			heapPositions[heap[position]] = position;
+			position = parent;
+		}
+		heap[position] = slot;
+		heapPositions[slot] = position;
+	}
+
+	/**
+	 * @return the number of monitored items.
+	 */
+	public int size() {
+		return size;
+	}
+
+}
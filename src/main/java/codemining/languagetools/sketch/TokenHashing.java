@@ -0,0 +1,70 @@
+/**
+ *
+ */
+package codemining.languagetools.sketch;
+
+/**
+ * 64-bit hashing of token texts, directly from the source chars. The hashes
+ * are FNV-1a, finalized with the MurmurHash3 mixer so that all their bits are
+ * well distributed, as required by the sketches.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class TokenHashing {
+
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	/**
+	 * Return the hash of the chars source[start, end).
+	 *
+	 * @param source
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public static long hash(final char[] source, final int start, final int end) {
+		long hash = FNV_OFFSET;
+		for (int i = start; i < end; i++) {
+			hash = (hash ^ source[i]) * FNV_PRIME;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Return the hash of the text. It is equal to the hash of the same chars
+	 * in a source array.
+	 *
+	 * @param text
+	 * @return
+	 */
+	public static long hash(final CharSequence text) {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < text.length(); i++) {
+			hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * The finalizer of MurmurHash3.
+	 *
+	 * @param hash
+	 * @return
+	 */
+	public static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private TokenHashing() {
+		// Utility class
+	}
+
+}
@@ -0,0 +1,7 @@
+/**
+ * Fixed-memory probabilistic summaries of token streams (distinct counts,
+ * frequencies and the most frequent tokens), with configurable error bounds,
+ * for corpora that are too large to count exactly. All the summaries are
+ * mergeable, so that they can be built in parallel.
+ */
+package codemining.languagetools.sketch;
@@ -5,22 +5,29 @@ package codemining.languagetools.tui;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
-import org.apache.commons.lang.exception.ExceptionUtils;
 
+import codemining.languagetools.CorpusTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.SourceReader;
+import codemining.languagetools.TokenSink;
 import codemining.languagetools.TokenizerUtils;
-
-import com.google.common.collect.Multiset.Entry;
-import com.google.common.collect.TreeMultiset;
+import codemining.languagetools.sketch.CountMinSketch;
+import codemining.languagetools.sketch.HyperLogLog;
+import codemining.languagetools.sketch.SpaceSaving;
+import codemining.languagetools.sketch.TokenHashing;
 
 /**
- * Print to stdout the total count of all unique tokens in the text.
+ * Print to stdout the total count of all unique tokens in the text. For very
+ * large corpora, approximate statistics (the number of distinct tokens and
+ * the counts of the most frequent tokens) can be computed in fixed memory.
  * 
  * Used to answer the question: Do we have a zipf-ian distribution of tokens in
  * Java Code?
@@ -30,62 +37,369 @@ import com.google.common.collect.TreeMultiset;
  */
 public class DistinctTokenCount {
 
+	/**
+	 * Approximate token statistics in fixed memory: the number of distinct
+	 * tokens (HyperLogLog), the token frequencies (Count-Min) and the most
+	 * frequent tokens (Space-Saving). The token texts are hashed directly from
+	 * the source chars.
+	 */
+	private static final class TokenSketch implements TokenStatistics {
+
+		private final HyperLogLog distinctTokens;
+
+		private final CountMinSketch frequencies;
+
+		private final SpaceSaving topTokens;
+
+		TokenSketch(final double relativeError, final int topK) {
+			distinctTokens = HyperLogLog.forRelativeError(relativeError);
+			frequencies = CountMinSketch.forErrorBounds(relativeError,
+					FREQUENCY_ERROR_PROBABILITY);
+			topTokens = new SpaceSaving(topK);
+		}
+
+		@Override
+		public void add(final String token) {
+			final long hash = TokenHashing.hash(token);
+			distinctTokens.add(hash);
+			frequencies.add(hash, 1);
+			topTokens.add(token, 1);
+		}
+
+		@Override
+		public void addAll(final TokenStatistics other) {
+			final TokenSketch sketch = (TokenSketch) other;
+			distinctTokens.merge(sketch.distinctTokens);
+			frequencies.merge(sketch.frequencies);
+			topTokens.merge(sketch.topTokens);
+		}
+
+		/**
+		 * Print the number of distinct tokens, the total number of tokens and
+		 * the most frequent tokens with their (estimated) counts.
+		 */
+		@Override
+		public void printCounts() {
+			System.out.println("Distinct tokens: " + distinctTokens.estimate()
+					+ " (relative error "
+					+ String.format("%.4f", distinctTokens.getRelativeError())
+					+ ")");
+			System.out.println("Total tokens: " + frequencies.getTotalCount());
+			for (final SpaceSaving.Item item : topTokens.getTopItems()) {
+				// Both counts are overestimates, so the minimum is tighter
+				final long count = Math.min(item.count,
+						frequencies.estimate(TokenHashing.hash(item.item)));
+				System.out.println(count + "\t" + item.item);
+			}
+		}
+
+		@Override
+		public void token(final int typeId, final int start, final int end,
+				final char[] source) {
+			final long hash = TokenHashing.hash(source, start, end);
+			distinctTokens.add(hash);
+			frequencies.add(hash, 1);
+			topTokens.add(hash, source, start, end, 1);
+		}
+
+		@Override
+		public void tokenWithText(final int typeId, final int start,
+				final int end, final char[] source, final String text) {
+			add(text);
+		}
+
+	}
+
+	/**
+	 * Counts the distinct token texts it receives, using an open addressing
+	 * hash table that is probed directly with the source chars. A string is
+	 * only created the first time a token text is seen.
+	 */
+	private static final class TokenTextCounter implements TokenStatistics {
+
+		private String[] keys = new String[1 << 10];
+
+		private long[] counts = new long[1 << 10];
+
+		private int size = 0;
+
+		private void add(final char[] source, final int start, final int end) {
+			add(source, start, end, 1);
+		}
+
+		private void add(final char[] source, final int start, final int end,
+				final long count) {
+			final int length = end - start;
+			int hash = 0;
+			for (int i = start; i < end; i++) {
+				hash = 31 * hash + source[i];
+			}
+			final int mask = keys.length - 1;
+			int slot = mix(hash) & mask;
+			while (keys[slot] != null) {
+				if (regionEquals(keys[slot], source, start, length)) {
+					counts[slot] += count;
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = new String(source, start, length);
+			counts[slot] = count;
+			size++;
+			if (size * 2 > keys.length) {
+				rehash();
+			}
+		}
+
+		@Override
+		public void add(final String token) {
+			add(token.toCharArray(), 0, token.length());
+		}
+
+		@Override
+		public void addAll(final TokenStatistics statistics) {
+			final TokenTextCounter other = (TokenTextCounter) statistics;
+			for (int i = 0; i < other.keys.length; i++) {
+				final String key = other.keys[i];
+				if (key != null) {
+					add(key.toCharArray(), 0, key.length(), other.counts[i]);
+				}
+			}
+		}
+
+		private int mix(final int hash) {
+			return hash ^ (hash >>> 16);
+		}
+
+		@Override
+		public void printCounts() {
+			final Integer[] slots = new Integer[size];
+			int j = 0;
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != null) {
+					slots[j++] = i;
+				}
+			}
+			Arrays.sort(slots, (a, b) -> keys[a].compareTo(keys[b]));
+			for (final int slot : slots) {
+				System.out.println(counts[slot]);
+			}
+		}
+
+		private boolean regionEquals(final String key, final char[] source,
+				final int start, final int length) {
+			if (key.length() != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (key.charAt(i) != source[start + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void rehash() {
+			final String[] oldKeys = keys;
+			final long[] oldCounts = counts;
+			keys = new String[oldKeys.length * 2];
+			counts = new long[oldKeys.length * 2];
+			final int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] == null) {
+					continue;
+				}
+				int slot = mix(oldKeys[i].hashCode()) & mask;
+				while (keys[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+
+		@Override
+		public void token(final int typeId, final int start, final int end,
+				final char[] source) {
+			add(source, start, end);
+		}
+
+		@Override
+		public void tokenWithText(final int typeId, final int start,
+				final int end, final char[] source, final String text) {
+			add(text);
+		}
+
+	}
+
+	/**
+	 * The statistics of the tokens. Each thread adds to its own statistics,
+	 * which are then merged.
+	 */
+	private interface TokenStatistics extends TokenSink {
+
+		/**
+		 * Add an occurrence of a token that is not in the source (e.g. the
+		 * sentence start/end).
+		 *
+		 * @param token
+		 */
+		void add(String token);
+
+		/**
+		 * Add all the counts of the other statistics, of the same kind.
+		 *
+		 * @param other
+		 */
+		void addAll(TokenStatistics other);
+
+		/**
+		 * Print the statistics to stdout.
+		 */
+		void printCounts();
+
+	}
+
 	private static final Logger LOGGER = Logger
 			.getLogger(DistinctTokenCount.class.getName());
 
+	/**
+	 * The probability that the frequency of a token exceeds the error bound
+	 * of the approximate statistics.
+	 */
+	private static final double FREQUENCY_ERROR_PROBABILITY = 0.01;
+
 	/**
 	 * @param args
-	 * @throws ClassNotFoundException
-	 * @throws IllegalAccessException
-	 * @throws InstantiationException
+	 * @throws ReflectiveOperationException
+	 * @throws InterruptedException
 	 */
-	public static void main(final String[] args) throws InstantiationException,
-			IllegalAccessException, ClassNotFoundException {
+	public static void main(final String[] args)
+			throws ReflectiveOperationException, InterruptedException {
 
-		if (args.length != 2) {
-			System.err.println("Usage: <directory> <tokenizerClass>");
+		if (args.length != 2 && args.length != 4) {
+			System.err
+					.println("Usage: <directory> <tokenizerClass> [<relativeError> <topK>]");
+			System.err
+					.println("The relative error and top k select the approximate (fixed memory) statistics.");
 			return;
 		}
 
-		final DistinctTokenCount tokCount = new DistinctTokenCount(args[1]);
-		for (final File fi : FileUtils.listFiles(new File(args[0]),
-				new RegexFileFilter(".*\\.java$"),
-				DirectoryFileFilter.DIRECTORY)) {
-			try {
-				tokCount.addTokens(fi);
-			} catch (final IOException e) {
-				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
-			}
+		final DistinctTokenCount tokCount;
+		if (args.length == 4) {
+			tokCount = new DistinctTokenCount(args[1],
+					Double.parseDouble(args[2]), Integer.parseInt(args[3]));
+		} else {
+			tokCount = new DistinctTokenCount(args[1]);
 		}
+		tokCount.addAllTokens(new File(args[0]));
 
 		tokCount.printCounts();
 	}
 
-	private final TreeMultiset<String> allTokens = TreeMultiset.create();
+	private final Supplier<TokenStatistics> statisticsFactory;
+
+	private final TokenStatistics allTokens;
 
 	private final ITokenizer tokenizer;
 
+	private final CorpusTokenizer corpus;
+
+	/**
+	 * True if the tokenizer adds the sentence start/end to its token lists,
+	 * so that they are counted as before.
+	 */
+	private final boolean addSentenceStartEnd;
+
+	/**
+	 * Count the tokens exactly.
+	 *
+	 * @param tokenizerClass
+	 * @throws ReflectiveOperationException
+	 */
 	public DistinctTokenCount(final String tokenizerClass)
-			throws InstantiationException, IllegalAccessException,
-			ClassNotFoundException {
+			throws ReflectiveOperationException {
+		this(tokenizerClass, TokenTextCounter::new);
+	}
+
+	/**
+	 * Compute approximate token statistics in fixed memory.
+	 *
+	 * @param tokenizerClass
+	 * @param relativeError
+	 *            the relative error of the number of distinct tokens and the
+	 *            error of the token frequencies, as a fraction of the total
+	 *            number of tokens.
+	 * @param topK
+	 *            the number of most frequent tokens to report.
+	 * @throws ReflectiveOperationException
+	 */
+	public DistinctTokenCount(final String tokenizerClass,
+			final double relativeError, final int topK)
+			throws ReflectiveOperationException {
+		this(tokenizerClass, () -> new TokenSketch(relativeError, topK));
+	}
+
+	private DistinctTokenCount(final String tokenizerClass,
+			final Supplier<TokenStatistics> statisticsFactory)
+			throws ReflectiveOperationException {
+		this.statisticsFactory = statisticsFactory;
+		allTokens = statisticsFactory.get();
 		tokenizer = TokenizerUtils.tokenizerForClass(tokenizerClass);
+		final List<String> emptyTokens = tokenizer.tokenListFromCode(new char[0]);
+		addSentenceStartEnd = emptyTokens.size() >= 2
+				&& emptyTokens.get(0).equals(ITokenizer.SENTENCE_START)
+				&& emptyTokens.get(emptyTokens.size() - 1).equals(
+						ITokenizer.SENTENCE_END);
+		corpus = new CorpusTokenizer(CorpusTokenizer.tokenizerFactory(
+				tokenizerClass, null), new RegexFileFilter(".*\\.java$"),
+				CorpusTokenizer.DEFAULT_N_THREADS, false);
+	}
+
+	/**
+	 * Add the tokens of all the Java files in the directory, tokenizing them
+	 * in parallel. Each thread counts into its own shard and the shards are
+	 * merged at the end.
+	 *
+	 * @param directory
+	 * @throws InterruptedException
+	 */
+	public void addAllTokens(final File directory) throws InterruptedException {
+		final Map<Thread, TokenStatistics> shards = new ConcurrentHashMap<Thread, TokenStatistics>();
+		corpus.tokenize(directory, (fileTokenizer, file, code) -> {
+			addTokens(fileTokenizer, code, shards.computeIfAbsent(
+					Thread.currentThread(), thread -> statisticsFactory.get()));
+			return Boolean.TRUE;
+		}, (file, counted) -> {
+			// The tokens have already been counted by the tokenizing threads
+		});
+		for (final TokenStatistics shard : shards.values()) {
+			allTokens.addAll(shard);
+		}
 	}
 
 	public void addTokens(final File file) throws IOException {
 		LOGGER.finer("Reading file " + file.getAbsolutePath());
-		final char[] code = FileUtils.readFileToString(file).toCharArray();
-		final List<String> tokens = tokenizer.tokenListFromCode(code);
-		allTokens.addAll(tokens);
+		final char[] code = SourceReader.readChars(file);
+		addTokens(tokenizer, code, allTokens);
+	}
 
+	private void addTokens(final ITokenizer fileTokenizer, final char[] code,
+			final TokenStatistics counter) {
+		if (addSentenceStartEnd) {
+			counter.add(ITokenizer.SENTENCE_START);
+		}
+		fileTokenizer.tokenize(code, counter);
+		if (addSentenceStartEnd) {
+			counter.add(ITokenizer.SENTENCE_END);
+		}
 	}
 
 	/**
 	 * Prints the counts.
 	 */
 	public void printCounts() {
-		for (final Entry<String> token : allTokens.entrySet()) {
-			System.out.println(token.getCount());
-		}
+		allTokens.printCounts();
 	}
 
 }
@@ -4,15 +4,9 @@
 package codemining.languagetools.tui;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.lang.exception.ExceptionUtils;
-
-import codemining.languagetools.ITokenizer;
-import codemining.languagetools.TokenizerUtils;
+import codemining.languagetools.CorpusTokenizer;
+import codemining.languagetools.TokenSink;
 
 /**
  * Utility for counting all the tokens in a folder.
@@ -22,41 +16,43 @@ import codemining.languagetools.TokenizerUtils;
  */
 public class TokenCounter {
 
-	private static final Logger LOGGER = Logger.getLogger(TokenCounter.class
-			.getName());
+	/**
+	 * A sink that only counts the tokens it receives.
+	 */
+	private static final class TokenCountingSink implements TokenSink {
+
+		long tokenCount = 0;
+
+		@Override
+		public void token(final int typeId, final int start, final int end,
+				final char[] source) {
+			tokenCount++;
+		}
+
+	}
 
 	/**
 	 * @param args
-	 * @throws IOException
-	 * @throws ClassNotFoundException
-	 * @throws IllegalAccessException
-	 * @throws InstantiationException
+	 * @throws ReflectiveOperationException
+	 * @throws InterruptedException
 	 */
-	public static void main(final String[] args) throws IOException,
-			InstantiationException, IllegalAccessException,
-			ClassNotFoundException {
+	public static void main(final String[] args)
+			throws ReflectiveOperationException, InterruptedException {
 		if (args.length != 2) {
 			System.err.println("Usage <codeDir> <TokenizerClass>");
 			return;
 		}
 
-		long tokenCount = 0;
+		final CorpusTokenizer corpus = CorpusTokenizer.forTokenizerClass(
+				args[1], null, CorpusTokenizer.DEFAULT_N_THREADS, false);
 
-		final ITokenizer tokenizer = TokenizerUtils.tokenizerForClass(args[1]);
-
-		for (final File fi : FileUtils.listFiles(new File(args[0]),
-				tokenizer.getFileFilter(), DirectoryFileFilter.DIRECTORY)) {
-			try {
-				final char[] code = FileUtils.readFileToString(fi)
-						.toCharArray();
-				tokenCount += tokenizer.tokenListFromCode(code).size() - 2; // Remove
-																			// sentence
-																			// start/end
-			} catch (final IOException e) {
-				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
-			}
-		}
+		final TokenCountingSink total = new TokenCountingSink();
+		corpus.tokenize(new File(args[0]), (tokenizer, file, code) -> {
+			final TokenCountingSink counter = new TokenCountingSink();
+			tokenizer.tokenize(code, counter);
+			return counter.tokenCount;
+		}, (file, count) -> total.tokenCount += count);
 
-		System.out.println("Tokens: " + tokenCount);
+		System.out.println("Tokens: " + total.tokenCount);
 	}
 }
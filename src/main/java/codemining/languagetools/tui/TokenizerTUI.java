@@ -4,68 +4,45 @@
 package codemining.languagetools.tui;
 
 import java.io.File;
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.util.Collection;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.eclipse.jdt.core.compiler.InvalidInputException;
-
-import codemining.languagetools.ITokenizer;
+import codemining.languagetools.CorpusTokenizer;
 import codemining.languagetools.ITokenizer.FullToken;
-import codemining.languagetools.TokenizerUtils;
-
-import com.google.common.collect.Lists;
 
 /**
  * Print tokenized code of a file to stdout. Each token is placed at a separate
- * line. New files are separated by an empty line.
+ * line. New files are separated by an empty line and are printed in path
+ * order, although they are tokenized in parallel.
  * 
  * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
  * 
  */
 public class TokenizerTUI {
-	public static void main(final String[] args) throws InvalidInputException,
-			IOException, InstantiationException, IllegalAccessException,
-			ClassNotFoundException, IllegalArgumentException,
-			SecurityException, InvocationTargetException, NoSuchMethodException {
+	public static void main(final String[] args)
+			throws ReflectiveOperationException, InterruptedException {
 		if (args.length < 2) {
 			System.err
 					.println("Usage <codeDir> <TokenizerClass> [TokenizerArgs]");
 			return;
 		}
 
-		final ITokenizer tok;
-		final String tokenizerClass = args[1];
-		if (args.length == 2) {
-			tok = TokenizerUtils.tokenizerForClass(tokenizerClass);
-		} else {
-			final String tokenizerArguments = args[2];
-			tok = TokenizerUtils.tokenizerForClass(tokenizerClass,
-					tokenizerArguments);
-		}
-
-		final File baseFile = new File(args[0]);
-		final Collection<File> allFiles;
-		if (baseFile.isDirectory()) {
-			allFiles = FileUtils.listFiles(baseFile, tok.getFileFilter(),
-					DirectoryFileFilter.DIRECTORY);
-		} else {
-			allFiles = Lists.newArrayList(baseFile);
-		}
-
-		for (final File fi : allFiles) {
+		final String tokenizerArguments = args.length == 2 ? null : args[2];
+		final CorpusTokenizer corpus = CorpusTokenizer.forTokenizerClass(
+				args[1], tokenizerArguments,
+				CorpusTokenizer.DEFAULT_N_THREADS, true);
 
+		final String lineSeparator = System.getProperty("line.separator");
+		// Tokenizers may override the File version, e.g. to parse the file
+		// with its source path, so the files are not read in advance
+		corpus.tokenizeFiles(new File(args[0]), (tokenizer, file) -> {
 			final StringBuffer buf = new StringBuffer();
-			for (final FullToken token : tok.getTokenListFromCode(fi)) {
+			for (final FullToken token : tokenizer.getTokenListFromCode(file)) {
 				buf.append(token);
-				buf.append(System.getProperty("line.separator"));
+				buf.append(lineSeparator);
 			}
-
-			System.out.println(buf.toString());
+			return buf.toString();
+		}, (file, tokens) -> {
+			System.out.println(tokens);
 			System.out.println();
-
-		}
+		});
 	}
 }
@@ -6,7 +6,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.SortedMap;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang.NotImplementedException;
@@ -15,6 +14,10 @@ import org.python.pydev.parser.jython.FastCharStream;
 import org.python.pydev.parser.jython.Token;
 
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.LineIndex;
+import codemining.languagetools.SourceReader;
+import codemining.languagetools.TokenSink;
+import codemining.languagetools.TokenStream;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -35,29 +38,55 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 	private static final RegexFileFilter pythonCodeFilter = new RegexFileFilter(
 			".*\\.py$");
 
+	/**
+	 * Return the char offset of a PyDev (1-based) line and column, clamped to
+	 * the code.
+	 *
+	 * @param lines
+	 * @param line
+	 * @param column
+	 * @return
+	 */
+	private static int toOffset(final LineIndex lines, final int line,
+			final int column) {
+		final int lineIdx = Math.min(Math.max(line - 1, 0),
+				lines.getNumLines() - 1);
+		return lines.getOffset(lineIdx, Math.max(column - 1, 0));
+	}
+
+	/**
+	 * If true, the positional methods key the tokens by the char offset of
+	 * their start, instead of (line * 500 + column).
+	 */
+	private final boolean keyByOffset;
+
 	public AbstractPythonTokenizer() {
+		this(false);
+	}
+
+	/**
+	 * @param keyByOffset
+	 *            if true, the positional methods key the tokens by the char
+	 *            offset of their start, instead of (line * 500 + column).
+	 */
+	public AbstractPythonTokenizer(final boolean keyByOffset) {
 		super();
+		this.keyByOffset = keyByOffset;
 	}
 
+	/**
+	 * Return the tokens keyed by their position (see getPositionKey()).
+	 */
 	@Override
 	public SortedMap<Integer, FullToken> fullTokenListWithPos(final char[] code) {
-		final FastCharStream stream = new FastCharStream(code);
-		final ITokenManager mng = getPythonTokenizer(stream);
+		final TokenStream stream = tokenize(code);
+		final LineIndex lines = keyByOffset ? null : new LineIndex(code);
 		final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
-
-		Token nextToken = mng.getNextToken();
-		while (nextToken.kind != 0) {
-			if (shouldAdd(nextToken)) {
-				// TODO: Bad Heurisitc...
-				tokens.put(
-						nextToken.getBeginLine() * 500
-								+ nextToken.getBeginCol(),
-						new FullToken(nextToken.image, Integer
-								.toString(nextToken.kind)));
-			}
-			nextToken = mng.getNextToken();
+		for (int i = 0; i < stream.size(); i++) {
+			tokens.put(getPositionKey(lines, stream.getStartOffset(i)),
+					new FullToken(stream.getTokenText(i), stream
+							.getTokenType(i)));
 		}
-
 		return tokens;
 	}
 
@@ -103,27 +132,40 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final char[] code) {
-		final FastCharStream stream = new FastCharStream(code);
-		final ITokenManager mng = getPythonTokenizer(stream);
-		final List<FullToken> tokens = Lists.newArrayList();
-
-		Token nextToken = mng.getNextToken();
-		while (nextToken.kind != 0) {
-			if (shouldAdd(nextToken)) {
-				tokens.add(new FullToken(nextToken.image, Integer
-						.toString(nextToken.kind)));
-			}
-			nextToken = mng.getNextToken();
+		final TokenStream stream = tokenize(code);
+		final List<FullToken> tokens = Lists
+				.newArrayListWithCapacity(stream.size());
+		for (int i = 0; i < stream.size(); i++) {
+			tokens.add(new FullToken(stream.getTokenText(i), stream
+					.getTokenType(i)));
 		}
-
 		return tokens;
 	}
 
 	@Override
 	public List<FullToken> getTokenListFromCode(final File codeFile)
 			throws IOException {
-		return getTokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return getTokenListFromCode(SourceReader.readChars(codeFile));
+	}
+
+	/**
+	 * Return the position key used by the positional methods. This is the
+	 * char offset of the token start if keyByOffset is set, otherwise the
+	 * (line * 500 + column) of the token start.
+	 *
+	 * TODO: Bad Heurisitc...
+	 *
+	 * @param lines
+	 *            the line index of the code, or null if keyByOffset is set
+	 * @param offset
+	 * @return
+	 */
+	private int getPositionKey(final LineIndex lines, final int offset) {
+		if (keyByOffset) {
+			return offset;
+		}
+		return (lines.getLine(offset) + 1) * 500 + lines.getLineOffset(offset)
+				+ 1;
 	}
 
 	/**
@@ -138,53 +180,77 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
-		final FastCharStream stream = new FastCharStream(code);
-		final ITokenManager mng = getPythonTokenizer(stream);
-		final List<String> tokens = Lists.newArrayList();
-
-		Token nextToken = mng.getNextToken();
-		while (nextToken.kind != 0) {
-			if (shouldAdd(nextToken)) {
-				tokens.add(nextToken.image);
-			}
-			nextToken = mng.getNextToken();
+		final TokenStream stream = tokenize(code);
+		final List<String> tokens = Lists.newArrayListWithCapacity(stream
+				.size());
+		for (int i = 0; i < stream.size(); i++) {
+			tokens.add(stream.getTokenText(i));
 		}
-
 		return tokens;
 	}
 
 	@Override
 	public List<String> tokenListFromCode(final File codeFile)
 			throws IOException {
-		return tokenListFromCode(FileUtils.readFileToString(codeFile)
-				.toCharArray());
+		return tokenListFromCode(SourceReader.readChars(codeFile));
 	}
 
+	/**
+	 * Return the tokens keyed by their position (see getPositionKey()).
+	 */
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
-		final FastCharStream stream = new FastCharStream(code);
-		final ITokenManager mng = getPythonTokenizer(stream);
+		final TokenStream stream = tokenize(code);
+		final LineIndex lines = keyByOffset ? null : new LineIndex(code);
 		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
-
-		Token nextToken = mng.getNextToken();
-		while (nextToken.kind != 0) {
-			if (shouldAdd(nextToken)) {
-				// TODO: Bad Heurisitc...
-				tokens.put(
-						nextToken.getBeginLine() * 500
-								+ nextToken.getBeginCol(), nextToken.image);
-			}
-			nextToken = mng.getNextToken();
+		for (int i = 0; i < stream.size(); i++) {
+			tokens.put(getPositionKey(lines, stream.getStartOffset(i)),
+					stream.getTokenText(i));
 		}
-
 		return tokens;
 	}
 
 	@Override
 	public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
 			throws IOException {
-		return fullTokenListWithPos(FileUtils.readFileToString(file)
-				.toCharArray());
+		return fullTokenListWithPos(SourceReader.readChars(file));
+	}
+
+	/**
+	 * Tokenize the code. The PyDev tokens' lines and columns are converted to
+	 * char offsets.
+	 */
+	@Override
+	public TokenStream tokenize(final char[] code) {
+		final TokenStream tokens = new TokenStream(code, code.length / 4);
+		tokenize(code, tokens);
+		return tokens;
+	}
+
+	/**
+	 * Push the tokens to the sink. The PyDev tokens' lines and columns are
+	 * converted to char offsets.
+	 */
+	@Override
+	public void tokenize(final char[] code, final TokenSink sink) {
+		final LineIndex lines = new LineIndex(code);
+		// A new token manager for each scan, since ReInit() does not reset
+		// the indentation and parenthesis state of the PyDev managers.
+		final ITokenManager mng = getPythonTokenizer(new FastCharStream(code));
+
+		Token nextToken = mng.getNextToken();
+		while (nextToken.kind != 0) {
+			if (shouldAdd(nextToken)) {
+				final int start = toOffset(lines, nextToken.getBeginLine(),
+						nextToken.getBeginCol());
+				final int end = Math.max(start, toOffset(lines,
+						nextToken.endLine, nextToken.endColumn + 1));
+				// The image is already materialized by the token manager
+				sink.tokenWithText(nextToken.kind, start, end, code,
+						nextToken.image);
+			}
+			nextToken = mng.getNextToken();
+		}
 	}
 
 }
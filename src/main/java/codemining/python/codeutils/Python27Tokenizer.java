@@ -15,6 +15,19 @@ import org.python.pydev.parser.jython.FastCharStream;
  */
 public class Python27Tokenizer extends AbstractPythonTokenizer {
 
+	public Python27Tokenizer() {
+		super();
+	}
+
+	/**
+	 * @param keyByOffset
+	 *            if true, the positional methods key the tokens by the char
+	 *            offset of their start, instead of (line * 500 + column).
+	 */
+	public Python27Tokenizer(final boolean keyByOffset) {
+		super(keyByOffset);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -15,6 +15,19 @@ public class Python30Tokenizer extends AbstractPythonTokenizer  {
 
 	private static final long serialVersionUID = 6944634686739086853L;
 
+	public Python30Tokenizer() {
+		super();
+	}
+
+	/**
+	 * @param keyByOffset
+	 *            if true, the positional methods key the tokens by the char
+	 *            offset of their start, instead of (line * 500 + column).
+	 */
+	public Python30Tokenizer(final boolean keyByOffset) {
+		super(keyByOffset);
+	}
+
 	/**
 	 * @param stream
 	 * @return
@@ -0,0 +1,158 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.junit.Before;
+import org.junit.Test;
+
+import codemining.java.codeutils.scopes.AllScopeExtractor.AllScopeSnippetExtractor;
+import codemining.java.codeutils.scopes.MethodScopeExtractor;
+import codemining.java.codeutils.scopes.TypenameScopeExtractor.TypenameSnippetExtractor;
+import codemining.java.codeutils.scopes.VariableScopeExtractor;
+import codemining.languagetools.ParseType;
+import codemining.languagetools.Scope;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.TreeMultimap;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CompositeASTVisitorTest {
+
+	/**
+	 * Records the calls it receives, pruning the bodies of the methods in
+	 * visit() or the blocks in preVisit2().
+	 */
+	private static class RecordingVisitor extends ASTVisitor {
+
+		final List<String> calls = Lists.newArrayList();
+
+		private final boolean pruneMethods;
+
+		RecordingVisitor(final boolean pruneMethods) {
+			this.pruneMethods = pruneMethods;
+		}
+
+		@Override
+		public void endVisit(final MethodDeclaration node) {
+			calls.add("endVisit " + node.getName());
+		}
+
+		@Override
+		public void endVisit(final SimpleName node) {
+			calls.add("endVisit " + node);
+		}
+
+		@Override
+		public void postVisit(final ASTNode node) {
+			calls.add("postVisit " + node.getNodeType());
+		}
+
+		@Override
+		public boolean preVisit2(final ASTNode node) {
+			calls.add("preVisit " + node.getNodeType());
+			return pruneMethods || !(node instanceof Block);
+		}
+
+		@Override
+		public boolean visit(final MethodDeclaration node) {
+			calls.add("visit " + node.getName());
+			return !pruneMethods;
+		}
+
+		@Override
+		public boolean visit(final SimpleName node) {
+			calls.add("visit " + node);
+			return true;
+		}
+
+	}
+
+	ASTNode classCU;
+
+	@Before
+	public void setUp() throws IOException {
+		final String classContent = FileUtils.readFileToString(new File(
+				CompositeASTVisitorTest.class.getClassLoader()
+						.getResource("SampleClass.txt").getFile()));
+		classCU = new JavaASTExtractor(false).getASTNode(classContent,
+				ParseType.COMPILATION_UNIT);
+	}
+
+	@Test
+	public void testAllScopes() {
+		final Multimap<Scope, String> expected = TreeMultimap.create();
+		expected.putAll(VariableScopeExtractor.getScopeSnippets(classCU));
+		expected.putAll(MethodScopeExtractor.getScopeSnippets(classCU, true));
+		expected.putAll(new TypenameSnippetExtractor(true)
+				.getFromNode(classCU));
+		assertEquals(new AllScopeSnippetExtractor().getFromNode(classCU),
+				expected);
+	}
+
+	/**
+	 * Check that each analysis receives the same calls inside a composite as
+	 * when it visits the AST alone.
+	 *
+	 * @param pruneMethods
+	 *            the mode of each analysis
+	 */
+	private void assertSameCalls(final boolean... pruneMethods) {
+		final CompositeASTVisitor composite = new CompositeASTVisitor();
+		final List<RecordingVisitor> inComposite = Lists.newArrayList();
+		for (final boolean mode : pruneMethods) {
+			inComposite.add(composite.add(new RecordingVisitor(mode)));
+		}
+		classCU.accept(composite);
+
+		for (int i = 0; i < pruneMethods.length; i++) {
+			final RecordingVisitor alone = new RecordingVisitor(
+					pruneMethods[i]);
+			classCU.accept(alone);
+			assertEquals(inComposite.get(i).calls, alone.calls);
+		}
+	}
+
+	@Test
+	public void testAllPruneInPreVisit() {
+		assertSameCalls(false);
+		assertSameCalls(false, false);
+	}
+
+	@Test
+	public void testAllPruneInVisit() {
+		assertSameCalls(true);
+		assertSameCalls(true, true);
+	}
+
+	@Test
+	public void testPruning() {
+		assertSameCalls(true, false);
+		assertSameCalls(false, true, false);
+
+		final RecordingVisitor methods = new RecordingVisitor(true);
+		final RecordingVisitor blocks = new RecordingVisitor(false);
+		CompositeASTVisitor.acceptAll(classCU, methods, blocks);
+		assertTrue(methods.calls.size() < blocks.calls.size());
+		// Pruned in preVisit2(), but postVisit() is still called
+		assertTrue(blocks.calls.contains("postVisit " + ASTNode.BLOCK));
+	}
+
+}
@@ -3,6 +3,7 @@
  */
 package codemining.java.codeutils;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -58,6 +59,39 @@ public class JavaAstExtractorTest {
 		assertTrue(snippetMatchesAstTokens(methodContent, methodCU));
 	}
 
+	@Test
+	public void testGetBestEffortAstNode() throws Exception {
+		final JavaASTExtractor ex = new JavaASTExtractor(false);
+		assertEquals(ASTNode.COMPILATION_UNIT,
+				ex.getBestEffortAstNode(classContent).getNodeType());
+		assertEquals(ASTNode.METHOD_DECLARATION,
+				ex.getBestEffortAstNode(methodContent).getNodeType());
+		// Valid both as a class body and as statements
+		assertEquals(ASTNode.TYPE_DECLARATION,
+				ex.getBestEffortAstNode("int x = 2;").getNodeType());
+		assertEquals(ASTNode.BLOCK,
+				ex.getBestEffortAstNode("int x = 2;\nfoo(x);").getNodeType());
+		assertEquals(ASTNode.INFIX_EXPRESSION,
+				ex.getBestEffortAstNode("a.foo(x) + 1").getNodeType());
+	}
+
+	@Test
+	public void testPredictParseType() {
+		final JavaTokenizer tokenizer = new JavaTokenizer();
+		assertEquals(ParseType.COMPILATION_UNIT,
+				JavaASTExtractor.predictParseType(tokenizer
+						.tokenize(classContent.toCharArray())));
+		assertEquals(ParseType.METHOD,
+				JavaASTExtractor.predictParseType(tokenizer
+						.tokenize(methodContent.toCharArray())));
+		assertEquals(ParseType.STATEMENTS,
+				JavaASTExtractor.predictParseType(tokenizer
+						.tokenize("int x = 2;\nfoo(x);".toCharArray())));
+		assertEquals(ParseType.EXPRESSION,
+				JavaASTExtractor.predictParseType(tokenizer
+						.tokenize("a.foo(x) + 1".toCharArray())));
+	}
+
 	private boolean snippetMatchesAstTokens(final String snippetCode,
 			final ASTNode node) {
 		final JavaTokenizer tokenizer = new JavaTokenizer();
@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map.Entry;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.junit.Test;
+
+import codemining.java.codedata.metrics.CyclomaticCalculator;
+import codemining.java.codeutils.JavaIdentifierClassifier.IdentifierKind;
+import codemining.java.codeutils.scopes.VariableScopeExtractor;
+import codemining.java.codeutils.scopes.VariableScopeExtractor.Variable;
+import codemining.languagetools.CompactAst;
+import codemining.languagetools.ParseType;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+/**
+ * Check that the extractors that run on the CompactAst agree with the ones
+ * that run on the JDT tree.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class JavaCompactAstConverterTest {
+
+	private static final String[] SAMPLES = { "SampleClass.txt",
+			"SampleClass2.txt", "SampleClass3.txt" };
+
+	private static String readSample(final String sample) throws IOException {
+		return FileUtils.readFileToString(new File(
+				JavaCompactAstConverterTest.class.getClassLoader()
+						.getResource(sample).getFile()));
+	}
+
+	@Test
+	public void testClassification() throws IOException {
+		for (final String sample : SAMPLES) {
+			final String code = readSample(sample);
+			final ASTNode cu = new JavaASTExtractor(false).getASTNode(code,
+					ParseType.COMPILATION_UNIT);
+			final JavaIdentifierClassifier fromDom = JavaIdentifierClassifier
+					.classify(cu);
+			final JavaIdentifierClassifier fromCompact = JavaIdentifierClassifier
+					.classify(JavaCompactAstConverter.convert(cu, null));
+			for (final IdentifierKind kind : IdentifierKind.values()) {
+				assertEquals(sample, fromDom.getIdentifiers(kind),
+						fromCompact.getIdentifiers(kind));
+			}
+		}
+	}
+
+	@Test
+	public void testComplexity() throws IOException {
+		final CyclomaticCalculator calculator = new CyclomaticCalculator();
+		for (final String sample : SAMPLES) {
+			final ASTNode cu = new JavaASTExtractor(false).getASTNode(
+					readSample(sample), ParseType.COMPILATION_UNIT);
+			assertEquals(sample, calculator.getMetricForASTNode(cu),
+					calculator.getComplexity(JavaCompactAstConverter.convert(
+							cu, null)), 0);
+		}
+	}
+
+	@Test
+	public void testVariableScopes() throws IOException {
+		for (final String sample : SAMPLES) {
+			final String code = readSample(sample);
+			final ASTNode cu = new JavaASTExtractor(false).getASTNode(code,
+					ParseType.COMPILATION_UNIT);
+			final CompactAst ast = JavaCompactAstConverter.convert(cu,
+					code.toCharArray());
+
+			// Key the scopes by the start of their node
+			final Multimap<Integer, Variable> fromDom = HashMultimap.create();
+			for (final Entry<ASTNode, Variable> entry : VariableScopeExtractor
+					.getVariableScopes(cu).entries()) {
+				fromDom.put(entry.getKey().getStartPosition(),
+						entry.getValue());
+			}
+			final Multimap<Integer, Variable> fromCompact = HashMultimap
+					.create();
+			for (final Entry<Integer, Variable> entry : VariableScopeExtractor
+					.getVariableScopes(ast).entries()) {
+				fromCompact.put(ast.getStartPosition(entry.getKey()),
+						entry.getValue());
+			}
+			assertEquals(sample, fromDom, fromCompact);
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import codemining.java.codeutils.JavaIdentifierClassifier.IdentifierKind;
+import codemining.java.tokenizers.JavaTokenizer;
+
+import com.google.common.collect.Sets;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class JavaIdentifierClassifierTest {
+
+	private static final String CODE = "class A {\n\tint foo;\n\tList<String> bar;\n"
+			+ "\tvoid foo(final int x) {\n\t\tfoo = x;\n\t\tfoo(x);\n"
+			+ "\t\tfor (int foo = 0; foo < x; foo++) {\n\t\t}\n\t}\n}\n";
+
+	private void assertKinds(final JavaIdentifierClassifier classifier) {
+		assertEquals(classifier.getKind(CODE.indexOf("foo;")),
+				IdentifierKind.VARIABLE);
+		assertEquals(classifier.getKind(CODE.indexOf("List")),
+				IdentifierKind.TYPE);
+		assertEquals(classifier.getKind(CODE.indexOf("String")),
+				IdentifierKind.TYPE);
+		assertEquals(classifier.getKind(CODE.indexOf("foo(final")),
+				IdentifierKind.METHOD);
+		assertEquals(classifier.getKind(CODE.indexOf("foo = x")),
+				IdentifierKind.VARIABLE);
+		assertEquals(classifier.getKind(CODE.indexOf("x;")),
+				IdentifierKind.VARIABLE);
+		assertEquals(classifier.getKind(CODE.indexOf("foo(x)")),
+				IdentifierKind.METHOD);
+		assertEquals(classifier.getKind(CODE.indexOf("foo++")),
+				IdentifierKind.VARIABLE);
+	}
+
+	@Test
+	public void testClassify() throws Exception {
+		assertKinds(JavaIdentifierClassifier.classify(CODE.toCharArray()));
+	}
+
+	@Test
+	public void testClassifyTokens() {
+		final String code = "/* A comment */ " + CODE;
+		final JavaIdentifierClassifier classifier = JavaIdentifierClassifier
+				.classify(new JavaTokenizer(true).tokenize(code.toCharArray()));
+		assertEquals(IdentifierKind.METHOD,
+				classifier.getKind(code.indexOf("foo(x)")));
+		assertEquals(IdentifierKind.VARIABLE,
+				classifier.getKind(code.indexOf("foo++")));
+	}
+
+	@Test
+	public void testGetIdentifiers() {
+		final String code = "class A { int \\u0078y = 1; int y = xy; }";
+		final JavaIdentifierClassifier classifier = JavaIdentifierClassifier
+				.classify(new JavaTokenizer().tokenize(code.toCharArray()));
+		assertEquals(Sets.newHashSet("xy", "y"),
+				classifier.getIdentifiers(IdentifierKind.VARIABLE));
+		assertEquals(Sets.newHashSet("A"),
+				classifier.getIdentifiers(IdentifierKind.TYPE));
+		assertEquals(
+				classifier.getIdentifiers(IdentifierKind.VARIABLE),
+				JavaIdentifierClassifier.classifyLexically(
+						new JavaTokenizer().tokenize(code.toCharArray()))
+						.getIdentifiers(IdentifierKind.VARIABLE));
+	}
+
+	@Test
+	public void testClassifyLexically() {
+		assertKinds(JavaIdentifierClassifier
+				.classifyLexically(new JavaTokenizer().tokenize(CODE
+						.toCharArray())));
+	}
+
+}
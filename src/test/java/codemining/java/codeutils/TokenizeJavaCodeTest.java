@@ -10,7 +10,12 @@ import org.eclipse.jdt.core.compiler.ITerminalSymbols;
 import org.junit.Test;
 
 import codemining.java.tokenizers.JavaTokenizer;
+import codemining.languagetools.IIncrementalTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.ITokenizer.FullToken;
+import codemining.languagetools.IncrementalTokenization;
+import codemining.languagetools.TokenStream;
+import codemining.languagetools.TokenVocabulary;
 
 public class TokenizeJavaCodeTest {
 
@@ -84,6 +89,36 @@ public class TokenizeJavaCodeTest {
 		}
 	}
 
+	/**
+	 * Check that retokenizing after an edit gives the same tokens as
+	 * tokenizing the edited code.
+	 */
+	private void assertRetokenized(final IIncrementalTokenizer tokenizer,
+			final char[] code, final int offset, final int removedLength,
+			final String insertedText) {
+		final TokenStream retokenized = tokenizer.retokenize(
+				tokenizer.tokenize(code), offset, removedLength, insertedText);
+		final char[] edited = IncrementalTokenization.applyEdit(code, offset,
+				removedLength, insertedText);
+		assertEquals(retokenized.toFullTokenPositionMap(), tokenizer
+				.tokenize(edited).toFullTokenPositionMap());
+		assertEquals(tokenizer.fullTokenListWithPos(retokenized),
+				tokenizer.fullTokenListWithPos(edited));
+	}
+
+	@Test
+	public void testRetokenize() {
+		final JavaTokenizer tokenizer = new JavaTokenizer();
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 4, 1, "yy");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 13, 2, "+");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 14, 0, "=");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 0, 0, "/* ");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 11, 0, "\"x");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, CODE_SAMPLE2.length, 0,
+				"\n");
+		assertRetokenized(tokenizer, CODE_SAMPLE3, 9, 0, "*/");
+	}
+
 	@Test
 	public void testSample3() {
 		ITokenizer tokenizer = new JavaTokenizer();
@@ -101,6 +136,22 @@ public class TokenizeJavaCodeTest {
 		assertEquals(tok.size(), TOKENS_SAMPLE1.length);
 	}
 
+	@Test
+	public void testTokenizeToIds() {
+		final JavaTokenizer tokenizer = new JavaTokenizer(true);
+		final char[] code = "/* a\n b */ int \\u0078 = 2; x++;"
+				.toCharArray();
+		final TokenVocabulary vocabulary = new TokenVocabulary();
+		final int[] ids = tokenizer.tokenizeToIds(code, vocabulary);
+
+		final List<FullToken> tokens = tokenizer.getTokenListFromCode(code);
+		assertEquals(tokens.size() - 2, ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(tokens.get(i + 1), vocabulary.getToken(ids[i]));
+		}
+		assertEquals(ids[2], ids[5]);
+	}
+
 	@Test
 	public void testTokenTypes() {
 		ITokenizer tokenizer = new JavaTokenizer();
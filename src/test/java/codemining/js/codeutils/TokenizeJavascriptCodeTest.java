@@ -9,7 +9,10 @@ import java.util.Map;
 import org.eclipse.wst.jsdt.core.compiler.ITerminalSymbols;
 import org.junit.Test;
 
+import codemining.languagetools.IIncrementalTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.IncrementalTokenization;
+import codemining.languagetools.TokenStream;
 
 public class TokenizeJavascriptCodeTest {
 
@@ -83,6 +86,37 @@ public class TokenizeJavascriptCodeTest {
 		}
 	}
 
+	/**
+	 * Check that retokenizing after an edit gives the same tokens as
+	 * tokenizing the edited code.
+	 */
+	private void assertRetokenized(final IIncrementalTokenizer tokenizer,
+			final char[] code, final int offset, final int removedLength,
+			final String insertedText) {
+		final TokenStream retokenized = tokenizer.retokenize(
+				tokenizer.tokenize(code), offset, removedLength, insertedText);
+		final char[] edited = IncrementalTokenization.applyEdit(code, offset,
+				removedLength, insertedText);
+		assertEquals(retokenized.toFullTokenPositionMap(), tokenizer
+				.tokenize(edited).toFullTokenPositionMap());
+		assertEquals(tokenizer.fullTokenListWithPos(retokenized),
+				tokenizer.fullTokenListWithPos(edited));
+	}
+
+	@Test
+	public void testRetokenize() {
+		final JavascriptTokenizer tokenizer = new JavascriptTokenizer();
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 4, 1, "yy");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 13, 2, "+");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 14, 0, "=");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 0, 0, "/* ");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, 11, 0, "\"x");
+		assertRetokenized(tokenizer, CODE_SAMPLE2, CODE_SAMPLE2.length, 0,
+				"\n");
+		assertRetokenized(tokenizer, CODE_SAMPLE3, 9, 0, "*/");
+		assertRetokenized(tokenizer, "a = b / c / d;".toCharArray(), 4, 1, "(");
+	}
+
 	@Test
 	public void testSample3() {
 		final ITokenizer tokenizer = new JavascriptTokenizer();
@@ -0,0 +1,204 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.AbstractFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.junit.Test;
+
+import codemining.languagetools.ITokenizer.FullToken;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CachingTokenizerTest {
+
+	/**
+	 * Splits the code at spaces and counts the calls.
+	 */
+	private static class SpaceTokenizer implements ITokenizer {
+
+		private static final long serialVersionUID = 1L;
+
+		int calls = 0;
+
+		@Override
+		public SortedMap<Integer, FullToken> fullTokenListWithPos(
+				final char[] code) {
+			calls++;
+			final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
+			final String str = new String(code);
+			int start = 0;
+			for (final String token : str.split(" ")) {
+				tokens.put(start, new FullToken(token, "WORD"));
+				start += token.length() + 1;
+			}
+			return tokens;
+		}
+
+		@Override
+		public AbstractFileFilter getFileFilter() {
+			return (AbstractFileFilter) TrueFileFilter.TRUE;
+		}
+
+		@Override
+		public String getIdentifierType() {
+			return "WORD";
+		}
+
+		@Override
+		public Collection<String> getKeywordTypes() {
+			return Collections.emptySet();
+		}
+
+		@Override
+		public Collection<String> getLiteralTypes() {
+			return Collections.emptySet();
+		}
+
+		@Override
+		public FullToken getTokenFromString(final String token) {
+			return new FullToken(token, "WORD");
+		}
+
+		@Override
+		public List<FullToken> getTokenListFromCode(final char[] code) {
+			return Lists.newArrayList(fullTokenListWithPos(code).values());
+		}
+
+		@Override
+		public List<FullToken> getTokenListFromCode(final File codeFile)
+				throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<String> tokenListFromCode(final char[] code) {
+			final List<String> tokens = Lists.newArrayList();
+			for (final FullToken token : getTokenListFromCode(code)) {
+				tokens.add(token.token);
+			}
+			return tokens;
+		}
+
+		@Override
+		public List<String> tokenListFromCode(final File codeFile)
+				throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public SortedMap<Integer, FullToken> tokenListWithPos(final File file)
+				throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	@Test
+	public void testCache() throws IOException {
+		final File cacheDir = Files.createTempDirectory("tokcache").toFile();
+		try {
+			final SpaceTokenizer base = new SpaceTokenizer();
+			final CachingTokenizer tokenizer = new CachingTokenizer(base,
+					cacheDir);
+			final char[] code = "int a = 1".toCharArray();
+
+			final List<FullToken> tokens = tokenizer.getTokenListFromCode(code);
+			assertEquals(tokens, base.getTokenListFromCode(code));
+			assertEquals(tokenizer.getMissCount(), 1);
+			base.calls = 0;
+
+			// Served from the cache, even by another instance
+			final CachingTokenizer other = new CachingTokenizer(base,
+					cacheDir);
+			assertEquals(other.getTokenListFromCode(code), tokens);
+			assertEquals(other.getHitCount(), 1);
+			assertEquals(base.calls, 0);
+
+			// A different view or code is a miss
+			assertEquals(other.tokenListFromCode(code).get(1), "a");
+			assertEquals(other.tokenize("b c".toCharArray()).getTokenText(1),
+					"c");
+			assertEquals(other.tokenize("b c".toCharArray()).getTokenText(1),
+					"c");
+			assertEquals(other.getMissCount(), 2);
+			assertEquals(other.getHitCount(), 2);
+		} finally {
+			FileUtils.deleteDirectory(cacheDir);
+		}
+	}
+
+	@Test
+	public void testCorruptEntry() throws IOException {
+		final File cacheDir = Files.createTempDirectory("tokcache").toFile();
+		try {
+			final SpaceTokenizer base = new SpaceTokenizer();
+			final CachingTokenizer tokenizer = new CachingTokenizer(base,
+					cacheDir);
+			final char[] code = "int a = 1".toCharArray();
+			final List<String> tokens = tokenizer.tokenListFromCode(code);
+			for (final File entry : FileUtils.listFiles(cacheDir,
+					new String[] { "tok" }, true)) {
+				FileUtils.writeByteArrayToFile(entry,
+						Arrays.copyOf(FileUtils.readFileToByteArray(entry), 12));
+			}
+
+			// A truncated entry is a single miss, and it is written again
+			final CachingTokenizer other = new CachingTokenizer(base,
+					cacheDir);
+			assertEquals(other.tokenListFromCode(code), tokens);
+			assertEquals(other.getMissCount(), 1);
+			assertEquals(other.getHitCount(), 0);
+			assertEquals(other.tokenListFromCode(code), tokens);
+			assertEquals(other.getHitCount(), 1);
+		} finally {
+			FileUtils.deleteDirectory(cacheDir);
+		}
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		final File cacheDir = Files.createTempDirectory("tokcache").toFile();
+		try {
+			final SpaceTokenizer base = new SpaceTokenizer();
+			final CachingTokenizer tokenizer = new CachingTokenizer(base,
+					cacheDir, 1000);
+			for (int i = 0; i < 100; i++) {
+				tokenizer.getTokenListFromCode(("token" + i).toCharArray());
+			}
+			tokenizer.evictIfNeeded();
+			long size = 0;
+			for (final File entry : FileUtils.listFiles(cacheDir,
+					TrueFileFilter.TRUE, TrueFileFilter.TRUE)) {
+				size += entry.length();
+			}
+			assertEquals(size <= 1000, true);
+		} finally {
+			FileUtils.deleteDirectory(cacheDir);
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CompactAstTest {
+
+	/**
+	 * Build the AST of "a = b + 1" as assignment(name, infix(name, number)).
+	 */
+	private static CompactAst buildAst() {
+		final CompactAst.Builder builder = new CompactAst.Builder();
+		builder.enter(0, 0, 9, null, "=");
+		builder.enter(1, 0, 1, "left", "a");
+		builder.exit();
+		builder.enter(2, 4, 5, "right", "+");
+		builder.enter(1, 4, 1, "left", "b");
+		builder.exit();
+		builder.enter(3, 8, 1, "right", "1");
+		builder.exit();
+		builder.exit();
+		builder.exit();
+		return builder.build("a = b + 1".toCharArray());
+	}
+
+	@Test
+	public void testAccept() {
+		final CompactAst ast = buildAst();
+		final StringBuilder visits = new StringBuilder();
+		ast.accept(new CompactAstVisitor() {
+
+			@Override
+			public void endVisit(final CompactAst ast, final int node) {
+				visits.append(")");
+			}
+
+			@Override
+			public boolean visit(final CompactAst ast, final int node) {
+				visits.append("(" + ast.getLabel(node));
+				return ast.getNodeType(node) != 2;
+			}
+
+		});
+		assertEquals("(=(a)(+))", visits.toString());
+	}
+
+	@Test
+	public void testStructure() {
+		final CompactAst ast = buildAst();
+		assertEquals(5, ast.size());
+		assertEquals(CompactAst.NO_NODE, ast.getParent(0));
+		assertEquals(2, ast.getParent(3));
+		assertEquals(1, ast.getFirstChild(0));
+		assertEquals(2, ast.getNextSibling(1));
+		assertEquals(CompactAst.NO_NODE, ast.getNextSibling(2));
+		assertEquals(CompactAst.NO_NODE, ast.getFirstChild(1));
+		assertEquals(5, ast.getSubtreeEnd(2));
+		assertEquals(4, ast.getChild(2, "right"));
+		assertEquals("right", ast.getRole(4));
+		assertEquals(null, ast.getRole(0));
+		assertEquals("b + 1", ast.getText(2));
+		assertTrue(ast.hasSource());
+		assertFalse(new CompactAst.Builder().build(null).hasSource());
+	}
+
+}
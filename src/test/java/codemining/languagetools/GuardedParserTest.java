@@ -0,0 +1,63 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import codemining.java.tokenizers.JavaTokenizer;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class GuardedParserTest {
+
+	@Test
+	public void testFailure() {
+		final GuardedParser guard = new GuardedParser(1000, 100, 100, null);
+		assertNull(guard.parse("broken", "int x".toCharArray(),
+				(source, monitor) -> {
+					throw new IllegalStateException("Cannot parse");
+				}));
+		assertTrue(guard.isQuarantined("broken"));
+		// Quarantined sources are not parsed again
+		assertNull(guard.parse("broken", "int x".toCharArray(),
+				(source, monitor) -> "parsed"));
+	}
+
+	@Test
+	public void testLimits() {
+		final GuardedParser guard = new GuardedParser(1000, 10, 3,
+				new JavaTokenizer());
+		assertEquals(guard.parse("ok", "a = b".toCharArray(),
+				(source, monitor) -> "parsed"), "parsed");
+		assertNull(guard.parse("tooLarge", "int x = 1000;".toCharArray(),
+				(source, monitor) -> "parsed"));
+		assertNull(guard.parse("tooManyTokens", "a=b+c".toCharArray(),
+				(source, monitor) -> "parsed"));
+		assertFalse(guard.isQuarantined("ok"));
+		assertEquals(guard.getQuarantine().size(), 2);
+	}
+
+	@Test
+	public void testTimeout() {
+		final GuardedParser guard = new GuardedParser(100, 100, 100, null);
+		final long start = System.currentTimeMillis();
+		assertNull(guard.parse("slow", "int x".toCharArray(),
+				(source, monitor) -> {
+					while (!monitor.isCanceled()) {
+						Thread.sleep(10);
+					}
+					return "parsed";
+				}));
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		assertTrue(guard.isQuarantined("slow"));
+	}
+
+}
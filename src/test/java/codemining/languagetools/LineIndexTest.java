@@ -0,0 +1,63 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import codemining.java.codeutils.JavaAstExtractorTest;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class LineIndexTest {
+
+	@Test
+	public void testColumnCompatibility() throws IOException {
+		final String classContent = FileUtils.readFileToString(new File(
+				JavaAstExtractorTest.class.getClassLoader()
+						.getResource("SampleClass.txt").getFile()));
+		final LineIndex index = new LineIndex(classContent);
+		for (int i = 0; i <= classContent.length(); i++) {
+			assertEquals(TokenizerUtils.getColumnOfPosition(index, i),
+					TokenizerUtils.getColumnOfPosition(classContent, i));
+		}
+	}
+
+	@Test
+	public void testColumnCompatibilityLineEnds() {
+		final String code = "a\n\tb\r\nc\rd\r";
+		final LineIndex index = new LineIndex(code);
+		for (int i = 0; i <= code.length(); i++) {
+			assertEquals(TokenizerUtils.getColumnOfPosition(code, i),
+					TokenizerUtils.getColumnOfPosition(index, i));
+		}
+		assertEquals(2, TokenizerUtils.getColumnOfPosition(code, 9));
+	}
+
+	@Test
+	public void testLines() {
+		final LineIndex index = new LineIndex("a\n\tb\r\nc\rd".toCharArray(), 4);
+		assertEquals(index.getNumLines(), 4);
+		assertEquals(index.getLine(0), 0);
+		assertEquals(index.getLine(1), 0);
+		assertEquals(index.getLine(2), 1);
+		assertEquals(index.getLine(5), 1);
+		assertEquals(index.getLine(6), 2);
+		assertEquals(index.getLine(8), 3);
+		assertEquals(index.getLine(9), 3);
+		assertEquals(index.getLineStart(2), 6);
+		assertEquals(index.getLineOffset(3), 1);
+		assertEquals(index.getColumn(3), 4);
+		assertEquals(index.getColumn(2), 0);
+		assertEquals(index.getOffset(1, 1), 3);
+	}
+
+}
@@ -0,0 +1,79 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class SourceReaderTest {
+
+	private String readBack(final byte[] contents) throws IOException {
+		return new String(SourceReader.readChars(write(contents)));
+	}
+
+	private File write(final byte[] contents) throws IOException {
+		final File file = File.createTempFile("source", ".java");
+		file.deleteOnExit();
+		FileUtils.writeByteArrayToFile(file, contents);
+		return file;
+	}
+
+	@Test
+	public void testAscii() throws IOException {
+		final String code = "public class A {\n\tint a = 1;\n}\n";
+		assertEquals(readBack(code.getBytes(StandardCharsets.US_ASCII)),
+				code);
+		assertEquals(readBack(new byte[0]), "");
+	}
+
+	@Test
+	public void testByteOrderMarks() throws IOException {
+		final String code = "String s = \"\u00e9\u4e2d\";";
+		final byte[] utf8 = code.getBytes(StandardCharsets.UTF_8);
+		final byte[] withBom = new byte[utf8.length + 3];
+		withBom[0] = (byte) 0xEF;
+		withBom[1] = (byte) 0xBB;
+		withBom[2] = (byte) 0xBF;
+		System.arraycopy(utf8, 0, withBom, 3, utf8.length);
+		assertEquals(readBack(withBom), code);
+		assertEquals(readBack(code.getBytes(StandardCharsets.UTF_16)), code);
+	}
+
+	@Test
+	public void testUtf8() throws IOException {
+		final String code = "// caf\u00e9 \ud83d\ude00\nint x;";
+		assertEquals(readBack(code.getBytes(StandardCharsets.UTF_8)), code);
+	}
+
+	@Test
+	public void testCharset() throws IOException {
+		final String code = "String s = \"\u00e9\";";
+		assertEquals(SourceReader.read(write(code
+				.getBytes(StandardCharsets.UTF_8))).charset,
+				StandardCharsets.UTF_8);
+		assertEquals(SourceReader.read(write(code
+				.getBytes(StandardCharsets.UTF_16))).charset,
+				StandardCharsets.UTF_16);
+	}
+
+	@Test
+	public void testReadHeader() throws IOException {
+		final File file = write("package a.b;\nclass A {}\n"
+				.getBytes(StandardCharsets.UTF_8));
+		assertEquals(SourceReader.readHeader(file, 12), "package a.b;");
+		assertEquals(SourceReader.readHeader(file, 1000),
+				"package a.b;\nclass A {}\n");
+	}
+
+}
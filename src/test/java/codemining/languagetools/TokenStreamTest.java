@@ -0,0 +1,70 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import codemining.languagetools.ITokenizer.FullToken;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenStreamTest {
+
+	@Test
+	public void testAddAndViews() {
+		final char[] code = "int a = 1;".toCharArray();
+		final TokenStream stream = new TokenStream(code, 1);
+		stream.add(1, 0, 3);
+		stream.add(2, 4, 5);
+		stream.add(3, 6, 7);
+		stream.add(4, 8, 9, "ONE");
+		stream.add("PUNCT", 9, 10, ";");
+
+		assertEquals(stream.size(), 5);
+		assertEquals(stream.getTokenText(0), "int");
+		assertEquals(stream.getTokenText(3), "ONE");
+		assertEquals(stream.getTokenType(0), "1");
+		assertEquals(stream.getTokenType(4), "PUNCT");
+		assertEquals(stream.getTypeId(4), TokenStream.NO_TYPE_ID);
+		assertEquals(stream.getEndOffset(1), 5);
+
+		final List<String> tokens = stream.toTokenList();
+		assertEquals(tokens.size(), 7);
+		assertEquals(tokens.get(0), ITokenizer.SENTENCE_START);
+		assertEquals(tokens.get(2), "a");
+		assertEquals(tokens.get(6), ITokenizer.SENTENCE_END);
+
+		final SortedMap<Integer, FullToken> positions = stream
+				.toFullTokenPositionMap();
+		assertEquals(positions.size(), 7);
+		assertEquals(positions.get(6), new FullToken("=", "3"));
+
+		stream.trimToSize();
+		assertEquals(stream.getStartOffsets().length, 5);
+	}
+
+	@Test
+	public void testFromFullTokens() {
+		final char[] code = "a+b".toCharArray();
+		final TokenStream original = new TokenStream(code);
+		original.add(1, 0, 1);
+		original.add(2, 1, 2);
+		original.add(1, 2, 3);
+
+		final TokenStream converted = TokenStream.fromFullTokens(code,
+				original.toFullTokenPositionMap());
+		assertEquals(converted.size(), 3);
+		assertEquals(converted.getTokenText(1), "+");
+		assertEquals(converted.getTokenType(1), "2");
+		assertEquals(converted.getStartOffset(2), 2);
+	}
+
+}
@@ -0,0 +1,78 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import codemining.languagetools.ITokenizer.FullToken;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenVocabularyTest {
+
+	private TokenVocabulary createVocabulary() {
+		final TokenVocabulary vocabulary = new TokenVocabulary();
+		vocabulary.addOccurrence(new FullToken("int", "KEYWORD"));
+		vocabulary.addOccurrence(new FullToken("a", "IDENT"));
+		vocabulary.addOccurrence(new FullToken("a", "IDENT"));
+		vocabulary.addOccurrence(new FullToken("b", "IDENT"));
+		vocabulary.addOccurrence(new FullToken("a", "STRING"));
+		vocabulary.addOccurrence(new FullToken("int", "KEYWORD"));
+		return vocabulary;
+	}
+
+	@Test
+	public void testCutoff() {
+		final TokenVocabulary vocabulary = createVocabulary().cutoff(2);
+		assertTrue(vocabulary.isFrozen());
+		assertEquals(vocabulary.size(), 3);
+		assertEquals(vocabulary.getId(new FullToken("int", "KEYWORD")), 1);
+		assertEquals(vocabulary.getId(new FullToken("a", "IDENT")), 2);
+		assertEquals(vocabulary.getId(new FullToken("b", "IDENT")),
+				TokenVocabulary.UNK_ID);
+		assertEquals(vocabulary.getCount(TokenVocabulary.UNK_ID), 2);
+		assertEquals(vocabulary.getOrAddId(new FullToken("c", "IDENT")),
+				TokenVocabulary.UNK_ID);
+	}
+
+	@Test
+	public void testIds() {
+		final TokenVocabulary vocabulary = createVocabulary();
+		assertEquals(vocabulary.size(), 5);
+		assertEquals(vocabulary.getToken(TokenVocabulary.UNK_ID),
+				TokenVocabulary.UNK_TOKEN);
+		final int aId = vocabulary.getId(new FullToken("a", "IDENT"));
+		assertEquals(aId, 2);
+		assertEquals(vocabulary.getCount(aId), 2);
+		assertTrue(vocabulary.getId(new FullToken("a", "STRING")) != aId);
+		assertEquals(vocabulary.getId(new FullToken("x", "IDENT")),
+				TokenVocabulary.UNK_ID);
+		assertTrue(vocabulary.intern(new FullToken("b", "IDENT")) == vocabulary
+				.getToken(3));
+	}
+
+	@Test
+	public void testSaveLoad() throws IOException {
+		final TokenVocabulary vocabulary = createVocabulary();
+		final File file = File.createTempFile("vocabulary", ".bin");
+		file.deleteOnExit();
+		vocabulary.save(file);
+
+		final TokenVocabulary loaded = TokenVocabulary.load(file);
+		assertEquals(loaded.size(), vocabulary.size());
+		for (int id = 0; id < vocabulary.size(); id++) {
+			assertEquals(loaded.getToken(id), vocabulary.getToken(id));
+			assertEquals(loaded.getCount(id), vocabulary.getCount(id));
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import codemining.languagetools.ITokenizer.FullToken;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenizedSourceTest {
+
+	@Test
+	public void testTokenIndexes() {
+		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
+		tokens.put(0, "a");
+		tokens.put(2, "=");
+		tokens.put(4, "b");
+		tokens.put(5, ";");
+		final TokenizedSource source = TokenizedSource.fromTokens(
+				"a = b;".toCharArray(), tokens);
+
+		final List<Integer> unaligned = Lists.newArrayList();
+		assertArrayEquals(
+				source.getTokenIndexes(new int[] { 4, 1, 0, 3 },
+						unaligned::add), new int[] { 3, 1 });
+		assertEquals(unaligned, Lists.newArrayList(1, 3));
+		assertArrayEquals(
+				source.getTokenIndexes(new int[] { 5 }, unaligned::add),
+				new int[] { 4 });
+		assertEquals(unaligned.size(), 2);
+	}
+
+	@Test
+	public void testViews() {
+		final char[] code = "a = b;".toCharArray();
+		final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
+		tokens.put(-1, new FullToken(ITokenizer.SENTENCE_START,
+				ITokenizer.SENTENCE_START));
+		tokens.put(0, new FullToken("a", "ID"));
+		tokens.put(2, new FullToken("=", "OP"));
+		tokens.put(4, new FullToken("b", "ID"));
+		tokens.put(5, new FullToken(";", "OP"));
+		tokens.put(Integer.MAX_VALUE, new FullToken(ITokenizer.SENTENCE_END,
+				ITokenizer.SENTENCE_END));
+
+		final TokenizedSource source = TokenizedSource.fromFullTokens(code,
+				tokens);
+		assertEquals(source.size(), 6);
+		assertEquals(source.getFullTokenPositionMap(), tokens);
+		assertEquals(source.getFullTokenList().get(3), new FullToken("b",
+				"ID"));
+		assertEquals(source.getTokenList().get(2), "=");
+		assertEquals(source.getTokenList().get(5), ITokenizer.SENTENCE_END);
+		assertEquals(source.getTokenPositionMap().get(5), ";");
+
+		assertEquals(source.getTokenIndex(-1), 0);
+		assertEquals(source.getTokenIndex(0), 1);
+		assertEquals(source.getTokenIndex(4), 3);
+		assertEquals(source.getTokenIndex(3), -1);
+		assertEquals(source.getTokenIndex(Integer.MAX_VALUE), 5);
+		assertEquals(source.getPosition(4), 5);
+	}
+
+}
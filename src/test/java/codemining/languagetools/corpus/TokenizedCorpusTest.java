@@ -0,0 +1,64 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.PrimitiveIterator;
+
+import org.junit.Test;
+
+import codemining.languagetools.ITokenizer.FullToken;
+import codemining.languagetools.TokenVocabulary;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenizedCorpusTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final TokenVocabulary vocabulary = new TokenVocabulary();
+		final int a = vocabulary.getOrAddId(new FullToken("a", "ID"));
+		final int b = vocabulary.getOrAddId(new FullToken("b", "ID"));
+
+		final int[] first = new int[] { a, b, a, 300, 70000 };
+		final int[] second = new int[0];
+		final int[] third = new int[] { b, Integer.MAX_VALUE };
+
+		final File file = File.createTempFile("corpus", ".tkc");
+		file.deleteOnExit();
+		try (final TokenizedCorpusWriter writer = new TokenizedCorpusWriter(
+				file, vocabulary)) {
+			writer.addFile("A.java", first);
+			writer.addFile("empty/B.java", second);
+			writer.addFile("C.java", third);
+		}
+
+		try (final TokenizedCorpusReader reader = new TokenizedCorpusReader(
+				file)) {
+			assertEquals(reader.getNumFiles(), 3);
+			assertEquals(reader.getTotalTokens(), 7);
+			assertEquals(reader.getFileName(1), "empty/B.java");
+			assertArrayEquals(reader.getTokenIds(0).toArray(), first);
+			assertArrayEquals(reader.getTokenIds(1).toArray(), second);
+			assertEquals(reader.getTokenIds(2).size(), 2);
+
+			final PrimitiveIterator.OfInt it = reader.getTokenIds(2)
+					.iterator();
+			assertEquals(it.nextInt(), b);
+			assertEquals(it.nextInt(), Integer.MAX_VALUE);
+			assertEquals(it.hasNext(), false);
+
+			final TokenVocabulary readVocabulary = reader.getVocabulary();
+			assertEquals(readVocabulary.size(), vocabulary.size());
+			assertEquals(readVocabulary.getToken(b), new FullToken("b", "ID"));
+		}
+	}
+
+}
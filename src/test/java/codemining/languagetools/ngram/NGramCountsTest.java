@@ -0,0 +1,129 @@
+/**
+ *
+ */
+package codemining.languagetools.ngram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class NGramCountsTest {
+
+	private static Map<List<Integer>, Long> countNaively(final int[] ids,
+			final int order) {
+		final Map<List<Integer>, Long> counts = Maps.newHashMap();
+		for (int i = 0; i + order <= ids.length; i++) {
+			counts.merge(Ints.asList(Arrays.copyOfRange(ids, i, i + order)),
+					1L, Long::sum);
+		}
+		return counts;
+	}
+
+	private static int[] randomSequence(final Random random, final int length,
+			final int vocabularySize) {
+		final int[] ids = new int[length];
+		for (int i = 0; i < length; i++) {
+			// Skewed, so that some n-grams repeat
+			ids[i] = (int) (vocabularySize * Math.pow(random.nextDouble(), 4));
+		}
+		return ids;
+	}
+
+	private void assertCounts(final NGramCounts counts,
+			final Map<List<Integer>, Long> expected, final int[] ids) {
+		assertEquals(counts.size(), expected.size());
+		for (int i = 0; i + counts.getOrder() <= ids.length; i++) {
+			assertEquals(counts.getCount(ids, i), (long) expected.get(Ints
+					.asList(Arrays.copyOfRange(ids, i, i + counts.getOrder()))));
+		}
+	}
+
+	@Test
+	public void testCounter() {
+		final Random random = new Random(7);
+		final int[] ids1 = randomSequence(random, 5000, 100);
+		final int[] ids2 = randomSequence(random, 5000, 100);
+		final NGramCounter counter = new NGramCounter(3, 100);
+		final Thread other = new Thread(() -> counter.addSequence(ids2));
+		other.start();
+		counter.addSequence(ids1);
+		try {
+			other.join();
+		} catch (final InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+
+		final int[] all = Ints.concat(ids1, ids2);
+		final NGramCounts[] counts = counter.getCounts(2);
+		assertEquals(counts.length, 3);
+		for (int order = 1; order <= 3; order++) {
+			final Map<List<Integer>, Long> expected = countNaively(ids1, order);
+			countNaively(ids2, order).forEach(
+					(ngram, count) -> expected.merge(ngram, count, Long::sum));
+			expected.values().removeIf(count -> count < 2);
+			assertEquals(counts[order - 1].size(), expected.size());
+			for (int i = 0; i + order <= all.length; i++) {
+				final Long count = expected.get(Ints.asList(Arrays
+						.copyOfRange(all, i, i + order)));
+				assertEquals(counts[order - 1].getCount(all, i),
+						count == null ? 0 : (long) count);
+			}
+		}
+	}
+
+	@Test
+	public void testHashed() {
+		final Random random = new Random(1);
+		final int[] ids = randomSequence(random, 20000, 1 << 20);
+		final NGramCounts counts = NGramCounts.create(4, 1 << 20);
+		assertTrue(counts.isHashed());
+		counts.addAll(ids);
+		assertCounts(counts, countNaively(ids, 4), ids);
+		assertEquals(counts.getTotalCount(), ids.length - 3);
+	}
+
+	@Test
+	public void testPacked() {
+		final Random random = new Random(1);
+		final int[] ids = randomSequence(random, 20000, 4096);
+		final NGramCounts counts = NGramCounts.create(5, 4096);
+		assertFalse(counts.isHashed());
+		counts.addAll(ids);
+		final Map<List<Integer>, Long> expected = countNaively(ids, 5);
+		assertCounts(counts, expected, ids);
+
+		final Map<List<Integer>, Long> enumerated = Maps.newHashMap();
+		counts.forEach((ngram, count) -> enumerated.put(
+				Ints.asList(ngram.clone()), count));
+		assertEquals(enumerated, expected);
+	}
+
+	@Test
+	public void testPrune() {
+		final Random random = new Random(3);
+		final int[] ids = randomSequence(random, 10000, 50);
+		final NGramCounts counts = NGramCounts.create(2, 50);
+		counts.addAll(ids);
+		counts.prune(5);
+		final Map<List<Integer>, Long> expected = countNaively(ids, 2);
+		expected.values().removeIf(count -> count < 5);
+		assertEquals(counts.size(), expected.size());
+		counts.forEach((ngram, count) -> assertEquals(
+				(long) expected.get(Ints.asList(ngram.clone())), count));
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ *
+ */
+package codemining.languagetools.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class SketchTest {
+
+	/**
+	 * A zipfian stream of tokens "t0", "t1", ...
+	 */
+	private static String[] zipfianTokens(final Random random, final int n) {
+		final String[] tokens = new String[n];
+		for (int i = 0; i < n; i++) {
+			tokens[i] = "t" + (int) (1 / (random.nextDouble() + 1e-6));
+		}
+		return tokens;
+	}
+
+	@Test
+	public void testCountMin() {
+		final String[] tokens = zipfianTokens(new Random(1), 100000);
+		final Map<String, Long> counts = Maps.newHashMap();
+		final CountMinSketch sketch = CountMinSketch.forErrorBounds(0.001,
+				0.01);
+		for (final String token : tokens) {
+			counts.merge(token, 1L, Long::sum);
+			final char[] chars = token.toCharArray();
+			sketch.add(TokenHashing.hash(chars, 0, chars.length), 1);
+		}
+		for (final Map.Entry<String, Long> entry : counts.entrySet()) {
+			final long estimate = sketch.estimate(TokenHashing.hash(entry
+					.getKey()));
+			assertTrue(estimate >= entry.getValue());
+			assertTrue(estimate <= entry.getValue() + 0.001 * tokens.length
+					* 3);
+		}
+		assertEquals(sketch.getTotalCount(), tokens.length);
+	}
+
+	@Test
+	public void testHyperLogLog() {
+		final HyperLogLog sketch1 = HyperLogLog.forRelativeError(0.01);
+		final HyperLogLog sketch2 = HyperLogLog.forRelativeError(0.01);
+		for (int i = 0; i < 100000; i++) {
+			sketch1.add(TokenHashing.hash("token" + i));
+			sketch2.add(TokenHashing.hash("token" + (i + 50000)));
+		}
+		assertEquals(sketch1.estimate(), 100000,
+				100000 * 3 * sketch1.getRelativeError());
+		sketch1.merge(sketch2);
+		assertEquals(sketch1.estimate(), 150000,
+				150000 * 3 * sketch1.getRelativeError());
+
+		final HyperLogLog small = new HyperLogLog(12);
+		for (int i = 0; i < 100; i++) {
+			small.add(TokenHashing.hash("token" + (i % 50)));
+		}
+		assertEquals(small.estimate(), 50, 2);
+	}
+
+	@Test
+	public void testSpaceSaving() {
+		final Random random = new Random(2);
+		final String[] tokens = zipfianTokens(random, 100000);
+		final Map<String, Long> counts = Maps.newHashMap();
+		final SpaceSaving summary = new SpaceSaving(100);
+		final SpaceSaving summary1 = new SpaceSaving(100);
+		final SpaceSaving summary2 = new SpaceSaving(100);
+		for (int i = 0; i < tokens.length; i++) {
+			counts.merge(tokens[i], 1L, Long::sum);
+			summary.add(tokens[i], 1);
+			(i % 2 == 0 ? summary1 : summary2).add(tokens[i], 1);
+		}
+		summary1.merge(summary2);
+
+		for (final SpaceSaving s : new SpaceSaving[] { summary, summary1 }) {
+			assertEquals(s.getTotalCount(), tokens.length);
+			final List<SpaceSaving.Item> top = s.getTopItems();
+			assertEquals(top.size(), 100);
+			for (final SpaceSaving.Item item : top) {
+				final long count = counts.getOrDefault(item.item, 0L);
+				assertTrue(item.count >= count);
+				assertTrue(item.count - item.error <= count);
+			}
+			// The most frequent tokens are above totalCount / capacity
+			assertEquals(top.get(0).item, "t1");
+			assertTrue(top.get(0).count >= counts.get("t1"));
+			for (final Map.Entry<String, Long> entry : counts.entrySet()) {
+				if (entry.getValue() > tokens.length / 100) {
+					assertTrue(top.stream().anyMatch(
+							item -> item.item.equals(entry.getKey())));
+				}
+			}
+		}
+	}
+
+}
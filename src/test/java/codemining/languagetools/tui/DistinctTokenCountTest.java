@@ -0,0 +1,64 @@
+package codemining.languagetools.tui;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import codemining.java.codeutils.JavaAstExtractorTest;
+import codemining.java.tokenizers.JavaTokenizerSomeTokens;
+import codemining.languagetools.SourceReader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.TreeMultiset;
+
+public class DistinctTokenCountTest {
+
+	private static final String[] SAMPLES = { "SampleClass.txt",
+			"SampleClass2.txt", "SampleClass3.txt" };
+
+	/**
+	 * The counts pushed from the tokenizer must be the same as the counts of
+	 * its token lists.
+	 */
+	@Test
+	public void testCountsMatchTokenLists() throws IOException,
+			ReflectiveOperationException {
+		final JavaTokenizerSomeTokens tokenizer = new JavaTokenizerSomeTokens();
+		final DistinctTokenCount tokenCount = new DistinctTokenCount(
+				JavaTokenizerSomeTokens.class.getName());
+		final Multiset<String> expectedTokens = TreeMultiset.create();
+		for (final String sample : SAMPLES) {
+			final File file = new File(JavaAstExtractorTest.class
+					.getClassLoader().getResource(sample).getFile());
+			tokenCount.addTokens(file);
+			expectedTokens.addAll(tokenizer.tokenListFromCode(SourceReader
+					.readChars(file)));
+		}
+
+		final List<String> expectedCounts = Lists.newArrayList();
+		for (final Multiset.Entry<String> entry : expectedTokens.entrySet()) {
+			expectedCounts.add(Integer.toString(entry.getCount()));
+		}
+		assertEquals(expectedCounts, printedCounts(tokenCount));
+	}
+
+	private List<String> printedCounts(final DistinctTokenCount tokenCount) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final PrintStream stdout = System.out;
+		System.setOut(new PrintStream(out));
+		try {
+			tokenCount.printCounts();
+		} finally {
+			System.setOut(stdout);
+		}
+		return Lists.newArrayList(out.toString().split("\\R"));
+	}
+
+}
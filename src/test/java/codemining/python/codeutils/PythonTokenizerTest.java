@@ -0,0 +1,89 @@
+/**
+ *
+ */
+package codemining.python.codeutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import codemining.languagetools.ITokenizer.FullToken;
+import codemining.languagetools.TokenVocabulary;
+
+import com.google.common.base.Strings;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class PythonTokenizerTest {
+
+	/**
+	 * Assert that each (non-whitespace) token is found in the code at the
+	 * offset it is keyed by.
+	 */
+	private void assertOffsetsRoundTrip(final String code) {
+		final SortedMap<Integer, String> tokens = new Python27Tokenizer(true)
+				.tokenListWithPos(code.toCharArray());
+		for (final Entry<Integer, String> token : tokens.entrySet()) {
+			if (token.getValue().trim().isEmpty()) {
+				continue;
+			}
+			assertTrue(code.startsWith(token.getValue(), token.getKey()));
+		}
+	}
+
+	@Test
+	public void testCrLfOffsets() {
+		final String code = "def f(x):\r\n    return x\r\n\r\ny = f(1)\r\n";
+		assertOffsetsRoundTrip(code);
+		assertOffsetsRoundTrip(code.replace("\r\n", "\r"));
+	}
+
+	@Test
+	public void testLongLine() {
+		// "2" is at the 606th column of the first line
+		final String code = "a = [" + Strings.repeat("1, ", 200)
+				+ "2]\nb = 3\n";
+		assertOffsetsRoundTrip(code);
+
+		final SortedMap<Integer, String> offsetKeys = new Python27Tokenizer(
+				true).tokenListWithPos(code.toCharArray());
+		assertEquals(offsetKeys.size(), new Python27Tokenizer()
+				.tokenListFromCode(code.toCharArray()).size());
+		assertEquals(offsetKeys.get(605), "2");
+		assertEquals(offsetKeys.get(code.indexOf('b')), "b");
+
+		// The default keys are line * 500 + column, as they have always been,
+		// so the tokens after the 500th column collide with the next line.
+		final SortedMap<Integer, String> legacyKeys = new Python27Tokenizer()
+				.tokenListWithPos(code.toCharArray());
+		assertEquals(legacyKeys.get(500 + 606), "2");
+		assertTrue(legacyKeys.size() < offsetKeys.size());
+	}
+
+	@Test
+	public void testTokenizeToIds() {
+		final Python27Tokenizer tokenizer = new Python27Tokenizer();
+		final char[] code = "a = 1\nb = a\n".toCharArray();
+		final TokenVocabulary vocabulary = new TokenVocabulary();
+		final int[] ids = tokenizer.tokenizeToIds(code, vocabulary);
+
+		// The Python tokens have no sentence start/end, so none is dropped
+		final List<FullToken> tokens = tokenizer.getTokenListFromCode(code);
+		assertEquals(tokens.size(), ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(tokens.get(i), vocabulary.getToken(ids[i]));
+		}
+
+		// An empty file does not throw
+		assertEquals(tokenizer.getTokenListFromCode(new char[0]).size(),
+				tokenizer.tokenizeToIds(new char[0], vocabulary).length);
+	}
+
+}